@@ -42,8 +42,7 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -115,22 +114,22 @@ public class Agent {
             // check if the maintenance mode is enabled. If so, hang there indefinitely
             validateMaintenanceMode();
 
-            // TODO parallel acquire?
-            // wait for a free "slot"
+            // wait for a free "slot" and take all other free slots as well
             workersAvailable.acquire();
-            log.info("run -> acquired a slot, {}/{} remains", workersAvailable.availablePermits(), workersCount);
+            int slots = 1 + workersAvailable.drainPermits();
+            log.info("run -> acquired {} slot(s), {}/{} remains", slots, workersAvailable.availablePermits(), workersCount);
 
-            // fetch the next job
-            JobRequest jobRequest;
+            // fetch up to "slots" jobs at once
+            List<JobRequest> jobs;
             try {
-                jobRequest = take(queueClient);
+                jobs = take(queueClient, slots);
             } catch (InterruptedException e) {
                 log.info("run -> interrupted, exiting...");
                 return;
             } catch (Exception e) {
                 log.error("run -> error while fetching a job: {}", e.getMessage(), e);
 
-                workersAvailable.release();
+                workersAvailable.release(slots);
 
                 // wait before retrying
                 // the server is not reachable or unhealthy, no point retrying immediately
@@ -138,29 +137,35 @@ public class Agent {
                 continue;
             }
 
-            if (jobRequest == null) {
-                // can happen on switching to maintenance mode or reconnecting, etc
-                workersAvailable.release();
-                continue;
+            // return the unused slots
+            // can happen on switching to maintenance mode or reconnecting, etc
+            if (jobs.size() < slots) {
+                workersAvailable.release(slots - jobs.size());
             }
 
-            UUID instanceId = jobRequest.getInstanceId();
-
-            // worker will handle the process' lifecycle
-            try {
-                Worker w = injector.createChildInjector(new WorkerModule(agentCfg.getAgentId(), instanceId, jobRequest.getSessionToken()))
-                        .getInstance(WorkerFactory.class)
-                        .create(jobRequest, createStatusCallback(instanceId, workersAvailable));
+            for (JobRequest jobRequest : jobs) {
+                startWorker(jobRequest);
+            }
+        }
+    }
 
-                // register the worker so we can cancel it later
-                activeWorkers.put(instanceId, w);
+    private void startWorker(JobRequest jobRequest) {
+        UUID instanceId = jobRequest.getInstanceId();
 
-                // start a new thread to process the job
-                executor.submit(w);
-            } catch (Exception e) {
-                log.error("run -> error while submitting worker: {}", e.getMessage());
-                workersAvailable.release();
-            }
+        // worker will handle the process' lifecycle
+        try {
+            Worker w = injector.createChildInjector(new WorkerModule(agentCfg.getAgentId(), instanceId, jobRequest.getSessionToken()))
+                    .getInstance(WorkerFactory.class)
+                    .create(jobRequest, createStatusCallback(instanceId, workersAvailable));
+
+            // register the worker so we can cancel it later
+            activeWorkers.put(instanceId, w);
+
+            // start a new thread to process the job
+            executor.submit(w);
+        } catch (Exception e) {
+            log.error("run -> error while submitting worker: {}", e.getMessage());
+            workersAvailable.release();
         }
     }
 
@@ -223,17 +228,23 @@ public class Agent {
         };
     }
 
-    private JobRequest take(QueueClient queueClient) throws Exception {
-        Future<ProcessResponse> req = queueClient.request(new ProcessRequest(agentCfg.getCapabilities()));
+    private List<JobRequest> take(QueueClient queueClient, int maxJobs) throws Exception {
+        Future<ProcessResponse> req = queueClient.request(new ProcessRequest(agentCfg.getCapabilities(), maxJobs));
 
         ProcessResponse resp = req.get();
         if (resp == null) {
-            return null;
+            return Collections.emptyList();
         }
 
-        Path workDir = IOUtils.createTempDir(agentCfg.getPayloadDir(), "workDir");
+        // older servers always reply with a single process
+        List<ProcessResponse> l = resp.allJobs();
 
-        return JobRequest.from(resp, workDir);
+        List<JobRequest> result = new ArrayList<>(l.size());
+        for (ProcessResponse r : l) {
+            Path workDir = IOUtils.createTempDir(agentCfg.getPayloadDir(), "workDir");
+            result.add(JobRequest.from(r, workDir));
+        }
+        return result;
     }
 
     private void cancel(UUID instanceId) {
@@ -20,50 +20,75 @@ package com.walmartlabs.concord.agent;
  * =====
  */
 
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.ClientUtils;
-import com.walmartlabs.concord.client.ProcessApi;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.sdk.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.File;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Streams the process state from the server and unpacks the ZIP entries
+ * as they arrive, without storing the archive on disk.
+ */
 public class DefaultStateFetcher implements StateFetcher {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultStateFetcher.class);
 
-    private final ProcessApi processApi;
+    private final ApiClient apiClient;
 
     @Inject
-    public DefaultStateFetcher(ProcessApi processApi) {
-        this.processApi = processApi;
+    public DefaultStateFetcher(ApiClient apiClient) {
+        this.apiClient = apiClient;
     }
 
     @Override
-    public void downloadState(JobRequest job) throws Exception {
-        File payload = null;
-        try {
-            payload = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> processApi.downloadState(job.getInstanceId()));
-            IOUtils.unzip(payload.toPath(), job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
-        } finally {
-            if (payload != null) {
-                delete(payload.toPath());
-            }
-        }
+    public Result downloadState(JobRequest job) throws Exception {
+        return ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> download(job));
     }
 
-    private static void delete(Path dir) {
-        if (dir == null) {
-            return;
-        }
+    private Result download(JobRequest job) throws ApiException, IOException {
+        String path = "/api/v1/process/" + job.getInstanceId() + "/state/snapshot";
+
+        Map<String, String> headerParams = new HashMap<>();
+        headerParams.put("Accept", "application/zip");
+
+        String[] authNames = apiClient.getAuthentications().keySet().toArray(new String[0]);
+        Call call = apiClient.buildCall(path, "GET", new ArrayList<>(), new ArrayList<>(),
+                null, headerParams, new HashMap<>(), authNames, null);
 
-        try {
-            IOUtils.deleteRecursively(dir);
-        } catch (Exception e) {
-            log.warn("delete ['{}'] -> error", dir, e);
+        long t1 = System.currentTimeMillis();
+        Response resp = call.execute();
+        long timeToFirstByte = System.currentTimeMillis() - t1;
+
+        try (ResponseBody body = resp.body()) {
+            if (!resp.isSuccessful()) {
+                throw new ApiException(resp.message(), resp.code(), resp.headers().toMultimap(), body.string());
+            }
+
+            try (InputStream in = body.byteStream()) {
+                if (!"true".equals(resp.header(Constants.Headers.STREAMABLE_ZIP))) {
+                    // older servers don't store the files' unix modes in the local headers
+                    log.info("download ['{}'] -> the server doesn't support streaming, using a temporary file", job.getInstanceId());
+                    IOUtils.unzip(in, job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
+                    return new Result(timeToFirstByte, -1);
+                }
+
+                long bytes = IOUtils.unzipStream(in, job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
+                return new Result(timeToFirstByte, bytes);
+            }
         }
     }
 }
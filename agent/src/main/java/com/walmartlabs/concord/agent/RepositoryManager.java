@@ -59,14 +59,14 @@ public class RepositoryManager {
                 .sshTimeoutRetryCount(gitCfg.getSshTimeoutRetryCount())
                 .build();
 
-        List<RepositoryProvider> providers = Collections.singletonList(new GitCliRepositoryProvider(clientCfg));
+        List<RepositoryProvider> providers = Collections.singletonList(new GitCliRepositoryProvider(clientCfg, cacheCfg.getExportMode()));
         this.providers = new RepositoryProviders(providers);
 
         this.repositoryCache = new RepositoryCache(cacheCfg.getCacheDir(),
                 cacheCfg.getInfoDir(),
                 cacheCfg.getLockTimeout(),
                 cacheCfg.getMaxAge(),
-                cacheCfg.getLockCount(),
+                cacheCfg.getFetchFreshness(),
                 objectMapper);
     }
 
@@ -81,7 +81,10 @@ public class RepositoryManager {
 
         repositoryCache.withLock(repoUrl, () -> {
             // TODO: checkRemoteCommitId read from configuration
-            Repository repo = providers.fetch(repoUrl, branch, commitId, repoPath, secret, false, cacheDir);
+            // only the fetches of specific commits can be reused, branches can be updated at any time
+            boolean allowCached = commitId != null;
+            Repository repo = repositoryCache.fetch(repoUrl, branch, commitId, repoPath, secret, allowCached,
+                    () -> providers.fetch(repoUrl, branch, commitId, repoPath, secret, false, cacheDir));
             repo.export(dest, ignorePatterns);
             return null;
         });
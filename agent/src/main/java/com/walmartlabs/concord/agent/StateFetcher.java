@@ -22,5 +22,33 @@ package com.walmartlabs.concord.agent;
 
 public interface StateFetcher {
 
-    void downloadState(JobRequest jobRequest) throws Exception;
+    /**
+     * Downloads and unpacks the process state into the job's payload directory.
+     */
+    Result downloadState(JobRequest jobRequest) throws Exception;
+
+    final class Result {
+
+        private final long timeToFirstByte;
+        private final long bytesWritten;
+
+        public Result(long timeToFirstByte, long bytesWritten) {
+            this.timeToFirstByte = timeToFirstByte;
+            this.bytesWritten = bytesWritten;
+        }
+
+        /**
+         * Time between the request and the first byte of the response, ms.
+         */
+        public long getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /**
+         * Number of bytes written into the payload directory.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+    }
 }
@@ -177,15 +177,22 @@ public class Worker implements Runnable {
     private void downloadState(JobRequest r) throws Exception {
         processLog.info("Downloading the process state...");
 
-        long dt;
+        long t1 = System.currentTimeMillis();
+
+        StateFetcher.Result result;
         try {
-            dt = withTimer(() -> stateFetcher.downloadState(r));
+            result = stateFetcher.downloadState(r);
         } catch (Exception e) {
             processLog.error("State download error: {}", e.getMessage());
             throw e;
         }
 
-        processLog.info("Process state download took {}ms", dt);
+        long dt = System.currentTimeMillis() - t1;
+
+        log.info("downloadState ['{}'] -> done in {}ms, time to first byte: {}ms, bytes written: {}",
+                r.getInstanceId(), dt, result.getTimeToFirstByte(), result.getBytesWritten());
+
+        processLog.info("Process state download took {}ms (time to first byte: {}ms)", dt, result.getTimeToFirstByte());
     }
 
     private void processImports(JobRequest r) throws ExecutionException {
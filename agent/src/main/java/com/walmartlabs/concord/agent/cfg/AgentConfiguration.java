@@ -50,6 +50,7 @@ public class AgentConfiguration {
 
     private final Path logDir;
     private final long logMaxDelay;
+    private final boolean logWatchService;
 
     private final int workersCount;
     private final long pollInterval;
@@ -69,6 +70,7 @@ public class AgentConfiguration {
 
         this.logDir = getOrCreatePath(cfg, "logDir");
         this.logMaxDelay = cfg.getDuration("logMaxDelay", TimeUnit.MILLISECONDS);
+        this.logWatchService = cfg.getBoolean("logWatchService");
 
         this.workersCount = cfg.getInt("workersCount");
         this.maintenanceModeListenerPort = cfg.getInt("maintenanceModeListenerPort");
@@ -104,6 +106,10 @@ public class AgentConfiguration {
         return logMaxDelay;
     }
 
+    public boolean isLogWatchService() {
+        return logWatchService;
+    }
+
     public int getWorkersCount() {
         return workersCount;
     }
@@ -21,6 +21,7 @@ package com.walmartlabs.concord.agent.cfg;
  */
 
 import com.typesafe.config.Config;
+import com.walmartlabs.concord.repository.ExportMode;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,7 +37,8 @@ public class RepositoryCacheConfiguration {
 
     private final Path cacheDir;
     private final Duration lockTimeout;
-    private final int lockCount;
+    private final Duration fetchFreshness;
+    private final ExportMode exportMode;
     private final Duration maxAge;
     private final Path infoDir;
 
@@ -44,7 +46,8 @@ public class RepositoryCacheConfiguration {
     public RepositoryCacheConfiguration(Config cfg) {
         this.cacheDir = getOrCreatePath(cfg, "repositoryCache.cacheDir");
         this.lockTimeout = cfg.getDuration("repositoryCache.lockTimeout");
-        this.lockCount = cfg.getInt("repositoryCache.lockCount");
+        this.fetchFreshness = cfg.getDuration("repositoryCache.fetchFreshness");
+        this.exportMode = ExportMode.valueOf(cfg.getString("repositoryCache.exportMode").toUpperCase());
         this.maxAge = cfg.getDuration("repositoryCache.maxAge");
         this.infoDir = getOrCreatePath(cfg, "repositoryCache.cacheInfoDir");
     }
@@ -57,8 +60,12 @@ public class RepositoryCacheConfiguration {
         return lockTimeout;
     }
 
-    public int getLockCount() {
-        return lockCount;
+    public Duration getFetchFreshness() {
+        return fetchFreshness;
+    }
+
+    public ExportMode getExportMode() {
+        return exportMode;
     }
 
     public Duration getMaxAge() {
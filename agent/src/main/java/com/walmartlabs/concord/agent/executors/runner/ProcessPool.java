@@ -32,10 +32,23 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of "pre-forked" JVMs. Each classpath hash has its own queue of
+ * ready processes and its own target size, adjusted based on the recent
+ * demand. New processes are started asynchronously and the pool doesn't
+ * hold any locks while a JVM is starting.
+ */
 @Named
 @Singleton
 public class ProcessPool {
@@ -44,18 +57,42 @@ public class ProcessPool {
 
     private static final long CLEANUP_PERIOD = 30000;
 
+    /**
+     * Weight of the last maintenance period's demand in the target size.
+     */
+    private static final double DEMAND_WEIGHT = 0.5;
+
     private final long maxEntryAge;
     private final int maxEntryCount;
-    private final Map<HashCode, Queue<ProcessEntry>> pool = new HashMap<>();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<HashCode, Slot> pool = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    /**
+     * Total number of processes in the pool, including the processes that are still starting.
+     */
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile Thread cleanupThread;
 
     @Inject
     public ProcessPool(PreForkConfiguration cfg) {
-        this.maxEntryAge = cfg.getMaxAge();
-        this.maxEntryCount = cfg.getMaxCount();
+        this(cfg.getMaxAge(), cfg.getMaxCount());
         init();
     }
 
+    /**
+     * Creates a pool without the cleanup thread, {@link #maintenance()} must be called manually.
+     */
+    ProcessPool(long maxEntryAge, int maxEntryCount) {
+        this.maxEntryAge = maxEntryAge;
+        this.maxEntryCount = maxEntryCount;
+    }
+
     public void init() {
         Thread t = new Thread(() -> {
             log.info("run -> starting cleanup thread, max entry age {}ms, max entry count {}", maxEntryAge, maxEntryCount);
@@ -71,99 +108,250 @@ public class ProcessPool {
             }
         }, "process-pool-cleanup");
 
+        t.setDaemon(true);
         t.start();
+
+        this.cleanupThread = t;
+    }
+
+    /**
+     * Stops the cleanup thread and the background workers. The remaining
+     * pre-forked processes are killed.
+     */
+    public void stop() {
+        Thread t = this.cleanupThread;
+        if (t != null) {
+            t.interrupt();
+        }
+
+        executor.shutdownNow();
+
+        for (Slot slot : pool.values()) {
+            ProcessEntry e;
+            while ((e = slot.poll()) != null) {
+                total.decrementAndGet();
+                Utils.kill(e.process);
+            }
+        }
+
+        log.info("stop -> done");
     }
 
     public ProcessEntry take(HashCode hc, ProcessLauncher launcher) throws ExecutionException {
-        synchronized (pool) {
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
+        long t1 = System.nanoTime();
 
-            ProcessEntry entry = q.poll();
-            if (entry == null) {
-                try {
-                    entry = launcher.start();
-                } catch (IOException e) {
-                    throw new ExecutionException("Error while starting a new process", e);
-                }
+        // update the slot atomically with the maintenance thread's
+        // retirement check, so the slot can't be retired in between
+        Slot slot = pool.compute(hc, (k, s) -> {
+            if (s == null || s.retired) {
+                s = new Slot();
+            }
 
-                log.info("take -> started a new process: {}", entry.procDir);
-            } else {
-                log.info("take -> using a pre-forked instance: {}", entry.procDir);
+            s.launcher = launcher;
+            s.demand.incrementAndGet();
+            if (s.target == 0) {
+                // keep at least one process for recently used hashes
+                s.target = 1;
             }
 
-            executor.submit(() -> populate(hc, launcher));
+            return s;
+        });
+
+        ProcessEntry entry = slot.poll();
+        if (entry == null) {
+            misses.incrementAndGet();
 
-            return entry;
+            try {
+                entry = launcher.start();
+            } catch (IOException e) {
+                throw new ExecutionException("Error while starting a new process", e);
+            } finally {
+                replenish(hc, slot);
+            }
+
+            log.info("take -> started a new process: {}", entry.procDir);
+        } else {
+            hits.incrementAndGet();
+            total.decrementAndGet();
+
+            replenish(hc, slot);
+
+            log.info("take -> using a pre-forked instance: {}", entry.procDir);
         }
+
+        waitTime.addAndGet(System.nanoTime() - t1);
+
+        return entry;
     }
 
-    private void populate(HashCode hc, ProcessLauncher launcher) {
-        synchronized (pool) {
-            // calculate the total number of processes in the pool
-            int total = 0;
-            for (Map.Entry<HashCode, Queue<ProcessEntry>> e : pool.entrySet()) {
-                total += e.getValue().size();
-            }
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), TimeUnit.NANOSECONDS.toMillis(waitTime.get()), evictions.get(), total.get());
+    }
+
+    /**
+     * Number of ready (not yet taken) processes.
+     */
+    int readyCount() {
+        return pool.values().stream().mapToInt(s -> s.ready.size()).sum();
+    }
 
-            if (total >= maxEntryCount) {
-                // mark the oldest entry for removal
-                ProcessEntry oldest = null;
-                for (Map.Entry<HashCode, Queue<ProcessEntry>> q : pool.entrySet()) {
-                    for (ProcessEntry e : q.getValue()) {
-                        if (oldest == null || oldest.timestamp > e.timestamp) {
-                            oldest = e;
-                        }
-                    }
+    /**
+     * Number of processes that are still starting.
+     */
+    int startingCount() {
+        return pool.values().stream().mapToInt(s -> s.starting.get()).sum();
+    }
+
+    /**
+     * Starts new processes (in background) until the slot reaches its target size.
+     * Evicts the oldest entries of other slots if the pool is full.
+     */
+    private void replenish(HashCode hc, Slot slot) {
+        while (slot.ready.size() + slot.starting.get() < slot.target) {
+            if (!reserve()) {
+                if (!evictOldest(slot)) {
+                    return;
                 }
+                continue;
+            }
 
-                // it's never null
-                assert oldest != null;
+            slot.starting.incrementAndGet();
+            executor.submit(() -> populate(hc, slot));
+        }
+    }
+
+    private void populate(HashCode hc, Slot slot) {
+        ProcessEntry entry;
+        try {
+            entry = slot.launcher.start();
+        } catch (Exception e) {
+            log.error("populate ['{}'] -> error while starting a new process", hc, e);
+            slot.starting.decrementAndGet();
+            total.decrementAndGet();
+            return;
+        }
+
+        // add the entry first, so the slot is never seen as empty
+        // while the process is moved from "starting" to "ready"
+        slot.ready.addLast(entry);
+        slot.starting.decrementAndGet();
+
+        if (slot.retired && entry.claim()) {
+            // the slot was removed while the process was starting
+            slot.ready.remove(entry);
+            total.decrementAndGet();
+            Utils.kill(entry.process);
+        }
+    }
 
-                oldest.remove = true;
+    private boolean reserve() {
+        while (true) {
+            int n = total.get();
+            if (n >= maxEntryCount) {
+                return false;
             }
 
-            // add a new pool entry
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
-            try {
-                q.add(launcher.start());
-            } catch (IOException e) {
-                log.error("populate -> error while starting a new process", e);
+            if (total.compareAndSet(n, n + 1)) {
+                return true;
             }
         }
     }
 
-    private void maintenance() {
-        List<HashCode> queuesToRemove = new ArrayList<>();
-        List<Process> processesToKill = new ArrayList<>();
+    /**
+     * Removes the oldest ready process of any other slot.
+     *
+     * @return {@code true} if an entry was removed
+     */
+    private boolean evictOldest(Slot requester) {
+        // the oldest entry of each slot is always at the head of its queue
+        // so only the heads need to be checked
+        Slot oldest = null;
+        long oldestTimestamp = Long.MAX_VALUE;
+        for (Slot s : pool.values()) {
+            if (s == requester) {
+                continue;
+            }
 
+            ProcessEntry e = s.ready.peekFirst();
+            if (e != null && e.timestamp < oldestTimestamp) {
+                oldest = s;
+                oldestTimestamp = e.timestamp;
+            }
+        }
+
+        if (oldest == null) {
+            return false;
+        }
+
+        ProcessEntry e = oldest.poll();
+        if (e == null) {
+            // already taken by someone else, the caller will retry
+            return true;
+        }
+
+        total.decrementAndGet();
+        evictions.incrementAndGet();
+        executor.submit(() -> Utils.kill(e.process));
+
+        return true;
+    }
+
+    void maintenance() {
         long t = System.currentTimeMillis();
 
-        synchronized (pool) {
-            pool.forEach((hc, q) -> {
-                q.removeIf(e -> {
-                    if (e.remove || t - e.timestamp >= maxEntryAge) {
-                        processesToKill.add(e.process);
-                        return true;
-                    }
-                    return false;
-                });
-
-                if (q.isEmpty()) {
-                    queuesToRemove.add(hc);
+        int killed = 0;
+        int removedSlots = 0;
+        for (Map.Entry<HashCode, Slot> kv : pool.entrySet()) {
+            HashCode hc = kv.getKey();
+            Slot slot = kv.getValue();
+
+            for (ProcessEntry e : slot.ready) {
+                if (t - e.timestamp >= maxEntryAge && e.claim()) {
+                    slot.ready.remove(e);
+                    total.decrementAndGet();
+                    Utils.kill(e.process);
+                    killed++;
+                }
+            }
+
+            boolean[] removed = {false};
+            pool.computeIfPresent(hc, (k, s) -> {
+                // adjust the target size using the demand since the last run
+                int demand = s.demand.getAndSet(0);
+                s.avgDemand = DEMAND_WEIGHT * demand + (1 - DEMAND_WEIGHT) * s.avgDemand;
+                s.target = Math.min(maxEntryCount, (int) Math.round(s.avgDemand));
+
+                // remove unused slots
+                if (s.target == 0 && s.ready.isEmpty() && s.starting.get() == 0) {
+                    s.retired = true;
+                    removed[0] = true;
+                    return null;
                 }
+                return s;
             });
 
-            for (HashCode hc : queuesToRemove) {
-                pool.remove(hc);
+            if (removed[0]) {
+                removedSlots++;
+            } else {
+                replenish(hc, slot);
             }
         }
 
-        log.info("maintenance -> removed {} queues", queuesToRemove.size());
+        log.info("maintenance -> removed {} queues", removedSlots);
+        log.info("maintenance -> killed {} processes", killed);
+        log.info("maintenance -> {}", getStats());
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
 
-        for (Process p : processesToKill) {
-            Utils.kill(p);
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "process-pool-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
         }
-        log.info("maintenance -> killed {} processes", processesToKill.size());
     }
 
     public interface ProcessLauncher {
@@ -171,13 +359,40 @@ public class ProcessPool {
         ProcessEntry start() throws IOException;
     }
 
+    private static final class Slot {
+
+        private final ConcurrentLinkedDeque<ProcessEntry> ready = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger starting = new AtomicInteger();
+        private final AtomicInteger demand = new AtomicInteger();
+
+        private volatile ProcessLauncher launcher;
+        private volatile int target = 1;
+        private volatile boolean retired;
+
+        // accessed only by the maintenance thread
+        private double avgDemand = 1;
+
+        /**
+         * Returns the oldest ready process, if any.
+         */
+        private ProcessEntry poll() {
+            ProcessEntry e;
+            while ((e = ready.pollFirst()) != null) {
+                if (e.claim()) {
+                    return e;
+                }
+            }
+            return null;
+        }
+    }
+
     public static final class ProcessEntry {
 
         private final long timestamp;
         private final Process process;
         private final Path procDir;
 
-        private boolean remove = false;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
 
         public ProcessEntry(Process process, Path procDir) {
             this.timestamp = System.currentTimeMillis();
@@ -192,5 +407,68 @@ public class ProcessPool {
         public Path getProcDir() {
             return procDir;
         }
+
+        /**
+         * Marks the entry as used (taken or removed). Only one caller can claim an entry.
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long waitTimeMs;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long waitTimeMs, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.waitTimeMs = waitTimeMs;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long n = hits + misses;
+            return n > 0 ? (double) hits / n : 0;
+        }
+
+        /**
+         * Total time spent in {@link ProcessPool#take(HashCode, ProcessLauncher)}.
+         */
+        public long getWaitTimeMs() {
+            return waitTimeMs;
+        }
+
+        public long getAvgWaitTimeMs() {
+            long n = hits + misses;
+            return n > 0 ? waitTimeMs / n : 0;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d, misses: %d, hit rate: %.2f, avg wait: %dms, evictions: %d, size: %d",
+                    hits, misses, getHitRate(), getAvgWaitTimeMs(), evictions, size);
+        }
     }
 }
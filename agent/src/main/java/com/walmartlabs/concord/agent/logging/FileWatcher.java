@@ -30,29 +30,53 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a directory for new and modified files.
+ * <p>
+ * If {@code useWatchService} is {@code true} and the file system supports it,
+ * the watcher reacts to {@link WatchService} events. Events received within
+ * a short period of time are coalesced, so multiple writes into the same file
+ * are read at once. On {@link StandardWatchEventKinds#OVERFLOW} (or if
+ * {@link WatchService} is not available) the whole directory is re-scanned,
+ * just like in the polling mode.
+ */
 public final class FileWatcher<T> implements Closeable {
 
     public static <T> void watch(Path path, Supplier<Boolean> stopCondition, long maxDelay, FileNameParser<T> fileNameParser, FileListener<T> listener) throws IOException {
+        watch(path, stopCondition, maxDelay, false, fileNameParser, listener);
+    }
+
+    public static <T> void watch(Path path, Supplier<Boolean> stopCondition, long maxDelay, boolean useWatchService, FileNameParser<T> fileNameParser, FileListener<T> listener) throws IOException {
         try (FileWatcher<T> watcher = new FileWatcher<>(path, maxDelay, fileNameParser, listener)) {
-            watcher.run(stopCondition);
+            WatchService watchService = useWatchService ? watcher.createWatchService() : null;
+            if (watchService != null) {
+                try (WatchService ws = watchService) {
+                    watcher.run(ws, stopCondition);
+                }
+            } else {
+                watcher.run(stopCondition);
+            }
         }
     }
 
     private static final Logger log = LoggerFactory.getLogger(FileWatcher.class);
 
-    private static final int MAX_OPEN_FILES = 10;
+    private static final int MAX_OPEN_FILES = 32;
+
+    /**
+     * Time to wait for additional events before reading the changed files.
+     */
+    private static final long COALESCE_DELAY = 100;
 
     private final Path watchDir;
     private final long maxDelay;
@@ -93,6 +117,71 @@ public final class FileWatcher<T> implements Closeable {
         }
     }
 
+    private void run(WatchService watchService, Supplier<Boolean> stopCondition) throws IOException {
+        watchDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        // pick up the files created before the registration
+        processFiles();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            if (stopCondition.get()) {
+                processFiles();
+                break;
+            }
+
+            try {
+                WatchKey key = watchService.poll(maxDelay, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+
+                // give the writer a chance to write more data
+                Thread.sleep(Math.min(COALESCE_DELAY, maxDelay));
+
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                do {
+                    for (WatchEvent<?> e : key.pollEvents()) {
+                        if (e.kind() == OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            changed.add(watchDir.resolve((Path) e.context()));
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        // the directory is no longer accessible, fall back to polling
+                        log.warn("run ['{}'] -> watch key is no longer valid, switching to polling", watchDir);
+                        run(stopCondition);
+                        return;
+                    }
+                } while ((key = watchService.poll()) != null);
+
+                if (overflow) {
+                    processFiles();
+                } else {
+                    for (Path p : changed) {
+                        if (Files.isRegularFile(p)) {
+                            processFile(p);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private WatchService createWatchService() {
+        try {
+            return watchDir.getFileSystem().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("createWatchService ['{}'] -> not supported, using polling: {}", watchDir, e.getMessage());
+            return null;
+        }
+    }
+
     private void processFiles() throws IOException {
         Files.walkFileTree(watchDir, new SimpleFileVisitor<Path>() {
             @Override
@@ -104,40 +193,42 @@ public final class FileWatcher<T> implements Closeable {
             }
 
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (ignoreFiles.contains(file)) {
-                    return FileVisitResult.CONTINUE;
-                }
+                processFile(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
 
-                FileEntry<T> filePointer = filePointers.get(file);
-                if (filePointer == null) {
-                    T fileName = fileNameParser.parse(file);
-                    if (fileName == null) {
-                        ignoreFiles.add(file);
-                        return FileVisitResult.CONTINUE;
-                    }
+    private void processFile(Path file) {
+        if (ignoreFiles.contains(file)) {
+            return;
+        }
 
-                    boolean success = listener.onNewFile(fileName);
-                    if (!success) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                    filePointer = FileEntry.of(fileName, 0L);
-                    filePointers.put(file, filePointer);
-                }
+        FileEntry<T> filePointer = filePointers.get(file);
+        if (filePointer == null) {
+            T fileName = fileNameParser.parse(file);
+            if (fileName == null) {
+                ignoreFiles.add(file);
+                return;
+            }
 
-                if (isChanged(file, filePointer.pointer())) {
-                    long newPos = notifyChanged(file, filePointer);
-                    if (newPos == -1) {
-                        deleteFile(file);
-                        filePointers.remove(file);
-                        return FileVisitResult.CONTINUE;
-                    } else if (newPos > 0) {
-                        filePointers.put(file, FileEntry.of(filePointer.name(), newPos));
-                    }
-                }
+            boolean success = listener.onNewFile(fileName);
+            if (!success) {
+                return;
+            }
+            filePointer = FileEntry.of(fileName, 0L);
+            filePointers.put(file, filePointer);
+        }
 
-                return FileVisitResult.CONTINUE;
+        if (isChanged(file, filePointer.pointer())) {
+            long newPos = notifyChanged(file, filePointer);
+            if (newPos == -1) {
+                deleteFile(file);
+                filePointers.remove(file);
+            } else if (newPos > 0) {
+                filePointers.put(file, FileEntry.of(filePointer.name(), newPos));
             }
-        });
+        }
     }
 
     public boolean isChanged(Path path, long totalRead) {
@@ -151,8 +242,8 @@ public final class FileWatcher<T> implements Closeable {
 
     private long notifyChanged(Path path, FileEntry<T> fileEntry) {
         try {
-            RandomAccessFile file = fileCache.get(path);
-            file.seek(fileEntry.pointer());
+            FileChannel file = fileCache.get(path);
+            file.position(fileEntry.pointer());
             long newPos = listener.onChanged(fileEntry.name(), file);
             if (newPos == -1) {
                 fileCache.close(path);
@@ -179,7 +270,7 @@ public final class FileWatcher<T> implements Closeable {
         /**
          * @return new file offset or -1 if file no longer tracked (e.g. all file read)
          */
-        long onChanged(T fileName, RandomAccessFile in) throws IOException;
+        long onChanged(T fileName, FileChannel in) throws IOException;
     }
 
     public interface FileNameParser<T> {
@@ -195,30 +286,41 @@ public final class FileWatcher<T> implements Closeable {
         /**
          * @return new file offset
          */
-        long read(RandomAccessFile in, ChunkConsumer consumer) throws IOException;
+        long read(FileChannel in, ChunkConsumer consumer) throws IOException;
     }
 
+    /**
+     * Reads the file using a reusable direct buffer. Chunks are up to
+     * {@link #BUFFER_SIZE} bytes, so the data written between two reads is
+     * sent to the consumer at once.
+     */
     public static class ByteArrayFileReader implements FileReader {
 
-        private final byte[] dataBuffer = new byte[8192];
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] dataBuffer = new byte[BUFFER_SIZE];
 
         @Override
-        public long read(RandomAccessFile in, ChunkConsumer consumer) throws IOException {
-            long result = in.getFilePointer();
+        public long read(FileChannel in, ChunkConsumer consumer) throws IOException {
+            long result = in.position();
 
             try {
                 while (!Thread.currentThread().isInterrupted()) {
-                    int read = in.read(dataBuffer, 0, dataBuffer.length);
+                    buffer.clear();
+                    int read = in.read(buffer, result);
                     if (read <= 0) {
                         break;
                     }
 
+                    buffer.flip();
+                    buffer.get(dataBuffer, 0, read);
+
                     int consumed = consumer.consume(new Chunk(dataBuffer, read));
                     if (consumed == -1) {
                         return -1;
                     }
                     result += consumed;
-                    in.seek(result);
                 }
             } catch (IOException e) {
                 log.warn("read error: {}", e.getMessage());
@@ -230,12 +332,12 @@ public final class FileWatcher<T> implements Closeable {
 
     private static class FileCache implements Closeable {
 
-        private final LoadingCache<Path, RandomAccessFile> cache;
+        private final LoadingCache<Path, FileChannel> cache;
 
         public FileCache() {
             this.cache = CacheBuilder.newBuilder()
                     .maximumSize(MAX_OPEN_FILES)
-                    .removalListener((RemovalListener<Path, RandomAccessFile>) notification -> {
+                    .removalListener((RemovalListener<Path, FileChannel>) notification -> {
                         try {
                             notification.getValue().close();
                             log.debug("closing: {}", notification.getKey());
@@ -243,16 +345,16 @@ public final class FileWatcher<T> implements Closeable {
                             log.warn("close error: {}", e.getMessage());
                         }
                     })
-                    .build(new CacheLoader<Path, RandomAccessFile>() {
+                    .build(new CacheLoader<Path, FileChannel>() {
 
                         @Override
-                        public RandomAccessFile load(Path key) throws Exception {
-                            return new RandomAccessFile(key.toFile(), "r");
+                        public FileChannel load(Path key) throws Exception {
+                            return FileChannel.open(key, StandardOpenOption.READ);
                         }
                     });
         }
 
-        public RandomAccessFile get(Path path) {
+        public FileChannel get(Path path) {
             return cache.getUnchecked(path);
         }
 
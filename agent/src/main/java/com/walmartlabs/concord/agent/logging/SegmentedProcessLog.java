@@ -26,7 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.UUID;
@@ -38,11 +38,17 @@ public class SegmentedProcessLog extends RedirectedProcessLog {
     private static final Logger log = LoggerFactory.getLogger(SegmentedProcessLog.class);
 
     private final Path logsDir;
+    private final boolean useWatchService;
     private final Map<LogSegment, Long> segmentIds;
 
     public SegmentedProcessLog(Path logsDir, UUID instanceId, LogAppender appender, long logSteamMaxDelay) throws IOException {
+        this(logsDir, instanceId, appender, logSteamMaxDelay, false);
+    }
+
+    public SegmentedProcessLog(Path logsDir, UUID instanceId, LogAppender appender, long logSteamMaxDelay, boolean useWatchService) throws IOException {
         super(logsDir, instanceId, appender, logSteamMaxDelay);
         this.logsDir = logsDir;
+        this.useWatchService = useWatchService;
         this.segmentIds = new ConcurrentHashMap<>();
     }
 
@@ -50,7 +56,7 @@ public class SegmentedProcessLog extends RedirectedProcessLog {
     public void run(Supplier<Boolean> stopCondition) throws Exception {
         FileWatcher.FileReader fileReader = new FileWatcher.ByteArrayFileReader();
 
-        FileWatcher.watch(logsDir, stopCondition, logSteamMaxDelay, new LogSegmentNameParser(), new FileWatcher.FileListener<LogSegment>() {
+        FileWatcher.watch(logsDir, stopCondition, logSteamMaxDelay, useWatchService, new LogSegmentNameParser(), new FileWatcher.FileListener<LogSegment>() {
 
             @Override
             public boolean onNewFile(LogSegment fileName) {
@@ -62,7 +68,7 @@ public class SegmentedProcessLog extends RedirectedProcessLog {
             }
 
             @Override
-            public long onChanged(LogSegment fileName, RandomAccessFile in) throws IOException {
+            public long onChanged(LogSegment fileName, FileChannel in) throws IOException {
                 Long id = segmentIds.get(fileName);
                 if (id == null) {
                     return -1;
@@ -0,0 +1,211 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.executors.runner.ProcessPool.ProcessEntry;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProcessPoolTest {
+
+    @Test(timeout = 60000)
+    public void testConcurrentTakeAndMaintenance() throws Exception {
+        int maxCount = 10;
+        ProcessPool pool = new ProcessPool(1, maxCount);
+
+        Queue<TestProcess> started = new ConcurrentLinkedQueue<>();
+        ProcessPool.ProcessLauncher launcher = () -> {
+            TestProcess p = new TestProcess();
+            started.add(p);
+            return new ProcessEntry(p, Paths.get("/tmp"));
+        };
+
+        int threads = 8;
+        int iterations = 500;
+
+        Set<ProcessEntry> taken = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            // kills old entries, removes and re-creates the slots concurrently with the takes
+            Future<?> maintenance = executor.submit(() -> {
+                while (!done.get()) {
+                    pool.maintenance();
+                }
+                return null;
+            });
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    Random rnd = new Random();
+                    for (int i = 0; i < iterations; i++) {
+                        HashCode hc = HashCode.fromInt(rnd.nextInt(4));
+                        ProcessEntry e = pool.take(hc, launcher);
+
+                        // each entry is handed out only once and never after it was killed
+                        assertTrue(taken.add(e));
+                        assertTrue(e.getProcess().isAlive());
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+
+            done.set(true);
+            maintenance.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * iterations, taken.size());
+
+        // the processes of removed slots can still be starting
+        waitFor(() -> pool.startingCount() == 0 && pool.getStats().getSize() == pool.readyCount());
+
+        // every started process is either taken, killed or still in the pool
+        int total = pool.getStats().getSize();
+        assertTrue(total <= maxCount);
+
+        waitFor(() -> started.stream().filter(p -> !p.isAlive()).count() == started.size() - taken.size() - total);
+    }
+
+    @Test(timeout = 30000)
+    public void testEviction() throws Exception {
+        ProcessPool pool = new ProcessPool(TimeUnit.HOURS.toMillis(1), 1);
+
+        TestProcess a = new TestProcess();
+        TestProcess b = new TestProcess();
+
+        // a miss, starts a new process for the slot in background
+        pool.take(HashCode.fromInt(1), launcher(new TestProcess(), a));
+        waitFor(() -> pool.readyCount() == 1);
+
+        // the pool is full, the oldest entry of the other slot is evicted
+        pool.take(HashCode.fromInt(2), launcher(new TestProcess(), b));
+        waitFor(() -> !a.isAlive());
+        waitFor(() -> pool.readyCount() == 1);
+
+        assertEquals(1, pool.getStats().getEvictions());
+        assertEquals(1, pool.getStats().getSize());
+        assertTrue(b.isAlive());
+    }
+
+    @Test(timeout = 30000)
+    public void testUnusedSlotsAreRemoved() throws Exception {
+        ProcessPool pool = new ProcessPool(0, 10);
+
+        Queue<TestProcess> started = new ConcurrentLinkedQueue<>();
+        ProcessPool.ProcessLauncher launcher = () -> {
+            TestProcess p = new TestProcess();
+            started.add(p);
+            return new ProcessEntry(p, Paths.get("/tmp"));
+        };
+
+        ProcessEntry e = pool.take(HashCode.fromInt(1), launcher);
+        waitFor(() -> pool.readyCount() == 1);
+
+        // no demand, the target size eventually drops to zero
+        for (int i = 0; i < 10; i++) {
+            waitFor(() -> pool.startingCount() == 0);
+            pool.maintenance();
+        }
+
+        waitFor(() -> pool.startingCount() == 0);
+        assertEquals(0, pool.readyCount());
+        assertEquals(0, pool.getStats().getSize());
+
+        // only the taken process is still alive
+        assertTrue(e.getProcess().isAlive());
+        assertEquals(1, started.stream().filter(TestProcess::isAlive).count());
+    }
+
+    private static ProcessPool.ProcessLauncher launcher(TestProcess... processes) {
+        Queue<TestProcess> q = new ConcurrentLinkedQueue<>(Arrays.asList(processes));
+        return () -> new ProcessEntry(q.remove(), Paths.get("/tmp"));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long t = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > t) {
+                fail("Timeout waiting for the condition");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class TestProcess extends Process {
+
+        private volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.walmartlabs.concord.agent.logging;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FileWatcherTest {
+
+    @Test(timeout = 60000)
+    public void testPolling() throws Exception {
+        test(false, 50);
+    }
+
+    @Test(timeout = 60000)
+    public void testWatchService() throws Exception {
+        // a long delay, the changes must be picked up by the watch events
+        test(true, 5000);
+    }
+
+    private static void test(boolean useWatchService, long maxDelay) throws Exception {
+        Path dir = Files.createTempDirectory("test");
+
+        // written before the watcher is started
+        append(dir.resolve("a.log"), "a1");
+
+        Map<String, ByteArrayOutputStream> received = new ConcurrentHashMap<>();
+        FileWatcher.FileListener<String> listener = new FileWatcher.FileListener<String>() {
+
+            private final FileWatcher.FileReader reader = new FileWatcher.ByteArrayFileReader();
+
+            @Override
+            public boolean onNewFile(String fileName) {
+                received.put(fileName, new ByteArrayOutputStream());
+                return true;
+            }
+
+            @Override
+            public long onChanged(String fileName, FileChannel in) throws IOException {
+                ByteArrayOutputStream out = received.get(fileName);
+                return reader.read(in, chunk -> {
+                    synchronized (out) {
+                        out.write(chunk.bytes(), 0, chunk.len());
+                    }
+                    return chunk.len();
+                });
+            }
+        };
+
+        // only *.log files are tracked
+        FileWatcher.FileNameParser<String> parser = p -> p.getFileName().toString().endsWith(".log") ? p.getFileName().toString() : null;
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+            try {
+                FileWatcher.watch(dir, stop::get, maxDelay, useWatchService, parser, listener);
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        t.start();
+
+        try {
+            waitFor(received, "a.log", "a1");
+
+            append(dir.resolve("a.log"), "a2");
+            append(dir.resolve("b.log"), "b1");
+            append(dir.resolve("ignored.txt"), "x");
+            waitFor(received, "a.log", "a1a2");
+            waitFor(received, "b.log", "b1");
+
+            append(dir.resolve("b.log"), "b2");
+            append(dir.resolve("b.log"), "b3");
+            waitFor(received, "b.log", "b1b2b3");
+        } finally {
+            stop.set(true);
+            t.join();
+        }
+
+        assertNull(error.get());
+        assertEquals(2, received.size());
+        assertFalse(received.containsKey("ignored.txt"));
+    }
+
+    private static void append(Path p, String s) throws IOException {
+        Files.write(p, s.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void waitFor(Map<String, ByteArrayOutputStream> received, String fileName, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            ByteArrayOutputStream out = received.get(fileName);
+            if (out != null) {
+                synchronized (out) {
+                    if (expected.equals(new String(out.toByteArray(), StandardCharsets.UTF_8))) {
+                        return;
+                    }
+                }
+            }
+            Thread.sleep(10);
+        }
+
+        fail("Timeout waiting for '" + expected + "' in " + fileName);
+    }
+}
@@ -20,14 +20,140 @@ package com.walmartlabs.concord.client;
  * =====
  */
 
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.ProcessEntry.StatusEnum;
 
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
 public class ProcessUtils {
 
+    /**
+     * Max duration of a single wait request, ms. Must be less than
+     * the client's read timeout.
+     */
+    private static final long LONG_POLL_TIMEOUT = 30000;
+
+    /**
+     * Delay between status checks when the server doesn't support
+     * the bulk wait requests.
+     */
+    private static final long LEGACY_POLL_DELAY = 5000;
+
+    /**
+     * Max number of processes in a single wait request. Must not exceed
+     * the server's {@code process.statusWait.maxProcesses}.
+     */
+    private static final int MAX_BULK_SIZE = 1000;
+
+    private static final int RETRY_COUNT = 3;
+    private static final long RETRY_INTERVAL = 1000;
+
     public static boolean isFinal(StatusEnum s) {
         return s == StatusEnum.FINISHED || s == StatusEnum.FAILED || s == StatusEnum.CANCELLED || s == StatusEnum.SUSPENDED || s == StatusEnum.TIMED_OUT;
     }
 
+    /**
+     * Waits until all specified processes are FINISHED, FAILED, CANCELLED
+     * or TIMED_OUT. Uses a single long-polling request at a time (for up to
+     * {@link #MAX_BULK_SIZE} processes), falls back to polling of individual
+     * processes if the server doesn't support bulk requests or rejects them.
+     *
+     * @param timeout max wait time, ms. Zero or negative values to wait indefinitely
+     * @return the entries of the finished processes
+     * @throws TimeoutException if some of the processes didn't finish in time
+     */
+    public static Map<UUID, ProcessEntry> waitForCompletion(ProcessApi api, Collection<UUID> instanceIds, long timeout) throws ApiException, TimeoutException, InterruptedException {
+        Map<UUID, ProcessEntry> result = new LinkedHashMap<>();
+        Set<UUID> pending = new LinkedHashSet<>(instanceIds);
+
+        boolean bulk = true;
+        long t1 = System.currentTimeMillis();
+        while (!pending.isEmpty()) {
+            long wait = LONG_POLL_TIMEOUT;
+            if (timeout > 0) {
+                wait = Math.max(0, Math.min(wait, timeout - (System.currentTimeMillis() - t1)));
+            }
+
+            // the bulk requests are limited, the rest is requested once the current batch is finished
+            Set<UUID> requested = bulk ? firstN(pending, MAX_BULK_SIZE) : new LinkedHashSet<>(pending);
+
+            List<ProcessEntry> entries;
+            if (bulk) {
+                try {
+                    entries = waitForAll(api, requested, wait);
+                } catch (ApiException e) {
+                    if (e.getCode() != 400 && e.getCode() != 404 && e.getCode() != 405) {
+                        throw e;
+                    }
+
+                    // older server versions or a lower process.statusWait.maxProcesses limit
+                    bulk = false;
+                    continue;
+                }
+            } else {
+                entries = new ArrayList<>(requested.size());
+                for (UUID id : requested) {
+                    entries.add(ClientUtils.withRetry(RETRY_COUNT, RETRY_INTERVAL, () -> api.get(id)));
+                }
+            }
+
+            Set<UUID> found = new HashSet<>();
+            for (ProcessEntry e : entries) {
+                found.add(e.getInstanceId());
+                if (isFinished(e.getStatus())) {
+                    result.put(e.getInstanceId(), e);
+                    pending.remove(e.getInstanceId());
+                }
+            }
+
+            for (UUID id : requested) {
+                if (!found.contains(id)) {
+                    throw new ApiException(404, "Process instance not found: " + id);
+                }
+            }
+
+            if (pending.isEmpty()) {
+                break;
+            }
+
+            long dt = System.currentTimeMillis() - t1;
+            if (timeout > 0 && dt >= timeout) {
+                throw new TimeoutException("Timeout waiting for " + pending + ": " + dt);
+            }
+
+            if (!bulk) {
+                Thread.sleep(LEGACY_POLL_DELAY);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<ProcessEntry> waitForAll(ProcessApi api, Set<UUID> instanceIds, long timeout) throws ApiException {
+        WaitForCompletionRequest req = new WaitForCompletionRequest()
+                .instanceIds(new ArrayList<>(instanceIds))
+                .completeCondition(WaitForCompletionRequest.CompleteConditionEnum.ALL)
+                .timeout(timeout);
+
+        return ClientUtils.withRetry(RETRY_COUNT, RETRY_INTERVAL, () -> api.waitForProcesses(req));
+    }
+
+    private static Set<UUID> firstN(Set<UUID> items, int n) {
+        Set<UUID> result = new LinkedHashSet<>();
+        for (UUID id : items) {
+            if (result.size() >= n) {
+                break;
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static boolean isFinished(StatusEnum s) {
+        return s == StatusEnum.FINISHED || s == StatusEnum.FAILED || s == StatusEnum.CANCELLED || s == StatusEnum.TIMED_OUT;
+    }
+
     private ProcessUtils() {
     }
 }
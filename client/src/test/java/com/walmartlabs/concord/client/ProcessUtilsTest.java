@@ -0,0 +1,124 @@
+package com.walmartlabs.concord.client;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import com.walmartlabs.concord.ApiClient;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessUtilsTest {
+
+    @Rule
+    public WireMockRule wireMock = new WireMockRule(WireMockConfiguration.options()
+            .dynamicPort());
+
+    @Test
+    public void testBulkRequestsAreLimited() throws Exception {
+        List<UUID> ids = ids(1001);
+
+        // the first 1000 processes
+        wireMock.stubFor(post(urlEqualTo("/api/v1/process/waitForCompletion"))
+                .withRequestBody(containing(ids.get(0).toString()))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(entries(ids.subList(0, 1000)))));
+
+        // the rest
+        wireMock.stubFor(post(urlEqualTo("/api/v1/process/waitForCompletion"))
+                .withRequestBody(containing(ids.get(1000).toString()))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(entries(ids.subList(1000, 1001)))));
+
+        ApiClient apiClient = new ConcordApiClient("http://localhost:" + wireMock.port());
+        Map<UUID, ProcessEntry> result = ProcessUtils.waitForCompletion(new ProcessApi(apiClient), ids, 10000);
+        assertEquals(ids.size(), result.size());
+
+        List<LoggedRequest> requests = wireMock.findAll(postRequestedFor(urlEqualTo("/api/v1/process/waitForCompletion")));
+        assertEquals(2, requests.size());
+        for (LoggedRequest r : requests) {
+            String body = r.getBodyAsString();
+            assertTrue(!body.contains(ids.get(0).toString()) || !body.contains(ids.get(1000).toString()));
+        }
+    }
+
+    @Test
+    public void testFallbackOnBadRequest() throws Exception {
+        List<UUID> ids = ids(3);
+
+        wireMock.stubFor(post(urlEqualTo("/api/v1/process/waitForCompletion"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("Too many processes, max: 2")));
+
+        for (UUID id : ids) {
+            wireMock.stubFor(get(urlEqualTo("/api/v1/process/" + id))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withHeader("Content-Type", "application/json")
+                            .withBody(entry(id))));
+        }
+
+        ApiClient apiClient = new ConcordApiClient("http://localhost:" + wireMock.port());
+        Map<UUID, ProcessEntry> result = ProcessUtils.waitForCompletion(new ProcessApi(apiClient), ids, 10000);
+        assertEquals(ids.size(), result.size());
+
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/api/v1/process/waitForCompletion")));
+        wireMock.verify(3, getRequestedFor(urlMatching("/api/v1/process/.*")));
+    }
+
+    private static List<UUID> ids(int n) {
+        List<UUID> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(UUID.randomUUID());
+        }
+        return result;
+    }
+
+    private static String entries(List<UUID> ids) {
+        StringBuilder sb = new StringBuilder("[");
+        for (UUID id : ids) {
+            if (sb.length() > 1) {
+                sb.append(",");
+            }
+            sb.append(entry(id));
+        }
+        return sb.append("]").toString();
+    }
+
+    private static String entry(UUID id) {
+        return "{\"instanceId\": \"" + id + "\", \"status\": \"FINISHED\"}";
+    }
+}
@@ -0,0 +1,35 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+
+/**
+ * Creates a copy of a regular file. Used by
+ * {@link IOUtils#copy(Path, Path, java.util.List, FileVisitor, FileCopier, CopyOption...)}
+ * to replace {@link java.nio.file.Files#copy(Path, Path, CopyOption...)}.
+ */
+public interface FileCopier {
+
+    void copy(Path sourceFile, Path dstFile, CopyOption... options) throws IOException;
+}
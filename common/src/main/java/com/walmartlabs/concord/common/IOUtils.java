@@ -20,8 +20,11 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
+import org.apache.commons.compress.archivers.zip.AsiExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -144,6 +147,52 @@ public final class IOUtils {
         }
     }
 
+    /**
+     * Unpacks a ZIP archive while it is being read from the stream, without
+     * a temporary copy of the archive. Only the local file headers are used,
+     * so the unix modes of the files must be stored in {@link AsiExtraField}s,
+     * otherwise the default mode is used.
+     *
+     * @return the number of unpacked bytes
+     */
+    public static long unzipStream(InputStream in, Path targetDir, CopyOption... options) throws IOException {
+        long bytes = 0;
+
+        try (ZipArchiveInputStream zip = new ZipArchiveInputStream(in, "UTF-8", true, true)) {
+            ZipArchiveEntry e;
+            while ((e = zip.getNextZipEntry()) != null) {
+                Path p = targetDir.resolve(e.getName());
+
+                if (e.isDirectory()) {
+                    Files.createDirectories(p);
+                    continue;
+                }
+
+                if (!zip.canReadEntryData(e)) {
+                    throw new IOException("Unsupported ZIP entry: " + e.getName());
+                }
+
+                Path parent = p.getParent();
+                if (!Files.exists(parent)) {
+                    Files.createDirectories(parent);
+                }
+
+                bytes += Files.copy(zip, p, options);
+
+                int unixMode = Posix.DEFAULT_UNIX_MODE;
+                for (ZipExtraField f : e.getExtraFields()) {
+                    if (f instanceof AsiExtraField && ((AsiExtraField) f).getMode() > 0) {
+                        unixMode = ((AsiExtraField) f).getMode() & 07777;
+                    }
+                }
+
+                Files.setPosixFilePermissions(p, Posix.posix(unixMode));
+            }
+        }
+
+        return bytes;
+    }
+
     public static void unzip(Path in, Path targetDir, CopyOption... options) throws IOException {
         unzip(in, targetDir, false, null, options);
     }
@@ -207,18 +256,26 @@ public final class IOUtils {
     }
 
     public static void copy(Path src, Path dst, String ignorePattern, CopyOption... options) throws IOException {
-        _copy(1, src, src, dst, toList(ignorePattern), null, options);
+        _copy(1, src, src, dst, toList(ignorePattern), null, Files::copy, options);
     }
 
     public static void copy(Path src, Path dst, String skipContents, FileVisitor visitor, CopyOption... options) throws IOException {
-        _copy(1, src, src, dst, toList(skipContents), visitor, options);
+        _copy(1, src, src, dst, toList(skipContents), visitor, Files::copy, options);
     }
 
     public static void copy(Path src, Path dst, List<String> skipContents, FileVisitor visitor, CopyOption... options) throws IOException {
-        _copy(1, src, src, dst, skipContents, visitor, options);
+        _copy(1, src, src, dst, skipContents, visitor, Files::copy, options);
+    }
+
+    /**
+     * Same as {@link #copy(Path, Path, List, FileVisitor, CopyOption...)}, but uses
+     * the specified {@code copier} for regular files (e.g. to create links instead of copies).
+     */
+    public static void copy(Path src, Path dst, List<String> skipContents, FileVisitor visitor, FileCopier copier, CopyOption... options) throws IOException {
+        _copy(1, src, src, dst, skipContents, visitor, copier, options);
     }
 
-    private static void _copy(int depth, Path root, Path src, Path dst, List<String> ignorePattern, FileVisitor visitor, CopyOption... options) throws IOException {
+    private static void _copy(int depth, Path root, Path src, Path dst, List<String> ignorePattern, FileVisitor visitor, FileCopier copier, CopyOption... options) throws IOException {
         if (depth >= MAX_COPY_DEPTH) {
             throw new IOException("Too deep: " + src);
         }
@@ -264,7 +321,7 @@ public final class IOUtils {
                     return FileVisitResult.CONTINUE;
                 }
 
-                Files.copy(a, b, options);
+                copier.copy(a, b, options);
 
                 if (visitor != null) {
                     visitor.visit(a, b);
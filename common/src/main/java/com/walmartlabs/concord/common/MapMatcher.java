@@ -20,47 +20,83 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public final class MapMatcher {
 
     public static boolean matches(Map<String, Object> data, Map<String, Object> conditions) {
+        return matches(data, conditions, Options.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #matches(Map, Map)}, but uses the specified matching rules.
+     */
+    public static boolean matches(Map<String, Object> data, Map<String, Object> conditions, Options opts) {
         if (conditions == null || conditions.isEmpty()) {
             return true;
         }
 
-        return compareNodes(data, conditions);
+        return compareNodes(data, conditions, opts);
+    }
+
+    /**
+     * Pre-compiles the specified conditions, including all regular expressions.
+     * The result can be reused to match the same conditions against many inputs
+     * and yields the same results as {@link #matches(Map, Map)}.
+     */
+    public static Compiled compile(Map<String, Object> conditions) {
+        return compile(conditions, Options.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #compile(Map)}, but uses the specified matching rules.
+     * The result yields the same results as {@link #matches(Map, Map, Options)}.
+     */
+    public static Compiled compile(Map<String, Object> conditions, Options opts) {
+        if (conditions == null || conditions.isEmpty()) {
+            return data -> true;
+        }
+
+        Node n = compileNode(conditions, opts);
+        return n::matches;
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private static boolean compareNodes(Object data, Object conditions) {
+    private static boolean compareNodes(Object data, Object conditions, Options opts) {
         if (data == null && conditions == null) {
             return true;
-        } else if (data == null && conditions instanceof String) {
-            return compareStringValues("", (String) conditions);
+        } else if (data == null && conditions instanceof String && opts.nullAsEmptyString) {
+            return compareStringValues("", (String) conditions, opts);
         } else if (data == null || conditions == null) {
             return false;
         }
 
         if (conditions instanceof Map && data instanceof Map) {
-            return compareObjectNodes((Map<String, Object>) data, (Map<String, Object>) conditions);
-        } else if (conditions instanceof String && data instanceof String) {
-            return compareStringValues((String) data, (String) conditions);
+            return compareObjectNodes((Map<String, Object>) data, (Map<String, Object>) conditions, opts);
+        } else if (conditions instanceof String && opts.isString(data)) {
+            return compareStringValues(data.toString(), (String) conditions, opts);
         } else if (conditions instanceof Collection && data instanceof Collection) {
-            return compareArrayNodes((Collection) data, (Collection) conditions);
+            return compareArrayNodes((Collection) data, (Collection) conditions, opts);
         } else if (conditions instanceof Collection) {
-            return matchAny(data, (Collection) conditions);
+            return matchAny(data, (Collection) conditions, opts);
         } else {
             return compareValues(data, conditions);
         }
     }
 
-    private static boolean compareObjectNodes(Map<String, Object> data, Map<String, Object> conditions) {
-        for (String fieldName : conditions.keySet()) {
-            Object dataItem = data.get(fieldName);
-            Object conditionItem = conditions.get(fieldName);
-            if (!compareNodes(dataItem, conditionItem)) {
+    private static boolean compareObjectNodes(Map<String, Object> data, Map<String, Object> conditions, Options opts) {
+        for (Map.Entry<String, Object> e : conditions.entrySet()) {
+            Object dataItem = data.get(e.getKey());
+            if (!compareNodes(dataItem, e.getValue(), opts)) {
                 return false;
             }
         }
@@ -68,13 +104,13 @@ public final class MapMatcher {
         return true;
     }
 
-    private static boolean compareArrayNodes(Collection<Object> dataElements, Collection<Object> conditionElements) {
+    private static boolean compareArrayNodes(Collection<Object> dataElements, Collection<Object> conditionElements, Options opts) {
         if (conditionElements.size() > dataElements.size()) {
             return false;
         }
 
         for (Object c : conditionElements) {
-            boolean matched = matchAny(c, dataElements);
+            boolean matched = matchAny(c, dataElements, opts);
             if (!matched) {
                 return false;
             }
@@ -83,9 +119,9 @@ public final class MapMatcher {
         return true;
     }
 
-    private static boolean matchAny(Object condition, Collection<Object> nodes) {
+    private static boolean matchAny(Object condition, Collection<Object> nodes, Options opts) {
         for (Object n : nodes) {
-            boolean result = compareNodes(n, condition);
+            boolean result = compareNodes(n, condition, opts);
             if (result) {
                 return true;
             }
@@ -94,14 +130,217 @@ public final class MapMatcher {
         return false;
     }
 
-    private static boolean compareStringValues(String dataValue, String conditionValue) {
-        return dataValue.matches(conditionValue);
+    private static boolean compareStringValues(String dataValue, String conditionValue, Options opts) {
+        return PatternCache.compile(conditionValue, opts.patternFlags).matcher(dataValue).matches();
     }
 
     private static boolean compareValues(Object dataValue, Object conditionValue) {
         return dataValue.equals(conditionValue);
     }
 
+    @SuppressWarnings("unchecked")
+    private static Node compileNode(Object conditions, Options opts) {
+        if (conditions == null) {
+            return data -> data == null;
+        } else if (conditions instanceof String) {
+            return new StringNode((String) conditions, opts);
+        } else if (conditions instanceof Map) {
+            return new ObjectNode((Map<String, Object>) conditions, opts);
+        } else if (conditions instanceof Collection) {
+            return new ArrayNode((Collection<Object>) conditions, opts);
+        } else {
+            return data -> data != null && compareValues(data, conditions);
+        }
+    }
+
+    /**
+     * Pre-compiled conditions.
+     */
+    public interface Compiled {
+
+        boolean matches(Map<String, Object> data);
+    }
+
+    /**
+     * Matching rules. By default the patterns are case-sensitive, only
+     * {@link String} values are matched against the patterns and missing
+     * values are matched as empty strings.
+     */
+    public static final class Options {
+
+        public static final Options DEFAULT = new Options(0, true, Collections.singleton(String.class));
+
+        private final int patternFlags;
+        private final boolean nullAsEmptyString;
+        private final Set<Class<?>> stringTypes;
+
+        private Options(int patternFlags, boolean nullAsEmptyString, Set<Class<?>> stringTypes) {
+            this.patternFlags = patternFlags;
+            this.nullAsEmptyString = nullAsEmptyString;
+            this.stringTypes = stringTypes;
+        }
+
+        /**
+         * Flags used to compile the patterns, see {@link Pattern#compile(String, int)}.
+         */
+        public Options withPatternFlags(int patternFlags) {
+            return new Options(patternFlags, nullAsEmptyString, stringTypes);
+        }
+
+        /**
+         * If {@code false}, missing values never match the patterns.
+         */
+        public Options withNullAsEmptyString(boolean nullAsEmptyString) {
+            return new Options(patternFlags, nullAsEmptyString, stringTypes);
+        }
+
+        /**
+         * Values of the specified type are converted into strings
+         * and matched against the patterns.
+         */
+        public Options withStringType(Class<?> type) {
+            Set<Class<?>> s = new HashSet<>(stringTypes);
+            s.add(type);
+            return new Options(patternFlags, nullAsEmptyString, Collections.unmodifiableSet(s));
+        }
+
+        private boolean isString(Object data) {
+            return data instanceof String || stringTypes.contains(data.getClass());
+        }
+    }
+
+    private interface Node {
+
+        boolean matches(Object data);
+    }
+
+    private static final class StringNode implements Node {
+
+        private final String condition;
+        private final Options opts;
+        private final Pattern pattern;
+        private final PatternSyntaxException error;
+
+        private StringNode(String condition, Options opts) {
+            this.condition = condition;
+            this.opts = opts;
+
+            Pattern p = null;
+            PatternSyntaxException e = null;
+            try {
+                p = PatternCache.compile(condition, opts.patternFlags);
+            } catch (PatternSyntaxException ex) {
+                // fail only when the condition is actually evaluated, same as the non-compiled version
+                e = ex;
+            }
+
+            this.pattern = p;
+            this.error = e;
+        }
+
+        @Override
+        public boolean matches(Object data) {
+            if (data == null && !opts.nullAsEmptyString) {
+                return false;
+            }
+
+            if (data != null && !opts.isString(data)) {
+                return compareValues(data, condition);
+            }
+
+            if (error != null) {
+                throw error;
+            }
+
+            return pattern.matcher(data != null ? data.toString() : "").matches();
+        }
+    }
+
+    private static final class ObjectNode implements Node {
+
+        private final Map<String, Object> conditions;
+        private final Map<String, Node> fields;
+
+        private ObjectNode(Map<String, Object> conditions, Options opts) {
+            this.conditions = conditions;
+            this.fields = new LinkedHashMap<>(conditions.size());
+            for (Map.Entry<String, Object> e : conditions.entrySet()) {
+                fields.put(e.getKey(), compileNode(e.getValue(), opts));
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean matches(Object data) {
+            if (data == null) {
+                return false;
+            }
+
+            if (!(data instanceof Map)) {
+                return compareValues(data, conditions);
+            }
+
+            Map<String, Object> m = (Map<String, Object>) data;
+            for (Map.Entry<String, Node> e : fields.entrySet()) {
+                if (!e.getValue().matches(m.get(e.getKey()))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class ArrayNode implements Node {
+
+        private final Collection<Object> conditions;
+        private final Options opts;
+        private final List<Node> elements;
+
+        private ArrayNode(Collection<Object> conditions, Options opts) {
+            this.conditions = conditions;
+            this.opts = opts;
+            this.elements = new ArrayList<>(conditions.size());
+            for (Object c : conditions) {
+                elements.add(compileNode(c, opts));
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean matches(Object data) {
+            if (data == null) {
+                return false;
+            }
+
+            if (!(data instanceof Collection)) {
+                // keep the argument order of matchAny(data, conditions)
+                return matchAny(data, conditions, opts);
+            }
+
+            Collection<Object> dataElements = (Collection<Object>) data;
+            if (elements.size() > dataElements.size()) {
+                return false;
+            }
+
+            for (Node n : elements) {
+                boolean matched = false;
+                for (Object d : dataElements) {
+                    if (n.matches(d)) {
+                        matched = true;
+                        break;
+                    }
+                }
+
+                if (!matched) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     private MapMatcher() {
     }
 }
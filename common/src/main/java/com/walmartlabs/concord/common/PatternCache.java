@@ -0,0 +1,108 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded, thread-safe cache of compiled {@link Pattern}s shared by
+ * the condition matchers. When the cache is full, an arbitrary quarter
+ * of the entries is dropped.
+ * <p>
+ * The max size can be changed using the {@code concord.patternCache.maxSize}
+ * system property.
+ */
+public final class PatternCache {
+
+    private static final int MAX_SIZE = Math.max(16, Integer.getInteger("concord.patternCache.maxSize", 4096));
+
+    private static final Map<Key, Pattern> cache = new ConcurrentHashMap<>();
+
+    public static Pattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Returns a compiled pattern for the specified regex and flags.
+     * Invalid patterns are not cached, the {@link java.util.regex.PatternSyntaxException}
+     * is thrown on every call.
+     */
+    public static Pattern compile(String regex, int flags) {
+        Key k = new Key(regex, flags);
+
+        Pattern p = cache.get(k);
+        if (p != null) {
+            return p;
+        }
+
+        p = Pattern.compile(regex, flags);
+
+        if (cache.size() >= MAX_SIZE) {
+            evict();
+        }
+
+        Pattern prev = cache.putIfAbsent(k, p);
+        return prev != null ? prev : p;
+    }
+
+    public static int size() {
+        return cache.size();
+    }
+
+    private static void evict() {
+        int n = MAX_SIZE / 4;
+        Iterator<Key> it = cache.keySet().iterator();
+        while (n-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static final class Key {
+
+        private final String regex;
+        private final int flags;
+
+        private Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return flags == key.flags && regex.equals(key.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+    }
+
+    private PatternCache() {
+    }
+}
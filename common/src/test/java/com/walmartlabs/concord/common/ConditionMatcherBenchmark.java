@@ -0,0 +1,145 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches a set of GitHub-like events against trigger-like conditions.
+ * <p>
+ * {@link #recompiled(Blackhole)} compiles every regex on every match,
+ * i.e. the old {@code String#matches} behaviour, {@link #cached(Blackhole)}
+ * uses {@link PatternCache}, {@link #mapMatcher(Blackhole)} and
+ * {@link #compiled(Blackhole)} use the non-compiled and the pre-compiled
+ * {@link MapMatcher} respectively. Results are per event, i.e. the cost of
+ * matching one event against all conditions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionMatcherBenchmark {
+
+    private static final String[] ORGS = {"devtools", "platform", "payments"};
+    private static final String[] REPOS = {"concord", "api-gateway", "billing-service", "ui"};
+    private static final String[] TYPES = {"push", "pull_request", "issues"};
+    private static final String[] BRANCHES = {"master", "develop", "feature/x-123", "release/1.2.0"};
+
+    private static final int EVENT_COUNT = 16;
+
+    @Param({"10", "100"})
+    public int conditionsCount;
+
+    private List<Map<String, Object>> events;
+    private List<Map<String, Object>> conditions;
+    private List<MapMatcher.Compiled> compiled;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+
+        events = new ArrayList<>(EVENT_COUNT);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("githubOrg", ORGS[rnd.nextInt(ORGS.length)]);
+            m.put("githubRepo", REPOS[rnd.nextInt(REPOS.length)]);
+            m.put("type", TYPES[rnd.nextInt(TYPES.length)]);
+            m.put("branch", BRANCHES[rnd.nextInt(BRANCHES.length)]);
+            m.put("sender", "user" + rnd.nextInt(100));
+            events.add(m);
+        }
+
+        conditions = new ArrayList<>(conditionsCount);
+        compiled = new ArrayList<>(conditionsCount);
+        for (int i = 0; i < conditionsCount; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("githubOrg", ORGS[rnd.nextInt(ORGS.length)]);
+            m.put("githubRepo", rnd.nextBoolean() ? REPOS[rnd.nextInt(REPOS.length)] : ".*");
+            m.put("type", TYPES[rnd.nextInt(TYPES.length)]);
+            m.put("branch", rnd.nextBoolean() ? "(master|develop)" : "release/.*");
+            m.put("sender", "(?!concord-bot).*");
+            conditions.add(m);
+            compiled.add(MapMatcher.compile(m));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void recompiled(Blackhole bh) {
+        for (Map<String, Object> e : events) {
+            for (Map<String, Object> c : conditions) {
+                bh.consume(matchStrings(e, c, false));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void cached(Blackhole bh) {
+        for (Map<String, Object> e : events) {
+            for (Map<String, Object> c : conditions) {
+                bh.consume(matchStrings(e, c, true));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void mapMatcher(Blackhole bh) {
+        for (Map<String, Object> e : events) {
+            for (Map<String, Object> c : conditions) {
+                bh.consume(MapMatcher.matches(e, c));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void compiled(Blackhole bh) {
+        for (Map<String, Object> e : events) {
+            for (MapMatcher.Compiled c : compiled) {
+                bh.consume(c.matches(e));
+            }
+        }
+    }
+
+    /**
+     * Same as {@link MapMatcher#matches(Map, Map)} for flat maps of strings.
+     */
+    private static boolean matchStrings(Map<String, Object> data, Map<String, Object> conditions, boolean cached) {
+        for (Map.Entry<String, Object> c : conditions.entrySet()) {
+            String v = (String) data.get(c.getKey());
+            String regex = (String) c.getValue();
+
+            boolean matches = cached ? PatternCache.compile(regex).matcher(v).matches() : v.matches(regex);
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
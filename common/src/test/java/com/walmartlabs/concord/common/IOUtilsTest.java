@@ -20,15 +20,20 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
+import org.apache.commons.compress.archivers.zip.AsiExtraField;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -57,6 +62,26 @@ public class IOUtilsTest {
         assertTrue(Files.exists(dst.resolve("b").resolve("c.txt")));
     }
 
+    @Test
+    public void testUnzipStream() throws Exception {
+        // a non-seekable stream, entries are written with data descriptors
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out)) {
+            putEntry(zip, "a.txt", 0644, "hello");
+            putEntry(zip, "b/c.sh", 0755, "echo hello");
+        }
+
+        Path dst = Files.createTempDirectory("test");
+        long bytes = IOUtils.unzipStream(new ByteArrayInputStream(out.toByteArray()), dst);
+
+        assertEquals(15L, bytes);
+        assertEquals("hello", new String(Files.readAllBytes(dst.resolve("a.txt"))));
+        assertEquals(0644, Posix.unixMode(Files.getPosixFilePermissions(dst.resolve("a.txt"))));
+        assertEquals(0755, Posix.unixMode(Files.getPosixFilePermissions(dst.resolve("b/c.sh"))));
+
+        IOUtils.deleteRecursively(dst);
+    }
+
     @Test
     public void testCopy() throws Exception {
         Path src = Files.createTempDirectory("test");
@@ -123,4 +148,17 @@ public class IOUtilsTest {
         } catch (IOException e) {
         }
     }
+
+    private static void putEntry(ZipArchiveOutputStream zip, String name, int unixMode, String data) throws IOException {
+        ZipArchiveEntry e = new ZipArchiveEntry(name);
+        e.setUnixMode(unixMode);
+
+        AsiExtraField asi = new AsiExtraField();
+        asi.setMode(unixMode);
+        e.addExtraField(asi);
+
+        zip.putArchiveEntry(e);
+        zip.write(data.getBytes());
+        zip.closeArchiveEntry();
+    }
 }
@@ -0,0 +1,137 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a single dispatcher "tick": matches a batch of queue entries
+ * against the waiting agents.
+ * <p>
+ * {@link #perPair(Blackhole)} is the naive approach (every candidate
+ * against every agent), {@link #perCapabilityClass(Blackhole)} groups
+ * agents with identical capabilities and memoizes the results per
+ * distinct requirements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapMatcherBenchmark {
+
+    private static final String[] FLAVORS = {"default", "k8s-test", "k8s-prod", "ansible", "large"};
+    private static final String[] CLUSTERS = {"east", "west", "central"};
+
+    @Param({"10", "100", "500"})
+    public int agentCount;
+
+    @Param({"10", "1000"})
+    public int candidateCount;
+
+    private List<Map<String, Object>> agents;
+    private List<Map<String, Object>> candidates;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+
+        agents = new ArrayList<>(agentCount);
+        for (int i = 0; i < agentCount; i++) {
+            Map<String, Object> k8s = new HashMap<>();
+            k8s.put("cluster", CLUSTERS[rnd.nextInt(CLUSTERS.length)]);
+            k8s.put("namespace", "concord");
+
+            Map<String, Object> m = new HashMap<>();
+            m.put("flavor", FLAVORS[rnd.nextInt(FLAVORS.length)]);
+            m.put("k8s", k8s);
+            m.put("os", "linux");
+            agents.add(m);
+        }
+
+        candidates = new ArrayList<>(candidateCount);
+        for (int i = 0; i < candidateCount; i++) {
+            Map<String, Object> m = new HashMap<>();
+            switch (rnd.nextInt(4)) {
+                case 0: {
+                    // no requirements
+                    break;
+                }
+                case 1: {
+                    m.put("flavor", FLAVORS[rnd.nextInt(FLAVORS.length)]);
+                    break;
+                }
+                case 2: {
+                    m.put("flavor", "k8s-.*");
+                    m.put("k8s", Collections.singletonMap("cluster", CLUSTERS[rnd.nextInt(CLUSTERS.length)]));
+                    break;
+                }
+                default: {
+                    m.put("flavor", Arrays.asList("ansible", "large"));
+                }
+            }
+            candidates.add(m);
+        }
+    }
+
+    @Benchmark
+    public void perPair(Blackhole bh) {
+        for (Map<String, Object> c : candidates) {
+            for (Map<String, Object> a : agents) {
+                if (MapMatcher.matches(a, c)) {
+                    bh.consume(a);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void perCapabilityClass(Blackhole bh) {
+        Map<Map<String, Object>, List<Map<String, Object>>> classes = new LinkedHashMap<>();
+        for (Map<String, Object> a : agents) {
+            classes.computeIfAbsent(a, k -> new ArrayList<>()).add(a);
+        }
+
+        Map<Map<String, Object>, Map<String, Object>> cache = new HashMap<>();
+        for (Map<String, Object> c : candidates) {
+            Map<String, Object> a = cache.computeIfAbsent(c, r -> {
+                for (Map<String, Object> capabilities : classes.keySet()) {
+                    if (MapMatcher.matches(capabilities, r)) {
+                        return capabilities;
+                    }
+                }
+                return Collections.emptyMap();
+            });
+            bh.consume(a);
+        }
+    }
+
+    @Benchmark
+    public boolean singleMatch() {
+        return MapMatcher.matches(agents.get(0), candidates.get(0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class MapMatcherTest {
+
+    @Test
+    public void testCompiled() {
+        List<Map<String, Object>> data = Arrays.asList(
+                map("type", "push", "githubOrg", "acme", "githubRepo", "app"),
+                map("type", "pull_request", "githubOrg", "acme", "files", map("any", Arrays.asList("a.txt", "b.yml"))),
+                map("type", "push", "version", 2, "githubRepo", null),
+                map("flavor", Arrays.asList("ansible", "large")),
+                Collections.emptyMap());
+
+        List<Map<String, Object>> conditions = Arrays.asList(
+                null,
+                Collections.emptyMap(),
+                map("type", "push"),
+                map("type", "p.*", "githubOrg", "acme"),
+                map("githubRepo", ".*"),
+                map("githubRepo", null),
+                map("version", 2),
+                map("files", map("any", Collections.singletonList(".*\\.yml"))),
+                map("type", Arrays.asList("push", "pull_request")),
+                map("flavor", Arrays.asList("ansible")),
+                map("flavor", "ansible"));
+
+        for (Map<String, Object> c : conditions) {
+            MapMatcher.Compiled compiled = MapMatcher.compile(c);
+            for (Map<String, Object> d : data) {
+                assertEquals("conditions: " + c + ", data: " + d, MapMatcher.matches(d, c), compiled.matches(d));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidPattern() {
+        Map<String, Object> conditions = map("type", "push[");
+
+        // compiles fine, fails on match just like the non-compiled version
+        MapMatcher.Compiled compiled = MapMatcher.compile(conditions);
+        try {
+            compiled.matches(map("type", "push"));
+            fail("exception expected");
+        } catch (Exception e) {
+            // expected
+        }
+
+        assertFalse(compiled.matches(map("type", 1)));
+    }
+
+    @Test
+    public void testOptions() {
+        MapMatcher.Options opts = MapMatcher.Options.DEFAULT
+                .withPatternFlags(Pattern.CASE_INSENSITIVE)
+                .withNullAsEmptyString(false)
+                .withStringType(UUID.class);
+
+        UUID id = UUID.randomUUID();
+        Map<String, Object> conditions = map("a", "HELLO.*", "b", id.toString().substring(0, 8) + ".*");
+
+        for (Map<String, Object> data : Arrays.asList(map("a", "hello!", "b", id), map("a", "hello!"), map("b", id))) {
+            assertEquals(MapMatcher.matches(data, conditions, opts), MapMatcher.compile(conditions, opts).matches(data));
+        }
+
+        assertTrue(MapMatcher.matches(map("a", "hello!", "b", id), conditions, opts));
+        assertFalse(MapMatcher.matches(map("a", "hello!", "b", id), conditions));
+
+        // missing values don't match
+        assertFalse(MapMatcher.compile(map("a", ".*"), opts).matches(map()));
+        assertTrue(MapMatcher.compile(map("a", ".*")).matches(map()));
+    }
+
+    private static Map<String, Object> map(Object... kvs) {
+        Map<String, Object> m = new HashMap<>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            m.put((String) kvs[i], kvs[i + 1]);
+        }
+        return m;
+    }
+}
@@ -49,7 +49,6 @@ public class ConcordTask extends AbstractConcordTask {
     private static final Logger log = LoggerFactory.getLogger(ConcordTask.class);
 
     private static final long DEFAULT_KILL_TIMEOUT = 10000;
-    private static final long DEFAULT_POLL_DELAY = 5000;
 
     /**
      * @deprecated use {@link #PAYLOAD_KEY}
@@ -186,44 +185,26 @@ public class ConcordTask extends AbstractConcordTask {
     }
 
     public <T> Map<String, T> waitForCompletion(@InjectVariable("context") Context ctx, List<String> ids, long timeout, Function<ProcessEntry, T> processor) {
-        Map<String, T> result = new HashMap<>();
+        List<UUID> instanceIds = ids.stream()
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
 
-        ids.parallelStream().map(UUID::fromString).forEach(id -> {
-            log.info("Waiting for {}, URL: {}", id, getProcessUrl(ctx, id));
-
-            long t1 = System.currentTimeMillis();
-            while (true) {
-                try {
-                    ProcessEntry e = ClientUtils.withRetry(3, 1000, () -> withClient(ctx, client -> {
-                        ProcessApi api = new ProcessApi(client);
-                        return api.get(id);
-                    }));
-
-                    ProcessEntry.StatusEnum s = e.getStatus();
-
-                    if (isFinalStatus(s)) {
-                        T t = processor.apply(e);
-                        if (t != null) {
-                            result.put(id.toString(), t);
-                        }
-                        break;
-                    } else {
-                        long t2 = System.currentTimeMillis();
-                        if (timeout > 0) {
-                            long dt = t2 - t1;
-                            if (dt >= timeout) {
-                                throw new TimeoutException("Timeout waiting for " + id + ": " + dt);
-                            }
-                        }
-
-                        Thread.sleep(DEFAULT_POLL_DELAY);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+        instanceIds.forEach(id -> log.info("Waiting for {}, URL: {}", id, getProcessUrl(ctx, id)));
+
+        Map<UUID, ProcessEntry> entries;
+        try {
+            entries = withClient(ctx, client -> ProcessUtils.waitForCompletion(new ProcessApi(client), instanceIds, timeout));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        Map<String, T> result = new HashMap<>();
+        entries.forEach((id, e) -> {
+            T t = processor.apply(e);
+            if (t != null) {
+                result.put(id.toString(), t);
             }
         });
-
         return result;
     }
 
@@ -51,7 +51,6 @@ public class ConcordTaskCommon {
     private static final Logger log = LoggerFactory.getLogger(ConcordTaskCommon.class);
 
     private static final long DEFAULT_KILL_TIMEOUT = 10000;
-    private static final long DEFAULT_POLL_DELAY = 5000;
 
     private static final int MAX_EXECUTOR_THREADS = 20;
 
@@ -126,45 +125,22 @@ public class ConcordTaskCommon {
     }
 
     public <T> Map<String, T> waitForCompletion(List<UUID> ids, long timeout, Function<ProcessEntry, T> processor) {
-        Map<String, T> result = new HashMap<>();
+        ids.forEach(id -> log.info("Waiting for {}, URL: {}", id, getProcessUrl(id)));
 
-        ids.parallelStream().forEach(id -> {
-            log.info("Waiting for {}, URL: {}", id, getProcessUrl(id));
-
-            long t1 = System.currentTimeMillis();
-            while (true) {
-                try {
-                    ProcessEntry e = ClientUtils.withRetry(3, 1000,
-                            () -> withClient(client -> {
-                                ProcessApi api = new ProcessApi(client);
-                                return api.get(id);
-                            }));
-
-                    ProcessEntry.StatusEnum s = e.getStatus();
-
-                    if (isFinalStatus(s)) {
-                        T t = processor.apply(e);
-                        if (t != null) {
-                            result.put(id.toString(), t);
-                        }
-                        break;
-                    } else {
-                        long t2 = System.currentTimeMillis();
-                        if (timeout > 0) {
-                            long dt = t2 - t1;
-                            if (dt >= timeout) {
-                                throw new TimeoutException("Timeout waiting for " + id + ": " + dt);
-                            }
-                        }
-
-                        Thread.sleep(DEFAULT_POLL_DELAY);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+        Map<UUID, ProcessEntry> entries;
+        try {
+            entries = withClient(client -> ProcessUtils.waitForCompletion(new ProcessApi(client), ids, timeout));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        Map<String, T> result = new HashMap<>();
+        entries.forEach((id, e) -> {
+            T t = processor.apply(e);
+            if (t != null) {
+                result.put(id.toString(), t);
             }
         });
-
         return result;
     }
 
@@ -22,6 +22,7 @@ package com.walmartlabs.concord.policyengine;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
 public class ConcurrentProcessPolicy {
@@ -55,4 +56,22 @@ public class ConcurrentProcessPolicy {
         }
         return CheckResult.success();
     }
+
+    /**
+     * Checks the limits using only the number of processes. Allows the caller
+     * to skip loading the process IDs when the limits are not reached.
+     *
+     * @return {@code true} if the number of processes reached the limit
+     */
+    public boolean isLimitReached(IntSupplier processCountPerOrg, IntSupplier processCountPerProject) {
+        if (rule == null || (rule.getMaxPerOrg() == null && rule.getMaxPerProject() == null)) {
+            return false;
+        }
+
+        if (rule.getMaxPerOrg() != null) {
+            return processCountPerOrg.getAsInt() >= rule.getMaxPerOrg();
+        }
+
+        return processCountPerProject.getAsInt() >= rule.getMaxPerProject();
+    }
 }
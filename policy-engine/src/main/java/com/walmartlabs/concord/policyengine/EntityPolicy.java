@@ -20,9 +20,9 @@ package com.walmartlabs.concord.policyengine;
  * =====
  */
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import com.walmartlabs.concord.common.MapMatcher;
+
+import java.util.*;
 import java.util.function.Supplier;
 
 import static com.walmartlabs.concord.policyengine.Utils.matches;
@@ -30,9 +30,11 @@ import static com.walmartlabs.concord.policyengine.Utils.matches;
 public class EntityPolicy {
 
     private final PolicyRules<EntityRule> rules;
+    private final Map<EntityRule, MapMatcher.Compiled> conditions;
 
     public EntityPolicy(PolicyRules<EntityRule> rules) {
         this.rules = rules;
+        this.conditions = compileConditions(rules);
     }
 
     public CheckResult<EntityRule, Map<String, Object>> check(String entity, String action, Supplier<Map<String, Object>> attrs) {
@@ -82,10 +84,26 @@ public class EntityPolicy {
             return false;
         }
 
-        if (r.getConditions() != null && !matches(r.getConditions(), attrs)) {
+        if (r.getConditions() != null && !conditions.get(r).matches(attrs)) {
             return false;
         }
 
         return true;
     }
+
+    private static Map<EntityRule, MapMatcher.Compiled> compileConditions(PolicyRules<EntityRule> rules) {
+        if (rules == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<EntityRule, MapMatcher.Compiled> result = new IdentityHashMap<>();
+        for (List<EntityRule> l : Arrays.asList(rules.getAllow(), rules.getDeny(), rules.getWarn())) {
+            for (EntityRule r : l) {
+                if (r.getConditions() != null) {
+                    result.put(r, Utils.compile(r.getConditions()));
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -20,7 +20,9 @@ package com.walmartlabs.concord.policyengine;
  * =====
  */
 
-import java.util.Collection;
+import com.walmartlabs.concord.common.MapMatcher;
+import com.walmartlabs.concord.common.PatternCache;
+
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -33,6 +35,15 @@ public final class Utils {
 
     private static final Pattern FILE_SIZE_PATTERN = Pattern.compile("([\\d.]+)(.*)");
 
+    /**
+     * Case-insensitive patterns, UUIDs are matched as strings,
+     * missing values don't match the patterns.
+     */
+    private static final MapMatcher.Options MATCHER_OPTIONS = MapMatcher.Options.DEFAULT
+            .withPatternFlags(Pattern.CASE_INSENSITIVE)
+            .withNullAsEmptyString(false)
+            .withStringType(UUID.class);
+
     public static boolean matchAny(List<String> patterns, String value) {
         for (String p : patterns) {
             if (matches(p, value)) {
@@ -44,75 +55,23 @@ public final class Utils {
     }
 
     public static boolean matches(String pattern, String value) {
-        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(value).matches();
+        return compile(pattern).matcher(value).matches();
     }
 
     public static boolean matches(Map<String, Object> conditions, Map<String, Object> data) {
-        if (conditions == null || conditions.isEmpty()) {
-            return true;
-        }
-
-        return compareNodes(data, conditions);
-    }
-
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private static boolean compareNodes(Object data, Object conditions) {
-        if (data == null && conditions == null) {
-            return true;
-        } else if (data == null || conditions == null) {
-            return false;
-        }
-
-        if (conditions instanceof Map && data instanceof Map) {
-            return compareObjectNodes((Map<String, Object>) data, (Map<String, Object>) conditions);
-        } else if (conditions instanceof String && data instanceof UUID) {
-            return matches((String)conditions, data.toString());
-        } else if (conditions instanceof String && data instanceof String) {
-            return matches((String)conditions, (String)data);
-        } else if (conditions instanceof Collection && data instanceof Collection) {
-            return compareArrayNodes((Collection) data, (Collection) conditions);
-        } else if (conditions instanceof Collection) {
-            return matchAny(data, (Collection)conditions);
-        } else {
-            return data.equals(conditions);
-        }
-    }
-
-    private static boolean compareObjectNodes(Map<String, Object> data, Map<String, Object> conditions) {
-        for (Map.Entry<String, Object> e : conditions.entrySet()) {
-            Object dataItem = data.get(e.getKey());
-            if (!compareNodes(dataItem, e.getValue())) {
-                return false;
-            }
-        }
-
-        return true;
+        return MapMatcher.matches(data, conditions, MATCHER_OPTIONS);
     }
 
-    private static boolean compareArrayNodes(Collection<Object> dataElements, Collection<Object> conditionElements) {
-        if (conditionElements.size() > dataElements.size()) {
-            return false;
-        }
-
-        for (Object c : conditionElements) {
-            boolean matched = matchAny(c, dataElements);
-            if (!matched) {
-                return false;
-            }
-        }
-
-        return true;
+    /**
+     * Pre-compiles the specified conditions. The result yields the same
+     * results as {@link #matches(Map, Map)}.
+     */
+    public static MapMatcher.Compiled compile(Map<String, Object> conditions) {
+        return MapMatcher.compile(conditions, MATCHER_OPTIONS);
     }
 
-    private static boolean matchAny(Object condition, Collection<Object> nodes) {
-        for (Object n : nodes) {
-            boolean result = compareNodes(n, condition);
-            if (result) {
-                return true;
-            }
-        }
-
-        return false;
+    private static Pattern compile(String pattern) {
+        return PatternCache.compile(pattern, Pattern.CASE_INSENSITIVE);
     }
 
     public static Long parseFileSize(String v) {
@@ -0,0 +1,55 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentProcessPolicyTest {
+
+    @Test
+    public void testLimits() {
+        List<UUID> two = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+
+        // per project
+        ConcurrentProcessPolicy p = new ConcurrentProcessPolicy(new ConcurrentProcessRule(null, null, 2));
+        assertFalse(p.isLimitReached(() -> 100, () -> 1));
+        assertTrue(p.isLimitReached(() -> 0, () -> 2));
+        assertTrue(p.check(Collections::emptyList, Collections::emptyList).getDeny().isEmpty());
+        assertEquals(two, p.check(Collections::emptyList, () -> two).getDeny().get(0).getEntity());
+
+        // per org takes precedence
+        p = new ConcurrentProcessPolicy(new ConcurrentProcessRule(null, 3, 1));
+        assertFalse(p.isLimitReached(() -> 2, () -> 100));
+        assertTrue(p.isLimitReached(() -> 3, () -> 0));
+
+        // no limits
+        p = new ConcurrentProcessPolicy(null);
+        assertFalse(p.isLimitReached(() -> 100, () -> 100));
+        assertTrue(p.check(() -> two, () -> two).getDeny().isEmpty());
+    }
+}
@@ -0,0 +1,110 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.MapMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Per-check cost of the typical task and entity policy rules.
+ * <p>
+ * {@link #taskNamesRecompiled(Blackhole)} compiles the patterns on every
+ * check (the old behaviour of {@link Utils#matches(String, String)}),
+ * {@link #taskNames(Blackhole)} uses the shared pattern cache.
+ * {@link #entityConditions()} and {@link #entityConditionsCompiled()}
+ * compare {@link Utils#matches(Map, Map)} with {@link Utils#compile(Map)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private static final List<String> TASK_PATTERNS = Arrays.asList("ansible.*", "docker", "http", "k8s-.*", "(slack|smtp)");
+    private static final String[] TASK_NAMES = {"log", "ansible", "docker", "http", "slackChannel", "k8s-deploy", "smtp"};
+
+    private Map<String, Object> entityConditions;
+    private MapMatcher.Compiled compiledConditions;
+    private Map<String, Object> entity;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> owner = new HashMap<>();
+        owner.put("username", "(admin|concord-.*)");
+        owner.put("userType", "LOCAL");
+
+        entityConditions = new HashMap<>();
+        entityConditions.put("org", "Default");
+        entityConditions.put("name", "test-.*");
+        entityConditions.put("owner", owner);
+        compiledConditions = Utils.compile(entityConditions);
+
+        Map<String, Object> entityOwner = new HashMap<>();
+        entityOwner.put("id", UUID.randomUUID());
+        entityOwner.put("username", "concord-bot");
+        entityOwner.put("userType", "LOCAL");
+
+        entity = new HashMap<>();
+        entity.put("org", "default");
+        entity.put("name", "test-project");
+        entity.put("owner", entityOwner);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public void taskNamesRecompiled(Blackhole bh) {
+        for (String n : TASK_NAMES) {
+            boolean matched = false;
+            for (String p : TASK_PATTERNS) {
+                if (Pattern.compile(p, Pattern.CASE_INSENSITIVE).matcher(n).matches()) {
+                    matched = true;
+                    break;
+                }
+            }
+            bh.consume(matched);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public void taskNames(Blackhole bh) {
+        for (String n : TASK_NAMES) {
+            bh.consume(Utils.matchAny(TASK_PATTERNS, n));
+        }
+    }
+
+    @Benchmark
+    public boolean entityConditions() {
+        return Utils.matches(entityConditions, entity);
+    }
+
+    @Benchmark
+    public boolean entityConditionsCompiled() {
+        return compiledConditions.matches(entity);
+    }
+}
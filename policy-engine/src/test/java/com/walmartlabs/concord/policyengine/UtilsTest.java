@@ -22,7 +22,7 @@ package com.walmartlabs.concord.policyengine;
 
 import org.junit.Test;
 
-import java.util.Collections;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -54,4 +54,29 @@ public class UtilsTest {
 
         assertEquals(100 * 1024, result);
     }
+
+    @Test
+    public void testCompiledConditions() {
+        UUID id = UUID.randomUUID();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("org", "Default");
+        data.put("id", id);
+        data.put("tags", Arrays.asList("a", "B"));
+        data.put("owner", Collections.singletonMap("username", "admin"));
+
+        List<Map<String, Object>> conditions = Arrays.asList(
+                Collections.singletonMap("org", "default"),
+                Collections.singletonMap("org", "other"),
+                Collections.singletonMap("id", id.toString()),
+                Collections.singletonMap("tags", Arrays.asList("b")),
+                Collections.singletonMap("tags", "a"),
+                Collections.singletonMap("missing", null),
+                Collections.singletonMap("missing", ".*"),
+                Collections.singletonMap("owner", Collections.singletonMap("username", "ADM.*")));
+
+        for (Map<String, Object> c : conditions) {
+            assertEquals("conditions: " + c, Utils.matches(c, data), Utils.compile(c).matches(data));
+        }
+    }
 }
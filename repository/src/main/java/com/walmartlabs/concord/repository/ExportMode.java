@@ -0,0 +1,55 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+/**
+ * How the repository files are exported into process working directories.
+ */
+public enum ExportMode {
+
+    /**
+     * Plain copies of the files.
+     */
+    COPY,
+
+    /**
+     * Hard links to the files of the cached repository, where the file
+     * system supports them. Falls back to copying otherwise.
+     * <p>
+     * The linked files are shared with the cache and other working
+     * directories, so they are made read-only. Tools that replace files
+     * (editors, {@code sed -i}, {@code git}, etc) break the link and get
+     * a private copy. Attempts to modify a linked file in place fail
+     * with "permission denied", the file must be copied or replaced first.
+     * <p>
+     * The permissions can be changed by the owner of the files (e.g. a
+     * process running as the same user), so the cached files are verified
+     * with {@code git status} before each export and restored if modified.
+     * Processes running concurrently still share the modified files until
+     * then, use this mode only for trusted flows.
+     * <p>
+     * The root user ignores the file permissions, so this mode is not
+     * used when running with UID 0, {@link #COPY} is used instead. Processes
+     * must not run as root either (e.g. in Docker containers with the
+     * working directory mounted), otherwise they can modify the cache.
+     */
+    LINK
+}
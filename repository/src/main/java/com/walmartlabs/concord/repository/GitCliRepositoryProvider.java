@@ -39,9 +39,20 @@ public class GitCliRepositoryProvider implements RepositoryProvider {
     public static final String DEFAULT_BRANCH = "master";
 
     private final GitClient client;
+    private final ExportMode exportMode;
 
     public GitCliRepositoryProvider(GitClientConfiguration cfg) {
+        this(cfg, ExportMode.COPY);
+    }
+
+    public GitCliRepositoryProvider(GitClientConfiguration cfg, ExportMode exportMode) {
         this.client = new GitClient(cfg);
+
+        if (exportMode == ExportMode.LINK && !LinkingFileCopier.canProtectLinks()) {
+            log.warn("init -> the {} export mode can't be used when running as root (or with unknown UID), using {} instead", ExportMode.LINK, ExportMode.COPY);
+            exportMode = ExportMode.COPY;
+        }
+        this.exportMode = exportMode;
     }
 
     @Override
@@ -86,7 +97,26 @@ public class GitCliRepositoryProvider implements RepositoryProvider {
         List<String> allIgnorePatterns = new ArrayList<>();
         allIgnorePatterns.add(GIT_FILES);
         allIgnorePatterns.addAll(ignorePatterns);
-        IOUtils.copy(src, dst, allIgnorePatterns, snapshot, StandardCopyOption.REPLACE_EXISTING);
+
+        if (exportMode == ExportMode.LINK) {
+            // the files linked by the previous exports could've been changed
+            // (e.g. "chmod u+w" followed by an in-place write), repair them first
+            if (!client.isClean(src)) {
+                log.warn("export ['{}'] -> the cached files were modified, restoring...", src);
+                client.restore(src);
+                if (!client.isClean(src)) {
+                    throw new RepositoryException("Can't restore the modified files of the cached repository: " + src);
+                }
+            }
+
+            LinkingFileCopier copier = new LinkingFileCopier();
+            IOUtils.copy(src, dst, allIgnorePatterns, snapshot, copier, StandardCopyOption.REPLACE_EXISTING);
+            log.info("export ['{}', '{}'] -> {} file(s) linked, {} copied", src, dst, copier.getLinkCount(), copier.getCopyCount());
+        } else {
+            // restore the write permissions in case the files were linked before
+            IOUtils.copy(src, dst, allIgnorePatterns, snapshot, LinkingFileCopier::copyWritable, StandardCopyOption.REPLACE_EXISTING);
+        }
+
         return snapshot;
     }
 
@@ -35,6 +35,7 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -79,6 +80,28 @@ public class GitClient {
         return new RepositoryInfo(id, message.toString(), author);
     }
 
+    /**
+     * Returns {@code true} if the tracked files in the specified directory
+     * (including the submodules) match the checked out revision.
+     */
+    public boolean isClean(Path path) {
+        String result = launchCommand(path, defaultTimeout, "status", "--porcelain", "--untracked-files=no", "--", ".");
+        return result.trim().isEmpty();
+    }
+
+    /**
+     * Restores the tracked files in the specified directory
+     * (and in all submodules) to the checked out revision.
+     */
+    public void restore(Path path) {
+        launchCommand(path, defaultTimeout, "checkout", "-f", "--", ".");
+
+        Path root = Paths.get(launchCommand(path, defaultTimeout, "rev-parse", "--show-toplevel").trim());
+        if (hasGitModules(root)) {
+            launchCommand(root, defaultTimeout, "submodule", "foreach", "--recursive", "git", "checkout", "-f", "--", ".");
+        }
+    }
+
     public String fetch(String uri, String branch, String commitId, Secret secret, Path dest) {
         return fetch(uri, branch, commitId, true, secret, false, dest);
     }
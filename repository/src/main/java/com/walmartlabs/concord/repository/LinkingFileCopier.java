@@ -0,0 +1,161 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.FileCopier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Creates hard links instead of copies. Falls back to plain copies
+ * if the links can't be created, e.g. when the source and the destination
+ * are on different file systems.
+ * <p>
+ * The linked files are protected only by their permissions, see
+ * {@link #canProtectLinks()}. The owner of the files can change the
+ * permissions, so the users of this class must verify the source files
+ * before linking them again.
+ * <p>
+ * Not thread-safe, create a new instance for each export.
+ */
+public class LinkingFileCopier implements FileCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkingFileCopier.class);
+
+    private static final Set<PosixFilePermission> WRITE_PERMISSIONS = EnumSet.of(
+            PosixFilePermission.OWNER_WRITE,
+            PosixFilePermission.GROUP_WRITE,
+            PosixFilePermission.OTHERS_WRITE);
+
+    private boolean linksSupported = true;
+
+    private int linkCount;
+    private int copyCount;
+
+    @Override
+    public void copy(Path src, Path dst, CopyOption... options) throws IOException {
+        if (linksSupported) {
+            try {
+                link(src, dst, options);
+                linkCount++;
+                return;
+            } catch (FileAlreadyExistsException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // most likely a different file system, no reason to try again for the rest of the files
+                log.warn("copy ['{}', '{}'] -> can't create a link ({}), copying the files instead", src, dst, e.toString());
+                linksSupported = false;
+            }
+        }
+
+        copyWritable(src, dst, options);
+        copyCount++;
+    }
+
+    /**
+     * Returns {@code false} if the current user ignores the file permissions
+     * (i.e. runs with UID 0) or if the UID can't be determined. Such user
+     * could modify the shared files in place and the links shouldn't be used.
+     */
+    public static boolean canProtectLinks() {
+        Integer uid = currentUid();
+        return uid != null && uid != 0;
+    }
+
+    /**
+     * Returns the effective UID of the current process, i.e. the owner
+     * of a newly created file.
+     */
+    private static Integer currentUid() {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile("uid", ".tmp");
+            return (Integer) Files.getAttribute(tmp, "unix:uid");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            log.warn("currentUid -> can't determine the current UID: {}", e.toString());
+            return null;
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("currentUid -> can't delete {}: {}", tmp, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the file and makes the copy writable by the owner.
+     * The source file might be read-only if it was linked before.
+     */
+    public static void copyWritable(Path src, Path dst, CopyOption... options) throws IOException {
+        Files.copy(src, dst, options);
+        makeWritable(dst);
+    }
+
+    public int getLinkCount() {
+        return linkCount;
+    }
+
+    public int getCopyCount() {
+        return copyCount;
+    }
+
+    private static void link(Path src, Path dst, CopyOption... options) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(src, PosixFileAttributeView.class);
+        if (view == null) {
+            throw new UnsupportedOperationException("POSIX file permissions are not supported: " + src);
+        }
+
+        if (Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING)) {
+            Files.deleteIfExists(dst);
+        }
+
+        Files.createLink(dst, src);
+
+        // the permissions are shared between the links
+        Set<PosixFilePermission> perms = view.readAttributes().permissions();
+        if (perms.removeAll(WRITE_PERMISSIONS)) {
+            view.setPermissions(perms);
+        }
+    }
+
+    private static void makeWritable(Path p) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(p, PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+
+        Set<PosixFilePermission> perms = view.readAttributes().permissions();
+        if (perms.add(PosixFilePermission.OWNER_WRITE)) {
+            view.setPermissions(perms);
+        }
+    }
+}
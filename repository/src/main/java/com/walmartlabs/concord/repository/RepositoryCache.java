@@ -21,21 +21,35 @@ package com.walmartlabs.concord.repository;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.util.concurrent.Striped;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.secret.BinaryDataSecret;
+import com.walmartlabs.concord.common.secret.KeyPair;
+import com.walmartlabs.concord.common.secret.UsernamePassword;
+import com.walmartlabs.concord.sdk.Secret;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 public class RepositoryCache {
 
@@ -45,23 +59,34 @@ public class RepositoryCache {
     private final RepositoryAccessJournal accessJournal;
     private final long lockTimeout;
     private final long maxCacheAge;
+    private final long fetchFreshness;
 
-    private final Striped<Lock> locks;
+    private final ConcurrentMap<String, RepositoryState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
 
     private long nextCleanup = -1;
 
+    /**
+     * @param fetchFreshness for how long the result of a fetch can be reused
+     *                       by subsequent fetches of the same ref.
+     *                       {@link Duration#ZERO} to reuse only the results
+     *                       of concurrent fetches.
+     */
     public RepositoryCache(Path cacheDir,
                            Path repoJournalPath,
                            Duration lockTimeout,
                            Duration maxCacheAge,
-                           int lockCount,
+                           Duration fetchFreshness,
                            ObjectMapper objectMapper) throws IOException {
 
         this.cacheDir = cacheDir;
         this.lockTimeout = lockTimeout.toMillis();
         this.accessJournal = maxCacheAge.toMillis() > 0 ? new RepositoryAccessJournal(objectMapper, repoJournalPath) : null;
         this.maxCacheAge = maxCacheAge.toMillis();
-        this.locks = Striped.lock(lockCount);
+        this.fetchFreshness = fetchFreshness.toNanos();
     }
 
     public Path getPath(String repositoryUrl) {
@@ -87,10 +112,101 @@ public class RepositoryCache {
         }
     }
 
+    /**
+     * Fetches a repository using the provided function or returns the result
+     * of a previous fetch of the same ref (branch, commit ID and path) made
+     * with the same credentials if:
+     * <ul>
+     *     <li>the previous fetch was started after the caller requested
+     *     the repository lock, i.e. the caller was waiting for the fetch
+     *     to complete;</li>
+     *     <li>or {@code allowCached} is {@code true} and the previous fetch
+     *     was completed less than {@code fetchFreshness} ago.</li>
+     * </ul>
+     * Any fetch of a different ref invalidates the previous result, as it
+     * changes the repository's working directory.
+     * <p>
+     * The results can be reused only when the method is called inside
+     * {@link #withLock(String, Callable)} with the same repository URL.
+     */
+    public Repository fetch(String repoUrl, String branch, String commitId, String path, Secret secret, boolean allowCached, Supplier<Repository> fetcher) {
+        RepositoryState state = states.get(repoUrl);
+        if (state == null || !state.lock.isHeldByCurrentThread()) {
+            return fetcher.get();
+        }
+
+        // the results fetched with one secret must not be returned to the callers with another
+        FetchKey key = new FetchKey(branch, commitId, path, hash(secret));
+
+        FetchResult last = state.lastFetch;
+        if (last != null && last.key.equals(key)) {
+            if (last.startedAt - state.lockRequestedAt >= 0) {
+                coalescedCount.incrementAndGet();
+                log.info("fetch ['{}', '{}', '{}', '{}'] -> using the result of a concurrent fetch", repoUrl, branch, commitId, path);
+                return last.repository;
+            }
+
+            if (allowCached && System.nanoTime() - last.completedAt < fetchFreshness) {
+                hitCount.incrementAndGet();
+                log.info("fetch ['{}', '{}', '{}', '{}'] -> using the result of a recent fetch", repoUrl, branch, commitId, path);
+                return last.repository;
+            }
+        }
+
+        // the working directory is about to change
+        state.lastFetch = null;
+
+        long startedAt = System.nanoTime();
+        Repository result = fetcher.get();
+        fetchCount.incrementAndGet();
+
+        state.lastFetch = new FetchResult(key, startedAt, System.nanoTime(), result);
+        return result;
+    }
+
+    /**
+     * Number of actual fetches made using {@link #fetch(String, String, String, String, Secret, boolean, Supplier)}.
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    /**
+     * Number of fetches which reused the result of a concurrent fetch.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Number of fetches which reused the result of a recent fetch.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
     private <T> T withLock(long lockTimeout, String repoUrl, Callable<T> f) {
-        Lock l = locks.get(repoUrl);
+        long requestedAt = System.nanoTime();
         try {
-            if (l.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+            while (true) {
+                RepositoryState state = states.computeIfAbsent(repoUrl, k -> new RepositoryState());
+                ReentrantLock l = state.lock;
+
+                if (!l.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("Timeout waiting for the repository lock. Repository url: " + repoUrl);
+                }
+
+                if (states.get(repoUrl) != state) {
+                    // removed by cleanup() while we were waiting for the lock
+                    l.unlock();
+                    continue;
+                }
+
+                if (l.getHoldCount() == 1) {
+                    // not a reentrant call
+                    state.lockRequestedAt = requestedAt;
+                }
+
                 try {
                     return f.call();
                 } catch (IllegalArgumentException e) {
@@ -101,7 +217,6 @@ public class RepositoryCache {
                     l.unlock();
                 }
             }
-            throw new IllegalStateException("Timeout waiting for the repository lock. Repository url: " + repoUrl);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException(e);
@@ -121,6 +236,10 @@ public class RepositoryCache {
         List<RepositoryAccessJournal.RepositoryJournalItem> oldItems = accessJournal.listOld(maxCacheAge);
         for (RepositoryAccessJournal.RepositoryJournalItem i : oldItems) {
             Path repoPath = withLock(lockTimeout, i.repoUrl(), () -> {
+                // the directory is removed, the previous fetch results can't be reused
+                // the callers waiting for the removed state's lock will create a new one
+                states.remove(i.repoUrl());
+
                 try {
                     Path tmpDir = i.repoPath().getParent().resolve(i.repoPath().getFileName() + ".tmp");
 
@@ -160,4 +279,100 @@ public class RepositoryCache {
 
         return encodedUrl;
     }
+
+    /**
+     * Returns a hash of the secret's data or a random value for unknown
+     * types of secrets, so their fetch results are never reused.
+     */
+    private static String hash(Secret secret) {
+        if (secret == null) {
+            return null;
+        }
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RepositoryException("Error while hashing a secret", e);
+        }
+
+        if (secret instanceof KeyPair) {
+            KeyPair kp = (KeyPair) secret;
+            md.update((byte) 1);
+            md.update(kp.getPrivateKey());
+            md.update(kp.getPublicKey());
+        } else if (secret instanceof UsernamePassword) {
+            UsernamePassword up = (UsernamePassword) secret;
+            md.update((byte) 2);
+            md.update(up.getUsername().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(up.getPassword())));
+        } else if (secret instanceof BinaryDataSecret) {
+            md.update((byte) 3);
+            md.update(((BinaryDataSecret) secret).getData());
+        } else {
+            return UUID.randomUUID().toString();
+        }
+
+        return Base64.getEncoder().encodeToString(md.digest());
+    }
+
+    private static class RepositoryState {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // guarded by the lock
+        private long lockRequestedAt;
+        private FetchResult lastFetch;
+    }
+
+    private static class FetchResult {
+
+        private final FetchKey key;
+        private final long startedAt;
+        private final long completedAt;
+        private final Repository repository;
+
+        private FetchResult(FetchKey key, long startedAt, long completedAt, Repository repository) {
+            this.key = key;
+            this.startedAt = startedAt;
+            this.completedAt = completedAt;
+            this.repository = repository;
+        }
+    }
+
+    private static class FetchKey {
+
+        private final String branch;
+        private final String commitId;
+        private final String path;
+        private final String secretHash;
+
+        private FetchKey(String branch, String commitId, String path, String secretHash) {
+            this.branch = branch;
+            this.commitId = commitId;
+            this.path = path;
+            this.secretHash = secretHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FetchKey that = (FetchKey) o;
+            return Objects.equals(branch, that.branch) &&
+                    Objects.equals(commitId, that.commitId) &&
+                    Objects.equals(path, that.path) &&
+                    Objects.equals(secretHash, that.secretHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(branch, commitId, path, secretHash);
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports a repository with 50k files (~4KB each) into a new working
+ * directory using the {@link ExportMode#COPY} and {@link ExportMode#LINK} modes.
+ * <p>
+ * The disk space used by each export is logged after each iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportBenchmark.class);
+
+    private static final int FILE_COUNT = 50_000;
+    private static final int FILES_PER_DIR = 100;
+    private static final int FILE_SIZE = 4096;
+
+    @Param({"COPY", "LINK"})
+    public ExportMode mode;
+
+    private Path baseDir;
+    private Path src;
+    private Path dst;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        baseDir = Files.createTempDirectory("exportBenchmark");
+        src = baseDir.resolve("repo");
+
+        Random rnd = new Random(123);
+        byte[] ab = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path dir = src.resolve("dir" + (i / FILES_PER_DIR));
+            if (i % FILES_PER_DIR == 0) {
+                Files.createDirectories(dir);
+            }
+
+            rnd.nextBytes(ab);
+            Files.write(dir.resolve("file" + i + ".txt"), ab);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        IOUtils.deleteRecursively(baseDir);
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareIteration() throws IOException {
+        dst = Files.createTempDirectory(baseDir, "workDir");
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanupIteration() throws IOException {
+        long before = usableSpace();
+        IOUtils.deleteRecursively(dst);
+        long freed = usableSpace() - before;
+
+        // approximate, other processes may use the same file store
+        log.info("cleanupIteration -> {}: ~{} MB used by the exported files", mode, freed / (1024 * 1024));
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        if (mode == ExportMode.LINK) {
+            IOUtils.copy(src, dst, Collections.emptyList(), null, new LinkingFileCopier(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            IOUtils.copy(src, dst, Collections.emptyList(), null, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private long usableSpace() throws IOException {
+        return Files.getFileStore(baseDir).getUsableSpace();
+    }
+}
@@ -0,0 +1,79 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+
+import static org.junit.Assert.*;
+
+public class LinkingFileCopierTest {
+
+    @Test
+    public void testLink() throws Exception {
+        Path src = Files.createTempDirectory("src");
+        Path dst = Files.createTempDirectory("dst");
+
+        Path a = src.resolve("a.txt");
+        Files.write(a, "hello".getBytes());
+
+        Path b = dst.resolve("a.txt");
+        Files.write(b, "old".getBytes());
+
+        LinkingFileCopier copier = new LinkingFileCopier();
+        copier.copy(a, b, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(1, copier.getLinkCount());
+        assertEquals(0, copier.getCopyCount());
+        assertEquals(Files.readAttributes(a, "unix:ino").get("ino"), Files.readAttributes(b, "unix:ino").get("ino"));
+
+        // the shared file is protected from in-place changes
+        assertFalse(Files.getPosixFilePermissions(b).contains(PosixFilePermission.OWNER_WRITE));
+
+        // replacing the file breaks the link
+        Path tmp = dst.resolve("a.txt.tmp");
+        Files.write(tmp, "new".getBytes());
+        Files.move(tmp, b, StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(new String(Files.readAllBytes(a)).startsWith("hello"));
+    }
+
+    @Test
+    public void testCopyRestoresWritePermission() throws Exception {
+        Path src = Files.createTempDirectory("src");
+        Path dst = Files.createTempDirectory("dst");
+
+        Path a = src.resolve("a.txt");
+        Files.write(a, "hello".getBytes());
+
+        // previously linked
+        Path b = dst.resolve("a.txt");
+        new LinkingFileCopier().copy(a, b);
+        assertFalse(Files.getPosixFilePermissions(a).contains(PosixFilePermission.OWNER_WRITE));
+
+        Path c = dst.resolve("c.txt");
+        LinkingFileCopier.copyWritable(a, c);
+        assertTrue(Files.getPosixFilePermissions(c).contains(PosixFilePermission.OWNER_WRITE));
+    }
+}
@@ -0,0 +1,163 @@
+package com.walmartlabs.concord.repository;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.secret.UsernamePassword;
+import com.walmartlabs.concord.sdk.Secret;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RepositoryCacheTest {
+
+    private static final String REPO_URL = "https://example.com/repo.git";
+
+    @Test
+    public void testCoalescing() throws Exception {
+        RepositoryCache cache = createCache(Duration.ZERO);
+        AtomicInteger fetches = new AtomicInteger();
+
+        CountDownLatch locked = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            // the first caller holds the lock while the others are waiting
+            Future<Repository> first = executor.submit(() -> cache.withLock(REPO_URL, () -> {
+                locked.countDown();
+                // give the other callers some time to request the lock
+                Thread.sleep(500);
+                return cache.fetch(REPO_URL, "master", null, null, null, false, fetcher(fetches));
+            }));
+
+            locked.await();
+
+            List<Future<Repository>> others = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                others.add(executor.submit(() -> cache.withLock(REPO_URL, () ->
+                        cache.fetch(REPO_URL, "master", null, null, null, false, fetcher(fetches)))));
+            }
+
+            Repository expected = first.get(30, TimeUnit.SECONDS);
+            for (Future<Repository> f : others) {
+                assertSame(expected, f.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.getFetchCount());
+        assertEquals(5, cache.getCoalescedCount());
+
+        // a new request, the previous fetch can't be reused
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void testFreshness() throws Exception {
+        RepositoryCache cache = createCache(Duration.ofMinutes(1));
+        AtomicInteger fetches = new AtomicInteger();
+
+        Repository r1 = cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+        Repository r2 = cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+        assertSame(r1, r2);
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.getHitCount());
+
+        // the recent results are not allowed
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, false, fetcher(fetches)));
+        assertEquals(2, fetches.get());
+
+        // a different ref changes the working directory
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "dev", null, null, null, true, fetcher(fetches)));
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+        assertEquals(4, fetches.get());
+
+        // not under the lock
+        cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches));
+        assertEquals(5, fetches.get());
+    }
+
+    @Test
+    public void testDifferentSecrets() throws Exception {
+        RepositoryCache cache = createCache(Duration.ofMinutes(1));
+        AtomicInteger fetches = new AtomicInteger();
+
+        Secret a = new UsernamePassword("a", "secret".toCharArray());
+        Secret b = new UsernamePassword("b", "secret".toCharArray());
+
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", "abc", null, a, true, fetcher(fetches)));
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", "abc", null, a, true, fetcher(fetches)));
+        assertEquals(1, fetches.get());
+
+        // the results fetched with another secret (or without one) can't be reused
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", "abc", null, b, true, fetcher(fetches)));
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", "abc", null, null, true, fetcher(fetches)));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    public void testFailedFetch() throws Exception {
+        RepositoryCache cache = createCache(Duration.ofMinutes(1));
+        AtomicInteger fetches = new AtomicInteger();
+
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+
+        try {
+            cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", "abc", null, null, true, () -> {
+                throw new RepositoryException("boom");
+            }));
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // the working directory is in unknown state after an error
+        cache.withLock(REPO_URL, () -> cache.fetch(REPO_URL, "master", null, null, null, true, fetcher(fetches)));
+        assertEquals(2, fetches.get());
+    }
+
+    private static RepositoryCache createCache(Duration fetchFreshness) throws Exception {
+        Path cacheDir = Files.createTempDirectory("repoCache");
+        return new RepositoryCache(cacheDir, cacheDir.resolve("info"), Duration.ofMinutes(1), Duration.ZERO, fetchFreshness, null);
+    }
+
+    private static Supplier<Repository> fetcher(AtomicInteger counter) {
+        return () -> {
+            counter.incrementAndGet();
+            return new Repository("master", null, null, "commit-" + counter.get(), null);
+        };
+    }
+}
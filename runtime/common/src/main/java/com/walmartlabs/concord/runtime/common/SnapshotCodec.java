@@ -0,0 +1,135 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format of the process state snapshots.
+ * <p>
+ * The format is: {@link #MAGIC}, the format version (int) and a deflated
+ * Java serialization stream. Files without the magic header are read as
+ * plain Java serialization streams (the format used before version 1).
+ * <p>
+ * Older runners can read only the plain format, so the encoder writes it
+ * unless asked otherwise. See {@link #encode(OutputStream, Serializable, boolean)}.
+ * <p>
+ * Unlike {@link SerializationUtils#serialize(OutputStream, Serializable)}
+ * the encoder fails if the state contains non-serializable values instead
+ * of writing an incomplete snapshot.
+ */
+public final class SnapshotCodec {
+
+    /**
+     * The current format version.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', 'S', 'N', 'P'};
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public static void encode(OutputStream out, Serializable o) throws IOException {
+        encode(out, o, true);
+    }
+
+    /**
+     * @param compressed if {@code true} writes the versioned, compressed
+     *                   format, otherwise writes a plain Java serialization
+     *                   stream readable by older runners.
+     */
+    public static void encode(OutputStream out, Serializable o, boolean compressed) throws IOException {
+        if (!compressed) {
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(out, BUFFER_SIZE))) {
+                writeObject(oos, o);
+            }
+            return;
+        }
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.write(MAGIC);
+        header.writeInt(VERSION);
+
+        // the snapshots are written on every suspend and checkpoint, prefer speed over size
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new DeflaterOutputStream(out, deflater, BUFFER_SIZE), BUFFER_SIZE))) {
+            writeObject(oos, o);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static <T> T decode(InputStream in, Class<T> expectedType) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream(in, BUFFER_SIZE);
+
+        bin.mark(MAGIC.length);
+        byte[] magic = new byte[MAGIC.length];
+        int n = readFully(bin, magic);
+        if (n < MAGIC.length || !Arrays.equals(MAGIC, magic)) {
+            // an old snapshot
+            bin.reset();
+            return SerializationUtils.deserialize(bin, expectedType);
+        }
+
+        int version = new DataInputStream(bin).readInt();
+        if (version > VERSION) {
+            throw new IOException("Unsupported snapshot format version: " + version + " (max supported: " + VERSION + ")");
+        }
+
+        Inflater inflater = new Inflater();
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new InflaterInputStream(bin, inflater, BUFFER_SIZE), BUFFER_SIZE))) {
+            return expectedType.cast(ois.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Can't deserialize a value into " + expectedType + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeObject(ObjectOutputStream oos, Serializable o) throws IOException {
+        try {
+            oos.writeObject(o);
+        } catch (NotSerializableException e) {
+            throw new IOException("Can't save the process state, found a not serializable value: " + e.getMessage() + ". " +
+                    "Check if you're setting any not serializable values in your 'script', 'task' or 'form' steps.", e);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        while (n < buf.length) {
+            int read = in.read(buf, n, buf.length - n);
+            if (read < 0) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    private SnapshotCodec() {
+    }
+}
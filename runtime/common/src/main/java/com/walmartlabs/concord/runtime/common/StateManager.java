@@ -41,6 +41,10 @@ public final class StateManager {
     private static final String SUSPEND_MARKER = Constants.Files.SUSPEND_MARKER_FILE_NAME;
 
     public static void finalizeSuspendedState(Path baseDir, Serializable state, Set<String> eventNames) throws IOException {
+        finalizeSuspendedState(baseDir, state, eventNames, false);
+    }
+
+    public static void finalizeSuspendedState(Path baseDir, Serializable state, Set<String> eventNames, boolean compressed) throws IOException {
         Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .resolve(Constants.Files.JOB_STATE_DIR_NAME);
 
@@ -61,7 +65,7 @@ public final class StateManager {
         Path marker = stateDir.resolve(SUSPEND_MARKER);
         Files.write(marker, eventNames);
 
-        saveProcessState(baseDir, state);
+        saveProcessState(baseDir, state, compressed);
     }
 
     public static void cleanupState(Path baseDir) throws IOException {
@@ -119,9 +123,9 @@ public final class StateManager {
             return null;
         }
 
-        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(p))) {
-            return (T) in.readObject();
-        } catch (ClassNotFoundException | IOException e) {
+        try (InputStream in = Files.newInputStream(p)) {
+            return (T) SnapshotCodec.decode(in, Serializable.class);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
@@ -129,8 +133,24 @@ public final class StateManager {
     /**
      * Serializes the specified process state object into a file
      * in the standard location inside the provided {@code baseDir}.
+     *
+     * Uses the format readable by older runners.
+     *
+     * @see SnapshotCodec
      */
     public static void saveProcessState(Path baseDir, Serializable state) throws IOException {
+        saveProcessState(baseDir, state, false);
+    }
+
+    /**
+     * Serializes the specified process state object into a file
+     * in the standard location inside the provided {@code baseDir}.
+     *
+     * @param compressed if {@code true} uses the compressed format which
+     *                   can't be read by older runners.
+     * @see SnapshotCodec
+     */
+    public static void saveProcessState(Path baseDir, Serializable state, boolean compressed) throws IOException {
         Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .resolve(Constants.Files.JOB_STATE_DIR_NAME);
 
@@ -143,14 +163,18 @@ public final class StateManager {
         try (TemporaryPath tmp = IOUtils.tempFile("instance", "state");
              OutputStream out = Files.newOutputStream(tmp.path())) {
 
-            SerializationUtils.serialize(out, state);
+            SnapshotCodec.encode(out, state, compressed);
             Files.move(tmp.path(), dst, REPLACE_EXISTING);
         }
     }
 
     public static void archive(Path baseDir, Serializable state, Path result) throws IOException {
+        archive(baseDir, state, result, false);
+    }
+
+    public static void archive(Path baseDir, Serializable state, Path result, boolean compressed) throws IOException {
         try (TemporaryPath tmp = IOUtils.tempDir("state-archive")) {
-            saveProcessState(tmp.path(), state);
+            saveProcessState(tmp.path(), state, compressed);
 
             try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(result))) {
                 zip(zip, Constants.Files.JOB_ATTACHMENTS_DIR_NAME + "/", tmp.path().resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME));
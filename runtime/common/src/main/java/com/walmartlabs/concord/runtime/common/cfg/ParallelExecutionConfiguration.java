@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.runtime.common.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+/**
+ * Execution strategy for the threads spawned by {@code parallel} blocks.
+ *
+ * @apiNote only for the runtime v2.
+ */
+@Value.Immutable
+@Value.Style(jdkOnly = true)
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonSerialize(as = ImmutableParallelExecutionConfiguration.class)
+@JsonDeserialize(as = ImmutableParallelExecutionConfiguration.class)
+public interface ParallelExecutionConfiguration {
+
+    @Value.Default
+    default Mode mode() {
+        return Mode.BOUNDED;
+    }
+
+    /**
+     * Max number of threads running in parallel.
+     * <p/>
+     * Applies only to the {@link Mode#BOUNDED} mode.
+     */
+    @Value.Default
+    default int maxThreads() {
+        return 64;
+    }
+
+    /**
+     * Max number of threads waiting for a free slot. When the queue is full,
+     * new threads are executed by the thread that started them.
+     * <p/>
+     * Applies only to the {@link Mode#BOUNDED} mode.
+     */
+    @Value.Default
+    default int queueSize() {
+        return 1000;
+    }
+
+    static ImmutableParallelExecutionConfiguration.Builder builder() {
+        return ImmutableParallelExecutionConfiguration.builder();
+    }
+
+    enum Mode {
+
+        /**
+         * A bounded pool of platform threads.
+         */
+        BOUNDED,
+
+        /**
+         * A virtual thread per spawned thread. Requires a JVM with virtual
+         * threads support, falls back to {@link #BOUNDED} otherwise.
+         */
+        VIRTUAL
+    }
+}
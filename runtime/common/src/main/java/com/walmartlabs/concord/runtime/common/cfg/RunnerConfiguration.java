@@ -122,6 +122,28 @@ public interface RunnerConfiguration {
         return DockerConfiguration.builder().build();
     }
 
+    /**
+     * Save the process state snapshots in the compressed format.
+     * Snapshots in this format can't be read by older runners, keep it
+     * disabled while such runners can resume or restore the process.
+     *
+     * @apiNote only for the runtime v2.
+     */
+    @Value.Default
+    default boolean compressedSnapshots() {
+        return false;
+    }
+
+    /**
+     * Execution strategy for the threads spawned by {@code parallel} blocks.
+     *
+     * @apiNote only for the runtime v2.
+     */
+    @Value.Default
+    default ParallelExecutionConfiguration parallelExecution() {
+        return ParallelExecutionConfiguration.builder().build();
+    }
+
     static ImmutableRunnerConfiguration.Builder builder() {
         return ImmutableRunnerConfiguration.builder();
     }
@@ -0,0 +1,166 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the plain Java serialization ({@link SerializationUtils}) with
+ * {@link SnapshotCodec} using a synthetic state: a number of frames with
+ * local variables and commands referencing a shared "process definition".
+ * The states are written to and read from files, the same way
+ * {@link StateManager} does it.
+ * <p>
+ * The sizes of the encoded states are logged during the setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotCodecBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCodecBenchmark.class);
+
+    @Param({"10", "100", "1000"})
+    public int frameCount;
+
+    private HashMap<String, Object> state;
+    private Path legacy;
+    private Path encoded;
+    private Path tmp;
+
+    @Setup
+    public void setup() throws IOException {
+        state = createState(frameCount);
+
+        legacy = Files.createTempFile("legacy", ".bin");
+        try (OutputStream out = Files.newOutputStream(legacy)) {
+            SerializationUtils.serialize(out, state);
+        }
+
+        encoded = Files.createTempFile("encoded", ".bin");
+        try (OutputStream out = Files.newOutputStream(encoded)) {
+            SnapshotCodec.encode(out, state);
+        }
+
+        tmp = Files.createTempFile("tmp", ".bin");
+
+        log.info("setup -> frames: {}, legacy: {} bytes, codec: {} bytes", frameCount, Files.size(legacy), Files.size(encoded));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(legacy);
+        Files.deleteIfExists(encoded);
+        Files.deleteIfExists(tmp);
+    }
+
+    @Benchmark
+    public void legacyWrite() throws IOException {
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            SerializationUtils.serialize(out, state);
+        }
+    }
+
+    @Benchmark
+    public void codecWrite() throws IOException {
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            SnapshotCodec.encode(out, state);
+        }
+    }
+
+    @Benchmark
+    public Object legacyRead() throws IOException {
+        try (InputStream in = Files.newInputStream(legacy)) {
+            return SerializationUtils.deserialize(in, Map.class);
+        }
+    }
+
+    @Benchmark
+    public Object codecRead() throws IOException {
+        try (InputStream in = Files.newInputStream(encoded)) {
+            return SnapshotCodec.decode(in, Map.class);
+        }
+    }
+
+    private static HashMap<String, Object> createState(int frameCount) {
+        Random rnd = new Random(42);
+
+        // "process definition": steps shared between the commands
+        ArrayList<Step> steps = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            steps.add(new Step("flow-" + (i / 20), i, "step " + i + ": ${someTask.call(x, y)}"));
+        }
+
+        ArrayList<Object> frames = new ArrayList<>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            LinkedHashMap<String, Object> locals = new LinkedHashMap<>();
+            locals.put("item", "item-" + i);
+            locals.put("itemIndex", i);
+
+            HashMap<String, Object> result = new HashMap<>();
+            result.put("ok", true);
+            result.put("status", rnd.nextInt(600));
+            result.put("body", "{\"id\": \"" + UUID.randomUUID() + "\", \"name\": \"resource-" + i + "\"}");
+            locals.put("result", result);
+
+            ArrayList<Object> commands = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                commands.add(steps.get(rnd.nextInt(steps.size())));
+            }
+
+            HashMap<String, Object> frame = new HashMap<>();
+            frame.put("locals", locals);
+            frame.put("commands", commands);
+            frames.add(frame);
+        }
+
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("definition", steps);
+        state.put("frames", frames);
+        return state;
+    }
+
+    private static class Step implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String flowName;
+        private final int line;
+        private final String expr;
+
+        private Step(String flowName, int line, String expr) {
+            this.flowName = flowName;
+            this.line = line;
+            this.expr = expr;
+        }
+    }
+}
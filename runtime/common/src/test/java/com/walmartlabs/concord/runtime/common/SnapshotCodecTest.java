@@ -0,0 +1,99 @@
+package com.walmartlabs.concord.runtime.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SnapshotCodecTest {
+
+    @Test
+    public void testRoundtrip() throws Exception {
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("x", 123);
+        state.put("y", new ArrayList<>(Arrays.asList("a", "b", "c")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.encode(out, state);
+
+        Map<?, ?> result = SnapshotCodec.decode(new ByteArrayInputStream(out.toByteArray()), Map.class);
+        assertEquals(state, result);
+    }
+
+    @Test
+    public void testLegacyFormat() throws Exception {
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("x", 123);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SerializationUtils.serialize(out, state);
+
+        Map<?, ?> result = SnapshotCodec.decode(new ByteArrayInputStream(out.toByteArray()), Map.class);
+        assertEquals(state, result);
+    }
+
+    @Test
+    public void testEncodeLegacyFormat() throws Exception {
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("x", 123);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.encode(out, state, false);
+
+        // older runners read the snapshots with SerializationUtils
+        Map<?, ?> result = SerializationUtils.deserialize(new ByteArrayInputStream(out.toByteArray()), Map.class);
+        assertEquals(state, result);
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.encode(out, "hello");
+
+        byte[] ab = out.toByteArray();
+        // the version follows the magic header
+        ab[7] = (byte) (SnapshotCodec.VERSION + 1);
+
+        try {
+            SnapshotCodec.decode(new ByteArrayInputStream(ab), String.class);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Unsupported snapshot format version"));
+        }
+    }
+
+    @Test
+    public void testNotSerializable() throws Exception {
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("x", new Object());
+
+        try {
+            SnapshotCodec.encode(new ByteArrayOutputStream(), state);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("java.lang.Object"));
+        }
+    }
+}
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.runtime.v2.model;
 import com.walmartlabs.concord.runtime.v2.parser.StepOptions;
 import org.immutables.value.Value;
 
+import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
 
@@ -30,11 +31,20 @@ import java.util.List;
 @Value.Style(jdkOnly = true)
 public interface ParallelBlockOptions extends StepOptions {
 
+    long serialVersionUID = 1L;
+
     @Value.Default
     default List<String> out() {
         return Collections.emptyList();
     }
 
+    /**
+     * Max number of steps running in parallel. If {@code null} all steps
+     * are started at once.
+     */
+    @Nullable
+    Integer parallelism();
+
     static ImmutableParallelBlockOptions.Builder builder() {
         return ImmutableParallelBlockOptions.builder();
     }
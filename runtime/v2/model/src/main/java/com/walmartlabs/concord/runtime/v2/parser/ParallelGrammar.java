@@ -37,6 +37,7 @@ public final class ParallelGrammar {
             with(ParallelBlockOptions::builder,
                     o -> options(
                             optional("out", stringOrArrayVal.map(o::out)),
+                            optional("parallelism", intVal.map(o::parallelism)),
                             optional("meta", mapVal.map(o::meta))
                     ))
                     .map(ImmutableParallelBlockOptions.Builder::build);
@@ -56,6 +56,11 @@ public class ParallelBlockSerializer extends StdSerializer<ParallelBlock> {
         }
 
         writeNotEmptyObjectField("out", options.out(), gen);
+
+        if (options.parallelism() != null) {
+            gen.writeObjectField("parallelism", options.parallelism());
+        }
+
         writeNotEmptyObjectField("meta", options.meta(), gen);
     }
 }
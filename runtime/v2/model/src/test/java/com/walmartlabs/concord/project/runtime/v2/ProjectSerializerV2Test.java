@@ -134,6 +134,7 @@ public class ProjectSerializerV2Test extends AbstractParserTest {
     public void testParallelBlock() throws Exception {
         ParallelBlockOptions opts = ParallelBlockOptions.builder()
                 .addOut("out")
+                .parallelism(2)
                 .meta(meta())
                 .build();
 
@@ -25,28 +25,32 @@ import com.walmartlabs.concord.svm.Runtime;
 import com.walmartlabs.concord.svm.State;
 import com.walmartlabs.concord.svm.ThreadId;
 import com.walmartlabs.concord.svm.VM;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class DefaultRuntime implements Runtime {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultRuntime.class);
+
     private final VM vm;
     private final Injector injector;
-    private final ExecutorService executor;
+    private final ParallelExecutor executor;
 
-    public DefaultRuntime(VM vm, Injector injector) {
+    public DefaultRuntime(VM vm, Injector injector, ParallelExecutor executor) {
         this.vm = vm;
         this.injector = injector;
-
-        this.executor = Executors.newCachedThreadPool();
+        this.executor = executor;
     }
 
     @Override
     public void spawn(State state, ThreadId threadId) {
-        executor.submit(() -> {
-            vm.eval(this, state, threadId);
-            return null;
+        executor.execute(() -> {
+            try {
+                vm.eval(this, state, threadId);
+            } catch (Exception e) {
+                // the error is saved in the state and handled by the parent thread
+                log.debug("spawn [{}] -> failed: {}", threadId, e.getMessage());
+            }
         });
     }
 
@@ -33,6 +33,7 @@ import com.walmartlabs.concord.runtime.v2.ProjectLoaderV2;
 import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
 import com.walmartlabs.concord.runtime.v2.runner.guice.ObjectMapperProvider;
 import com.walmartlabs.concord.runtime.v2.runner.logging.LoggingConfigurator;
+import com.walmartlabs.concord.runtime.v2.runner.remote.ProcessEventRecorder;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProviders;
 import com.walmartlabs.concord.runtime.v2.sdk.ProcessConfiguration;
 import com.walmartlabs.concord.runtime.v2.sdk.WorkingDirectory;
@@ -93,13 +94,24 @@ public class Main {
             Main main = injector.getInstance(Main.class);
             main.execute();
 
+            flushEvents(injector);
             System.exit(0);
         } catch (Throwable t) {
             t.printStackTrace(System.err);
+            flushEvents(injector);
             System.exit(1);
         }
     }
 
+    private static void flushEvents(Injector injector) {
+        // the events are sent in background, make sure nothing is lost on exit or failure
+        try {
+            injector.getInstance(ProcessEventRecorder.class).flush();
+        } catch (Exception e) {
+            log.warn("Error while sending the process events: {}", e.getMessage());
+        }
+    }
+
     private static RunnerConfiguration readRunnerConfiguration(String[] args) throws IOException {
         Path src;
         if (args.length > 0) {
@@ -163,7 +175,7 @@ public class Main {
         }
 
         if (isSuspended(snapshot)) {
-            StateManager.finalizeSuspendedState(workDir, snapshot, getEvents(snapshot)); // TODO make it an interface?
+            StateManager.finalizeSuspendedState(workDir, snapshot, getEvents(snapshot), runnerCfg.compressedSnapshots()); // TODO make it an interface?
         } else {
             StateManager.cleanupState(workDir); // TODO make it an interface
         }
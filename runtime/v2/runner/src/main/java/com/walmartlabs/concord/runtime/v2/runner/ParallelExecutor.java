@@ -0,0 +1,187 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.common.cfg.ParallelExecutionConfiguration;
+import com.walmartlabs.concord.runtime.common.cfg.ParallelExecutionConfiguration.Mode;
+import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the threads spawned by {@code parallel} blocks.
+ * <p>
+ * In the {@link Mode#BOUNDED} mode at most {@link ParallelExecutionConfiguration#maxThreads()}
+ * threads run at the same time. When all slots are taken, the new threads
+ * are queued or, if the queue is full, executed by the thread that started
+ * them.
+ * <p>
+ * Nested threads (started by other spawned threads) are never queued:
+ * their parents are blocked in "join" while holding the slots, so queueing
+ * them could block all slots forever.
+ * <p>
+ * In the {@link Mode#VIRTUAL} mode each thread is a new virtual thread,
+ * if the JVM supports them.
+ */
+@Singleton
+public class ParallelExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelExecutor.class);
+
+    private static final ThreadLocal<Boolean> spawned = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final int queueSize;
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicInteger inline = new AtomicInteger();
+
+    @Inject
+    public ParallelExecutor(RunnerConfiguration runnerCfg) {
+        this(runnerCfg.parallelExecution());
+    }
+
+    public ParallelExecutor(ParallelExecutionConfiguration cfg) {
+        ExecutorService virtual = null;
+        if (cfg.mode() == Mode.VIRTUAL) {
+            virtual = createVirtualThreadExecutor();
+        }
+
+        if (virtual != null) {
+            this.executor = virtual;
+            this.slots = null;
+        } else {
+            this.executor = Executors.newCachedThreadPool();
+            this.slots = new Semaphore(Math.max(1, cfg.maxThreads()));
+        }
+
+        this.queueSize = Math.max(0, cfg.queueSize());
+    }
+
+    public void execute(Runnable task) {
+        if (slots == null || slots.tryAcquire()) {
+            start(task);
+            return;
+        }
+
+        if (spawned.get() == null && enqueue(task)) {
+            // a slot might've been released in the meantime
+            drain();
+            return;
+        }
+
+        inline.incrementAndGet();
+        task.run();
+    }
+
+    /**
+     * Logs the max number of threads and the max queue depth (if any threads
+     * were spawned).
+     */
+    public void logStats() {
+        int threads = maxActive.get();
+        if (threads == 0) {
+            return;
+        }
+
+        log.info("Parallel execution: {} thread(s) max, {} queued max, {} executed in the parent thread",
+                threads, maxQueued.get(), inline.get());
+    }
+
+    private void start(Runnable task) {
+        updateMax(maxActive, active.incrementAndGet());
+
+        executor.execute(() -> {
+            spawned.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                spawned.remove();
+                active.decrementAndGet();
+
+                if (slots != null) {
+                    slots.release();
+                    drain();
+                }
+            }
+        });
+    }
+
+    private boolean enqueue(Runnable task) {
+        synchronized (queue) {
+            if (queue.size() >= queueSize) {
+                return false;
+            }
+
+            queue.addLast(task);
+            updateMax(maxQueued, queue.size());
+            return true;
+        }
+    }
+
+    private void drain() {
+        while (slots.tryAcquire()) {
+            Runnable task;
+            synchronized (queue) {
+                task = queue.pollFirst();
+            }
+
+            if (task == null) {
+                slots.release();
+                return;
+            }
+
+            start(task);
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            // available in JDK 21+ (or 19+ with --enable-preview)
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Virtual threads are not supported by the current JVM ({}), using the bounded mode", System.getProperty("java.version"));
+            return null;
+        }
+    }
+}
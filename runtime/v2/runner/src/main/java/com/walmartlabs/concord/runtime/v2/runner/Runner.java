@@ -48,6 +48,7 @@ public class Runner {
     private final SynchronizationService synchronizationService;
     private final Set<ExecutionListener> listeners;
     private final ProcessStatusCallback statusCallback;
+    private final ParallelExecutor parallelExecutor;
 
     @Inject
     public Runner(Injector injector,
@@ -55,7 +56,8 @@ public class Runner {
                   Compiler compiler,
                   SynchronizationService synchronizationService,
                   Set<ExecutionListener> listeners,
-                  ProcessStatusCallback statusCallback) {
+                  ProcessStatusCallback statusCallback,
+                  ParallelExecutor parallelExecutor) {
 
         this.injector = injector;
         this.instanceId = instanceId;
@@ -63,6 +65,7 @@ public class Runner {
         this.synchronizationService = synchronizationService;
         this.listeners = listeners;
         this.statusCallback = statusCallback;
+        this.parallelExecutor = parallelExecutor;
     }
 
     public ProcessSnapshot start(ProcessConfiguration processConfiguration, ProcessDefinition processDefinition, Map<String, Object> input) throws Exception {
@@ -70,13 +73,17 @@ public class Runner {
         log.debug("start ['{}'] -> running...", processConfiguration.entryPoint());
 
         Command cmd = CompilerUtils.compile(compiler, processConfiguration, processDefinition, processConfiguration.entryPoint());
-        State state = new InMemoryState(cmd);
+        State state = new ConcurrentState(cmd);
 
         VM vm = createVM(processDefinition);
         // update the global variables using the input map by running a special command
         vm.run(state, new UpdateLocalsCommand(input)); // TODO merge with the cfg's arguments
         // start the normal execution
-        vm.start(state);
+        try {
+            vm.start(state);
+        } finally {
+            parallelExecutor.logStats();
+        }
 
         log.debug("start ['{}'] -> done", processConfiguration.entryPoint());
 
@@ -96,7 +103,11 @@ public class Runner {
         // update the global variables using the input map by running a special command
         vm.run(state, new UpdateLocalsCommand(input));
         // resume normally
-        vm.resume(state, eventRef);
+        try {
+            vm.resume(state, eventRef);
+        } finally {
+            parallelExecutor.logStats();
+        }
 
         log.debug("resume ['{}'] -> done", eventRef);
 
@@ -116,7 +127,11 @@ public class Runner {
         // update the global variables using the input map by running a special command
         vm.run(state, new UpdateLocalsCommand(input));
         // continue as usual
-        vm.start(state);
+        try {
+            vm.start(state);
+        } finally {
+            parallelExecutor.logStats();
+        }
 
         log.debug("resume -> done");
 
@@ -131,7 +146,7 @@ public class Runner {
         listeners.add(new SynchronizationServiceListener(synchronizationService));
         listeners.addAll(this.listeners);
 
-        RuntimeFactory runtimeFactory = vm -> new DefaultRuntime(vm, injectorWithProcessDefinition(injector, processDefinition));
+        RuntimeFactory runtimeFactory = vm -> new DefaultRuntime(vm, injectorWithProcessDefinition(injector, processDefinition), parallelExecutor);
 
         return new VM(runtimeFactory, listeners);
     }
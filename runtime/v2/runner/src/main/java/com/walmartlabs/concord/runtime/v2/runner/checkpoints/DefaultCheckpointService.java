@@ -51,12 +51,14 @@ public class DefaultCheckpointService implements CheckpointService {
     private final WorkingDirectory workingDirectory;
     private final ApiClient apiClient;
     private final ApiConfiguration apiConfiguration;
+    private final boolean compressedSnapshots;
 
     @Inject
     public DefaultCheckpointService(InstanceId instanceId, WorkingDirectory workingDirectory, RunnerConfiguration configuration, ApiClient apiClient) {
         this.instanceId = instanceId;
         this.workingDirectory = workingDirectory;
         this.apiConfiguration = configuration.api();
+        this.compressedSnapshots = configuration.compressedSnapshots();
         this.apiClient = apiClient;
     }
 
@@ -103,7 +105,7 @@ public class DefaultCheckpointService implements CheckpointService {
         }
 
         Path result = checkpointDir.resolve(checkpointId + "_" + checkpointName + ".zip");
-        StateManager.archive(workingDirectory.getValue(), snapshot, result);
+        StateManager.archive(workingDirectory.getValue(), snapshot, result, compressedSnapshots);
         return result;
     }
 
@@ -20,6 +20,8 @@ package com.walmartlabs.concord.runtime.v2.runner.el;
  * =====
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.walmartlabs.concord.runtime.v2.runner.el.functions.AllVariablesFunction;
 import com.walmartlabs.concord.runtime.v2.runner.el.functions.HasVariableFunction;
 import com.walmartlabs.concord.runtime.v2.runner.el.resolvers.BeanELResolver;
@@ -36,16 +38,26 @@ import static com.walmartlabs.concord.runtime.v2.runner.el.ThreadLocalEvalContex
 
 /**
  * Evaluates values. Allows partial evaluation of nested data.
+ * <p>
+ * Parsed expressions and the resolver chain are reused between evaluations,
+ * the per-evaluation state ({@link LazyEvalContext}) is stored in
+ * the {@link ELContext}.
  */
 public class LazyExpressionEvaluator implements ExpressionEvaluator {
 
+    private static final long EXPRESSION_CACHE_SIZE = 1024;
+
     private final ExpressionFactory expressionFactory = ExpressionFactory.newInstance();
-    private final TaskProviders taskProviders;
     private final FunctionMapper functionMapper;
+    private final ELResolver resolver;
+    private final Cache<ExpressionKey, ValueExpression> expressionCache;
 
     public LazyExpressionEvaluator(TaskProviders taskProviders) {
-        this.taskProviders = taskProviders;
         this.functionMapper = createFunctionMapper();
+        this.resolver = createResolver(taskProviders, expressionFactory);
+        this.expressionCache = CacheBuilder.newBuilder()
+                .maximumSize(EXPRESSION_CACHE_SIZE)
+                .build();
     }
 
     @Override
@@ -123,10 +135,9 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
 
     @Override
     public void setValue(EvalContext ctx, String expr, Object value) {
-        ELResolver resolver = createResolver(LazyEvalContext.of(ctx, null), expressionFactory);
-
         StandardELContext sc = new StandardELContext(expressionFactory);
         sc.putContext(ExpressionFactory.class, expressionFactory);
+        sc.putContext(LazyEvalContext.class, LazyEvalContext.of(ctx, null));
         sc.addELResolver(resolver);
 
         ValueExpression x = expressionFactory.createValueExpression(sc, expr, Object.class);
@@ -134,22 +145,11 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
     }
 
     private <T> T evalExpr(LazyEvalContext ctx, String expr, Class<T> type) {
-        ELResolver resolver = createResolver(ctx, expressionFactory);
-
-        StandardELContext sc = new StandardELContext(expressionFactory) {
-            @Override
-            public ELResolver getELResolver() {
-                return resolver;
-            }
-
-            @Override
-            public FunctionMapper getFunctionMapper() {
-                return functionMapper;
-            }
-        };
+        StandardELContext sc = new EvalELContext(expressionFactory, resolver, functionMapper);
         sc.putContext(ExpressionFactory.class, expressionFactory);
+        sc.putContext(LazyEvalContext.class, ctx);
 
-        ValueExpression x = expressionFactory.createValueExpression(sc, expr, type);
+        ValueExpression x = getValueExpression(sc, expr, type);
         try {
             Object v = withEvalContext(ctx, () -> x.getValue(sc));
             return type.cast(v);
@@ -162,30 +162,44 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
         }
     }
 
+    /**
+     * Returns a cached {@link ValueExpression} or parses a new one.
+     * The expressions don't hold any references to the {@link ELContext}
+     * and can be evaluated concurrently.
+     */
+    private ValueExpression getValueExpression(ELContext elContext, String expr, Class<?> type) {
+        ExpressionKey key = new ExpressionKey(expr, type);
+
+        ValueExpression x = expressionCache.getIfPresent(key);
+        if (x == null) {
+            // parsing errors are not cached, they are thrown on each call
+            x = expressionFactory.createValueExpression(elContext, expr, type);
+            expressionCache.put(key, x);
+        }
+
+        return x;
+    }
+
     /**
      * Based on the original code from {@link StandardELContext#getELResolver()}.
      * Creates a {@link ELResolver} instance with "sub-resolvers" in the original order.
+     * <p>
+     * The resolvers which depend on the process variables or the task context
+     * take them from the {@link LazyEvalContext} stored in the {@link ELContext}.
      */
-    private ELResolver createResolver(LazyEvalContext evalContext,
-                                      ExpressionFactory expressionFactory) {
+    private static ELResolver createResolver(TaskProviders taskProviders,
+                                             ExpressionFactory expressionFactory) {
 
         CompositeELResolver r = new CompositeELResolver();
-        if (evalContext.scope() != null) {
-            r.add(new VariableResolver(evalContext.scope()));
-        }
-        r.add(new VariableResolver(evalContext.variables()));
-        if (evalContext.context() != null) {
-            r.add(new TaskResolver(evalContext.context(), taskProviders));
-        }
+        r.add(new VariableResolver());
+        r.add(new TaskResolver(taskProviders));
         r.add(expressionFactory.getStreamELResolver());
         r.add(new StaticFieldELResolver());
         r.add(new MapELResolver());
         r.add(new ResourceBundleELResolver());
         r.add(new ListELResolver());
         r.add(new ArrayELResolver());
-        if (evalContext.context() != null) {
-            r.add(new TaskMethodResolver(evalContext.context()));
-        }
+        r.add(new TaskMethodResolver());
         r.add(new BeanELResolver());
         return r;
     }
@@ -200,4 +214,54 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
     private static boolean hasExpression(String s) {
         return s.contains("${");
     }
+
+    private static class EvalELContext extends StandardELContext {
+
+        private final ELResolver resolver;
+        private final FunctionMapper functionMapper;
+
+        private EvalELContext(ExpressionFactory expressionFactory, ELResolver resolver, FunctionMapper functionMapper) {
+            super(expressionFactory);
+            this.resolver = resolver;
+            this.functionMapper = functionMapper;
+        }
+
+        @Override
+        public ELResolver getELResolver() {
+            return resolver;
+        }
+
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return functionMapper;
+        }
+    }
+
+    private static final class ExpressionKey {
+
+        private final String expr;
+        private final Class<?> type;
+
+        private ExpressionKey(String expr, Class<?> type) {
+            this.expr = expr;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExpressionKey that = (ExpressionKey) o;
+            return expr.equals(that.expr) && type.equals(that.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expr, type);
+        }
+    }
 }
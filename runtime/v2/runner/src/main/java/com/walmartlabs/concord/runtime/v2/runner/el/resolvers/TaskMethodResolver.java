@@ -23,6 +23,7 @@ package com.walmartlabs.concord.runtime.v2.runner.el.resolvers;
 import com.walmartlabs.concord.common.ReflectionUtils;
 import com.walmartlabs.concord.runtime.v2.model.Expression;
 import com.walmartlabs.concord.runtime.v2.model.Step;
+import com.walmartlabs.concord.runtime.v2.runner.el.LazyEvalContext;
 import com.walmartlabs.concord.runtime.v2.runner.el.MethodNotFoundException;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.ImmutableMethod;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallInterceptor;
@@ -36,16 +37,20 @@ import java.util.Arrays;
 import static com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallInterceptor.CallContext;
 import static com.walmartlabs.concord.runtime.v2.runner.tasks.TaskCallInterceptor.Method;
 
+/**
+ * Intercepts task method calls. Uses the {@link Context} of
+ * the {@link LazyEvalContext} stored in the {@link ELContext}.
+ */
 public class TaskMethodResolver extends javax.el.BeanELResolver {
 
-    private final Context context;
-
-    public TaskMethodResolver(Context context) {
-        this.context = context;
-    }
-
     @Override
     public Object invoke(ELContext elContext, Object base, Object method, Class<?>[] paramTypes, Object[] params) {
+        LazyEvalContext evalContext = (LazyEvalContext) elContext.getContext(LazyEvalContext.class);
+        Context context = evalContext.context();
+        if (context == null) {
+            return null;
+        }
+
         Step step = context.execution().currentStep();
         if (!(step instanceof Expression)
                 || !(base instanceof Task)
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.runtime.v2.runner.el.resolvers;
  * =====
  */
 
+import com.walmartlabs.concord.runtime.v2.runner.el.LazyEvalContext;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProviders;
 import com.walmartlabs.concord.runtime.v2.sdk.Context;
 
@@ -28,13 +29,15 @@ import javax.el.ELResolver;
 import java.beans.FeatureDescriptor;
 import java.util.Iterator;
 
+/**
+ * Resolves tasks by their names. Uses the {@link Context} of
+ * the {@link LazyEvalContext} stored in the {@link ELContext}.
+ */
 public class TaskResolver extends ELResolver {
 
-    private final Context context;
     private final TaskProviders taskProviders;
 
-    public TaskResolver(Context context, TaskProviders taskProviders) {
-        this.context = context;
+    public TaskResolver(TaskProviders taskProviders) {
         this.taskProviders = taskProviders;
     }
 
@@ -56,9 +59,15 @@ public class TaskResolver extends ELResolver {
     @Override
     public Object getValue(ELContext context, Object base, Object property) {
         if (base == null) {
+            LazyEvalContext evalContext = (LazyEvalContext) context.getContext(LazyEvalContext.class);
+            Context ctx = evalContext.context();
+            if (ctx == null) {
+                return null;
+            }
+
             String key = (String) property;
 
-            Object o = taskProviders.createTask(this.context, key);
+            Object o = taskProviders.createTask(ctx, key);
             if (o != null) {
                 context.setPropertyResolved(true);
             }
@@ -20,27 +20,24 @@ package com.walmartlabs.concord.runtime.v2.runner.el.resolvers;
  * =====
  */
 
-import com.walmartlabs.concord.runtime.v2.sdk.MapBackedVariables;
+import com.walmartlabs.concord.runtime.v2.runner.el.LazyEvalContext;
+import com.walmartlabs.concord.runtime.v2.runner.el.LazyEvalMap;
 import com.walmartlabs.concord.runtime.v2.sdk.Variables;
 
 import javax.el.ELContext;
 import javax.el.ELResolver;
 import java.beans.FeatureDescriptor;
 import java.util.Iterator;
-import java.util.Map;
 
+/**
+ * Resolves the variables of the current {@link LazyEvalContext}: first
+ * the current scope (if any), then the process variables.
+ * <p>
+ * The resolver is stateless, the evaluation context must be stored
+ * in the {@link ELContext} using {@link LazyEvalContext} as the key.
+ */
 public class VariableResolver extends ELResolver {
 
-    private final Variables variables;
-
-    public VariableResolver(Variables variables) {
-        this.variables = variables;
-    }
-
-    public VariableResolver(Map<String, Object> variables) {
-        this.variables = new MapBackedVariables(variables);
-    }
-
     @Override
     public Class<?> getCommonPropertyType(ELContext context, Object base) {
         return Object.class;
@@ -61,6 +58,15 @@ public class VariableResolver extends ELResolver {
         if (base == null && property instanceof String) {
             String k = (String) property;
 
+            LazyEvalContext evalContext = (LazyEvalContext) context.getContext(LazyEvalContext.class);
+
+            LazyEvalMap scope = evalContext.scope();
+            if (scope != null && scope.containsKey(k)) {
+                context.setPropertyResolved(true);
+                return scope.get(k);
+            }
+
+            Variables variables = evalContext.variables();
             if (variables.has(k)) {
                 context.setPropertyResolved(true);
                 return variables.get(k);
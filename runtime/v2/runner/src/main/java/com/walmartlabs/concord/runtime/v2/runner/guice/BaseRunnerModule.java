@@ -38,6 +38,8 @@ import com.walmartlabs.concord.runtime.v2.sdk.Context;
 import com.walmartlabs.concord.runtime.v2.sdk.FileService;
 import com.walmartlabs.concord.runtime.v2.sdk.TaskProvider;
 
+import javax.inject.Singleton;
+
 /**
  * Contains basic services that can work in anyenvironment (unit tests, actual runtime, CLI, etc).
  */
@@ -50,7 +52,8 @@ public class BaseRunnerModule extends AbstractModule {
         bind(Compiler.class).to(DefaultCompiler.class);
         bind(PolicyEngine.class).toProvider(PolicyEngineProvider.class);
         bind(SynchronizationService.class).to(DefaultSynchronizationService.class);
-        bind(ExpressionEvaluator.class).to(DefaultExpressionEvaluator.class);
+        // a singleton to share the parsed expressions between the callers
+        bind(ExpressionEvaluator.class).to(DefaultExpressionEvaluator.class).in(Singleton.class);
         bind(ScriptEvaluator.class).to(DefaultScriptEvaluator.class);
         bind(ResourceResolver.class).to(DefaultResourceResolver.class);
         bind(TaskResultService.class);
@@ -0,0 +1,141 @@
+package com.walmartlabs.concord.runtime.v2.runner.remote;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import com.walmartlabs.concord.runtime.common.injector.InstanceId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends process events to the server in batches using a background thread.
+ * <p>
+ * The events are kept in a bounded queue. When the queue is full the callers
+ * are blocked until the sender catches up.
+ * <p>
+ * {@link #flush()} must be called before the process suspends or exits,
+ * otherwise the queued events might be lost.
+ */
+@Singleton
+public class ProcessEventRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessEventRecorder.class);
+
+    private static final int MAX_QUEUE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final long MAX_BATCH_AGE = 1000;
+
+    private final ProcessEventsApi eventsApi;
+    private final UUID instanceId;
+    private final int maxBatchSize;
+    private final long maxBatchAge;
+
+    private final BlockingQueue<ProcessEventRequest> queue;
+    private final Object sendLock = new Object();
+
+    private Thread sender;
+
+    @Inject
+    public ProcessEventRecorder(ApiClient apiClient, InstanceId instanceId) {
+        this(new ProcessEventsApi(apiClient), instanceId.getValue(), MAX_QUEUE_SIZE, MAX_BATCH_SIZE, MAX_BATCH_AGE);
+    }
+
+    public ProcessEventRecorder(ProcessEventsApi eventsApi, UUID instanceId, int maxQueueSize, int maxBatchSize, long maxBatchAge) {
+        this.eventsApi = eventsApi;
+        this.instanceId = instanceId;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchAge = maxBatchAge;
+        this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+    }
+
+    public void record(ProcessEventRequest req) {
+        Thread t = startSender();
+
+        try {
+            queue.put(req);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("record -> interrupted, the event is not recorded: {}", req.getEventType());
+            return;
+        }
+
+        if (queue.size() >= maxBatchSize) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Sends all queued events. Waits for the batch currently being sent
+     * by the background thread (if any).
+     */
+    public void flush() {
+        sendQueued();
+    }
+
+    private synchronized Thread startSender() {
+        if (sender == null) {
+            sender = new Thread(this::run, "process-event-recorder");
+            sender.setDaemon(true);
+            sender.start();
+        }
+        return sender;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(maxBatchAge));
+            sendQueued();
+        }
+    }
+
+    private void sendQueued() {
+        synchronized (sendLock) {
+            List<ProcessEventRequest> batch = new ArrayList<>(maxBatchSize);
+            while (queue.drainTo(batch, maxBatchSize) > 0) {
+                send(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<ProcessEventRequest> batch) {
+        try {
+            eventsApi.batchEvent(instanceId, batch);
+        } catch (ApiException e) {
+            log.warn("send -> error while sending {} event(s) to the server: {}", batch.size(), e.getMessage());
+        } catch (Exception e) {
+            log.warn("send -> unexpected error while sending {} event(s) to the server: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+}
@@ -46,7 +46,11 @@ public class ParallelCommand extends StepCommand<ParallelBlock> {
         // parallel execution consist of "forks" for each command running in separate threads
         // and a combined "join" executing in the parent (current) thread
 
-        List<Map.Entry<ThreadId, Command>> forks = commands.stream()
+        // with the "parallelism" option the commands are distributed between
+        // a limited number of forks, each fork runs its commands sequentially
+        List<List<Command>> groups = partition(commands, getStep().getOptions().parallelism());
+
+        List<Map.Entry<ThreadId, List<Command>>> forks = groups.stream()
                 .map(e -> new AbstractMap.SimpleEntry<>(state.nextThreadId(), e))
                 .collect(Collectors.toList());
 
@@ -58,8 +62,34 @@ public class ParallelCommand extends StepCommand<ParallelBlock> {
         Collections.reverse(forks);
         forks.forEach(f -> {
             // each new frame executes it's own copy of ProcessOutVariablesCommand after the user's command is completed
-            Command cmd = new ForkCommand(f.getKey(), new CopyVariablesCommand(outVars, null, frame), f.getValue());
+            // the commands are pushed in reverse order: the first command in the array is executed last
+            List<Command> cmds = new ArrayList<>();
+            for (int i = f.getValue().size() - 1; i >= 0; i--) {
+                cmds.add(new CopyVariablesCommand(outVars, null, frame));
+                cmds.add(f.getValue().get(i));
+            }
+
+            Command cmd = new ForkCommand(f.getKey(), cmds.toArray(new Command[0]));
             frame.push(cmd);
         });
     }
+
+    private static List<List<Command>> partition(List<Command> commands, Integer parallelism) {
+        int n = commands.size();
+        if (parallelism != null && parallelism > 0 && parallelism < n) {
+            n = parallelism;
+        }
+
+        List<List<Command>> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(new ArrayList<>());
+        }
+
+        // round-robin, so the first commands are started first
+        for (int i = 0; i < commands.size(); i++) {
+            result.get(i % n).add(commands.get(i));
+        }
+
+        return result;
+    }
 }
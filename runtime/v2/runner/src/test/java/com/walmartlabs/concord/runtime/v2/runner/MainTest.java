@@ -675,6 +675,17 @@ public class MainTest {
         assertLog(log, ".*y: 234.*");
     }
 
+    @Test
+    public void testParallelism() throws Exception {
+        deploy("parallelism");
+
+        save(ProcessConfiguration.builder()
+                .build());
+
+        byte[] log = run();
+        assertLog(log, ".*result: 12345.*");
+    }
+
     @Test
     public void testReentrant() throws Exception {
         deploy("reentrantTask");
@@ -0,0 +1,117 @@
+package com.walmartlabs.concord.runtime.v2.runner.el;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProviders;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates a typical task {@code in} map, the same way the runner does it
+ * for each {@code withItems} iteration.
+ * <p>
+ * {@code sharedEvaluator} reuses the parsed expressions and the resolvers,
+ * {@code newEvaluator} creates a new evaluator for each call (a cold
+ * expression cache).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionEvaluatorBenchmark {
+
+    private TaskProviders taskProviders;
+    private ExpressionEvaluator evaluator;
+    private Map<String, Object> input;
+    private List<EvalContext> contexts;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        taskProviders = new TaskProviders();
+        evaluator = new DefaultExpressionEvaluator(taskProviders);
+        input = createInput();
+
+        contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contexts.add(EvalContextFactory.scope(new SingleFrameContext(createVariables(i))));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> sharedEvaluator() {
+        return evaluator.evalAsMap(nextContext(), input);
+    }
+
+    @Benchmark
+    public Map<String, Object> newEvaluator() {
+        ExpressionEvaluator ee = new DefaultExpressionEvaluator(taskProviders);
+        return ee.evalAsMap(nextContext(), input);
+    }
+
+    private EvalContext nextContext() {
+        return contexts.get(counter++ % contexts.size());
+    }
+
+    private static Map<String, Object> createInput() {
+        Map<String, Object> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer ${apiToken}");
+        headers.put("X-Request-Id", "${txId}");
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "${item.name}");
+        body.put("description", "Item #${itemIndex}: ${item.name} (${item.tags.size()} tags)");
+        body.put("tags", "${item.tags}");
+        body.put("enabled", "${item.enabled && itemIndex % 2 == 0}");
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("url", "${baseUrl}/api/v1/items/${item.id}");
+        m.put("method", "POST");
+        m.put("headers", headers);
+        m.put("body", body);
+        m.put("retryCount", "${retries + 1}");
+        m.put("ignoreErrors", "${hasVariable('ignoreErrors') ? ignoreErrors : false}");
+        m.put("request", "json");
+        return m;
+    }
+
+    private static Map<String, Object> createVariables(int i) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", UUID.randomUUID().toString());
+        item.put("name", "item-" + i);
+        item.put("tags", Arrays.asList("a", "b", "c"));
+        item.put("enabled", true);
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("txId", UUID.randomUUID().toString());
+        m.put("apiToken", "secret");
+        m.put("baseUrl", "https://example.com");
+        m.put("retries", 3);
+        m.put("item", item);
+        m.put("itemIndex", i);
+        return m;
+    }
+}
@@ -371,6 +371,25 @@ public class ExpressionEvaluatorTest {
         assertEquals(vars, result);
     }
 
+    @Test
+    public void testSameExpressionDifferentContexts() {
+        ExpressionEvaluator ee = new DefaultExpressionEvaluator(new TaskProviders());
+
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put("msg", "Hello, ${name}");
+        input.put("text", "${msg}!");
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> vars = Collections.singletonMap("name", "name" + i);
+
+            // the same (cached) expressions, but different variables
+            assertEquals("Hello, name" + i, ee.eval(global(vars), "Hello, ${name}", String.class));
+
+            Map<String, Object> output = ee.evalAsMap(scope(vars), input);
+            assertEquals("Hello, name" + i + "!", output.get("text"));
+        }
+    }
+
     private static EvalContext global(Map<String, Object> vars) {
         return EvalContextFactory.global(new SingleFrameContext(vars));
     }
@@ -0,0 +1,89 @@
+package com.walmartlabs.concord.runtime.v2.runner.remote;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProcessEventRecorderTest {
+
+    @Test
+    public void testFlush() throws Exception {
+        UUID instanceId = UUID.randomUUID();
+
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        ProcessEventsApi eventsApi = mock(ProcessEventsApi.class);
+        doAnswer(invocation -> {
+            List<ProcessEventRequest> batch = invocation.getArgument(1);
+            batch.forEach(e -> received.add(e.getEventType()));
+            return null;
+        }).when(eventsApi).batchEvent(eq(instanceId), any());
+
+        // a long batch age, only the full batches and flush() should send the events
+        ProcessEventRecorder recorder = new ProcessEventRecorder(eventsApi, instanceId, 10, 3, 60_000);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            recorder.record(event("e" + i));
+            expected.add("e" + i);
+        }
+
+        recorder.flush();
+
+        assertEquals(expected, received);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        UUID instanceId = UUID.randomUUID();
+
+        ProcessEventsApi eventsApi = mock(ProcessEventsApi.class);
+        doThrow(new ApiException("boom")).when(eventsApi).batchEvent(eq(instanceId), any());
+
+        ProcessEventRecorder recorder = new ProcessEventRecorder(eventsApi, instanceId, 10, 3, 60_000);
+        for (int i = 0; i < 25; i++) {
+            recorder.record(event("e" + i));
+        }
+
+        // the failed batches are dropped, the recording must not stop
+        recorder.flush();
+
+        verify(eventsApi, atLeast(9)).batchEvent(eq(instanceId), any());
+    }
+
+    private static ProcessEventRequest event(String type) {
+        ProcessEventRequest req = new ProcessEventRequest();
+        req.setEventType(type);
+        return req;
+    }
+}
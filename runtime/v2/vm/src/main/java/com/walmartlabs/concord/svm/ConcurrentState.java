@@ -0,0 +1,256 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory implementation of {@link State} without a global lock.
+ * Same as {@link InMemoryState}, but each thread has its own lock-free
+ * frame stack and the rest of the state is kept in concurrent maps,
+ * so the "vm" threads running in parallel don't contend with each other.
+ */
+public class ConcurrentState implements Serializable, State {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentState.class);
+
+    private final Map<ThreadId, FrameStack> frames = new ConcurrentHashMap<>();
+    private final Map<ThreadId, ThreadStatus> threadStatus = new ConcurrentHashMap<>();
+    private final Map<ThreadId, Set<ThreadId>> children = new ConcurrentHashMap<>();
+    private final Map<ThreadId, String> eventRefs = new ConcurrentHashMap<>();
+    private final Map<ThreadId, Exception> threadErrors = new ConcurrentHashMap<>();
+
+    private final ThreadId rootThreadId;
+
+    private final AtomicLong threadIdSeq = new AtomicLong();
+
+    public ConcurrentState(Frame rootFrame) {
+        this.rootThreadId = nextThreadId();
+        pushFrame(rootThreadId, rootFrame);
+    }
+
+    public ConcurrentState(Command cmd) {
+        this(Frame.builder()
+                .root()
+                .commands(cmd)
+                .build());
+    }
+
+    @Override
+    public void pushFrame(ThreadId threadId, Frame frame) {
+        log.trace("pushFrame {}", threadId);
+
+        frames.computeIfAbsent(threadId, key -> new FrameStack())
+                .push(frame);
+    }
+
+    @Override
+    public Frame peekFrame(ThreadId threadId) {
+        FrameStack s = frames.get(threadId);
+        if (s == null) {
+            return null;
+        }
+
+        return s.peek();
+    }
+
+    @Override
+    public void popFrame(ThreadId threadId) {
+        log.trace("popFrame {}", threadId);
+
+        FrameStack s = frames.get(threadId);
+        if (s == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        s.pop();
+    }
+
+    @Override
+    public List<Frame> getFrames(ThreadId threadId) {
+        FrameStack s = frames.get(threadId);
+        if (s == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        return s.asList();
+    }
+
+    @Override
+    public void dropAllFrames() {
+        frames.clear();
+    }
+
+    @Override
+    public void setStatus(ThreadId threadId, ThreadStatus status) {
+        threadStatus.put(threadId, status);
+    }
+
+    @Override
+    public ThreadStatus getStatus(ThreadId threadId) {
+        return threadStatus.get(threadId);
+    }
+
+    @Override
+    public ThreadId getRootThreadId() {
+        return rootThreadId;
+    }
+
+    @Override
+    public void fork(ThreadId parentThreadId, ThreadId threadId, Command... cmds) {
+        pushFrame(threadId, Frame.builder()
+                .root()
+                .commands(cmds)
+                .build());
+
+        children.computeIfAbsent(parentThreadId, k -> ConcurrentHashMap.newKeySet())
+                .add(threadId);
+
+        // the thread becomes visible as READY only when its frame is in place
+        setStatus(threadId, ThreadStatus.READY);
+    }
+
+    @Override
+    public Map<ThreadId, ThreadStatus> threadStatus() {
+        return new HashMap<>(threadStatus);
+    }
+
+    @Override
+    public ThreadId nextThreadId() {
+        return new ThreadId(threadIdSeq.getAndIncrement());
+    }
+
+    @Override
+    public void setEventRef(ThreadId threadId, String eventRef) {
+        // TODO check for uniqueness
+
+        String old = eventRefs.put(threadId, eventRef);
+        if (old != null) {
+            throw new IllegalStateException("Thread " + threadId + " already had an unprocessed event ref registered: " + old);
+        }
+    }
+
+    @Override
+    public ThreadId removeEventRef(String eventRef) {
+        for (Map.Entry<ThreadId, String> e : eventRefs.entrySet()) {
+            if (eventRef.equals(e.getValue()) && eventRefs.remove(e.getKey(), e.getValue())) {
+                return e.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Map<ThreadId, String> getEventRefs() {
+        return Collections.unmodifiableMap(eventRefs);
+    }
+
+    @Override
+    public void setThreadError(ThreadId threadId, Exception error) {
+        threadErrors.put(threadId, error);
+    }
+
+    @Override
+    public Exception clearThreadError(ThreadId threadId) {
+        return threadErrors.remove(threadId);
+    }
+
+    @Override
+    public void gc() {
+        List<ThreadId> l = new ArrayList<>();
+        for (Map.Entry<ThreadId, ThreadStatus> e : threadStatus.entrySet()) {
+            ThreadStatus s = e.getValue();
+            if (s == ThreadStatus.DONE || (s == ThreadStatus.FAILED && !threadErrors.containsKey(e.getKey()))) {
+                l.add(e.getKey());
+            }
+        }
+
+        for (ThreadId k : l) {
+            threadErrors.remove(k);
+            threadStatus.remove(k);
+            frames.remove(k);
+            eventRefs.remove(k);
+            children.remove(k);
+        }
+    }
+
+    /**
+     * A stack of frames backed by an immutable array. The most recent frame
+     * is the first element. Reads don't require any locking, modifications
+     * replace the array using CAS. The stacks are shallow, so copying is
+     * cheaper than locking.
+     */
+    private static final class FrameStack implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Frame[] EMPTY = new Frame[0];
+
+        private final AtomicReference<Frame[]> ref = new AtomicReference<>(EMPTY);
+
+        public void push(Frame frame) {
+            while (true) {
+                Frame[] current = ref.get();
+
+                Frame[] next = new Frame[current.length + 1];
+                next[0] = frame;
+                System.arraycopy(current, 0, next, 1, current.length);
+
+                if (ref.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        public Frame peek() {
+            Frame[] current = ref.get();
+            return current.length > 0 ? current[0] : null;
+        }
+
+        public void pop() {
+            while (true) {
+                Frame[] current = ref.get();
+                if (current.length == 0) {
+                    throw new IllegalStateException("The frame stack is empty");
+                }
+
+                if (ref.compareAndSet(current, Arrays.copyOfRange(current, 1, current.length))) {
+                    return;
+                }
+            }
+        }
+
+        public List<Frame> asList() {
+            // the array is never modified, no need to copy it
+            return Collections.unmodifiableList(Arrays.asList(ref.get()));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentStateTest {
+
+    @Test
+    public void testFrames() {
+        Frame root = Frame.builder().root().build();
+        State state = new ConcurrentState(root);
+        ThreadId threadId = state.getRootThreadId();
+
+        Frame inner = Frame.builder().nonRoot().build();
+        state.pushFrame(threadId, inner);
+
+        assertSame(inner, state.peekFrame(threadId));
+
+        List<Frame> frames = state.getFrames(threadId);
+        assertEquals(2, frames.size());
+        assertSame(inner, frames.get(0));
+        assertSame(root, frames.get(1));
+
+        state.popFrame(threadId);
+        assertSame(root, state.peekFrame(threadId));
+
+        // the previously returned list is a snapshot
+        assertEquals(2, frames.size());
+
+        state.popFrame(threadId);
+        assertNull(state.peekFrame(threadId));
+    }
+
+    @Test
+    public void testForkAndGc() {
+        State state = new ConcurrentState(Frame.builder().root().build());
+
+        ThreadId child = state.nextThreadId();
+        state.fork(state.getRootThreadId(), child, new NoopCommand());
+        assertEquals(ThreadStatus.READY, state.getStatus(child));
+        assertNotNull(state.peekFrame(child).peek());
+
+        state.setEventRef(child, "ev1");
+        assertEquals(child, state.removeEventRef("ev1"));
+        assertNull(state.removeEventRef("ev1"));
+
+        state.setStatus(child, ThreadStatus.DONE);
+        state.gc();
+
+        Map<ThreadId, ThreadStatus> status = state.threadStatus();
+        assertFalse(status.containsKey(child));
+        assertNull(state.peekFrame(child));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        State state = new ConcurrentState(new NoopCommand());
+        ThreadId child = state.nextThreadId();
+        state.fork(state.getRootThreadId(), child, new NoopCommand());
+        state.setStatus(child, ThreadStatus.SUSPENDED);
+        state.setEventRef(child, "ev1");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(state);
+        }
+
+        State restored;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            restored = (State) in.readObject();
+        }
+
+        assertEquals(state.getRootThreadId(), restored.getRootThreadId());
+        assertEquals(ThreadStatus.SUSPENDED, restored.getStatus(child));
+        assertEquals(1, restored.getFrames(child).size());
+        assertEquals(child, restored.removeEventRef("ev1"));
+
+        // the sequence continues after the restored IDs
+        ThreadId next = restored.nextThreadId();
+        assertNotEquals(child, next);
+        assertNotEquals(restored.getRootThreadId(), next);
+    }
+
+    private static class NoopCommand implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+        }
+    }
+}
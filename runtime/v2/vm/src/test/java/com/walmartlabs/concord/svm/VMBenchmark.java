@@ -0,0 +1,138 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link VM#eval(Runtime, State, ThreadId)} throughput with
+ * multiple "vm" threads running in parallel, similar to wide {@code parallel}
+ * blocks or {@code withItems} with {@code parallelism}.
+ * <p>
+ * Each thread runs {@link #COMMANDS} simple commands that peek the current
+ * frame, look up the frames stack (as variable lookups do) and pop.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class VMBenchmark {
+
+    private static final int COMMANDS = 1000;
+
+    @Param({"1", "8", "64"})
+    public int threads;
+
+    @Param({"inMemory", "concurrent"})
+    public String stateType;
+
+    private VM vm;
+    private Runtime runtime;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        vm = new VM(v -> runtime, Collections.emptyList());
+        runtime = new Runtime() {
+            @Override
+            public void spawn(State state, ThreadId threadId) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <T> T getService(Class<T> klass) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public State eval() throws Exception {
+        State state = createState();
+
+        Command[] cmds = new Command[COMMANDS];
+        for (int i = 0; i < cmds.length; i++) {
+            cmds[i] = new NoopCommand();
+        }
+
+        List<ThreadId> ids = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            ThreadId id = state.nextThreadId();
+            state.fork(state.getRootThreadId(), id, cmds);
+            ids.add(id);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (ThreadId id : ids) {
+            futures.add(executor.submit(() -> {
+                vm.eval(runtime, state, id);
+                return null;
+            }));
+        }
+
+        for (Future<?> f : futures) {
+            f.get();
+        }
+
+        return state;
+    }
+
+    private State createState() {
+        Frame root = Frame.builder()
+                .root()
+                .build();
+
+        if ("concurrent".equals(stateType)) {
+            return new ConcurrentState(root);
+        }
+        return new InMemoryState(root);
+    }
+
+    private static class NoopCommand implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            Frame frame = state.peekFrame(threadId);
+            frame.pop();
+
+            // most commands look up variables in the frames stack
+            state.getFrames(threadId);
+        }
+    }
+}
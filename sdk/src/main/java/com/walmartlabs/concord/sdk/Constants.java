@@ -569,6 +569,12 @@ public class Constants {
         public static final String SESSION_TOKEN = "X-Concord-SessionToken";
 
         public static final String SECRET_TYPE = "X-Concord-SecretType";
+
+        /**
+         * Set on ZIP responses that store the files' unix modes in
+         * the local file headers, i.e. can be unpacked as a stream.
+         */
+        public static final String STREAMABLE_ZIP = "X-Concord-StreamableZip";
     }
 
     /**
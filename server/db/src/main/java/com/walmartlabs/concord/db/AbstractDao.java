@@ -25,15 +25,32 @@ import org.jooq.DSLContext;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.jooq.tools.jdbc.JDBCUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 public abstract class AbstractDao {
 
+    private static final Logger log = LoggerFactory.getLogger(AbstractDao.class);
+
+    /**
+     * Callbacks registered with {@link #afterCommit(DSLContext, Runnable)}
+     * for the transactions started on the current thread.
+     */
+    private static final ThreadLocal<Map<Configuration, List<Runnable>>> afterCommitCallbacks = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private static final AtomicLong afterCommitErrors = new AtomicLong();
+
     protected final Configuration cfg;
 
     protected AbstractDao(Configuration cfg) {
@@ -45,17 +62,74 @@ public abstract class AbstractDao {
     }
 
     protected void tx(Tx t) {
+        List<Runnable> callbacks = new ArrayList<>();
         dsl().transaction(cfg -> {
-            DSLContext tx = DSL.using(cfg);
-            t.run(tx);
+            Map<Configuration, List<Runnable>> m = afterCommitCallbacks.get();
+            m.put(cfg, callbacks);
+            try {
+                DSLContext tx = DSL.using(cfg);
+                t.run(tx);
+            } finally {
+                m.remove(cfg);
+            }
         });
+        runCallbacks(callbacks);
     }
 
     protected <T> T txResult(TxResult<T> t) {
-        return dsl().transactionResult(cfg -> {
-            DSLContext tx = DSL.using(cfg);
-            return t.run(tx);
+        List<Runnable> callbacks = new ArrayList<>();
+        T result = dsl().transactionResult(cfg -> {
+            Map<Configuration, List<Runnable>> m = afterCommitCallbacks.get();
+            m.put(cfg, callbacks);
+            try {
+                DSLContext tx = DSL.using(cfg);
+                return t.run(tx);
+            } finally {
+                m.remove(cfg);
+            }
         });
+        runCallbacks(callbacks);
+        return result;
+    }
+
+    /**
+     * Runs the callback after the specified transaction is successfully
+     * committed. The callback is discarded if the transaction is rolled back.
+     * All callbacks are executed even if some of them fail. The errors are
+     * logged and counted (see {@link #getAfterCommitErrorCount()}), but not
+     * rethrown: the data is already committed and the caller shouldn't
+     * retry the transaction.
+     * <p>
+     * If the transaction wasn't started using {@link #tx(Tx)} or
+     * {@link #txResult(TxResult)} the callback is executed immediately.
+     */
+    public static void afterCommit(DSLContext tx, Runnable callback) {
+        List<Runnable> callbacks = afterCommitCallbacks.get().get(tx.configuration());
+        if (callbacks == null) {
+            callback.run();
+            return;
+        }
+
+        callbacks.add(callback);
+    }
+
+    /**
+     * Returns the number of failed {@link #afterCommit(DSLContext, Runnable)} callbacks.
+     */
+    public static long getAfterCommitErrorCount() {
+        return afterCommitErrors.get();
+    }
+
+    private static void runCallbacks(List<Runnable> callbacks) {
+        for (Runnable r : callbacks) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                // the transaction is already committed, run the rest of the callbacks
+                afterCommitErrors.incrementAndGet();
+                log.error("runCallbacks -> error: {}", e.getMessage(), e);
+            }
+        }
     }
 
     protected InputStream getData(Function<DSLContext, String> sqlFn, PreparedStatementHandler h, int columnIndex) {
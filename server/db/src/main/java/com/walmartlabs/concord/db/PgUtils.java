@@ -66,10 +66,21 @@ public final class PgUtils {
         return DSL.condition("{0} @> {1}", field, DSL.value(value));
     }
 
+    public static Field<Integer> lowerRange(Field<Object> field) {
+        return DSL.field("lower({0})", Integer.class, field);
+    }
+
     public static Field<Integer> upperRange(Field<Object> field) {
         return DSL.field("upper({0})", Integer.class, field);
     }
 
+    /**
+     * {@code field && int4range(lower, upper)}
+     */
+    public static Condition rangeOverlaps(Field<Object> field, int lower, int upper) {
+        return DSL.condition("{0} && int4range({1}, {2})", field, DSL.val(lower), DSL.val(upper));
+    }
+
     public static Field<Long> length(Field<byte[]> field) {
         return DSL.field("length({0})", Long.class, field);
     }
@@ -20,6 +20,10 @@ package com.walmartlabs.concord.server;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.SinkQueue.OverflowPolicy;
+import com.walmartlabs.concord.server.cfg.ListenersConfiguration;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
 import com.walmartlabs.concord.server.sdk.audit.AuditEvent;
 import com.walmartlabs.concord.server.sdk.audit.AuditLogListener;
 import com.walmartlabs.concord.server.sdk.events.ProcessEvent;
@@ -33,14 +37,24 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.Serializable;
 import java.time.Duration;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
-
+import java.util.function.Consumer;
+
+/**
+ * Delivers process events, process logs and audit events to the registered
+ * listeners ("sinks").
+ * <p>
+ * If {@code listeners.async} is enabled, each sink gets its own {@link SinkQueue}:
+ * the data is delivered in batches by a separate thread and a slow sink doesn't
+ * affect the callers or the other sinks. Otherwise the callers wait for
+ * the listeners (up to {@link #MAX_LISTENER_TIME}) and get the listener's errors.
+ */
 @Named
 @Singleton
-public class Listeners {
+public class Listeners implements BackgroundTask {
 
     private static final Logger log = LoggerFactory.getLogger(Listeners.class);
 
@@ -48,57 +62,104 @@ public class Listeners {
 
     private static final Duration MAX_LISTENER_TIME = Duration.ofSeconds(3);
 
-    private final Collection<ProcessEventListener> eventListeners;
-    private final Collection<ProcessLogListener> logListeners;
-    private final Collection<AuditLogListener> auditLogListeners;
+    private final List<Consumer<List<ProcessEvent>>> eventSinks = new ArrayList<>();
+    private final List<Consumer<List<ProcessLogEntry>>> logSinks = new ArrayList<>();
+    private final List<Consumer<List<AuditEvent>>> auditLogSinks = new ArrayList<>();
 
-    private final ForkJoinPool eventListenerPool;
-    private final ForkJoinPool logListenerPool;
-    private final ForkJoinPool auditLogListenerPool;
+    private final List<SinkQueue<?>> queues = new ArrayList<>();
 
-    @Inject
+    private final ListenersConfiguration cfg;
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * Used to call the listeners when {@code listeners.async} is disabled.
+     */
+    private final ForkJoinPool syncPool;
+
+    /**
+     * Creates an instance that calls the listeners synchronously.
+     */
     public Listeners(Collection<ProcessEventListener> eventListeners,
                      Collection<ProcessLogListener> logListeners,
                      Collection<AuditLogListener> auditLogListeners) {
 
-        this.eventListeners = eventListeners;
-        eventListeners.forEach(l -> log.info("Using process event listener: {}", l));
+        this(eventListeners, logListeners, auditLogListeners, null, null);
+    }
+
+    @Inject
+    public Listeners(Collection<ProcessEventListener> eventListeners,
+                     Collection<ProcessLogListener> logListeners,
+                     Collection<AuditLogListener> auditLogListeners,
+                     ListenersConfiguration cfg,
+                     MetricRegistry metricRegistry) {
+
+        this.cfg = cfg != null && cfg.isAsync() ? cfg : null;
+        this.metricRegistry = metricRegistry;
+        this.syncPool = this.cfg == null ? new ForkJoinPool(MAX_LISTENER_THREADS) : null;
 
-        this.logListeners = logListeners;
-        logListeners.forEach(l -> log.info("Using process log listener: {}", l));
+        for (ProcessEventListener l : eventListeners) {
+            log.info("Using process event listener: {}", l);
+            eventSinks.add(sink("process-events", l, l::onEvents));
+        }
+
+        for (ProcessLogListener l : logListeners) {
+            log.info("Using process log listener: {}", l);
+            logSinks.add(sink("process-logs", l, l::onAppendBatch));
+        }
 
-        this.auditLogListeners = auditLogListeners;
-        auditLogListeners.forEach(l -> log.info("Using audit log listener: {}", l));
+        for (AuditLogListener l : auditLogListeners) {
+            log.info("Using audit log listener: {}", l);
+            auditLogSinks.add(sink("audit-log", l, l::onEventBatch));
+        }
+    }
 
-        this.eventListenerPool = new ForkJoinPool(MAX_LISTENER_THREADS);
-        this.logListenerPool = new ForkJoinPool(MAX_LISTENER_THREADS);
-        this.auditLogListenerPool = new ForkJoinPool(MAX_LISTENER_THREADS);
+    @Override
+    public void start() {
+        queues.forEach(SinkQueue::start);
+    }
+
+    @Override
+    public void stop() {
+        queues.forEach(SinkQueue::stop);
+
+        if (syncPool != null) {
+            syncPool.shutdown();
+        }
     }
 
     @WithTimer
     public void onProcessEvent(List<ProcessEvent> events) {
-        ForkJoinTask<?> task = eventListenerPool.submit(() -> {
-            eventListeners.parallelStream().forEach(l -> l.onEvents(events));
-        });
+        if (events.isEmpty()) {
+            return;
+        }
 
-        waitFor(task);
+        deliver(eventSinks, events);
     }
 
     @WithTimer
     public void onProcessLogAppend(ProcessLogEntry entry) {
-        ForkJoinTask<?> task = logListenerPool.submit(() -> {
-            logListeners.parallelStream().forEach(l -> l.onAppend(entry));
-        });
-
-        waitFor(task);
+        deliver(logSinks, Collections.singletonList(entry));
     }
 
     @WithTimer
     public void onAuditEvent(AuditEvent event) {
-        ForkJoinTask<?> task = auditLogListenerPool.submit(() -> {
-            auditLogListeners.parallelStream().forEach(l -> l.onEvent(event));
-        });
+        deliver(auditLogSinks, Collections.singletonList(event));
+    }
 
+    private <T> void deliver(List<Consumer<List<T>>> sinks, List<T> items) {
+        if (syncPool == null) {
+            // async mode, just add the items to the queues
+            for (Consumer<List<T>> s : sinks) {
+                s.accept(items);
+            }
+            return;
+        }
+
+        if (sinks.isEmpty()) {
+            return;
+        }
+
+        ForkJoinTask<?> task = syncPool.submit(() -> sinks.parallelStream().forEach(s -> s.accept(items)));
         waitFor(task);
     }
 
@@ -109,4 +170,44 @@ public class Listeners {
             throw new RuntimeException(e);
         }
     }
+
+    private <T extends Serializable> Consumer<List<T>> sink(String type, Object listener, Consumer<List<T>> delegate) {
+        if (cfg == null) {
+            return delegate;
+        }
+
+        // use the full class name, the simple names of different listeners can be the same
+        Class<?> listenerClass = listener.getClass();
+        String sinkName = listenerClass.getName();
+        Map<String, Object> sinkCfg = cfg.getSinkCfg(listenerClass);
+
+        int queueSize = getInt(sinkCfg, "queueSize", cfg.getQueueSize());
+        int batchSize = getInt(sinkCfg, "batchSize", cfg.getBatchSize());
+        OverflowPolicy policy = OverflowPolicy.valueOf(getString(sinkCfg, "overflowPolicy", cfg.getOverflowPolicy()).toUpperCase());
+
+        SinkQueue<T> q = new SinkQueue<>(type + "-" + sinkName, delegate,
+                queueSize, batchSize, policy, cfg.getBlockTimeout().toMillis(),
+                cfg.getSpillDir(), cfg.getSpillMaxSize(), metricRegistry);
+
+        log.info("sink [{}, {}] -> queueSize: {}, batchSize: {}, overflowPolicy: {}", type, sinkName, queueSize, batchSize, policy);
+
+        queues.add(q);
+        return q::offerAll;
+    }
+
+    private static int getInt(Map<String, Object> m, String k, int defaultValue) {
+        Object v = m.get(k);
+        if (v == null) {
+            return defaultValue;
+        }
+        if (v instanceof Number) {
+            return ((Number) v).intValue();
+        }
+        return Integer.parseInt(v.toString());
+    }
+
+    private static String getString(Map<String, Object> m, String k, String defaultValue) {
+        Object v = m.get(k);
+        return v != null ? v.toString() : defaultValue;
+    }
 }
@@ -30,6 +30,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.sql.CallableStatement;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Locking mechanism based on DB (advisory) locks
@@ -51,6 +54,23 @@ public class Locks {
         lock(tx, hash(key));
     }
 
+    /**
+     * Takes the locks for all specified keys. Multiple keys can map to
+     * the same advisory lock, each lock is taken only once. The locks are
+     * taken in ascending order, so concurrent transactions with overlapping
+     * sets of keys can't deadlock.
+     */
+    public void lockAll(DSLContext tx, Collection<String> keys) {
+        SortedSet<Long> l = new TreeSet<>();
+        for (String k : keys) {
+            l.add(hash(k));
+        }
+
+        for (long k : l) {
+            lock(tx, k);
+        }
+    }
+
     @WithTimer
     public void lock(DSLContext tx, long key) {
         tx.connection(conn -> {
@@ -65,7 +65,7 @@ public abstract class PeriodicTask implements BackgroundTask {
             try {
                 boolean isContinue = performTask();
                 if (!isContinue) {
-                    sleep(interval);
+                    idle(interval);
                 }
             } catch (Exception e) {
                 log.warn("run -> task {} error: {}. Will retry in {}ms...", taskName(), e.getMessage(), errorDelay, e);
@@ -80,6 +80,14 @@ public abstract class PeriodicTask implements BackgroundTask {
 
     protected abstract boolean performTask() throws Exception;
 
+    /**
+     * Called when {@link #performTask()} has nothing to do. Subclasses can
+     * override this method to wake up earlier than {@code interval} ms.
+     */
+    protected void idle(long interval) {
+        sleep(interval);
+    }
+
     protected static void sleep(long ms) {
         try {
             Thread.sleep(ms);
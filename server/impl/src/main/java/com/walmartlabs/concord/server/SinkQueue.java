@@ -0,0 +1,898 @@
+package com.walmartlabs.concord.server;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded asynchronous queue in front of a single listener ("sink").
+ * Entries are delivered in batches by a dedicated thread, so a slow sink
+ * doesn't add latency to the callers.
+ * <p>
+ * When the queue is full, the behaviour depends on the {@link OverflowPolicy}:
+ * <ul>
+ *     <li>{@code DROP} - new entries are discarded;</li>
+ *     <li>{@code BLOCK} - the caller waits up to {@code blockTimeout}, then the entry is discarded;</li>
+ *     <li>{@code SPILL} - new entries are written into a file (up to {@code spillMaxSize} bytes)
+ *     and delivered after the in-memory queue is drained. The order of entries is preserved.
+ *     The callers only serialize the entries, the file is written by a separate thread.</li>
+ * </ul>
+ * <p>
+ * On {@link #stop()} the remaining entries are delivered for up to {@link #STOP_TIMEOUT}.
+ * With the {@code SPILL} policy, whatever is left is saved into {@code <spillDir>/<name>.spill}
+ * and delivered after the next {@link #start()}. Until the spill file is fully drained,
+ * the entries read from it can be delivered again after a crash.
+ */
+public class SinkQueue<T extends Serializable> {
+
+    private static final Logger log = LoggerFactory.getLogger(SinkQueue.class);
+
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static final long POLL_INTERVAL = 100;
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK,
+        SPILL
+    }
+
+    private final String name;
+    private final Consumer<List<T>> sink;
+    private final BlockingQueue<Item<T>> queue;
+    private final int batchSize;
+    private final OverflowPolicy policy;
+    private final long blockTimeout;
+    private final long spillMaxSize;
+    private final Spill<T> spill;
+
+    private final Object lock = new Object();
+
+    /**
+     * Serialized overflow entries waiting to be written into the spill file.
+     * Guarded by {@link #lock}.
+     */
+    private final Deque<Record> pending = new ArrayDeque<>();
+
+    /**
+     * Size of the {@link #pending} records, including the ones being written.
+     * Guarded by {@link #lock}.
+     */
+    private long pendingBytes;
+
+    /**
+     * Number of entries in {@link #pending}, being written or in the spill file.
+     * While it is above zero, new entries bypass the in-memory queue.
+     * Guarded by {@link #lock}.
+     */
+    private int overflowCount;
+
+    /**
+     * Guarded by {@link #lock}.
+     */
+    private boolean closed;
+
+    private final Meter delivered;
+    private final Meter dropped;
+    private final Meter spilled;
+    private final Meter errors;
+    private final Timer deliveryTimer;
+
+    private volatile Thread worker;
+    private volatile Thread spillWriter;
+    private volatile boolean stopping;
+    private volatile boolean aborted;
+
+    public SinkQueue(String name,
+                     Consumer<List<T>> sink,
+                     int queueSize,
+                     int batchSize,
+                     OverflowPolicy policy,
+                     long blockTimeout,
+                     Path spillDir,
+                     long spillMaxSize,
+                     MetricRegistry metricRegistry) {
+
+        this.name = name;
+        this.sink = sink;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.policy = policy;
+        this.blockTimeout = blockTimeout;
+        this.spillMaxSize = spillMaxSize;
+        this.spill = policy == OverflowPolicy.SPILL ? new Spill<>(spillDir, name) : null;
+
+        String prefix = "listeners-" + name;
+        this.delivered = metricRegistry.meter(prefix + "-delivered");
+        this.dropped = metricRegistry.meter(prefix + "-dropped");
+        this.spilled = metricRegistry.meter(prefix + "-spilled");
+        this.errors = metricRegistry.meter(prefix + "-errors");
+        this.deliveryTimer = metricRegistry.timer(prefix + "-delivery");
+        metricRegistry.gauge(prefix + "-lag", () -> this::size);
+        metricRegistry.gauge(prefix + "-lag-ms", () -> this::lagMs);
+    }
+
+    public void start() {
+        stopping = false;
+        aborted = false;
+
+        if (spill != null) {
+            synchronized (spill) {
+                spill.open();
+            }
+
+            synchronized (lock) {
+                // the entries saved by the previous instance are delivered first
+                overflowCount = spill.size();
+                closed = false;
+            }
+
+            spillWriter = new Thread(this::writeSpill, "listeners-" + name + "-spill");
+            spillWriter.setDaemon(true);
+            spillWriter.start();
+        }
+
+        worker = new Thread(this::run, "listeners-" + name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        stop(STOP_TIMEOUT);
+    }
+
+    /**
+     * Stops the delivery. The remaining entries are delivered for up to
+     * {@code timeout} ms, then the delivery thread is interrupted and
+     * the undelivered entries are saved into the spill file (if enabled).
+     */
+    void stop(long timeout) {
+        Thread w = worker;
+        if (w == null) {
+            return;
+        }
+
+        worker = null;
+        stopping = true;
+
+        try {
+            w.join(timeout);
+            if (w.isAlive()) {
+                log.warn("stop [{}] -> {} entries weren't delivered in {}ms, interrupting...", name, size(), timeout);
+                aborted = true;
+                w.interrupt();
+                w.join(timeout);
+            }
+
+            Thread sw = spillWriter;
+            if (sw != null) {
+                spillWriter = null;
+                synchronized (lock) {
+                    closed = true;
+                    lock.notifyAll();
+                }
+                sw.join(timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (w.isAlive()) {
+            log.warn("stop [{}] -> the sink is not responding, the current batch is lost", name);
+        }
+
+        save();
+    }
+
+    public void offerAll(List<T> values) {
+        for (T v : values) {
+            offer(v);
+        }
+    }
+
+    public void offer(T value) {
+        Item<T> item = new Item<>(value, System.currentTimeMillis());
+
+        switch (policy) {
+            case DROP: {
+                if (!queue.offer(item)) {
+                    dropped.mark();
+                }
+                break;
+            }
+            case BLOCK: {
+                try {
+                    if (!queue.offer(item, blockTimeout, TimeUnit.MILLISECONDS)) {
+                        dropped.mark();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.mark();
+                }
+                break;
+            }
+            case SPILL: {
+                spill(item);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown overflow policy: " + policy);
+        }
+    }
+
+    /**
+     * Number of entries waiting to be delivered.
+     */
+    public int size() {
+        int result = queue.size();
+        if (spill != null) {
+            synchronized (lock) {
+                result += overflowCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Age of the oldest undelivered entry.
+     */
+    public long lagMs() {
+        // spilled entries are always newer than the queued ones
+        // and the pending entries are newer than the spilled ones
+        Item<T> head = queue.peek();
+
+        long enqueuedAt = 0;
+        if (head != null) {
+            enqueuedAt = head.enqueuedAt;
+        } else if (spill != null) {
+            enqueuedAt = spill.headEnqueuedAt();
+            if (enqueuedAt == 0) {
+                synchronized (lock) {
+                    Record r = pending.peek();
+                    enqueuedAt = r != null ? r.enqueuedAt : 0;
+                }
+            }
+        }
+
+        return enqueuedAt > 0 ? System.currentTimeMillis() - enqueuedAt : 0;
+    }
+
+    private void spill(Item<T> item) {
+        synchronized (lock) {
+            if (closed) {
+                dropped.mark();
+                return;
+            }
+
+            // once spilled, keep spilling until the file is drained
+            // otherwise the new entries will overtake the spilled ones
+            if (overflowCount == 0 && queue.offer(item)) {
+                return;
+            }
+        }
+
+        Record r;
+        try {
+            r = Record.of(item);
+        } catch (IOException e) {
+            log.warn("spill [{}] -> error while serializing an entry: {}", name, e.getMessage());
+            dropped.mark();
+            return;
+        }
+
+        synchronized (lock) {
+            if (closed || spill.sizeInBytes() + pendingBytes + r.size() > spillMaxSize) {
+                dropped.mark();
+                return;
+            }
+
+            pending.add(r);
+            pendingBytes += r.size();
+            overflowCount++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes the {@link #pending} records into the spill file.
+     */
+    private void writeSpill() {
+        while (true) {
+            List<Record> records;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                records = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            int failed = 0;
+            long bytes = 0;
+            synchronized (spill) {
+                for (Record r : records) {
+                    if (spill.append(r)) {
+                        spilled.mark();
+                    } else {
+                        failed++;
+                    }
+                    bytes += r.size();
+                }
+            }
+
+            synchronized (lock) {
+                pendingBytes -= bytes;
+                overflowCount -= failed;
+                lock.notifyAll();
+            }
+
+            if (failed > 0) {
+                dropped.mark(failed);
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!aborted) {
+                List<Item<T>> batch = new ArrayList<>(batchSize);
+                nextBatch(batch);
+
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                } else if (stopping && isDrained()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped while waiting for new entries
+        }
+    }
+
+    private void nextBatch(List<Item<T>> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize);
+        if (!batch.isEmpty()) {
+            return;
+        }
+
+        // the in-memory queue is empty, continue with the spilled entries (if any)
+        if (spill != null) {
+            int consumed;
+            synchronized (spill) {
+                consumed = spill.read(batch, batchSize);
+            }
+
+            synchronized (lock) {
+                overflowCount -= consumed;
+
+                if (batch.isEmpty() && overflowCount > 0) {
+                    // the entries are not in the file yet
+                    lock.wait(POLL_INTERVAL);
+                }
+            }
+
+            if (!batch.isEmpty() || consumed > 0) {
+                return;
+            }
+        }
+
+        Item<T> head = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (head != null) {
+            batch.add(head);
+            queue.drainTo(batch, batchSize - 1);
+        }
+    }
+
+    private boolean isDrained() {
+        if (!queue.isEmpty()) {
+            return false;
+        }
+
+        if (spill == null) {
+            return true;
+        }
+
+        synchronized (lock) {
+            return overflowCount == 0;
+        }
+    }
+
+    private void deliver(List<Item<T>> batch) {
+        List<T> values = new ArrayList<>(batch.size());
+        for (Item<T> i : batch) {
+            values.add(i.value);
+        }
+
+        Timer.Context ctx = deliveryTimer.time();
+        try {
+            sink.accept(values);
+            delivered.mark(values.size());
+        } catch (Exception e) {
+            errors.mark();
+            log.warn("deliver [{}] -> error while delivering {} entries: {}", name, values.size(), e.getMessage(), e);
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Saves the undelivered entries into the spill file (preserving the order)
+     * and closes it.
+     */
+    private void save() {
+        List<Item<T>> queued = new ArrayList<>();
+        queue.drainTo(queued);
+
+        if (spill == null) {
+            if (!queued.isEmpty()) {
+                log.warn("stop [{}] -> {} undelivered entries discarded", name, queued.size());
+            }
+            return;
+        }
+
+        List<Record> rest;
+        synchronized (lock) {
+            closed = true;
+            rest = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        List<Record> head = new ArrayList<>(queued.size());
+        for (Item<T> i : queued) {
+            try {
+                head.add(Record.of(i));
+            } catch (IOException e) {
+                log.warn("stop [{}] -> error while serializing an entry: {}", name, e.getMessage());
+                dropped.mark();
+            }
+        }
+
+        int remaining;
+        synchronized (spill) {
+            // the queued entries are older than the spilled ones
+            spill.prepend(head);
+
+            for (Record r : rest) {
+                if (!spill.append(r)) {
+                    dropped.mark();
+                }
+            }
+
+            remaining = spill.size();
+            spill.close();
+        }
+
+        synchronized (lock) {
+            overflowCount = 0;
+            pendingBytes = 0;
+        }
+
+        if (remaining > 0) {
+            log.info("stop [{}] -> {} undelivered entries saved", name, remaining);
+        }
+    }
+
+    private static final class Item<T> {
+
+        private final T value;
+        private final long enqueuedAt;
+
+        private Item(T value, long enqueuedAt) {
+            this.value = value;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Serialized entry: {@code [enqueuedAt: long][length: int][data: byte[length]]}.
+     */
+    private static final class Record {
+
+        private static final int HEADER_SIZE = 8 + 4;
+
+        static Record of(Item<?> item) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+                out.writeObject(item.value);
+            }
+            return new Record(item.enqueuedAt, baos.toByteArray());
+        }
+
+        private final long enqueuedAt;
+        private final byte[] data;
+
+        private Record(long enqueuedAt, byte[] data) {
+            this.enqueuedAt = enqueuedAt;
+            this.data = data;
+        }
+
+        int size() {
+            return HEADER_SIZE + data.length;
+        }
+
+        byte[] toBytes() {
+            ByteBuffer bb = ByteBuffer.allocate(size());
+            bb.putLong(enqueuedAt);
+            bb.putInt(data.length);
+            bb.put(data);
+            return bb.array();
+        }
+    }
+
+    /**
+     * Append-only file of {@link Record}s. The file is truncated every time
+     * it is fully read and removed on {@link #close()} if empty. A non-empty
+     * file is replayed after the next {@link #open()}.
+     * <p>
+     * Not thread-safe, except {@link #size()}, {@link #sizeInBytes()}
+     * and {@link #headEnqueuedAt()}.
+     */
+    private static final class Spill<T> {
+
+        private final Path dir;
+        private final String name;
+
+        private Path file;
+        private RandomAccessFile raf;
+        private FileLock fileLock;
+        private boolean temporary;
+
+        private volatile long readPos;
+        private volatile long writePos;
+        private volatile int count;
+        private volatile long headEnqueuedAt;
+
+        private Spill(Path dir, String name) {
+            this.dir = dir;
+            this.name = name;
+        }
+
+        int size() {
+            return count;
+        }
+
+        long sizeInBytes() {
+            return writePos - readPos;
+        }
+
+        long headEnqueuedAt() {
+            return headEnqueuedAt;
+        }
+
+        /**
+         * Opens {@code <dir>/<name>.spill} and counts the entries left by
+         * the previous instance. If the file is locked by another process,
+         * a temporary file is used instead.
+         */
+        void open() {
+            temporary = false;
+            try {
+                Files.createDirectories(dir);
+
+                // the name is based on the listener's class name, keep it file-system friendly
+                file = dir.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".spill");
+                raf = new RandomAccessFile(file.toFile(), "rw");
+                fileLock = tryLock(raf.getChannel());
+                if (fileLock == null) {
+                    raf.close();
+
+                    log.warn("open [{}] -> {} is used by another process, spilling into a temporary file", name, file);
+                    file = Files.createTempFile(dir, file.getFileName().toString() + "-", ".tmp");
+                    raf = new RandomAccessFile(file.toFile(), "rw");
+                    temporary = true;
+                }
+
+                scan();
+            } catch (IOException e) {
+                log.error("open [{}] -> error while opening the spill file, spilled entries will be discarded: {}", name, e.getMessage());
+                closeQuietly();
+            }
+        }
+
+        boolean append(Record r) {
+            if (raf == null) {
+                return false;
+            }
+
+            try {
+                raf.seek(writePos);
+                raf.write(r.toBytes());
+
+                writePos += r.size();
+                if (count++ == 0) {
+                    headEnqueuedAt = r.enqueuedAt;
+                }
+                return true;
+            } catch (IOException e) {
+                log.warn("append [{}] -> error while spilling an entry: {}", name, e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * Reads up to {@code limit} entries.
+         *
+         * @return number of consumed records, including the discarded ones
+         */
+        @SuppressWarnings("unchecked")
+        int read(List<Item<T>> result, int limit) {
+            if (count == 0) {
+                return 0;
+            }
+
+            int consumed = 0;
+            try {
+                byte[] header = new byte[Record.HEADER_SIZE];
+
+                raf.seek(readPos);
+                while (count > 0 && result.size() < limit) {
+                    raf.readFully(header);
+                    ByteBuffer bb = ByteBuffer.wrap(header);
+                    long enqueuedAt = bb.getLong();
+                    byte[] data = new byte[bb.getInt()];
+                    raf.readFully(data);
+
+                    readPos += Record.HEADER_SIZE + data.length;
+                    count--;
+                    consumed++;
+
+                    result.add(new Item<>((T) deserialize(data), enqueuedAt));
+                }
+
+                headEnqueuedAt = count > 0 ? raf.readLong() : 0;
+            } catch (IOException | ClassNotFoundException e) {
+                log.error("read [{}] -> error while reading spilled entries, {} entries discarded: {}", name, count, e.getMessage());
+                consumed += count;
+                count = 0;
+                headEnqueuedAt = 0;
+            }
+
+            if (count == 0) {
+                truncate();
+            }
+
+            return consumed;
+        }
+
+        /**
+         * Rewrites the file, putting the specified records in front of the unread ones.
+         */
+        void prepend(List<Record> records) {
+            if (records.isEmpty() || raf == null) {
+                return;
+            }
+
+            Path tmp = dir.resolve(file.getFileName() + ".tmp");
+            try {
+                long size = 0;
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                    for (Record r : records) {
+                        out.write(r.toBytes());
+                        size += r.size();
+                    }
+
+                    raf.seek(readPos);
+                    byte[] buf = new byte[8192];
+                    long remaining = writePos - readPos;
+                    while (remaining > 0) {
+                        int n = raf.read(buf, 0, (int) Math.min(buf.length, remaining));
+                        if (n < 0) {
+                            throw new EOFException();
+                        }
+                        out.write(buf, 0, n);
+                        remaining -= n;
+                    }
+                }
+
+                // the file is locked, copy the data back instead of replacing the file
+                raf.setLength(0);
+                raf.seek(0);
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(tmp))) {
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        raf.write(buf, 0, n);
+                    }
+                }
+
+                size += writePos - readPos;
+                readPos = 0;
+                writePos = size;
+                count += records.size();
+                headEnqueuedAt = records.get(0).enqueuedAt;
+            } catch (IOException e) {
+                log.error("prepend [{}] -> error while saving {} entries: {}", name, records.size(), e.getMessage());
+            } finally {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("prepend [{}] -> error while removing {}: {}", name, tmp, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Closes the file. The unread entries are kept for the next {@link #open()}.
+         */
+        void close() {
+            if (raf == null) {
+                return;
+            }
+
+            boolean keep = count > 0 && !temporary;
+            if (keep) {
+                // drop the already delivered entries
+                compact();
+            } else if (count > 0) {
+                log.warn("close [{}] -> {} spilled entries discarded", name, count);
+            }
+
+            closeQuietly();
+
+            if (!keep) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("close [{}] -> error while removing {}: {}", name, file, e.getMessage());
+                }
+            }
+
+            count = 0;
+            headEnqueuedAt = 0;
+            readPos = 0;
+            writePos = 0;
+        }
+
+        private void scan() throws IOException {
+            long length = raf.length();
+
+            long pos = 0;
+            int n = 0;
+            long head = 0;
+            while (pos + Record.HEADER_SIZE <= length) {
+                raf.seek(pos);
+                long enqueuedAt = raf.readLong();
+                int len = raf.readInt();
+                if (len < 0 || pos + Record.HEADER_SIZE + len > length) {
+                    break;
+                }
+
+                if (n == 0) {
+                    head = enqueuedAt;
+                }
+
+                pos += Record.HEADER_SIZE + len;
+                n++;
+            }
+
+            if (pos < length) {
+                log.warn("open [{}] -> {} has an incomplete record at {}, truncating", name, file, pos);
+                raf.setLength(pos);
+            }
+
+            readPos = 0;
+            writePos = pos;
+            count = n;
+            headEnqueuedAt = head;
+
+            if (n > 0) {
+                log.info("open [{}] -> {} spilled entries to deliver from {}", name, n, file);
+            }
+        }
+
+        private void compact() {
+            if (readPos == 0) {
+                return;
+            }
+
+            try {
+                byte[] buf = new byte[8192];
+                long src = readPos;
+                long dst = 0;
+                while (src < writePos) {
+                    raf.seek(src);
+                    int n = raf.read(buf, 0, (int) Math.min(buf.length, writePos - src));
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    raf.seek(dst);
+                    raf.write(buf, 0, n);
+                    src += n;
+                    dst += n;
+                }
+
+                raf.setLength(dst);
+                readPos = 0;
+                writePos = dst;
+            } catch (IOException e) {
+                log.warn("compact [{}] -> error: {}", name, e.getMessage());
+            }
+        }
+
+        private void truncate() {
+            readPos = 0;
+            writePos = 0;
+            try {
+                raf.setLength(0);
+            } catch (IOException e) {
+                log.warn("truncate [{}] -> error: {}", name, e.getMessage());
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                if (fileLock != null) {
+                    fileLock.release();
+                }
+                if (raf != null) {
+                    raf.close();
+                }
+            } catch (IOException e) {
+                log.warn("close [{}] -> error: {}", name, e.getMessage());
+            }
+
+            fileLock = null;
+            raf = null;
+        }
+
+        private static FileLock tryLock(FileChannel ch) throws IOException {
+            try {
+                return ch.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return null;
+            }
+        }
+
+        private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return in.readObject();
+            }
+        }
+    }
+}
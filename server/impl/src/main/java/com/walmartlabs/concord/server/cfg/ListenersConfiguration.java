@@ -0,0 +1,128 @@
+package com.walmartlabs.concord.server.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.ollie.config.Config;
+import org.eclipse.sisu.Nullable;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.walmartlabs.concord.server.cfg.Utils.getPath;
+
+@Named
+@Singleton
+public class ListenersConfiguration {
+
+    @Inject
+    @Config("listeners.async")
+    private boolean async;
+
+    @Inject
+    @Config("listeners.queueSize")
+    private int queueSize;
+
+    @Inject
+    @Config("listeners.batchSize")
+    private int batchSize;
+
+    @Inject
+    @Config("listeners.overflowPolicy")
+    private String overflowPolicy;
+
+    @Inject
+    @Config("listeners.blockTimeout")
+    private Duration blockTimeout;
+
+    @Inject
+    @Config("listeners.spillMaxSize")
+    private long spillMaxSize;
+
+    @Inject
+    @Config("listeners.sinks")
+    @Nullable
+    private Map<String, Object> sinks;
+
+    private final Path spillDir;
+
+    @Inject
+    public ListenersConfiguration(@Config("listeners.spillDir") @Nullable String spillDir) throws IOException {
+        this.spillDir = getPath(spillDir, "listeners-spill");
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public Duration getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public long getSpillMaxSize() {
+        return spillMaxSize;
+    }
+
+    public Path getSpillDir() {
+        return spillDir;
+    }
+
+    /**
+     * Returns the per-sink overrides of {@code queueSize}, {@code batchSize}
+     * and {@code overflowPolicy}. Sinks are identified by their full class
+     * names (e.g. {@code com.walmartlabs.concord.server.plugins.eventsink.kafka.KafkaEventSink})
+     * or by their simple class names (e.g. {@code KafkaEventSink}).
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getSinkCfg(Class<?> sinkClass) {
+        if (sinks == null) {
+            return Collections.emptyMap();
+        }
+
+        Object v = sinks.get(sinkClass.getName());
+        if (v == null) {
+            v = sinks.get(sinkClass.getSimpleName());
+        }
+
+        if (v instanceof Map) {
+            return (Map<String, Object>) v;
+        }
+
+        return Collections.emptyMap();
+    }
+}
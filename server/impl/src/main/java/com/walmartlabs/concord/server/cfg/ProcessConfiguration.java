@@ -87,6 +87,94 @@ public class ProcessConfiguration implements Serializable {
     @Config("process.checkLogPermissions")
     private boolean checkLogPermissions;
 
+    @Inject
+    @Config("process.logBuffer.enabled")
+    private boolean logBufferEnabled;
+
+    @Inject
+    @Config("process.logBuffer.flushInterval")
+    private Duration logBufferFlushInterval;
+
+    @Inject
+    @Config("process.logBuffer.maxBatchSize")
+    private int logBufferMaxBatchSize;
+
+    @Inject
+    @Config("process.logBuffer.capacity")
+    private int logBufferCapacity;
+
+    @Inject
+    @Config("process.logCompaction.enabled")
+    private boolean logCompactionEnabled;
+
+    @Inject
+    @Config("process.logCompaction.interval")
+    private Duration logCompactionInterval;
+
+    @Inject
+    @Config("process.logCompaction.delay")
+    private Duration logCompactionDelay;
+
+    @Inject
+    @Config("process.logCompaction.batchSize")
+    private int logCompactionBatchSize;
+
+    @Inject
+    @Config("process.logCompaction.blockSize")
+    private int logCompactionBlockSize;
+
+    @Inject
+    @Config("process.stateTransfer.parallelism")
+    private int stateTransferParallelism;
+
+    @Inject
+    @Config("process.stateTransfer.fetchSize")
+    private int stateTransferFetchSize;
+
+    @Inject
+    @Config("process.stateTransfer.maxBatchBytes")
+    private int stateTransferMaxBatchBytes;
+
+    @Inject
+    @Config("process.stateTransfer.deduplicate")
+    private boolean stateTransferDeduplicate;
+
+    @Inject
+    @Config("process.cleanupBatchSize")
+    private int cleanupBatchSize;
+
+    @Inject
+    @Config("process.cleanupBatchDelay")
+    private Duration cleanupBatchDelay;
+
+    @Inject
+    @Config("process.partitioning.interval")
+    private Duration partitioningInterval;
+
+    @Inject
+    @Config("process.partitioning.precreate")
+    private int partitioningPrecreate;
+
+    @Inject
+    @Config("process.partitioning.maintenanceInterval")
+    private Duration partitioningMaintenanceInterval;
+
+    @Inject
+    @Config("process.partitioning.detach")
+    private boolean partitioningDetach;
+
+    @Inject
+    @Config("process.statusWait.maxTimeout")
+    private Duration statusWaitMaxTimeout;
+
+    @Inject
+    @Config("process.statusWait.recheckInterval")
+    private Duration statusWaitRecheckInterval;
+
+    @Inject
+    @Config("process.statusWait.maxProcesses")
+    private int statusWaitMaxProcesses;
+
     @Inject
     public ProcessConfiguration(@Config("process.signingKeyPath") @Nullable String signingKeyPath) {
         this.signingKeyPath = signingKeyPath != null ? Paths.get(signingKeyPath) : null;
@@ -148,4 +236,92 @@ public class ProcessConfiguration implements Serializable {
     public boolean isCheckLogPermissions() {
         return checkLogPermissions;
     }
+
+    public boolean isLogBufferEnabled() {
+        return logBufferEnabled;
+    }
+
+    public Duration getLogBufferFlushInterval() {
+        return logBufferFlushInterval;
+    }
+
+    public int getLogBufferMaxBatchSize() {
+        return logBufferMaxBatchSize;
+    }
+
+    public int getLogBufferCapacity() {
+        return logBufferCapacity;
+    }
+
+    public boolean isLogCompactionEnabled() {
+        return logCompactionEnabled;
+    }
+
+    public Duration getLogCompactionInterval() {
+        return logCompactionInterval;
+    }
+
+    public Duration getLogCompactionDelay() {
+        return logCompactionDelay;
+    }
+
+    public int getLogCompactionBatchSize() {
+        return logCompactionBatchSize;
+    }
+
+    public int getLogCompactionBlockSize() {
+        return logCompactionBlockSize;
+    }
+
+    public int getStateTransferParallelism() {
+        return stateTransferParallelism;
+    }
+
+    public int getStateTransferFetchSize() {
+        return stateTransferFetchSize;
+    }
+
+    public int getStateTransferMaxBatchBytes() {
+        return stateTransferMaxBatchBytes;
+    }
+
+    public boolean isStateTransferDeduplicate() {
+        return stateTransferDeduplicate;
+    }
+
+    public int getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    public Duration getCleanupBatchDelay() {
+        return cleanupBatchDelay;
+    }
+
+    public Duration getPartitioningInterval() {
+        return partitioningInterval;
+    }
+
+    public int getPartitioningPrecreate() {
+        return partitioningPrecreate;
+    }
+
+    public Duration getPartitioningMaintenanceInterval() {
+        return partitioningMaintenanceInterval;
+    }
+
+    public boolean isPartitioningDetach() {
+        return partitioningDetach;
+    }
+
+    public Duration getStatusWaitMaxTimeout() {
+        return statusWaitMaxTimeout;
+    }
+
+    public Duration getStatusWaitRecheckInterval() {
+        return statusWaitRecheckInterval;
+    }
+
+    public int getStatusWaitMaxProcesses() {
+        return statusWaitMaxProcesses;
+    }
 }
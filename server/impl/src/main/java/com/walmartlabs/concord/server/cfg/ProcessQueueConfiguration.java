@@ -40,6 +40,26 @@ public class ProcessQueueConfiguration implements Serializable {
     @Config("queue.dispatcher.batchSize")
     private int dispatcherBatchSize;
 
+    @Inject
+    @Config("queue.dispatcher.index.enabled")
+    private boolean dispatcherIndexEnabled;
+
+    @Inject
+    @Config("queue.dispatcher.index.reconcilePeriod")
+    private Duration dispatcherIndexReconcilePeriod;
+
+    @Inject
+    @Config("queue.dispatcher.wakeup.enabled")
+    private boolean dispatcherWakeupEnabled;
+
+    @Inject
+    @Config("queue.dispatcher.wakeup.debounce")
+    private Duration dispatcherWakeupDebounce;
+
+    @Inject
+    @Config("queue.dispatcher.wakeup.pgNotify")
+    private boolean dispatcherWakeupPgNotify;
+
     public Duration getDispatcherPollDelay() {
         return dispatcherPollDelay;
     }
@@ -47,4 +67,24 @@ public class ProcessQueueConfiguration implements Serializable {
     public int getDispatcherBatchSize() {
         return dispatcherBatchSize;
     }
+
+    public boolean isDispatcherIndexEnabled() {
+        return dispatcherIndexEnabled;
+    }
+
+    public Duration getDispatcherIndexReconcilePeriod() {
+        return dispatcherIndexReconcilePeriod;
+    }
+
+    public boolean isDispatcherWakeupEnabled() {
+        return dispatcherWakeupEnabled;
+    }
+
+    public Duration getDispatcherWakeupDebounce() {
+        return dispatcherWakeupDebounce;
+    }
+
+    public boolean isDispatcherWakeupPgNotify() {
+        return dispatcherWakeupPgNotify;
+    }
 }
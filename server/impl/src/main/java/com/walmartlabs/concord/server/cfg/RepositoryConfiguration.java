@@ -57,8 +57,8 @@ public class RepositoryConfiguration {
     private Duration maxAge;
 
     @Inject
-    @Config("repositoryCache.lockCount")
-    private int lockCount;
+    @Config("repositoryCache.fetchFreshness")
+    private Duration fetchFreshness;
 
     @Inject
     public RepositoryConfiguration(@Config("repositoryCache.cacheDir") @Nullable String cacheDir,
@@ -78,8 +78,8 @@ public class RepositoryConfiguration {
         return lockTimeout;
     }
 
-    public int getLockCount() {
-        return lockCount;
+    public Duration getFetchFreshness() {
+        return fetchFreshness;
     }
 
     public boolean isConcordFileValidationEnabled() {
@@ -25,6 +25,7 @@ import com.walmartlabs.ollie.config.Config;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class TriggersConfiguration {
     @Config("triggers.defaultConfiguration")
     private Map<String, Object> defaultConfiguration;
 
+    @Inject
+    @Config("triggers.index.enabled")
+    private boolean indexEnabled;
+
+    @Inject
+    @Config("triggers.index.versionCheckInterval")
+    private Duration indexVersionCheckInterval;
+
     public boolean isDisableAll() {
         return disableAll;
     }
@@ -64,4 +73,12 @@ public class TriggersConfiguration {
         return defaultConfiguration;
     }
 
+    public boolean isIndexEnabled() {
+        return indexEnabled;
+    }
+
+    public Duration getIndexVersionCheckInterval() {
+        return indexVersionCheckInterval;
+    }
+
 }
@@ -40,6 +40,15 @@ public final class DefaultEventFilter {
         }
     }
 
+    public static boolean filter(Map<String, Object> conditions, TriggerEntry t, MapMatcher.Compiled matcher) {
+        try {
+            return matcher.matches(conditions);
+        } catch (Exception e) {
+            log.warn("filter [{}, {}] -> error while matching events: {}", conditions, t, e.getMessage());
+            return false;
+        }
+    }
+
     private DefaultEventFilter() {
     }
 }
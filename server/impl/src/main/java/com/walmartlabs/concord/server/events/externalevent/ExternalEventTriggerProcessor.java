@@ -20,8 +20,13 @@ package com.walmartlabs.concord.server.events.externalevent;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.IndexedTrigger;
 import com.walmartlabs.concord.server.org.triggers.TriggersDao;
 
 import javax.inject.Inject;
@@ -33,23 +38,49 @@ import java.util.Map;
 public abstract class ExternalEventTriggerProcessor {
 
     private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
+    private final boolean useIndex;
     private final int version;
+    private final Timer matchTimer;
 
     @Inject
-    public ExternalEventTriggerProcessor(TriggersDao dao, int version) {
+    public ExternalEventTriggerProcessor(TriggersDao dao,
+                                         TriggerIndex triggerIndex,
+                                         TriggersConfiguration triggersCfg,
+                                         MetricRegistry metricRegistry,
+                                         int version) {
+
         this.dao = dao;
+        this.triggerIndex = triggerIndex;
+        this.useIndex = triggersCfg.isIndexEnabled();
         this.version = version;
+
+        // event names are arbitrary, use a single timer per trigger version
+        this.matchTimer = metricRegistry.timer("external-event-trigger-v" + version + "-match");
     }
 
     public void process(String eventName, Map<String, Object> event, List<Result> result) {
-        List<TriggerEntry> triggers = listTriggers(eventName);
-
-        Map<String, Object> updatedEvent = buildEvent(event);
+        Timer.Context ctx = matchTimer.time();
+        try {
+            Map<String, Object> updatedEvent = buildEvent(event);
+
+            if (useIndex) {
+                for (IndexedTrigger it : triggerIndex.list(null, eventName, version, null)) {
+                    if (DefaultEventFilter.filter(updatedEvent, it.getEntry(), it.getMatcher())) {
+                        result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, it.getEntry()));
+                    }
+                }
+                return;
+            }
 
-        for (TriggerEntry t : triggers) {
-            if (DefaultEventFilter.filter(updatedEvent, t)) {
-                result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, t));
+            List<TriggerEntry> triggers = listTriggers(eventName);
+            for (TriggerEntry t : triggers) {
+                if (DefaultEventFilter.filter(updatedEvent, t)) {
+                    result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, t));
+                }
             }
+        } finally {
+            ctx.stop();
         }
     }
 
@@ -20,6 +20,9 @@ package com.walmartlabs.concord.server.events.externalevent;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.org.triggers.TriggersDao;
 
 import javax.inject.Inject;
@@ -32,7 +35,11 @@ import javax.inject.Singleton;
 public class ExternalEventTriggerV1Processor extends ExternalEventTriggerProcessor {
 
     @Inject
-    public ExternalEventTriggerV1Processor(TriggersDao dao) {
-        super(dao, 1);
+    public ExternalEventTriggerV1Processor(TriggersDao dao,
+                                           TriggerIndex triggerIndex,
+                                           TriggersConfiguration triggersCfg,
+                                           MetricRegistry metricRegistry) {
+
+        super(dao, triggerIndex, triggersCfg, metricRegistry, 1);
     }
 }
\ No newline at end of file
@@ -20,6 +20,9 @@ package com.walmartlabs.concord.server.events.externalevent;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 import com.walmartlabs.concord.server.org.triggers.TriggersDao;
 
 import javax.inject.Inject;
@@ -31,7 +34,11 @@ import javax.inject.Singleton;
 public class ExternalEventTriggerV2Processor extends ExternalEventTriggerProcessor {
 
     @Inject
-    public ExternalEventTriggerV2Processor(TriggersDao dao) {
-        super(dao, 2);
+    public ExternalEventTriggerV2Processor(TriggersDao dao,
+                                           TriggerIndex triggerIndex,
+                                           TriggersConfiguration triggersCfg,
+                                           MetricRegistry metricRegistry) {
+
+        super(dao, triggerIndex, triggersCfg, metricRegistry, 2);
     }
 }
\ No newline at end of file
@@ -20,12 +20,17 @@ package com.walmartlabs.concord.server.events.github;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.walmartlabs.concord.repository.GitCliRepositoryProvider;
 import com.walmartlabs.concord.sdk.MapUtils;
 import com.walmartlabs.concord.server.events.DefaultEventFilter;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.org.project.RepositoryEntry;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.IndexedTrigger;
 import com.walmartlabs.concord.server.org.triggers.TriggersDao;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
 import com.walmartlabs.concord.server.security.github.GithubKey;
@@ -46,12 +51,23 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
     private static final int VERSION_ID = 2;
 
     private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
+    private final boolean useIndex;
     private final List<EventEnricher> eventEnrichers;
+    private final MetricRegistry metricRegistry;
 
     @Inject
-    public GithubTriggerV2Processor(TriggersDao dao, List<EventEnricher> eventEnrichers) {
+    public GithubTriggerV2Processor(TriggersDao dao,
+                                    TriggerIndex triggerIndex,
+                                    TriggersConfiguration triggersCfg,
+                                    List<EventEnricher> eventEnrichers,
+                                    MetricRegistry metricRegistry) {
+
         this.dao = dao;
+        this.triggerIndex = triggerIndex;
+        this.useIndex = triggersCfg.isIndexEnabled();
         this.eventEnrichers = eventEnrichers;
+        this.metricRegistry = metricRegistry;
     }
 
     @Override
@@ -60,22 +76,58 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
         GithubKey githubKey = GithubKey.getCurrent();
         UUID projectId = githubKey.getProjectId();
 
-        List<TriggerEntry> triggers = listTriggers(projectId, payload.getOrg(), payload.getRepo());
-        for (TriggerEntry t : triggers) {
-            // skip empty push events if the trigger's configuration says so
-            if (GithubUtils.ignoreEmptyPush(t) && GithubUtils.isEmptyPush(eventName, payload)) {
-                continue;
+        // match latency per GitHub event type
+        Timer.Context ctx = metricRegistry.timer("github-trigger-v2-match-" + eventName).time();
+        try {
+            if (useIndex) {
+                processIndexed(eventName, payload, projectId, result);
+                return;
+            }
+
+            List<TriggerEntry> triggers = listTriggers(projectId, payload.getOrg(), payload.getRepo());
+            for (TriggerEntry t : triggers) {
+                Map<String, Object> event = prepareEvent(eventName, payload, t);
+                if (event != null && DefaultEventFilter.filter(event, t)) {
+                    result.add(Result.from(event, t));
+                }
             }
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    private void processIndexed(String eventName, Payload payload, UUID projectId, List<Result> result) {
+        Map<String, String> keys = new HashMap<>();
+        keys.put(GITHUB_ORG_KEY, payload.getOrg());
+        keys.put(GITHUB_REPO_KEY, payload.getRepo());
+        keys.put(TYPE_KEY, eventName);
 
-            Map<String, Object> event = buildEvent(eventName, payload);
-            enrichEventConditions(payload, t, event);
+        List<IndexedTrigger> triggers = triggerIndex.list(projectId, EVENT_SOURCE, VERSION_ID, keys);
+        for (IndexedTrigger it : triggers) {
+            TriggerEntry t = it.getEntry();
 
-            if (DefaultEventFilter.filter(event, t)) {
+            Map<String, Object> event = prepareEvent(eventName, payload, t);
+            if (event != null && DefaultEventFilter.filter(event, t, it.getMatcher())) {
                 result.add(Result.from(event, t));
             }
         }
     }
 
+    /**
+     * Returns the event data to match against the specified trigger or
+     * {@code null} if the trigger should be skipped.
+     */
+    private Map<String, Object> prepareEvent(String eventName, Payload payload, TriggerEntry t) {
+        // skip empty push events if the trigger's configuration says so
+        if (GithubUtils.ignoreEmptyPush(t) && GithubUtils.isEmptyPush(eventName, payload)) {
+            return null;
+        }
+
+        Map<String, Object> event = buildEvent(eventName, payload);
+        enrichEventConditions(payload, t, event);
+        return event;
+    }
+
     private void enrichEventConditions(Payload payload, TriggerEntry trigger, Map<String, Object> result) {
         for (EventEnricher e : eventEnrichers) {
             e.enrich(payload, trigger, result);
@@ -0,0 +1,356 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.walmartlabs.concord.common.MapMatcher;
+import com.walmartlabs.concord.server.PeriodicTask;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of triggers with pre-compiled conditions. Used to match
+ * incoming GitHub and external events without querying the DB.
+ * <p>
+ * Triggers are grouped by their event source and by the values of the
+ * {@link #INDEXED_KEYS} conditions. Triggers with non-literal values
+ * (regular expressions, lists, etc.) or without such conditions are put
+ * into "wildcard" buckets and are always considered as candidates.
+ * <p>
+ * The index is reloaded in background when the TRIGGERS_VERSION_SEQ value
+ * changes. The value is checked every {@link TriggersConfiguration#getIndexVersionCheckInterval()}
+ * or right after {@link #invalidate()}. While there are uncommitted changes
+ * the current index is kept. New snapshots are swapped in atomically, so
+ * the callers of {@link #list(UUID, String, Integer, Map)} never wait for
+ * a reload.
+ */
+@Named
+@Singleton
+public class TriggerIndex extends PeriodicTask {
+
+    private static final Logger log = LoggerFactory.getLogger(TriggerIndex.class);
+
+    /**
+     * Trigger conditions used as the index keys.
+     */
+    private static final String[] INDEXED_KEYS = {"githubOrg", "githubRepo", "type"};
+
+    /**
+     * Condition values that can be compared using {@link String#equals(Object)},
+     * i.e. values that contain no regex special characters.
+     */
+    private static final Pattern LITERAL = Pattern.compile("[\\w\\-]+");
+
+    private static final String VERSION_KEY = "version";
+
+    private static final long UNKNOWN_VERSION = -1;
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    private final TriggersDao dao;
+    private final boolean enabled;
+
+    private final Timer reloadTimer;
+
+    private volatile Snapshot snapshot;
+
+    private final Object mutex = new Object();
+    private boolean invalidated;
+
+    @Inject
+    public TriggerIndex(TriggersDao dao, TriggersConfiguration cfg, MetricRegistry metricRegistry) {
+        super(cfg.isIndexEnabled() ? cfg.getIndexVersionCheckInterval().toMillis() : 0, ERROR_DELAY);
+
+        this.dao = dao;
+        this.enabled = cfg.isIndexEnabled();
+
+        this.reloadTimer = metricRegistry.timer("trigger-index-reload");
+        metricRegistry.gauge("trigger-index-size", () -> this::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wakes up the background thread to check the version without waiting
+     * for the next interval. Must be called after the changes are committed.
+     */
+    public void invalidate() {
+        synchronized (mutex) {
+            invalidated = true;
+            mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the candidate triggers for the specified event. Same as
+     * {@link TriggersDao#list(UUID, String, Integer, Map)} but the returned
+     * triggers must be additionally filtered with {@link IndexedTrigger#getMatcher()}.
+     *
+     * @param projectId   if not {@code null} only the project's triggers are returned
+     * @param eventSource the trigger type, e.g. {@code github}
+     * @param version     if not {@code null} only the triggers with the specified version are returned
+     * @param conditions  values of the event's indexed keys
+     */
+    public List<IndexedTrigger> list(UUID projectId, String eventSource, Integer version, Map<String, String> conditions) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            s = initialLoad();
+        }
+
+        SourceIndex idx = s.sources.get(eventSource);
+        if (idx == null) {
+            return Collections.emptyList();
+        }
+
+        String v = version != null ? String.valueOf(version) : null;
+
+        List<IndexedTrigger> result = new ArrayList<>();
+
+        List<List<String>> keys = lookupKeys(conditions);
+        if (keys == null) {
+            // not all indexed values are known, check everything
+            filter(idx.all, projectId, v, result);
+        } else {
+            for (List<String> k : keys) {
+                List<IndexedTrigger> bucket = idx.buckets.get(k);
+                if (bucket != null) {
+                    filter(bucket, projectId, v, result);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public int size() {
+        Snapshot s = snapshot;
+        return s != null ? s.size : 0;
+    }
+
+    @Override
+    protected boolean performTask() {
+        refresh();
+        return false;
+    }
+
+    @Override
+    protected void idle(long interval) {
+        long deadline = System.currentTimeMillis() + interval;
+
+        synchronized (mutex) {
+            while (!invalidated) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+
+                try {
+                    mutex.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            invalidated = false;
+        }
+    }
+
+    /**
+     * Checks the current TRIGGERS_VERSION_SEQ value and reloads the index if needed.
+     */
+    synchronized void refresh() {
+        // the version is fetched before the triggers, so the concurrent changes
+        // are picked up on the next check
+        Long version = dao.getVersion();
+
+        Snapshot s = snapshot;
+        if (version == null) {
+            // there are uncommitted changes, they've already changed the version,
+            // so the index is reloaded on the first check after the commit
+            if (s == null) {
+                snapshot = load(UNKNOWN_VERSION);
+            }
+            return;
+        }
+
+        if (s == null || s.version != version) {
+            snapshot = load(version);
+        }
+    }
+
+    /**
+     * Loads the index if it was requested before the background thread's first run.
+     */
+    private synchronized Snapshot initialLoad() {
+        if (snapshot == null) {
+            refresh();
+        }
+        return snapshot;
+    }
+
+    private Snapshot load(long version) {
+        Timer.Context ctx = reloadTimer.time();
+        try {
+            List<TriggerEntry> l = dao.listAll();
+
+            Map<String, SourceIndex> sources = new HashMap<>();
+            for (TriggerEntry t : l) {
+                IndexedTrigger it = new IndexedTrigger(t);
+                SourceIndex idx = sources.computeIfAbsent(t.getEventSource(), k -> new SourceIndex());
+                idx.all.add(it);
+                idx.buckets.computeIfAbsent(bucketKey(t.getConditions()), k -> new ArrayList<>()).add(it);
+            }
+
+            log.info("load -> done, version: {}, triggers count: {}", version, l.size());
+            return new Snapshot(version, sources, l.size());
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    private static void filter(List<IndexedTrigger> triggers, UUID projectId, String version, List<IndexedTrigger> result) {
+        for (IndexedTrigger t : triggers) {
+            if (projectId != null && !projectId.equals(t.entry.getProjectId())) {
+                continue;
+            }
+
+            if (version != null && !matchesVersion(t.version, version)) {
+                continue;
+            }
+
+            result.add(t);
+        }
+    }
+
+    /**
+     * Same as the version filter in {@link TriggersDao#list(UUID, String, Integer, Map)}:
+     * triggers without the version are considered v1.
+     */
+    private static boolean matchesVersion(String triggerVersion, String version) {
+        if (triggerVersion == null) {
+            return "1".equals(version);
+        }
+        return triggerVersion.equals(version);
+    }
+
+    /**
+     * Returns the keys of the buckets that can contain triggers matching
+     * the specified values, or {@code null} if some of the values are
+     * unknown and all triggers must be checked.
+     */
+    private static List<List<String>> lookupKeys(Map<String, String> conditions) {
+        if (conditions == null) {
+            return null;
+        }
+
+        List<List<String>> result = Collections.singletonList(Collections.emptyList());
+        for (String k : INDEXED_KEYS) {
+            String v = conditions.get(k);
+            if (v == null) {
+                return null;
+            }
+
+            List<List<String>> l = new ArrayList<>(result.size() * 2);
+            for (List<String> prefix : result) {
+                l.add(append(prefix, v));
+                l.add(append(prefix, null));
+            }
+            result = l;
+        }
+
+        return result;
+    }
+
+    private static List<String> bucketKey(Map<String, Object> conditions) {
+        List<String> result = new ArrayList<>(INDEXED_KEYS.length);
+        for (String k : INDEXED_KEYS) {
+            Object v = conditions != null ? conditions.get(k) : null;
+            if (v instanceof String && LITERAL.matcher((String) v).matches()) {
+                result.add((String) v);
+            } else {
+                // wildcard
+                result.add(null);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> append(List<String> l, String v) {
+        List<String> result = new ArrayList<>(l.size() + 1);
+        result.addAll(l);
+        result.add(v);
+        return result;
+    }
+
+    public static final class IndexedTrigger {
+
+        private final TriggerEntry entry;
+        private final MapMatcher.Compiled matcher;
+        private final String version;
+
+        private IndexedTrigger(TriggerEntry entry) {
+            this.entry = entry;
+            this.matcher = MapMatcher.compile(entry.getConditions());
+
+            Object v = entry.getConditions() != null ? entry.getConditions().get(VERSION_KEY) : null;
+            this.version = v != null ? v.toString() : null;
+        }
+
+        public TriggerEntry getEntry() {
+            return entry;
+        }
+
+        public MapMatcher.Compiled getMatcher() {
+            return matcher;
+        }
+    }
+
+    private static final class SourceIndex {
+
+        private final List<IndexedTrigger> all = new ArrayList<>();
+        private final Map<List<String>, List<IndexedTrigger>> buckets = new HashMap<>();
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+        private final Map<String, SourceIndex> sources;
+        private final int size;
+
+        private Snapshot(long version, Map<String, SourceIndex> sources, int size) {
+            this.version = version;
+            this.sources = sources;
+            this.size = size;
+        }
+    }
+}
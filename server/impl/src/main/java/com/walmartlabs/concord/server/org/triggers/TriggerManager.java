@@ -60,6 +60,7 @@ public class TriggerManager extends AbstractDao {
 
     private final CronTriggerProcessor cronTriggerProcessor;
     private final GithubTriggerEnricher githubTriggerEnricher;
+    private final TriggerIndex triggerIndex;
 
     @Inject
     public TriggerManager(@MainDB Configuration cfg,
@@ -68,7 +69,8 @@ public class TriggerManager extends AbstractDao {
                           PolicyManager policyManager,
                           TriggersConfiguration triggersCfg,
                           CronTriggerProcessor cronTriggerProcessor,
-                          GithubTriggerEnricher githubTriggerEnricher) {
+                          GithubTriggerEnricher githubTriggerEnricher,
+                          TriggerIndex triggerIndex) {
 
         super(cfg);
 
@@ -79,6 +81,7 @@ public class TriggerManager extends AbstractDao {
 
         this.cronTriggerProcessor = cronTriggerProcessor;
         this.githubTriggerEnricher = githubTriggerEnricher;
+        this.triggerIndex = triggerIndex;
     }
 
     public void refresh(UUID projectId, UUID repoId, ProcessDefinition pd) {
@@ -118,6 +121,8 @@ public class TriggerManager extends AbstractDao {
             }
         });
 
+        triggerIndex.invalidate();
+
         log.info("refresh ['{}', '{}'] -> done, triggers count: {}", projectId, repoId, pd.triggers().size());
     }
 
@@ -40,12 +40,16 @@ import java.util.UUID;
 import static com.walmartlabs.concord.db.PgUtils.jsonbText;
 import static com.walmartlabs.concord.server.jooq.Tables.*;
 import static com.walmartlabs.concord.server.jooq.tables.Triggers.TRIGGERS;
-import static org.jooq.impl.DSL.select;
-import static org.jooq.impl.DSL.value;
+import static org.jooq.impl.DSL.*;
 
 @Named
 public class TriggersDao extends AbstractDao {
 
+    /**
+     * Key of the advisory lock taken by the BUMP_TRIGGERS_VERSION DB function.
+     */
+    private static final int TRIGGERS_VERSION_LOCK = 1700200;
+
     private final ConcordObjectMapper objectMapper;
 
     @Inject
@@ -127,6 +131,34 @@ public class TriggersDao extends AbstractDao {
                 .fetch(this::toEntity);
     }
 
+    /**
+     * Returns all triggers. Used to (re)build the {@link TriggerIndex}.
+     */
+    public List<TriggerEntry> listAll() {
+        return selectTriggers(dsl()).fetch(this::toEntity);
+    }
+
+    /**
+     * Returns the current version of the TRIGGERS table or {@code null} if
+     * there are uncommitted changes. The version is incremented by a DB trigger
+     * on every change of the table. The trigger also takes a shared advisory
+     * lock which is held until the end of the writer's transaction.
+     */
+    public Long getVersion() {
+        return txResult(tx -> {
+            boolean noWriters = tx.select(field("pg_try_advisory_xact_lock({0}, {1})", Boolean.class, inline(TRIGGERS_VERSION_LOCK), inline(0)))
+                    .fetchOne(0, Boolean.class);
+
+            if (!noWriters) {
+                return null;
+            }
+
+            return tx.select(field(name("LAST_VALUE"), Long.class))
+                    .from(table(name("TRIGGERS_VERSION_SEQ")))
+                    .fetchOne(0, Long.class);
+        });
+    }
+
     public List<TriggerEntry> list(UUID orgId, UUID projectId, UUID repositoryId, String type) {
         SelectJoinStep<Record12<UUID, UUID, String, UUID, String, UUID, String, String, String[], JSONB, JSONB, JSONB>> query = selectTriggers(dsl());
 
@@ -0,0 +1,111 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.process.ProcessPartitions.Partition;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.Name;
+import org.jooq.Record;
+import org.jooq.Table;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.jooq.impl.DSL.inline;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.selectOne;
+
+/**
+ * Lists and maintains the partitions of the process tables.
+ *
+ * @see ProcessPartitions
+ */
+@Named
+public class PartitionsDao extends AbstractDao {
+
+    private static final String LIST_PARTITIONS = "select c.relname, " +
+            "(extract(epoch from (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz) * 1000)::bigint, " +
+            "(extract(epoch from (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz) * 1000)::bigint " +
+            "from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+            "where i.inhparent = to_regclass(?)";
+
+    @Inject
+    public PartitionsDao(@MainDB Configuration cfg) {
+        super(cfg);
+    }
+
+    /**
+     * Returns the partitions of the specified table or an empty list
+     * if the table is not partitioned.
+     */
+    public List<Partition> list(Table<?> t) {
+        return dsl().resultQuery(LIST_PARTITIONS, t.getName().toLowerCase())
+                .fetch(PartitionsDao::toPartition);
+    }
+
+    public void create(Table<?> t, String name, Instant from, Instant to) {
+        tx(tx -> tx.execute("create table if not exists {0} partition of {1} for values from ({2}) to ({3})",
+                name(name), tableName(t), inline(from.toString()), inline(to.toString())));
+    }
+
+    public void detach(Table<?> t, String name) {
+        tx(tx -> tx.execute("alter table {0} detach partition {1}", tableName(t), name(name)));
+    }
+
+    public void drop(String name) {
+        tx(tx -> tx.execute("drop table if exists {0}", name(name)));
+    }
+
+    public boolean hasActiveProcesses(Partition p, OffsetDateTime cutoff, String[] excludeStatuses) {
+        Condition c = PROCESS_QUEUE.CREATED_AT.lessThan(OffsetDateTime.ofInstant(p.to, ZoneOffset.UTC))
+                .and(PROCESS_QUEUE.CURRENT_STATUS.in(excludeStatuses)
+                        .or(PROCESS_QUEUE.LAST_UPDATED_AT.greaterOrEqual(cutoff)));
+
+        if (p.from != null) {
+            c = c.and(PROCESS_QUEUE.CREATED_AT.greaterOrEqual(OffsetDateTime.ofInstant(p.from, ZoneOffset.UTC)));
+        }
+
+        return dsl().fetchExists(selectOne().from(PROCESS_QUEUE).where(c));
+    }
+
+    /**
+     * The tables are created without quotes, i.e. their actual names are in lower case.
+     */
+    private static Name tableName(Table<?> t) {
+        return name(t.getName().toLowerCase());
+    }
+
+    private static Partition toPartition(Record r) {
+        return new Partition(r.get(0, String.class), toInstant(r.get(1, Long.class)), toInstant(r.get(2, Long.class)));
+    }
+
+    private static Instant toInstant(Long epochMillis) {
+        return epochMillis != null ? Instant.ofEpochMilli(epochMillis) : null;
+    }
+}
@@ -33,16 +33,20 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.time.OffsetDateTime;
-import java.util.UUID;
+import java.util.*;
 
 import static com.walmartlabs.concord.db.PgUtils.interval;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_BLOCKS;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_SEGMENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static org.jooq.impl.DSL.currentOffsetDateTime;
+import static org.jooq.impl.DSL.notExists;
+import static org.jooq.impl.DSL.selectOne;
 
 @Named("process-cleaner")
 @Singleton
@@ -58,11 +62,13 @@ public class ProcessCleaner implements ScheduledTask {
 
     private final ProcessConfiguration cfg;
     private final CleanerDao cleanerDao;
+    private final ProcessPartitions partitions;
 
     @Inject
-    public ProcessCleaner(ProcessConfiguration cfg, CleanerDao cleanerDao) {
+    public ProcessCleaner(ProcessConfiguration cfg, CleanerDao cleanerDao, ProcessPartitions partitions) {
         this.cfg = cfg;
         this.cleanerDao = cleanerDao;
+        this.partitions = partitions;
     }
 
     @Override
@@ -73,8 +79,47 @@ public class ProcessCleaner implements ScheduledTask {
     @Override
     public void performTask() {
         Field<OffsetDateTime> cutoff = currentOffsetDateTime().minus(interval(cfg.getMaxStateAge()));
-        cleanerDao.deleteOldState(cutoff, cfg);
-        cleanerDao.deleteOrphans(cfg);
+
+        removeExpiredPartitions(cutoff);
+
+        if (cfg.getCleanupBatchSize() > 0) {
+            cleanerDao.deleteOldStateInBatches(cutoff, cfg);
+            cleanerDao.deleteOrphansInBatches(cutoff, cfg);
+        } else {
+            cleanerDao.deleteOldState(cutoff, cfg);
+            cleanerDao.deleteOrphans(cutoff, cfg);
+        }
+    }
+
+    /**
+     * Removes whole partitions of the partitioned tables. The remaining data
+     * (e.g. of processes that were running for a long time) is deleted row-by-row.
+     */
+    private void removeExpiredPartitions(Field<OffsetDateTime> cutoff) {
+        OffsetDateTime ts = cleanerDao.eval(cutoff);
+
+        for (Table<?> t : ProcessPartitions.TABLES) {
+            if (!isCleanupEnabled(t)) {
+                continue;
+            }
+
+            try {
+                partitions.removeExpired(t, ts, EXCLUDE_STATUSES);
+            } catch (Exception e) {
+                log.warn("removeExpiredPartitions [{}] -> error: {}", t.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean isCleanupEnabled(Table<?> t) {
+        if (t == PROCESS_STATE) {
+            return cfg.isStateCleanup();
+        } else if (t == PROCESS_EVENTS) {
+            return cfg.isEventsCleanup();
+        } else if (t == PROCESS_LOG_DATA || t == PROCESS_LOG_BLOCKS || t == PROCESS_LOG_SEGMENTS) {
+            return cfg.isLogsCleanup();
+        }
+        return false;
     }
 
     @Named
@@ -85,6 +130,10 @@ public class ProcessCleaner implements ScheduledTask {
             super(cfg);
         }
 
+        OffsetDateTime eval(Field<OffsetDateTime> f) {
+            return dsl().select(f).fetchOne(f);
+        }
+
         void deleteOldState(Field<OffsetDateTime> cutoff, ProcessConfiguration jobCfg) {
             long t1 = System.currentTimeMillis();
 
@@ -122,6 +171,10 @@ public class ProcessCleaner implements ScheduledTask {
                             .where(PROCESS_LOG_DATA.INSTANCE_ID.in(ids))
                             .execute();
 
+                    logDataEntries += tx.deleteFrom(PROCESS_LOG_BLOCKS)
+                            .where(PROCESS_LOG_BLOCKS.INSTANCE_ID.in(ids))
+                            .execute();
+
                     logSegmentEntries = tx.deleteFrom(PROCESS_LOG_SEGMENTS)
                             .where(PROCESS_LOG_SEGMENTS.INSTANCE_ID.in(ids))
                             .execute();
@@ -142,7 +195,7 @@ public class ProcessCleaner implements ScheduledTask {
             log.info("deleteOldState -> took {}ms", (t2 - t1));
         }
 
-        void deleteOrphans(ProcessConfiguration jobCfg) {
+        void deleteOrphans(Field<OffsetDateTime> cutoff, ProcessConfiguration jobCfg) {
             long t1 = System.currentTimeMillis();
 
             tx(tx -> {
@@ -155,6 +208,17 @@ public class ProcessCleaner implements ScheduledTask {
                             .execute();
                 }
 
+                int stateBlobs = 0;
+                if (jobCfg.isStateCleanup()) {
+                    // blobs that weren't used since the cutoff and aren't referenced by any process
+                    stateBlobs = tx.deleteFrom(PROCESS_STATE_BLOBS)
+                            .where(PROCESS_STATE_BLOBS.LAST_USED_AT.lessThan(cutoff)
+                                    .and(notExists(selectOne()
+                                            .from(PROCESS_STATE)
+                                            .where(PROCESS_STATE.BLOB_HASH.eq(PROCESS_STATE_BLOBS.BLOB_HASH)))))
+                            .execute();
+                }
+
                 int events = 0;
                 if (jobCfg.isEventsCleanup()) {
                     events = tx.deleteFrom(PROCESS_EVENTS)
@@ -169,12 +233,189 @@ public class ProcessCleaner implements ScheduledTask {
                             .execute();
                 }
 
-                log.info("deleteOrphans -> removed orphan data: {} state item(s), {} event(s), {} checkpoint(s)",
-                        stateRecords, events, checkpoints);
+                log.info("deleteOrphans -> removed orphan data: {} state item(s), {} state blob(s), {} event(s), {} checkpoint(s)",
+                        stateRecords, stateBlobs, events, checkpoints);
             });
 
             long t2 = System.currentTimeMillis();
             log.info("deleteOrphans -> took {}ms", (t2 - t1));
         }
+
+        /**
+         * Same as {@link #deleteOldState(Field, ProcessConfiguration)}, but removes
+         * the data of {@code cleanupBatchSize} processes at the time, each batch
+         * in a separate transaction.
+         */
+        void deleteOldStateInBatches(Field<OffsetDateTime> cutoff, ProcessConfiguration jobCfg) {
+            long t1 = System.currentTimeMillis();
+
+            int batchSize = jobCfg.getCleanupBatchSize();
+            long delay = jobCfg.getCleanupBatchDelay().toMillis();
+
+            Map<String, Integer> totals = new LinkedHashMap<>();
+
+            UUID lastId = null;
+            while (!Thread.currentThread().isInterrupted()) {
+                Condition c = PROCESS_QUEUE.LAST_UPDATED_AT.lessThan(cutoff)
+                        .and(PROCESS_QUEUE.CURRENT_STATUS.notIn(EXCLUDE_STATUSES));
+
+                if (lastId != null) {
+                    c = c.and(PROCESS_QUEUE.INSTANCE_ID.greaterThan(lastId));
+                }
+
+                // seek by ID, the queue entries are kept if queueCleanup is disabled
+                List<Record2<UUID, OffsetDateTime>> keys = dsl().select(PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT)
+                        .from(PROCESS_QUEUE)
+                        .where(c)
+                        .orderBy(PROCESS_QUEUE.INSTANCE_ID)
+                        .limit(batchSize)
+                        .fetch();
+
+                if (keys.isEmpty()) {
+                    break;
+                }
+
+                lastId = keys.get(keys.size() - 1).value1();
+
+                tx(tx -> {
+                    if (jobCfg.isStateCleanup()) {
+                        add(totals, "state item(s)", delete(tx, PROCESS_STATE, PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, keys));
+                    }
+
+                    if (jobCfg.isEventsCleanup()) {
+                        add(totals, "event(s)", delete(tx, PROCESS_EVENTS, PROCESS_EVENTS.INSTANCE_ID, PROCESS_EVENTS.INSTANCE_CREATED_AT, keys));
+                    }
+
+                    if (jobCfg.isLogsCleanup()) {
+                        add(totals, "log data entries", delete(tx, PROCESS_LOG_DATA, PROCESS_LOG_DATA.INSTANCE_ID, PROCESS_LOG_DATA.INSTANCE_CREATED_AT, keys));
+                        add(totals, "log data entries", delete(tx, PROCESS_LOG_BLOCKS, PROCESS_LOG_BLOCKS.INSTANCE_ID, PROCESS_LOG_BLOCKS.INSTANCE_CREATED_AT, keys));
+                        add(totals, "log segments", delete(tx, PROCESS_LOG_SEGMENTS, PROCESS_LOG_SEGMENTS.INSTANCE_ID, PROCESS_LOG_SEGMENTS.INSTANCE_CREATED_AT, keys));
+                    }
+
+                    if (jobCfg.isCheckpointCleanup()) {
+                        add(totals, "checkpoint(s)", delete(tx, PROCESS_CHECKPOINTS, PROCESS_CHECKPOINTS.INSTANCE_ID, PROCESS_CHECKPOINTS.INSTANCE_CREATED_AT, keys));
+                    }
+
+                    // the queue entries go last, they are used to find the data
+                    if (jobCfg.isQueueCleanup()) {
+                        add(totals, "queue entries", delete(tx, PROCESS_QUEUE, PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT, keys));
+                    }
+                });
+
+                if (keys.size() < batchSize) {
+                    break;
+                }
+
+                sleep(delay);
+            }
+
+            long t2 = System.currentTimeMillis();
+            log.info("deleteOldStateInBatches -> removed older than {}: {}, took {}ms", cutoff, totals, (t2 - t1));
+        }
+
+        /**
+         * Same as {@link #deleteOrphans(Field, ProcessConfiguration)}, but removes
+         * the data of {@code cleanupBatchSize} processes at the time, each batch
+         * in a separate transaction.
+         */
+        void deleteOrphansInBatches(Field<OffsetDateTime> cutoff, ProcessConfiguration jobCfg) {
+            long t1 = System.currentTimeMillis();
+
+            int batchSize = jobCfg.getCleanupBatchSize();
+            long delay = jobCfg.getCleanupBatchDelay().toMillis();
+
+            int stateRecords = 0;
+            int stateBlobs = 0;
+            if (jobCfg.isStateCleanup()) {
+                stateRecords = deleteOrphansInBatches(PROCESS_STATE, PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, batchSize, delay);
+
+                // blobs that weren't used since the cutoff and aren't referenced by any process
+                stateBlobs = txResult(tx -> tx.deleteFrom(PROCESS_STATE_BLOBS)
+                        .where(PROCESS_STATE_BLOBS.LAST_USED_AT.lessThan(cutoff)
+                                .and(notExists(selectOne()
+                                        .from(PROCESS_STATE)
+                                        .where(PROCESS_STATE.BLOB_HASH.eq(PROCESS_STATE_BLOBS.BLOB_HASH)))))
+                        .execute());
+            }
+
+            int events = 0;
+            if (jobCfg.isEventsCleanup()) {
+                events = deleteOrphansInBatches(PROCESS_EVENTS, PROCESS_EVENTS.INSTANCE_ID, PROCESS_EVENTS.INSTANCE_CREATED_AT, batchSize, delay);
+            }
+
+            int checkpoints = 0;
+            if (jobCfg.isCheckpointCleanup()) {
+                checkpoints = deleteOrphansInBatches(PROCESS_CHECKPOINTS, PROCESS_CHECKPOINTS.INSTANCE_ID, PROCESS_CHECKPOINTS.INSTANCE_CREATED_AT, batchSize, delay);
+            }
+
+            long t2 = System.currentTimeMillis();
+            log.info("deleteOrphansInBatches -> removed orphan data: {} state item(s), {} state blob(s), {} event(s), {} checkpoint(s), took {}ms",
+                    stateRecords, stateBlobs, events, checkpoints, (t2 - t1));
+        }
+
+        private int deleteOrphansInBatches(Table<?> table, Field<UUID> instanceId, Field<OffsetDateTime> createdAt, int batchSize, long delay) {
+            int result = 0;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                // no DISTINCT, the query can stop as soon as it finds enough rows
+                List<Record2<UUID, OffsetDateTime>> keys = dsl().select(instanceId, createdAt)
+                        .from(table)
+                        .where(notExists(selectOne()
+                                .from(PROCESS_QUEUE)
+                                .where(PROCESS_QUEUE.INSTANCE_ID.eq(instanceId))))
+                        .limit(batchSize)
+                        .fetch();
+
+                if (keys.isEmpty()) {
+                    break;
+                }
+
+                result += txResult(tx -> delete(tx, table, instanceId, createdAt, keys));
+
+                if (keys.size() < batchSize) {
+                    break;
+                }
+
+                sleep(delay);
+            }
+
+            return result;
+        }
+
+        /**
+         * Deletes the rows of the specified processes. The {@code createdAt} condition
+         * allows PostgreSQL to skip the partitions that can't contain the data.
+         */
+        private static int delete(DSLContext tx, Table<?> table, Field<UUID> instanceId, Field<OffsetDateTime> createdAt,
+                                  List<Record2<UUID, OffsetDateTime>> keys) {
+
+            Set<UUID> ids = new HashSet<>(keys.size());
+            Set<OffsetDateTime> createdAts = new HashSet<>(keys.size());
+            for (Record2<UUID, OffsetDateTime> k : keys) {
+                ids.add(k.value1());
+                createdAts.add(k.value2());
+            }
+
+            return tx.deleteFrom(table)
+                    .where(instanceId.in(ids)
+                            .and(createdAt.in(createdAts)))
+                    .execute();
+        }
+
+        private static void add(Map<String, Integer> totals, String key, int count) {
+            totals.merge(key, count, Integer::sum);
+        }
+
+        private static void sleep(long ms) {
+            if (ms <= 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
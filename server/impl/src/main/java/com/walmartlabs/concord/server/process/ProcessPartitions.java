@@ -0,0 +1,181 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_BLOCKS;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_SEGMENTS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+
+/**
+ * Maintains the process tables partitioned by {@code INSTANCE_CREATED_AT}
+ * (see {@code CONCORD_PARTITION_PROCESS_TABLE} in the DB migrations).
+ * Creates new partitions in advance and removes expired ones.
+ * <p>
+ * Non-partitioned tables are ignored.
+ */
+@Named("process-partitions")
+@Singleton
+public class ProcessPartitions implements ScheduledTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessPartitions.class);
+
+    /**
+     * Tables that can be partitioned.
+     */
+    static final Table<?>[] TABLES = {
+            PROCESS_STATE,
+            PROCESS_EVENTS,
+            PROCESS_LOG_SEGMENTS,
+            PROCESS_LOG_DATA,
+            PROCESS_LOG_BLOCKS
+    };
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmm").withZone(ZoneOffset.UTC);
+
+    private final ProcessConfiguration cfg;
+    private final PartitionsDao dao;
+
+    @Inject
+    public ProcessPartitions(ProcessConfiguration cfg, PartitionsDao dao) {
+        this.cfg = cfg;
+        this.dao = dao;
+    }
+
+    @Override
+    public long getIntervalInSec() {
+        return cfg.getPartitioningMaintenanceInterval().getSeconds();
+    }
+
+    @Override
+    public void performTask() {
+        long interval = Math.max(1, cfg.getPartitioningInterval().getSeconds());
+        Instant until = Instant.now().plusSeconds(interval * Math.max(1, cfg.getPartitioningPrecreate()));
+
+        for (Table<?> t : TABLES) {
+            List<Partition> partitions = dao.list(t);
+            if (partitions.isEmpty()) {
+                continue;
+            }
+
+            Instant last = partitions.stream()
+                    .map(p -> p.to)
+                    .filter(Objects::nonNull)
+                    .max(Instant::compareTo)
+                    .orElseGet(() -> align(Instant.now(), interval));
+
+            while (last.isBefore(until)) {
+                Instant next = align(last, interval).plusSeconds(interval);
+                String name = partitionName(t, last);
+                try {
+                    dao.create(t, name, last, next);
+                } catch (DataAccessException e) {
+                    // most likely the default partition already contains rows from the range
+                    log.warn("performTask -> can't create {} ({} - {}): {}", name, last, next, e.getMessage());
+                    break;
+                }
+
+                log.info("performTask -> created {} ({} - {})", name, last, next);
+                last = next;
+            }
+        }
+    }
+
+    /**
+     * Drops (or detaches, if {@code process.partitioning.detach} is enabled)
+     * partitions of the specified table that contain only the data of the
+     * processes older than the cutoff.
+     *
+     * @param excludeStatuses partitions with processes in these statuses are kept
+     * @return number of removed partitions
+     */
+    public int removeExpired(Table<?> t, OffsetDateTime cutoff, String[] excludeStatuses) {
+        int result = 0;
+
+        for (Partition p : dao.list(t)) {
+            if (p.to == null || p.to.isAfter(cutoff.toInstant())) {
+                continue;
+            }
+
+            if (dao.hasActiveProcesses(p, cutoff, excludeStatuses)) {
+                continue;
+            }
+
+            if (cfg.isPartitioningDetach()) {
+                dao.detach(t, p.name);
+            } else {
+                dao.drop(p.name);
+            }
+
+            log.info("removeExpired -> {} {}", cfg.isPartitioningDetach() ? "detached" : "dropped", p.name);
+            result++;
+        }
+
+        return result;
+    }
+
+    private static Instant align(Instant i, long interval) {
+        return Instant.ofEpochSecond(Math.floorDiv(i.getEpochSecond(), interval) * interval);
+    }
+
+    private static String partitionName(Table<?> t, Instant from) {
+        return t.getName().toLowerCase() + "_p_" + NAME_FORMAT.format(from);
+    }
+
+    static final class Partition {
+
+        final String name;
+
+        /**
+         * Lower bound (inclusive) or {@code null} for MINVALUE and the default partition.
+         */
+        final Instant from;
+
+        /**
+         * Upper bound (exclusive) or {@code null} for MAXVALUE and the default partition.
+         */
+        final Instant to;
+
+        Partition(String name, Instant from, Instant to) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -75,6 +75,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.ws.rs.*;
@@ -115,6 +116,7 @@ public class ProcessResource implements Resource {
     private final ProcessEventDao processEventDao;
     private final ProcessLogManager processLogManager;
     private final PolicyManager policyManager;
+    private final ProcessStatusWatcher statusWatcher;
 
     private final ProcessResourceV2 v2;
 
@@ -134,6 +136,7 @@ public class ProcessResource implements Resource {
                            ProcessLogAccessManager logAccessManager, ProcessEventDao processEventDao,
                            ProcessLogManager processLogManager,
                            PolicyManager policyManager,
+                           ProcessStatusWatcher statusWatcher,
                            ProcessResourceV2 v2) {
 
         this.processManager = processManager;
@@ -152,6 +155,7 @@ public class ProcessResource implements Resource {
         this.processEventDao = processEventDao;
         this.processLogManager = processLogManager;
         this.policyManager = policyManager;
+        this.statusWatcher = statusWatcher;
 
         this.v2 = v2;
     }
@@ -534,6 +538,65 @@ public class ProcessResource implements Resource {
         }
     }
 
+    /**
+     * Waits for completion of multiple processes. Returns when all (or any,
+     * depending on {@link WaitForCompletionRequest#getCompleteCondition()})
+     * of the processes reach a final status or when the timeout expires.
+     * The timeout is truncated to {@code process.statusWait.maxTimeout},
+     * the clients are expected to repeat the request until the processes
+     * are finished.
+     *
+     * @param req
+     * @return current entries of the requested processes. Unknown processes
+     * are omitted, the method returns immediately in this case
+     */
+    @POST
+    @ApiOperation("Wait for multiple processes to finish")
+    @javax.ws.rs.Path("/waitForCompletion")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Validate
+    public List<ProcessEntry> waitForProcesses(@ApiParam @Valid WaitForCompletionRequest req) {
+        Set<UUID> instanceIds = req.getInstanceIds();
+
+        int maxProcesses = processCfg.getStatusWaitMaxProcesses();
+        if (instanceIds.size() > maxProcesses) {
+            throw new ConcordApplicationException("Too many processes, max: " + maxProcesses, Status.BAD_REQUEST);
+        }
+
+        long maxTimeout = processCfg.getStatusWaitMaxTimeout().toMillis();
+        long timeout = req.getTimeout() != null && req.getTimeout() >= 0 ? Math.min(req.getTimeout(), maxTimeout) : maxTimeout;
+        long recheckInterval = processCfg.getStatusWaitRecheckInterval().toMillis();
+
+        List<PartialProcessKey> keys = instanceIds.stream()
+                .map(PartialProcessKey::from)
+                .collect(Collectors.toList());
+
+        long deadline = System.currentTimeMillis() + timeout;
+
+        try (ProcessStatusWatcher.Waiter waiter = statusWatcher.watch(instanceIds)) {
+            while (true) {
+                List<ProcessEntry> l = queueDao.get(keys);
+
+                // return immediately if some of the processes are unknown
+                if (l.size() < keys.size() || isCompleted(req.getCompleteCondition(), l)) {
+                    return l;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return l;
+                }
+
+                waiter.await(Math.min(remaining, recheckInterval));
+            }
+        } catch (InterruptedException e) { // NOSONAR
+            throw new ConcordApplicationException(Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Request was interrputed")
+                    .build());
+        }
+    }
+
     /**
      * Disable a process.
      *
@@ -881,6 +944,7 @@ public class ProcessResource implements Resource {
 
         return Response.ok(out, "application/zip")
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + instanceId + ".zip\"")
+                .header(Constants.Headers.STREAMABLE_ZIP, "true")
                 .build();
     }
 
@@ -1063,6 +1127,32 @@ public class ProcessResource implements Resource {
         return Response.ok().build();
     }
 
+    private static boolean isCompleted(ProcessCompletionCondition.CompleteCondition condition, List<ProcessEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        for (ProcessEntry e : entries) {
+            boolean finished = isFinished(e.status());
+            if (finished && condition == ProcessCompletionCondition.CompleteCondition.ONE_OF) {
+                return true;
+            }
+
+            if (!finished && condition == ProcessCompletionCondition.CompleteCondition.ALL) {
+                return false;
+            }
+        }
+
+        return condition == ProcessCompletionCondition.CompleteCondition.ALL;
+    }
+
+    private static boolean isFinished(ProcessStatus s) {
+        return s == ProcessStatus.FINISHED ||
+                s == ProcessStatus.FAILED ||
+                s == ProcessStatus.CANCELLED ||
+                s == ProcessStatus.TIMED_OUT;
+    }
+
     private ProcessKey assertProcessKey(UUID instanceId) {
         ProcessKey processKey = processKeyCache.get(instanceId);
         if (processKey == null) {
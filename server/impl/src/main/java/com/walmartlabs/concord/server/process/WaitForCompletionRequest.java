@@ -0,0 +1,71 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.walmartlabs.concord.server.process.queue.ProcessCompletionCondition.CompleteCondition;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WaitForCompletionRequest implements Serializable {
+
+    @NotNull
+    private final Set<UUID> instanceIds;
+
+    private final CompleteCondition completeCondition;
+
+    private final Long timeout;
+
+    @JsonCreator
+    public WaitForCompletionRequest(@JsonProperty("instanceIds") Set<UUID> instanceIds,
+                                    @JsonProperty("completeCondition") CompleteCondition completeCondition,
+                                    @JsonProperty("timeout") Long timeout) {
+
+        this.instanceIds = instanceIds;
+        this.completeCondition = completeCondition != null ? completeCondition : CompleteCondition.ALL;
+        this.timeout = timeout;
+    }
+
+    public Set<UUID> getInstanceIds() {
+        return instanceIds;
+    }
+
+    /**
+     * {@link CompleteCondition#ALL} to wait for all processes,
+     * {@link CompleteCondition#ONE_OF} to wait for any of them.
+     */
+    public CompleteCondition getCompleteCondition() {
+        return completeCondition;
+    }
+
+    /**
+     * Max wait time, ms. The server can truncate it.
+     */
+    public Long getTimeout() {
+        return timeout;
+    }
+}
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.event;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.sdk.EventType;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.Listeners;
@@ -107,9 +108,8 @@ public class ProcessEventManager {
 
     @WithTimer
     public void event(DSLContext tx, List<NewProcessEvent> events) {
-        // TODO consider returning a callback that can be called outside of the transaction
         List<ProcessEvent> insertedEvents = doEvent(tx, events);
-        listeners.onProcessEvent(insertedEvents);
+        AbstractDao.afterCommit(tx, () -> listeners.onProcessEvent(insertedEvents));
     }
 
     private List<ProcessEvent> doEvent(DSLContext tx, List<NewProcessEvent> events) {
@@ -0,0 +1,85 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.time.Duration;
+import java.util.List;
+
+import static com.walmartlabs.concord.db.PgUtils.interval;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.jooq.impl.DSL.currentOffsetDateTime;
+
+/**
+ * Finds the processes with logs to compact.
+ *
+ * @see ProcessLogCompactor
+ */
+@Named
+public class CompactorDao extends AbstractDao {
+
+    private static final String[] FINAL_STATUSES = {
+            ProcessStatus.FINISHED.toString(),
+            ProcessStatus.FAILED.toString(),
+            ProcessStatus.CANCELLED.toString(),
+            ProcessStatus.TIMED_OUT.toString()
+    };
+
+    @Inject
+    public CompactorDao(@MainDB Configuration cfg) {
+        super(cfg);
+    }
+
+    @Override
+    protected <T> T txResult(TxResult<T> t) {
+        return super.txResult(t);
+    }
+
+    /**
+     * Returns the finished processes with not compacted logs, oldest first.
+     */
+    public List<ProcessKey> next(Duration delay, int limit) {
+        return dsl().select(PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT)
+                .from(PROCESS_QUEUE)
+                .where(PROCESS_QUEUE.LOGS_COMPACTED_AT.isNull()
+                        .and(PROCESS_QUEUE.CURRENT_STATUS.in(FINAL_STATUSES))
+                        .and(PROCESS_QUEUE.LAST_UPDATED_AT.lessThan(currentOffsetDateTime().minus(interval(delay.getSeconds() + " seconds")))))
+                .orderBy(PROCESS_QUEUE.LAST_UPDATED_AT)
+                .limit(limit)
+                .fetch(r -> new ProcessKey(r.value1(), r.value2()));
+    }
+
+    public void markCompacted(DSLContext tx, ProcessKey processKey) {
+        tx.update(PROCESS_QUEUE)
+                .set(PROCESS_QUEUE.LOGS_COMPACTED_AT, currentOffsetDateTime())
+                .where(PROCESS_QUEUE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_QUEUE.CREATED_AT.eq(processKey.getCreatedAt())))
+                .execute();
+    }
+}
@@ -0,0 +1,303 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.NewLogChunk;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind buffer for process logs. Coalesces the chunks received
+ * during a short time window and writes them using a single transaction
+ * and a single multi-row insert per process.
+ * <p>
+ * {@link #append(ProcessKey, long, byte[])} blocks until the chunk is
+ * committed, so callers can read their own writes.
+ */
+@Named
+@Singleton
+public class ProcessLogBuffer implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogBuffer.class);
+
+    static final String LOCK_PREFIX = "process-log-";
+
+    /**
+     * Max time to wait for a chunk to be written. The chunk can still be
+     * written after the timeout.
+     */
+    private static final long APPEND_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private final ProcessLogsDao logsDao;
+    private final Locks locks;
+
+    private final boolean enabled;
+    private final long flushInterval;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingChunk> queue;
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Histogram batchSizeHistogram;
+    private final Timer flushTimer;
+
+    private volatile Thread worker;
+    private volatile boolean closed;
+
+    @Inject
+    public ProcessLogBuffer(ProcessLogsDao logsDao,
+                            Locks locks,
+                            ProcessConfiguration cfg,
+                            MetricRegistry metricRegistry) {
+
+        this.logsDao = logsDao;
+        this.locks = locks;
+
+        this.enabled = cfg.isLogBufferEnabled();
+        this.flushInterval = cfg.getLogBufferFlushInterval() != null ? cfg.getLogBufferFlushInterval().toMillis() : 0;
+        this.maxBatchSize = Math.max(1, cfg.getLogBufferMaxBatchSize());
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, cfg.getLogBufferCapacity()));
+
+        this.batchSizeHistogram = metricRegistry.histogram("process-log-buffer-batch-size");
+        this.flushTimer = metricRegistry.timer("process-log-buffer-flush");
+        metricRegistry.gauge("process-log-buffer-depth", () -> depth::get);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        this.worker = new Thread(this::run, "process-log-buffer");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        closed = true;
+
+        Thread w = worker;
+        if (w != null) {
+            w.interrupt();
+            try {
+                w.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+
+        failRemaining();
+
+        log.info("stop -> done");
+    }
+
+    /**
+     * Appends a chunk to the process log.
+     *
+     * @return the new chunk range
+     */
+    public Range append(ProcessKey processKey, long segmentId, byte[] data) {
+        if (worker == null || closed) {
+            // the buffer can be enabled on other server instances (or this
+            // instance is stopping), use the same lock as the buffered appends
+            return logsDao.txResult(tx -> {
+                locks.lock(tx, lockKey(processKey));
+                return logsDao.append(tx, processKey, segmentId, data);
+            });
+        }
+
+        PendingChunk c = new PendingChunk(processKey, new NewLogChunk(segmentId, data));
+        try {
+            queue.put(c);
+            depth.incrementAndGet();
+
+            if (closed) {
+                // stop() might have drained the queue before the chunk was added
+                failRemaining();
+            }
+
+            return c.result.get(APPEND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while appending a log chunk: " + processKey);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timeout while appending a log chunk: " + processKey);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Fails the remaining chunks, the callers can retry.
+     */
+    private void failRemaining() {
+        List<PendingChunk> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (remaining.isEmpty()) {
+            return;
+        }
+
+        depth.addAndGet(-remaining.size());
+        remaining.forEach(c -> c.result.completeExceptionally(new IllegalStateException("The log buffer is stopped")));
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<PendingChunk> batch = new ArrayList<>();
+            try {
+                // wait for the first chunk
+                batch.add(queue.take());
+
+                // ...and collect everything that arrives during the flush interval
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+
+                    PendingChunk c = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (c == null) {
+                        break;
+                    }
+                    batch.add(c);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (!batch.isEmpty()) {
+                depth.addAndGet(-batch.size());
+                flush(batch);
+            }
+        }
+    }
+
+    private void flush(List<PendingChunk> batch) {
+        batchSizeHistogram.update(batch.size());
+
+        // group by process
+        Map<ProcessKey, List<PendingChunk>> m = new LinkedHashMap<>();
+        for (PendingChunk c : batch) {
+            m.computeIfAbsent(c.processKey, k -> new ArrayList<>()).add(c);
+        }
+
+        Timer.Context ctx = flushTimer.time();
+        try {
+            write(m);
+        } catch (Exception e) {
+            if (m.size() == 1) {
+                log.warn("flush -> error while writing {} chunk(s): {}", batch.size(), e.getMessage());
+                batch.forEach(c -> c.result.completeExceptionally(e));
+                return;
+            }
+
+            // the transaction is rolled back, retry each process separately
+            // so a single failing process doesn't fail the chunks of the others
+            log.warn("flush -> error while writing {} chunk(s), retrying each process separately: {}", batch.size(), e.getMessage());
+            for (Map.Entry<ProcessKey, List<PendingChunk>> entry : m.entrySet()) {
+                try {
+                    write(Collections.singletonMap(entry.getKey(), entry.getValue()));
+                } catch (Exception ee) {
+                    log.warn("flush -> error while writing {} chunk(s) of {}: {}", entry.getValue().size(), entry.getKey(), ee.getMessage());
+                    entry.getValue().forEach(c -> c.result.completeExceptionally(ee));
+                }
+            }
+        } finally {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Writes the chunks in a single transaction. Completes the chunks' futures
+     * after the transaction is committed.
+     */
+    private void write(Map<ProcessKey, List<PendingChunk>> chunksPerProcess) {
+        Map<PendingChunk, Range> results = new HashMap<>();
+
+        logsDao.tx(tx -> {
+            results.clear();
+
+            // prevent concurrent appends from other server instances
+            // multiple processes can share the same advisory lock,
+            // lockAll takes each lock once and in a consistent order
+            List<String> keys = new ArrayList<>(chunksPerProcess.size());
+            chunksPerProcess.keySet().forEach(k -> keys.add(lockKey(k)));
+            locks.lockAll(tx, keys);
+
+            for (Map.Entry<ProcessKey, List<PendingChunk>> e : chunksPerProcess.entrySet()) {
+                List<PendingChunk> chunks = e.getValue();
+
+                List<NewLogChunk> l = new ArrayList<>(chunks.size());
+                chunks.forEach(c -> l.add(c.chunk));
+
+                List<Range> ranges = logsDao.append(tx, e.getKey(), l);
+                for (int i = 0; i < chunks.size(); i++) {
+                    results.put(chunks.get(i), ranges.get(i));
+                }
+            }
+        });
+
+        // the transaction is committed, release the callers
+        results.forEach((c, r) -> c.result.complete(r));
+    }
+
+    private static String lockKey(ProcessKey processKey) {
+        return LOCK_PREFIX + processKey.getInstanceId();
+    }
+
+    private static final class PendingChunk {
+
+        private final ProcessKey processKey;
+        private final NewLogChunk chunk;
+        private final CompletableFuture<Range> result = new CompletableFuture<>();
+
+        private PendingChunk(ProcessKey processKey, NewLogChunk chunk) {
+            this.processKey = processKey;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.List;
+
+/**
+ * Moves the logs of finished processes into compressed blocks.
+ *
+ * @see ProcessLogsDao#compact(DSLContext, ProcessKey, int)
+ */
+@Named("process-log-compactor")
+@Singleton
+public class ProcessLogCompactor implements ScheduledTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogCompactor.class);
+
+    private final ProcessConfiguration cfg;
+    private final CompactorDao dao;
+    private final ProcessLogsDao logsDao;
+    private final Locks locks;
+
+    @Inject
+    public ProcessLogCompactor(ProcessConfiguration cfg, CompactorDao dao, ProcessLogsDao logsDao, Locks locks) {
+        this.cfg = cfg;
+        this.dao = dao;
+        this.logsDao = logsDao;
+        this.locks = locks;
+    }
+
+    @Override
+    public long getIntervalInSec() {
+        return cfg.isLogCompactionEnabled() ? cfg.getLogCompactionInterval().getSeconds() : 0;
+    }
+
+    @Override
+    public void performTask() {
+        long t1 = System.currentTimeMillis();
+
+        List<ProcessKey> keys = dao.next(cfg.getLogCompactionDelay(), cfg.getLogCompactionBatchSize());
+
+        int chunks = 0;
+        for (ProcessKey k : keys) {
+            chunks += compact(k);
+        }
+
+        long t2 = System.currentTimeMillis();
+        if (!keys.isEmpty()) {
+            log.info("performTask -> compacted {} chunk(s) of {} process(es), took {}ms", chunks, keys.size(), (t2 - t1));
+        }
+    }
+
+    private int compact(ProcessKey processKey) {
+        int blockSize = cfg.getLogCompactionBlockSize();
+        return dao.txResult(tx -> {
+            // same lock as the one used by the log buffer
+            locks.lock(tx, ProcessLogBuffer.LOCK_PREFIX + processKey.getInstanceId());
+
+            int n = logsDao.compact(tx, processKey, blockSize);
+            dao.markCompacted(tx, processKey);
+            return n;
+        });
+    }
+}
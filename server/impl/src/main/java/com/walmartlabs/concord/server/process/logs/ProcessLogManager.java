@@ -47,6 +47,7 @@ public class ProcessLogManager {
     private static final long SYSTEM_SEGMENT_ID = 0;
     private static final String SYSTEM_SEGMENT_NAME = "system";
     private final ProcessLogsDao logsDao;
+    private final ProcessLogBuffer logBuffer;
     private final Listeners listeners;
 
     @InjectCounter
@@ -54,10 +55,12 @@ public class ProcessLogManager {
 
     @Inject
     public ProcessLogManager(ProcessLogsDao logsDao,
+                             ProcessLogBuffer logBuffer,
                              Listeners listeners,
                              Counter logBytesAppended) {
 
         this.logsDao = logsDao;
+        this.logBuffer = logBuffer;
         this.listeners = listeners;
         this.logBytesAppended = logBytesAppended;
     }
@@ -110,7 +113,7 @@ public class ProcessLogManager {
     }
 
     public int log(ProcessKey processKey, long segmentId, byte[] msg) {
-        Range range = logsDao.append(processKey, segmentId, msg);
+        Range range = logBuffer.append(processKey, segmentId, msg);
         logBytesAppended.inc(msg.length);
 
         ProcessLogEntry entry = ProcessLogEntry.builder()
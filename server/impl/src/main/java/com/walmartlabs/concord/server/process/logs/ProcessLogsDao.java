@@ -32,13 +32,23 @@ import org.jooq.*;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static com.walmartlabs.concord.db.PgUtils.lowerRange;
+import static com.walmartlabs.concord.db.PgUtils.rangeOverlaps;
 import static com.walmartlabs.concord.db.PgUtils.upperRange;
 import static com.walmartlabs.concord.server.jooq.Routines.*;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_BLOCKS;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_SEGMENTS;
 import static org.jooq.impl.DSL.*;
@@ -51,16 +61,36 @@ public class ProcessLogsDao extends AbstractDao {
         super(cfg);
     }
 
+    @Override
+    protected void tx(Tx t) {
+        super.tx(t);
+    }
+
+    @Override
+    protected <T> T txResult(TxResult<T> t) {
+        return super.txResult(t);
+    }
+
     /**
      * Appends a chunk to the process log. Automatically calculates the chunk's range.
      *
      * @return the new chunk range.
      */
     public Range append(ProcessKey processKey, long segmentId, byte[] data) {
+        return txResult(tx -> append(tx, processKey, segmentId, data));
+    }
+
+    /**
+     * Appends a chunk to the process log using the specified transaction.
+     *
+     * @return the new chunk range.
+     * @see #append(ProcessKey, long, byte[])
+     */
+    public Range append(DSLContext tx, ProcessKey processKey, long segmentId, byte[] data) {
         UUID instanceId = processKey.getInstanceId();
         OffsetDateTime createdAt = processKey.getCreatedAt();
 
-        ProcessLogDataRecord r = txResult(tx -> tx.insertInto(PROCESS_LOG_DATA)
+        ProcessLogDataRecord r = tx.insertInto(PROCESS_LOG_DATA)
                 .columns(PROCESS_LOG_DATA.INSTANCE_ID,
                         PROCESS_LOG_DATA.INSTANCE_CREATED_AT,
                         PROCESS_LOG_DATA.SEGMENT_ID,
@@ -74,11 +104,79 @@ public class ProcessLogsDao extends AbstractDao {
                         processLogDataNextRange2(instanceId, createdAt, data.length),
                         value(data))
                 .returning(PROCESS_LOG_DATA.LOG_RANGE)
-                .fetchOne());
+                .fetchOne();
 
         return PgIntRange.parse(r.getLogRange().toString());
     }
 
+    /**
+     * Appends multiple chunks to the process log using a single multi-row insert.
+     * The ranges are calculated based on the current tail of the log and
+     * its segments. The caller must ensure that there are no concurrent
+     * appends for the same process, e.g. by holding a lock.
+     *
+     * @return the new chunk ranges, in the same order as {@code chunks}.
+     */
+    public List<Range> append(DSLContext tx, ProcessKey processKey, List<NewLogChunk> chunks) {
+        UUID instanceId = processKey.getInstanceId();
+        OffsetDateTime createdAt = processKey.getCreatedAt();
+
+        // current tails of the whole log and of each segment
+        Field<Long> segmentIdField = PROCESS_LOG_DATA.SEGMENT_ID;
+        Field<Integer> segmentTailField = max(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE));
+        Field<Integer> logTailField = max(upperRange(PROCESS_LOG_DATA.LOG_RANGE));
+
+        Map<Long, Integer> segmentTails = new HashMap<>();
+        int logTail = 0;
+        for (Record3<Long, Integer, Integer> r : tx.select(segmentIdField, segmentTailField, logTailField)
+                .from(PROCESS_LOG_DATA)
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt)))
+                .groupBy(segmentIdField)
+                .fetch()) {
+
+            segmentTails.put(r.value1(), r.value2());
+            logTail = Math.max(logTail, r.value3());
+        }
+
+        InsertValuesStep6<ProcessLogDataRecord, UUID, OffsetDateTime, Long, Object, Object, byte[]> q = tx.insertInto(PROCESS_LOG_DATA)
+                .columns(PROCESS_LOG_DATA.INSTANCE_ID,
+                        PROCESS_LOG_DATA.INSTANCE_CREATED_AT,
+                        PROCESS_LOG_DATA.SEGMENT_ID,
+                        PROCESS_LOG_DATA.SEGMENT_RANGE,
+                        PROCESS_LOG_DATA.LOG_RANGE,
+                        PROCESS_LOG_DATA.CHUNK_DATA);
+
+        List<Range> result = new ArrayList<>(chunks.size());
+        for (NewLogChunk c : chunks) {
+            int len = c.getData().length;
+
+            int segmentStart = segmentTails.getOrDefault(c.getSegmentId(), 0);
+            segmentTails.put(c.getSegmentId(), segmentStart + len);
+
+            int logStart = logTail;
+            logTail += len;
+
+            q = q.values(value(instanceId),
+                    value(createdAt),
+                    value(c.getSegmentId()),
+                    int4range(segmentStart, segmentStart + len),
+                    int4range(logStart, logStart + len),
+                    value(c.getData()));
+
+            result.add(Range.builder()
+                    .lower(logStart)
+                    .lowerMode(Range.Mode.INCLUSIVE)
+                    .upper(logStart + len)
+                    .upperMode(Range.Mode.EXCLUSIVE)
+                    .build());
+        }
+
+        q.execute();
+
+        return result;
+    }
+
     public long createSegment(ProcessKey processKey, UUID correlationId, String name, OffsetDateTime createdAt, String status) {
         return txResult(tx -> tx.insertInto(PROCESS_LOG_SEGMENTS)
                 .columns(PROCESS_LOG_SEGMENTS.INSTANCE_ID,
@@ -166,6 +264,8 @@ public class ProcessLogsDao extends AbstractDao {
                 .fetchOptional(upperRange)
                 .orElse(0);
 
+        chunks = merge(chunks, getBlockChunks(tx, processKey, segmentId, start, end, size));
+
         return new ProcessLogsDao.ProcessLog(size, chunks);
     }
 
@@ -185,6 +285,8 @@ public class ProcessLogsDao extends AbstractDao {
                 .fetchOptional(upperRange)
                 .orElse(0);
 
+        chunks = merge(chunks, getBlockChunks(tx, processKey, null, start, end, size));
+
         return new ProcessLog(size, chunks);
     }
 
@@ -271,6 +373,180 @@ public class ProcessLogsDao extends AbstractDao {
         }
     }
 
+    /**
+     * Moves the chunks of the process log into compressed blocks. The last
+     * chunk of each segment is kept in PROCESS_LOG_DATA, so the log and
+     * segment sizes (and the ranges of any new chunks) are still calculated
+     * using PROCESS_LOG_DATA only. The caller must ensure that there are no
+     * concurrent appends for the same process.
+     *
+     * @param blockSize max size of a block (uncompressed)
+     * @return number of compacted chunks
+     */
+    public int compact(DSLContext tx, ProcessKey processKey, int blockSize) {
+        UUID instanceId = processKey.getInstanceId();
+        OffsetDateTime createdAt = processKey.getCreatedAt();
+
+        Field<Integer> segmentTailField = max(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE));
+        Map<Long, Integer> segmentTails = tx.select(PROCESS_LOG_DATA.SEGMENT_ID, segmentTailField)
+                .from(PROCESS_LOG_DATA)
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt)))
+                .groupBy(PROCESS_LOG_DATA.SEGMENT_ID)
+                .fetchMap(PROCESS_LOG_DATA.SEGMENT_ID, segmentTailField);
+
+        int compacted = 0;
+        for (Map.Entry<Long, Integer> e : segmentTails.entrySet()) {
+            long segmentId = e.getKey();
+
+            Condition c = PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
+                    .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt))
+                    .and(PROCESS_LOG_DATA.SEGMENT_ID.eq(segmentId))
+                    .and(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE).lt(e.getValue()));
+
+            BlockWriter w = new BlockWriter();
+            try (Cursor<Record3<Integer, Integer, byte[]>> cursor = tx.select(lowerRange(PROCESS_LOG_DATA.LOG_RANGE), lowerRange(PROCESS_LOG_DATA.SEGMENT_RANGE), PROCESS_LOG_DATA.CHUNK_DATA)
+                    .from(PROCESS_LOG_DATA)
+                    .where(c)
+                    .orderBy(PROCESS_LOG_DATA.SEGMENT_RANGE)
+                    .fetchLazy()) {
+
+                for (Record3<Integer, Integer, byte[]> r : cursor) {
+                    w.add(r.value1(), r.value2(), r.value3());
+                    compacted++;
+
+                    if (w.size() >= blockSize) {
+                        insertBlock(tx, processKey, segmentId, w);
+                        w = new BlockWriter();
+                    }
+                }
+            }
+
+            if (w.size() > 0) {
+                insertBlock(tx, processKey, segmentId, w);
+            }
+
+            tx.deleteFrom(PROCESS_LOG_DATA)
+                    .where(c)
+                    .execute();
+        }
+
+        return compacted;
+    }
+
+    private static void insertBlock(DSLContext tx, ProcessKey processKey, long segmentId, BlockWriter w) {
+        tx.insertInto(PROCESS_LOG_BLOCKS)
+                .columns(PROCESS_LOG_BLOCKS.INSTANCE_ID,
+                        PROCESS_LOG_BLOCKS.INSTANCE_CREATED_AT,
+                        PROCESS_LOG_BLOCKS.SEGMENT_ID,
+                        PROCESS_LOG_BLOCKS.LOG_RANGE,
+                        PROCESS_LOG_BLOCKS.SEGMENT_RANGE,
+                        PROCESS_LOG_BLOCKS.CHUNK_INDEX,
+                        PROCESS_LOG_BLOCKS.BLOCK_DATA)
+                .values(value(processKey.getInstanceId()),
+                        value(processKey.getCreatedAt()),
+                        value(segmentId),
+                        int4range(w.logLower, w.logUpper),
+                        int4range(w.segmentLower, w.segmentUpper),
+                        value(w.index.toArray(new Integer[0])),
+                        value(gzip(w.data.toByteArray())))
+                .execute();
+    }
+
+    /**
+     * Returns the chunks stored in compressed blocks that overlap the requested range.
+     * Uses the same range semantics as {@link #getDataChunks(DSLContext, ProcessKey, Integer, Integer)}.
+     *
+     * @param segmentId if not {@code null} then the range is relative to the segment
+     * @param size      the current size of the log (or segment)
+     */
+    private List<ProcessLogChunk> getBlockChunks(DSLContext tx, ProcessKey processKey, Long segmentId, Integer start, Integer end, int size) {
+        int lower = 0;
+        int upper = Integer.MAX_VALUE;
+        if (start != null) {
+            lower = start;
+            upper = end != null ? end : Integer.MAX_VALUE;
+        } else if (end != null) {
+            lower = size - end;
+            upper = size;
+        }
+
+        Field<Object> rangeField = segmentId != null ? PROCESS_LOG_BLOCKS.SEGMENT_RANGE : PROCESS_LOG_BLOCKS.LOG_RANGE;
+
+        Condition c = PROCESS_LOG_BLOCKS.INSTANCE_ID.eq(processKey.getInstanceId())
+                .and(PROCESS_LOG_BLOCKS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                .and(rangeOverlaps(rangeField, lower, upper));
+
+        if (segmentId != null) {
+            c = c.and(PROCESS_LOG_BLOCKS.SEGMENT_ID.eq(segmentId));
+        }
+
+        List<ProcessLogChunk> result = new ArrayList<>();
+        for (Record2<Integer[], byte[]> r : tx.select(PROCESS_LOG_BLOCKS.CHUNK_INDEX, PROCESS_LOG_BLOCKS.BLOCK_DATA)
+                .from(PROCESS_LOG_BLOCKS)
+                .where(c)
+                .fetch()) {
+
+            Integer[] index = r.value1();
+            byte[] data = gunzip(r.value2());
+
+            // index: (log offset, segment offset, length) for each chunk
+            int pos = 0;
+            for (int i = 0; i + 2 < index.length; i += 3) {
+                int chunkStart = segmentId != null ? index[i + 1] : index[i];
+                int len = index[i + 2];
+
+                if (chunkStart < upper && chunkStart + len > lower) {
+                    result.add(new ProcessLogChunk(chunkStart, Arrays.copyOfRange(data, pos, pos + len)));
+                }
+
+                pos += len;
+            }
+        }
+
+        return result;
+    }
+
+    private static List<ProcessLogChunk> merge(List<ProcessLogChunk> chunks, List<ProcessLogChunk> blockChunks) {
+        if (blockChunks.isEmpty()) {
+            return chunks;
+        }
+
+        List<ProcessLogChunk> result = new ArrayList<>(chunks.size() + blockChunks.size());
+        result.addAll(blockChunks);
+        result.addAll(chunks);
+        result.sort(Comparator.comparingInt(ProcessLogChunk::getStart));
+        return result;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 4);
+        try (OutputStream out = new GZIPOutputStream(baos)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                baos.write(buf, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    private static Field<Object> int4range(int lower, int upper) {
+        return field("int4range({0}, {1})", Object.class, val(lower), val(upper));
+    }
+
     private static ProcessLogChunk toChunk(Record2<Object, byte[]> r) {
         return new ProcessLogChunk((Integer) r.value1(), r.value2());
     }
@@ -288,6 +564,53 @@ public class ProcessLogsDao extends AbstractDao {
                 .build();
     }
 
+    private static final class BlockWriter {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final List<Integer> index = new ArrayList<>();
+
+        private int logLower = Integer.MAX_VALUE;
+        private int logUpper = 0;
+        private int segmentLower = Integer.MAX_VALUE;
+        private int segmentUpper = 0;
+
+        public void add(int logStart, int segmentStart, byte[] chunk) {
+            data.write(chunk, 0, chunk.length);
+
+            index.add(logStart);
+            index.add(segmentStart);
+            index.add(chunk.length);
+
+            logLower = Math.min(logLower, logStart);
+            logUpper = Math.max(logUpper, logStart + chunk.length);
+            segmentLower = Math.min(segmentLower, segmentStart);
+            segmentUpper = Math.max(segmentUpper, segmentStart + chunk.length);
+        }
+
+        public int size() {
+            return data.size();
+        }
+    }
+
+    public static final class NewLogChunk {
+
+        private final long segmentId;
+        private final byte[] data;
+
+        public NewLogChunk(long segmentId, byte[] data) { // NOSONAR
+            this.segmentId = segmentId;
+            this.data = data;
+        }
+
+        public long getSegmentId() {
+            return segmentId;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
     public static final class ProcessLogChunk implements Serializable {
 
         private final int start;
@@ -289,28 +289,37 @@ public class ProcessQueueDao extends AbstractDao {
     }
 
     public boolean updateStatus(List<ProcessKey> processKeys, List<ProcessStatus> expected, ProcessStatus status) {
-        return txResult(tx -> {
-            List<UUID> instanceIds = processKeys.stream()
-                    .map(PartialProcessKey::getInstanceId)
-                    .collect(Collectors.toList());
+        return txResult(tx -> updateStatus(tx, processKeys, expected, status).size() == processKeys.size());
+    }
 
-            UpdateConditionStep<ProcessQueueRecord> q = tx.update(PROCESS_QUEUE)
-                    .set(PROCESS_QUEUE.CURRENT_STATUS, status.toString())
-                    .set(PROCESS_QUEUE.LAST_UPDATED_AT, currentOffsetDateTime())
-                    .set(PROCESS_QUEUE.LAST_RUN_AT, createRunningAtValue(status))
-                    .where(PROCESS_QUEUE.INSTANCE_ID.in(instanceIds));
+    /**
+     * Updates status of multiple processes but only if their current status
+     * is in the {@code expected} list of statuses.
+     *
+     * @return keys of the updated processes
+     */
+    public List<ProcessKey> updateStatus(DSLContext tx, List<ProcessKey> processKeys, List<ProcessStatus> expected, ProcessStatus status) {
+        List<UUID> instanceIds = processKeys.stream()
+                .map(PartialProcessKey::getInstanceId)
+                .collect(Collectors.toList());
 
-            if (expected != null) {
-                List<String> l = expected.stream()
-                        .map(Enum::toString)
-                        .collect(Collectors.toList());
+        UpdateConditionStep<ProcessQueueRecord> q = tx.update(PROCESS_QUEUE)
+                .set(PROCESS_QUEUE.CURRENT_STATUS, status.toString())
+                .set(PROCESS_QUEUE.LAST_UPDATED_AT, currentOffsetDateTime())
+                .set(PROCESS_QUEUE.LAST_RUN_AT, createRunningAtValue(status))
+                .where(PROCESS_QUEUE.INSTANCE_ID.in(instanceIds));
 
-                q.and(PROCESS_QUEUE.CURRENT_STATUS.in(l));
-            }
+        if (expected != null) {
+            List<String> l = expected.stream()
+                    .map(Enum::toString)
+                    .collect(Collectors.toList());
 
-            int i = q.execute();
-            return i == processKeys.size();
-        });
+            q.and(PROCESS_QUEUE.CURRENT_STATUS.in(l));
+        }
+
+        return q.returning(PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT)
+                .fetch()
+                .map(r -> new ProcessKey(r.getInstanceId(), r.getCreatedAt()));
     }
 
     public void disable(ProcessKey processKey, boolean disabled) {
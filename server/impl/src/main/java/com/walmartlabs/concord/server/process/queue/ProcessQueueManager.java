@@ -29,6 +29,8 @@ import com.walmartlabs.concord.server.process.*;
 import com.walmartlabs.concord.server.process.event.NewProcessEvent;
 import com.walmartlabs.concord.server.process.event.ProcessEventManager;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatchQueueIndex;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatchSignal;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -49,19 +51,28 @@ public class ProcessQueueManager {
     private final ProcessKeyCache keyCache;
     private final ProcessEventManager eventManager;
     private final ProcessLogManager processLogManager;
+    private final DispatchQueueIndex dispatchQueueIndex;
+    private final DispatchSignal dispatchSignal;
+    private final ProcessStatusWatcher statusWatcher;
 
     @Inject
     public ProcessQueueManager(ProcessQueueDao queueDao,
                                ConcordObjectMapper objectMapper,
                                ProcessKeyCache keyCache,
                                ProcessEventManager eventManager,
-                               ProcessLogManager processLogManager) {
+                               ProcessLogManager processLogManager,
+                               DispatchQueueIndex dispatchQueueIndex,
+                               DispatchSignal dispatchSignal,
+                               ProcessStatusWatcher statusWatcher) {
 
         this.queueDao = queueDao;
         this.eventManager = eventManager;
         this.objectMapper = objectMapper;
         this.keyCache = keyCache;
         this.processLogManager = processLogManager;
+        this.dispatchQueueIndex = dispatchQueueIndex;
+        this.dispatchSignal = dispatchSignal;
+        this.statusWatcher = statusWatcher;
     }
 
     /**
@@ -114,7 +125,12 @@ public class ProcessQueueManager {
         queueDao.tx(tx -> {
             queueDao.enqueue(tx, processKey, tags, startAt, requirements, processTimeout, handlers, meta, imports, exclusive, runtime, dependencies);
             eventManager.insertStatusHistory(tx, processKey, ProcessStatus.ENQUEUED, Collections.emptyMap());
+
+            // wake up the dispatchers after the process is committed
+            dispatchSignal.signal(tx);
         });
+
+        dispatchQueueIndex.onStatusChange(processKey, ProcessStatus.ENQUEUED);
     }
 
     /**
@@ -144,6 +160,12 @@ public class ProcessQueueManager {
     public void updateStatus(DSLContext tx, ProcessKey processKey, ProcessStatus status, Map<String, Object> statusPayload) {
         queueDao.updateStatus(tx, processKey, status);
         eventManager.insertStatusHistory(tx, processKey, status, statusPayload);
+        dispatchQueueIndex.onStatusChange(tx, processKey, status);
+        statusWatcher.onStatusChange(tx, processKey, status);
+
+        if (status == ProcessStatus.ENQUEUED) {
+            dispatchSignal.signal(tx);
+        }
     }
 
     /**
@@ -152,11 +174,23 @@ public class ProcessQueueManager {
      * @return {@code true} if the process was updated
      */
     public boolean updateExpectedStatus(ProcessKey processKey, ProcessStatus expected, ProcessStatus status) {
-        return queueDao.txResult(tx -> {
-            boolean success = queueDao.updateStatus(tx, processKey, expected, status);
+        boolean success = queueDao.txResult(tx -> {
+            boolean updated = queueDao.updateStatus(tx, processKey, expected, status);
             eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
-            return success;
+
+            if (updated && status == ProcessStatus.ENQUEUED) {
+                dispatchSignal.signal(tx);
+            }
+
+            return updated;
         });
+
+        if (success) {
+            dispatchQueueIndex.onStatusChange(processKey, status);
+            statusWatcher.onStatusChange(processKey, status);
+        }
+
+        return success;
     }
 
     /**
@@ -166,11 +200,24 @@ public class ProcessQueueManager {
      * @return {@code true} if every processes was updated
      */
     public boolean updateExpectedStatus(List<ProcessKey> processKeys, List<ProcessStatus> expected, ProcessStatus status) {
-        return queueDao.txResult(tx -> {
-            boolean success = queueDao.updateStatus(processKeys, expected, status);
+        List<ProcessKey> updated = queueDao.txResult(tx -> {
+            List<ProcessKey> l = queueDao.updateStatus(tx, processKeys, expected, status);
             eventManager.insertStatusHistory(tx, processKeys, status);
-            return success;
+
+            if (!l.isEmpty() && status == ProcessStatus.ENQUEUED) {
+                dispatchSignal.signal(tx);
+            }
+
+            return l;
+        });
+
+        // only the processes that were actually updated
+        updated.forEach(k -> {
+            dispatchQueueIndex.onStatusChange(k, status);
+            statusWatcher.onStatusChange(k, status);
         });
+
+        return updated.size() == processKeys.size();
     }
 
     /**
@@ -186,6 +233,8 @@ public class ProcessQueueManager {
     public void updateAgentId(DSLContext tx, ProcessKey processKey, String agentId, ProcessStatus status) {
         queueDao.updateAgentId(tx, processKey, agentId, status);
         eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
+        dispatchQueueIndex.onStatusChange(tx, processKey, status);
+        statusWatcher.onStatusChange(tx, processKey, status);
     }
 
     /**
@@ -200,6 +249,11 @@ public class ProcessQueueManager {
      */
     public void updateWait(DSLContext tx, ProcessKey processKey, AbstractWaitCondition wait) {
         queueDao.updateWait(tx, processKey, wait);
+        dispatchQueueIndex.onWaitChange(tx, processKey, wait != null);
+
+        if (wait == null) {
+            dispatchSignal.signal(tx);
+        }
 
         Map<String, Object> eventData = objectMapper.convertToMap(wait != null ? wait : new NoneCondition());
         NewProcessEvent e = NewProcessEvent.builder()
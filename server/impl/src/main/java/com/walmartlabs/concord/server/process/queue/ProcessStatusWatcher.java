@@ -0,0 +1,154 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.jooq.DSLContext;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Wakes up the threads waiting for process status changes, e.g. the bulk
+ * {@code waitForCompletion} requests. Status changes are reported by
+ * {@link ProcessQueueManager}.
+ * <p>
+ * Only the changes made by the current server instance are observed,
+ * the waiters must re-check the statuses periodically to pick up
+ * the changes made elsewhere.
+ */
+@Named
+@Singleton
+public class ProcessStatusWatcher {
+
+    private final Map<UUID, List<Waiter>> waiters = new HashMap<>();
+
+    @Inject
+    public ProcessStatusWatcher(MetricRegistry metricRegistry) {
+        metricRegistry.gauge("process-status-watcher-waiting", () -> this::size);
+    }
+
+    /**
+     * Notifies the waiters after the transaction is committed.
+     */
+    public void onStatusChange(DSLContext tx, ProcessKey processKey, ProcessStatus status) {
+        if (!isWatched(processKey)) {
+            return;
+        }
+
+        AbstractDao.afterCommit(tx, () -> onStatusChange(processKey, status));
+    }
+
+    /**
+     * Notifies the waiters immediately. Must be called after the change is committed.
+     */
+    public void onStatusChange(ProcessKey processKey, ProcessStatus status) {
+        List<Waiter> l;
+        synchronized (this) {
+            l = waiters.get(processKey.getInstanceId());
+            if (l == null) {
+                return;
+            }
+            l = new ArrayList<>(l);
+        }
+
+        for (Waiter w : l) {
+            w.signal();
+        }
+    }
+
+    /**
+     * Starts watching for status changes of the specified processes.
+     * The returned {@link Waiter} must be closed after use.
+     */
+    public Waiter watch(Collection<UUID> instanceIds) {
+        Waiter w = new Waiter(new HashSet<>(instanceIds));
+        synchronized (this) {
+            for (UUID id : w.instanceIds) {
+                waiters.computeIfAbsent(id, k -> new ArrayList<>(1)).add(w);
+            }
+        }
+        return w;
+    }
+
+    public synchronized int size() {
+        return waiters.size();
+    }
+
+    private synchronized boolean isWatched(ProcessKey processKey) {
+        return waiters.containsKey(processKey.getInstanceId());
+    }
+
+    private synchronized void remove(Waiter w) {
+        for (UUID id : w.instanceIds) {
+            List<Waiter> l = waiters.get(id);
+            if (l == null) {
+                continue;
+            }
+
+            l.remove(w);
+            if (l.isEmpty()) {
+                waiters.remove(id);
+            }
+        }
+    }
+
+    public final class Waiter implements AutoCloseable {
+
+        private final Set<UUID> instanceIds;
+        private boolean signaled;
+
+        private Waiter(Set<UUID> instanceIds) {
+            this.instanceIds = instanceIds;
+        }
+
+        /**
+         * Waits for a status change of any of the watched processes.
+         *
+         * @return {@code true} if any of the processes changed its status since
+         * the previous call
+         */
+        public synchronized boolean await(long timeoutMs) throws InterruptedException {
+            if (!signaled && timeoutMs > 0) {
+                wait(timeoutMs);
+            }
+
+            boolean result = signaled;
+            signaled = false;
+            return result;
+        }
+
+        private synchronized void signal() {
+            signaled = true;
+            notifyAll();
+        }
+
+        @Override
+        public void close() {
+            remove(this);
+        }
+    }
+}
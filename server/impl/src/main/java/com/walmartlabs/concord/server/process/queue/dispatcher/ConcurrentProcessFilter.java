@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
 
 import com.google.common.collect.ImmutableSet;
 import com.walmartlabs.concord.policyengine.CheckResult;
+import com.walmartlabs.concord.policyengine.ConcurrentProcessPolicy;
 import com.walmartlabs.concord.policyengine.ConcurrentProcessRule;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.server.policy.PolicyManager;
@@ -29,7 +30,6 @@ import com.walmartlabs.concord.server.process.queue.ProcessCompletionCondition;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
-import org.jooq.DSLContext;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -61,20 +61,24 @@ public class ConcurrentProcessFilter extends WaitProcessFinishFilter {
     }
 
     @Override
-    public void cleanup() {
-        dao.cleanup();
-    }
-
-    @Override
-    protected List<UUID> findProcess(DSLContext tx, ProcessQueueEntry item, List<ProcessQueueEntry> startingProcesses) {
+    protected List<UUID> findProcess(DispatchContext ctx, ProcessQueueEntry item) {
         PolicyEngine pe = getPolicyEngine(item.orgId(), item.projectId(), item.initiatorId());
         if (pe == null) {
             return Collections.emptyList();
         }
 
-        CheckResult<ConcurrentProcessRule, List<UUID>> result = pe.getConcurrentProcessPolicy().check(
-                () -> processesPerOrg(tx, item.orgId(), startingProcesses),
-                () -> processesPerProject(tx, item.projectId(), startingProcesses));
+        ConcurrentProcessPolicy policy = pe.getConcurrentProcessPolicy();
+
+        // check the limits using the number of running processes first
+        // most of the time the limits are not reached and the IDs are not needed
+        if (!policy.isLimitReached(() -> countPerOrg(ctx, item.orgId()), () -> countPerProject(ctx, item.projectId()))) {
+            return Collections.emptyList();
+        }
+
+        // the limit is reached, load the processes to wait for
+        CheckResult<ConcurrentProcessRule, List<UUID>> result = policy.check(
+                () -> processesPerOrg(ctx, item.orgId()),
+                () -> processesPerProject(ctx, item.projectId()));
 
         if (result.getDeny().isEmpty()) {
             return Collections.emptyList();
@@ -106,31 +110,76 @@ public class ConcurrentProcessFilter extends WaitProcessFinishFilter {
         return policyManager.get(orgId, prjId, userId);
     }
 
-    private List<UUID> processesPerOrg(DSLContext tx, UUID orgId, List<ProcessQueueEntry> startingProcesses) {
+    private int countPerOrg(DispatchContext ctx, UUID orgId) {
         if (orgId == null) {
-            return Collections.emptyList();
+            return 0;
         }
 
-        List<UUID> result = new ArrayList<>(dao.processesPerOrg(tx, orgId));
-        for (ProcessQueueEntry p : startingProcesses) {
-            if (orgId.equals(p.orgId())) {
-                result.add(p.key().getInstanceId());
-            }
+        return dao.runningProcesses(ctx).countPerOrg(orgId) + ctx.startingProcessesPerOrg(orgId).size();
+    }
+
+    private int countPerProject(DispatchContext ctx, UUID projectId) {
+        if (projectId == null) {
+            return 0;
         }
-        return result;
+
+        return dao.runningProcesses(ctx).countPerProject(projectId) + ctx.startingProcessesPerProject(projectId).size();
     }
 
-    private List<UUID> processesPerProject(DSLContext tx, UUID projectId, List<ProcessQueueEntry> startingProcesses) {
+    private List<UUID> processesPerOrg(DispatchContext ctx, UUID orgId) {
+        if (orgId == null) {
+            return Collections.emptyList();
+        }
+
+        return new ConcatList<>(dao.processesPerOrg(ctx, orgId), ctx.startingProcessesPerOrg(orgId));
+    }
+
+    private List<UUID> processesPerProject(DispatchContext ctx, UUID projectId) {
         if (projectId == null) {
             return Collections.emptyList();
         }
 
-        List<UUID> result = new ArrayList<>(dao.processesPerProject(tx, projectId));
-        for (ProcessQueueEntry p : startingProcesses) {
-            if (projectId.equals(p.projectId())) {
-                result.add(p.key().getInstanceId());
+        List<ProcessQueueEntry> starting = ctx.startingProcessesPerProject(projectId);
+        List<UUID> startingIds = new AbstractList<UUID>() {
+            @Override
+            public UUID get(int index) {
+                return starting.get(index).key().getInstanceId();
+            }
+
+            @Override
+            public int size() {
+                return starting.size();
             }
+        };
+
+        return new ConcatList<>(dao.processesPerProject(ctx, projectId), startingIds);
+    }
+
+    /**
+     * Read-only view of two lists. Avoids copying the list of running
+     * processes for every candidate.
+     */
+    private static final class ConcatList<T> extends AbstractList<T> {
+
+        private final List<T> a;
+        private final List<T> b;
+
+        private ConcatList(List<T> a, List<T> b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < a.size()) {
+                return a.get(index);
+            }
+            return b.get(index - a.size());
+        }
+
+        @Override
+        public int size() {
+            return a.size() + b.size();
         }
-        return result;
     }
 }
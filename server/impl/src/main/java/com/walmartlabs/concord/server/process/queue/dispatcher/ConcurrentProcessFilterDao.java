@@ -23,12 +23,15 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
 import com.walmartlabs.concord.server.jooq.tables.Projects;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.immutables.value.Value;
 import org.jooq.DSLContext;
 import org.jooq.Record1;
 
 import javax.inject.Named;
 import java.util.*;
 
+import static org.jooq.impl.DSL.count;
+
 @Named
 public class ConcurrentProcessFilterDao {
 
@@ -37,23 +40,56 @@ public class ConcurrentProcessFilterDao {
             ProcessStatus.RUNNING,
             ProcessStatus.RESUMING);
 
-    private final Map<UUID, List<UUID>> perOrg = new HashMap<>();
-    private final Map<UUID, List<UUID>> perProject = new HashMap<>();
+    /**
+     * Returns the number of running processes per organization and project.
+     * The result is cached for the duration of the dispatcher's "tick".
+     */
+    public RunningProcesses runningProcesses(DispatchContext ctx) {
+        return ctx.get(RunningProcesses.class, k -> runningProcesses(ctx.tx()));
+    }
+
+    /**
+     * Counts all running processes in a single query, grouped by organization
+     * and project.
+     */
+    public RunningProcesses runningProcesses(DSLContext tx) {
+        ProcessQueue q = ProcessQueue.PROCESS_QUEUE.as("q");
+        Projects p = Projects.PROJECTS.as("p");
+
+        Map<UUID, Integer> perOrg = new HashMap<>();
+        Map<UUID, Integer> perProject = new HashMap<>();
 
-    public List<UUID> processesPerOrg(DSLContext tx, UUID orgId) {
-        return perOrg.computeIfAbsent(orgId, id -> computeProcessesPerOrg(tx, id));
+        tx.select(p.ORG_ID, q.PROJECT_ID, count())
+                .from(q)
+                .innerJoin(p).on(q.PROJECT_ID.eq(p.PROJECT_ID))
+                .where(q.CURRENT_STATUS.in(RUNNING_PROCESS_STATUSES))
+                .groupBy(p.ORG_ID, q.PROJECT_ID)
+                .fetch()
+                .forEach(r -> {
+                    perProject.put(r.value2(), r.value3());
+                    perOrg.merge(r.value1(), r.value3(), Integer::sum);
+                });
+
+        return new RunningProcesses(perOrg, perProject);
     }
 
-    public List<UUID> processesPerProject(DSLContext tx, UUID projectId) {
-        return perProject.computeIfAbsent(projectId, id -> computeProcessesPerProject(tx, id));
+    /**
+     * Returns IDs of the running processes of the specified organization.
+     * The result is cached for the duration of the dispatcher's "tick".
+     */
+    public List<UUID> processesPerOrg(DispatchContext ctx, UUID orgId) {
+        return ctx.get(RunningProcessesKey.of(Scope.ORG, orgId), key -> processesPerOrg(ctx.tx(), key.id()));
     }
 
-    public void cleanup() {
-        perOrg.clear();
-        perProject.clear();
+    /**
+     * Returns IDs of the running processes of the specified project.
+     * The result is cached for the duration of the dispatcher's "tick".
+     */
+    public List<UUID> processesPerProject(DispatchContext ctx, UUID projectId) {
+        return ctx.get(RunningProcessesKey.of(Scope.PROJECT, projectId), key -> processesPerProject(ctx.tx(), key.id()));
     }
 
-    private List<UUID> computeProcessesPerOrg(DSLContext tx, UUID orgId) {
+    private static List<UUID> processesPerOrg(DSLContext tx, UUID orgId) {
         ProcessQueue q = ProcessQueue.PROCESS_QUEUE.as("q");
         Projects p = Projects.PROJECTS.as("p");
         return tx.select(q.INSTANCE_ID)
@@ -64,7 +100,7 @@ public class ConcurrentProcessFilterDao {
                 .fetch(Record1::value1);
     }
 
-    private static List<UUID> computeProcessesPerProject(DSLContext tx, UUID projectId) {
+    private static List<UUID> processesPerProject(DSLContext tx, UUID projectId) {
         ProcessQueue q = ProcessQueue.PROCESS_QUEUE.as("q");
         return tx.select(q.INSTANCE_ID)
                 .from(q)
@@ -72,4 +108,46 @@ public class ConcurrentProcessFilterDao {
                         .and(q.CURRENT_STATUS.in(RUNNING_PROCESS_STATUSES)))
                 .fetch(Record1::value1);
     }
+
+    /**
+     * Number of running processes per organization and project.
+     */
+    public static final class RunningProcesses {
+
+        private final Map<UUID, Integer> perOrg;
+        private final Map<UUID, Integer> perProject;
+
+        private RunningProcesses(Map<UUID, Integer> perOrg, Map<UUID, Integer> perProject) {
+            this.perOrg = perOrg;
+            this.perProject = perProject;
+        }
+
+        public int countPerOrg(UUID orgId) {
+            return perOrg.getOrDefault(orgId, 0);
+        }
+
+        public int countPerProject(UUID projectId) {
+            return perProject.getOrDefault(projectId, 0);
+        }
+    }
+
+    enum Scope {
+        ORG,
+        PROJECT
+    }
+
+    @Value.Immutable
+    interface RunningProcessesKey {
+
+        Scope scope();
+
+        UUID id();
+
+        static RunningProcessesKey of(Scope scope, UUID id) {
+            return ImmutableRunningProcessesKey.builder()
+                    .scope(scope)
+                    .id(id)
+                    .build();
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
+import org.jooq.DSLContext;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * State of a single dispatcher "tick". Shared between {@link Filter}s.
+ * <p>
+ * Keeps track of the processes selected for dispatching during the tick
+ * and caches the data loaded by filters, so the filters don't have to
+ * query the DB for each candidate.
+ */
+public class DispatchContext {
+
+    private final DSLContext tx;
+
+    private final List<ProcessQueueEntry> startingProcesses = new ArrayList<>();
+    private final Map<UUID, List<UUID>> startingPerOrg = new HashMap<>();
+    private final Map<UUID, List<ProcessQueueEntry>> startingPerProject = new HashMap<>();
+
+    private final Map<Object, Object> cache = new HashMap<>();
+
+    public DispatchContext(DSLContext tx) {
+        this.tx = tx;
+    }
+
+    public DSLContext tx() {
+        return tx;
+    }
+
+    /**
+     * @return processes selected for dispatching during the current tick
+     */
+    public List<ProcessQueueEntry> startingProcesses() {
+        return Collections.unmodifiableList(startingProcesses);
+    }
+
+    /**
+     * @return IDs of the starting processes of the specified organization
+     */
+    public List<UUID> startingProcessesPerOrg(UUID orgId) {
+        return startingPerOrg.getOrDefault(orgId, Collections.emptyList());
+    }
+
+    /**
+     * @return the starting processes of the specified project
+     */
+    public List<ProcessQueueEntry> startingProcessesPerProject(UUID projectId) {
+        return startingPerProject.getOrDefault(projectId, Collections.emptyList());
+    }
+
+    /**
+     * Marks the process as "starting", i.e. the process passed all filters
+     * and will be dispatched at the end of the current tick.
+     */
+    public void addStarting(ProcessQueueEntry e) {
+        startingProcesses.add(e);
+
+        if (e.orgId() != null) {
+            startingPerOrg.computeIfAbsent(e.orgId(), k -> new ArrayList<>()).add(e.key().getInstanceId());
+        }
+
+        if (e.projectId() != null) {
+            startingPerProject.computeIfAbsent(e.projectId(), k -> new ArrayList<>()).add(e);
+        }
+    }
+
+    /**
+     * Returns the cached value or loads it using the current transaction.
+     * The values are kept until the end of the current tick.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> V get(K key, Function<K, V> loader) {
+        return (V) cache.computeIfAbsent(key, k -> loader.apply((K) k));
+    }
+}
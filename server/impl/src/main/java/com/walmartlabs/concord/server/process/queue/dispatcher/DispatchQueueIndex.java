@@ -0,0 +1,400 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.PeriodicTask;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Record5;
+import org.jooq.JSONB;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+
+/**
+ * In-memory index of ENQUEUED processes. Entries are bucketed by their
+ * normalized {@code requirements.agent} value and ordered by
+ * {@code LAST_UPDATED_AT}, so the {@link Dispatcher} can pick candidates
+ * for the connected agents without paging through the whole queue.
+ * <p>
+ * The index is updated incrementally by {@link com.walmartlabs.concord.server.process.queue.ProcessQueueManager}
+ * and periodically reconciled against the DB to pick up changes made by
+ * other server instances.
+ */
+@Named
+@Singleton
+public class DispatchQueueIndex extends PeriodicTask {
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Comparator<IndexEntry> ENTRY_ORDER = Comparator.comparing((IndexEntry e) -> e.lastUpdatedAt)
+            .thenComparing(e -> e.key.getInstanceId());
+
+    private final IndexDao dao;
+    private final boolean enabled;
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final Map<UUID, IndexEntry> entries = new HashMap<>();
+    private final Set<UUID> pending = new HashSet<>();
+
+    private final Timer reconcileTimer;
+
+    @Inject
+    public DispatchQueueIndex(IndexDao dao,
+                              ProcessQueueConfiguration cfg,
+                              MetricRegistry metricRegistry) {
+
+        super(cfg.isDispatcherIndexEnabled() ? cfg.getDispatcherIndexReconcilePeriod().toMillis() : 0, ERROR_DELAY);
+
+        this.dao = dao;
+        this.enabled = cfg.isDispatcherIndexEnabled();
+
+        this.reconcileTimer = metricRegistry.timer("process-queue-dispatcher-index-reconcile");
+        metricRegistry.gauge("process-queue-dispatcher-index-size", () -> this::size);
+        metricRegistry.gauge("process-queue-dispatcher-index-buckets", () -> this::bucketCount);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Updates the index after the transaction is committed.
+     *
+     * @see #onStatusChange(ProcessKey, ProcessStatus)
+     */
+    public void onStatusChange(DSLContext tx, ProcessKey processKey, ProcessStatus status) {
+        if (!enabled) {
+            return;
+        }
+
+        AbstractDao.afterCommit(tx, () -> onStatusChange(processKey, status));
+    }
+
+    /**
+     * Called when the process' status changes. Must be called after the change
+     * is committed. Processes leaving the ENQUEUED
+     * status are removed immediately, processes entering it are loaded from
+     * the DB on the next {@link #refresh(DSLContext)} call, i.e. after
+     * the status change is committed.
+     */
+    public void onStatusChange(ProcessKey processKey, ProcessStatus status) {
+        if (!enabled) {
+            return;
+        }
+
+        if (status == ProcessStatus.ENQUEUED) {
+            markPending(processKey);
+        } else {
+            remove(processKey);
+        }
+    }
+
+    /**
+     * Updates the index after the transaction is committed.
+     *
+     * @see #onWaitChange(ProcessKey, boolean)
+     */
+    public void onWaitChange(DSLContext tx, ProcessKey processKey, boolean waiting) {
+        if (!enabled) {
+            return;
+        }
+
+        AbstractDao.afterCommit(tx, () -> onWaitChange(processKey, waiting));
+    }
+
+    /**
+     * Called when the process' wait conditions change. Must be called after
+     * the change is committed. Only processes without wait conditions can be
+     * dispatched.
+     */
+    public void onWaitChange(ProcessKey processKey, boolean waiting) {
+        if (!enabled) {
+            return;
+        }
+
+        if (waiting) {
+            remove(processKey);
+        } else {
+            markPending(processKey);
+        }
+    }
+
+    /**
+     * Loads the pending entries, i.e. processes that (probably) entered the
+     * ENQUEUED status since the last call.
+     */
+    public void refresh(DSLContext tx) {
+        Set<UUID> ids;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            ids = new HashSet<>(pending);
+            pending.clear();
+        }
+
+        List<IndexEntry> l = dao.list(tx, ids);
+
+        synchronized (this) {
+            for (IndexEntry e : l) {
+                put(e);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} oldest entries that can be started now.
+     *
+     * @param requirementsFilter filters out buckets (by their agent requirements)
+     *                           that can't be handled by any of the waiting agents
+     * @param exclude            IDs of the processes that should be ignored
+     */
+    public synchronized List<ProcessKey> next(Predicate<Map<String, Object>> requirementsFilter, Set<UUID> exclude, int limit) {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        List<IndexEntry> result = new ArrayList<>();
+        for (Bucket b : buckets.values()) {
+            if (!requirementsFilter.test(b.requirements)) {
+                continue;
+            }
+
+            int count = 0;
+            for (IndexEntry e : b.entries) {
+                if (count >= limit) {
+                    break;
+                }
+
+                if (exclude.contains(e.key.getInstanceId())) {
+                    continue;
+                }
+
+                if (e.startAt != null && e.startAt.isAfter(now)) {
+                    continue;
+                }
+
+                result.add(e);
+                count++;
+            }
+        }
+
+        result.sort(ENTRY_ORDER);
+
+        List<ProcessKey> keys = new ArrayList<>(Math.min(limit, result.size()));
+        for (int i = 0; i < result.size() && i < limit; i++) {
+            keys.add(result.get(i).key);
+        }
+        return keys;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int bucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Replaces the index content with the current state of the queue.
+     */
+    @Override
+    protected boolean performTask() {
+        Timer.Context ctx = reconcileTimer.time();
+        try {
+            List<IndexEntry> l = dao.txResult(dao::list);
+
+            synchronized (this) {
+                buckets.clear();
+                entries.clear();
+                for (IndexEntry e : l) {
+                    put(e);
+                }
+            }
+        } finally {
+            ctx.stop();
+        }
+
+        return false;
+    }
+
+    private synchronized void markPending(ProcessKey processKey) {
+        pending.add(processKey.getInstanceId());
+    }
+
+    private synchronized void remove(ProcessKey processKey) {
+        UUID instanceId = processKey.getInstanceId();
+        pending.remove(instanceId);
+
+        IndexEntry e = entries.remove(instanceId);
+        if (e == null) {
+            return;
+        }
+
+        Bucket b = buckets.get(e.bucketKey);
+        if (b == null) {
+            return;
+        }
+
+        b.entries.remove(e);
+        if (b.entries.isEmpty()) {
+            buckets.remove(e.bucketKey);
+        }
+    }
+
+    private void put(IndexEntry e) {
+        remove(e.key);
+
+        entries.put(e.key.getInstanceId(), e);
+        buckets.computeIfAbsent(e.bucketKey, k -> new Bucket(e.requirements)).entries.add(e);
+    }
+
+    /**
+     * Returns a stable string representation of the specified value,
+     * regardless of the order of map keys.
+     */
+    @SuppressWarnings("unchecked")
+    static String normalize(Object v) {
+        if (v instanceof Map) {
+            StringBuilder sb = new StringBuilder("{");
+            Map<Object, Object> sorted = new TreeMap<>(Comparator.comparing(String::valueOf));
+            sorted.putAll((Map<Object, Object>) v);
+            for (Map.Entry<Object, Object> e : sorted.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(e.getKey()).append('=').append(normalize(e.getValue()));
+            }
+            return sb.append('}').toString();
+        }
+
+        if (v instanceof Collection) {
+            StringBuilder sb = new StringBuilder("[");
+            for (Object i : (Collection<Object>) v) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(normalize(i));
+            }
+            return sb.append(']').toString();
+        }
+
+        return String.valueOf(v);
+    }
+
+    @Named
+    public static class IndexDao extends AbstractDao {
+
+        private final ConcordObjectMapper objectMapper;
+
+        @Inject
+        public IndexDao(@MainDB Configuration cfg, ConcordObjectMapper objectMapper) {
+            super(cfg);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        protected <T> T txResult(TxResult<T> t) {
+            return super.txResult(t);
+        }
+
+        /**
+         * Returns all ENQUEUED processes without wait conditions.
+         */
+        public List<IndexEntry> list(DSLContext tx) {
+            return list(tx, (Condition) null);
+        }
+
+        /**
+         * Returns the specified processes if they are ENQUEUED and have no wait conditions.
+         */
+        public List<IndexEntry> list(DSLContext tx, Set<UUID> instanceIds) {
+            return list(tx, PROCESS_QUEUE.INSTANCE_ID.in(instanceIds));
+        }
+
+        private List<IndexEntry> list(DSLContext tx, Condition filter) {
+            Condition c = PROCESS_QUEUE.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
+                    .and(PROCESS_QUEUE.WAIT_CONDITIONS.isNull());
+
+            if (filter != null) {
+                c = c.and(filter);
+            }
+
+            return tx.select(PROCESS_QUEUE.INSTANCE_ID,
+                    PROCESS_QUEUE.CREATED_AT,
+                    PROCESS_QUEUE.LAST_UPDATED_AT,
+                    PROCESS_QUEUE.START_AT,
+                    PROCESS_QUEUE.REQUIREMENTS)
+                    .from(PROCESS_QUEUE)
+                    .where(c)
+                    .fetch(this::toEntry);
+        }
+
+        private IndexEntry toEntry(Record5<UUID, OffsetDateTime, OffsetDateTime, OffsetDateTime, JSONB> r) {
+            Map<String, Object> requirements = Dispatcher.getAgentRequirements(objectMapper.fromJSONB(r.value5()));
+            return new IndexEntry(new ProcessKey(r.value1(), r.value2()), r.value3(), r.value4(), requirements);
+        }
+    }
+
+    private static final class Bucket {
+
+        private final Map<String, Object> requirements;
+        private final NavigableSet<IndexEntry> entries = new TreeSet<>(ENTRY_ORDER);
+
+        private Bucket(Map<String, Object> requirements) {
+            this.requirements = requirements;
+        }
+    }
+
+    static final class IndexEntry {
+
+        private final ProcessKey key;
+        private final OffsetDateTime lastUpdatedAt;
+        private final OffsetDateTime startAt;
+        private final Map<String, Object> requirements;
+        private final String bucketKey;
+
+        IndexEntry(ProcessKey key, OffsetDateTime lastUpdatedAt, OffsetDateTime startAt, Map<String, Object> requirements) {
+            this.key = key;
+            this.lastUpdatedAt = lastUpdatedAt;
+            this.startAt = startAt;
+            this.requirements = requirements;
+            this.bucketKey = normalize(requirements);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import org.jooq.DSLContext;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Wakes up the {@link Dispatcher} when there's something to dispatch, e.g.
+ * when a new agent request arrives or a process becomes ENQUEUED.
+ * <p>
+ * Multiple signals received while the dispatcher is busy or during the
+ * "debounce" period are coalesced into a single wake-up.
+ */
+@Named
+@Singleton
+public class DispatchSignal {
+
+    public static final String PG_CHANNEL = "concord_dispatcher_wakeup";
+
+    private final boolean enabled;
+    private final boolean pgNotify;
+    private final long debounce;
+
+    private final Object mutex = new Object();
+    private boolean signaled;
+
+    private final Counter signalCounter;
+    private final Counter wakeupCounter;
+
+    @Inject
+    public DispatchSignal(ProcessQueueConfiguration cfg, MetricRegistry metricRegistry) {
+        this.enabled = cfg.isDispatcherWakeupEnabled();
+        this.pgNotify = enabled && cfg.isDispatcherWakeupPgNotify();
+        this.debounce = cfg.getDispatcherWakeupDebounce().toMillis();
+
+        this.signalCounter = metricRegistry.counter("process-queue-dispatcher-signals");
+        this.wakeupCounter = metricRegistry.counter("process-queue-dispatcher-wakeups");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isPgNotify() {
+        return pgNotify;
+    }
+
+    /**
+     * Wakes up the dispatcher in the current JVM.
+     */
+    public void signal() {
+        if (!enabled) {
+            return;
+        }
+
+        signalCounter.inc();
+
+        synchronized (mutex) {
+            signaled = true;
+            mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Wakes up the dispatchers once the specified transaction is committed.
+     * The local dispatcher is signaled after the commit, so it can see
+     * the changes made in the transaction. If LISTEN/NOTIFY is enabled,
+     * the dispatchers of other server instances are notified on commit.
+     */
+    public void signal(DSLContext tx) {
+        if (!enabled) {
+            return;
+        }
+
+        if (pgNotify) {
+            tx.execute("select pg_notify(?, '')", PG_CHANNEL);
+        }
+
+        AbstractDao.afterCommit(tx, this::signal);
+    }
+
+    /**
+     * Waits for a signal but no longer than {@code timeout} ms.
+     * Signals received during the "debounce" period are coalesced.
+     *
+     * @return {@code true} if woken up by a signal
+     */
+    public boolean await(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (mutex) {
+            while (!signaled) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                mutex.wait(remaining);
+            }
+        }
+
+        if (debounce > 0) {
+            Thread.sleep(debounce);
+        }
+
+        // reset the flag before the dispatcher runs,
+        // any signals received after this point will trigger the next run
+        synchronized (mutex) {
+            signaled = false;
+        }
+
+        wakeupCounter.inc();
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.DatabaseConfiguration;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.PeriodicTask;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the dispatcher wake-ups sent by other server instances using
+ * PostgreSQL's LISTEN/NOTIFY. Holds a dedicated DB connection, opened
+ * outside of the main connection pool, for the lifetime of the server.
+ *
+ * @see DispatchSignal#signal(org.jooq.DSLContext)
+ */
+@Named
+@Singleton
+public class DispatchSignalListener extends PeriodicTask {
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(10);
+    private static final int POLL_TIMEOUT = 1000;
+
+    private final DatabaseConfiguration dbCfg;
+    private final DispatchSignal signal;
+
+    @Inject
+    public DispatchSignalListener(@MainDB DatabaseConfiguration dbCfg, DispatchSignal signal) {
+        super(signal.isPgNotify() ? 1 : 0, ERROR_DELAY);
+
+        this.dbCfg = dbCfg;
+        this.signal = signal;
+    }
+
+    @Override
+    protected boolean performTask() throws Exception {
+        // don't take a connection from the pool, it would be held permanently
+        try (Connection conn = DriverManager.getConnection(dbCfg.url(), dbCfg.username(), dbCfg.password())) {
+            // LISTEN requires the connection to be in the autocommit mode
+            conn.setAutoCommit(true);
+
+            try (Statement st = conn.createStatement()) {
+                st.execute("LISTEN " + DispatchSignal.PG_CHANNEL);
+            }
+
+            PGConnection pgConn = conn.unwrap(PGConnection.class);
+            while (!Thread.currentThread().isInterrupted()) {
+                PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT);
+                if (notifications != null && notifications.length > 0) {
+                    signal.signal();
+                }
+            }
+
+            try (Statement st = conn.createStatement()) {
+                st.execute("UNLISTEN " + DispatchSignal.PG_CHANNEL);
+            }
+        }
+
+        return false;
+    }
+}
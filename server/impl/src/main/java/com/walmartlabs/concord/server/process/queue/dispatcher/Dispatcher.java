@@ -52,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -84,11 +85,16 @@ public class Dispatcher extends PeriodicTask {
     private final ProcessQueueManager queueManager;
     private final Set<Filter> filters;
     private final ImportsNormalizerFactory importsNormalizerFactory;
+    private final DispatchQueueIndex index;
+    private final DispatchSignal signal;
 
     private final int batchSize;
 
     private final Histogram dispatchedCountHistogram;
     private final Timer responseTimer;
+    private final Timer matchScanTimer;
+    private final Timer matchIndexTimer;
+    private final Timer enqueuedToStartingTimer;
 
     private final SessionTokenCreator sessionTokenCreator;
 
@@ -102,7 +108,9 @@ public class Dispatcher extends PeriodicTask {
                       ImportsNormalizerFactory importsNormalizerFactory,
                       ProcessQueueConfiguration cfg,
                       MetricRegistry metricRegistry,
-                      SessionTokenCreator sessionTokenCreator) {
+                      SessionTokenCreator sessionTokenCreator,
+                      DispatchQueueIndex index,
+                      DispatchSignal signal) {
 
         super(cfg.getDispatcherPollDelay().toMillis(), ERROR_DELAY);
 
@@ -113,19 +121,37 @@ public class Dispatcher extends PeriodicTask {
         this.queueManager = queueManager;
         this.filters = filters;
         this.importsNormalizerFactory = importsNormalizerFactory;
+        this.index = index;
+        this.signal = signal;
 
         this.batchSize = cfg.getDispatcherBatchSize();
         this.sessionTokenCreator = sessionTokenCreator;
 
         this.dispatchedCountHistogram = metricRegistry.histogram("process-queue-dispatcher-dispatched-count");
         this.responseTimer = metricRegistry.timer("process-queue-dispatcher-response-timer");
+        this.matchScanTimer = metricRegistry.timer("process-queue-dispatcher-match-scan");
+        this.matchIndexTimer = metricRegistry.timer("process-queue-dispatcher-match-index");
+        this.enqueuedToStartingTimer = metricRegistry.timer("process-queue-dispatcher-enqueued-to-starting");
+    }
+
+    @Override
+    protected void idle(long interval) {
+        if (!signal.isEnabled()) {
+            super.idle(interval);
+            return;
+        }
+
+        // wait for a new agent request or a new process, but no longer than the poll delay
+        try {
+            signal.await(interval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     @WithTimer
     protected boolean performTask() {
-        // TODO the WebSocketChannelManager business can be replaced with an async jax-rs endpoint and an "inbox" queue
-
         // grab the requests w/o responses
         Map<WebSocketChannel, ProcessRequest> requests = this.channelManager.getRequests(MessageType.PROCESS_REQUEST);
         if (requests.isEmpty()) {
@@ -140,11 +166,7 @@ public class Dispatcher extends PeriodicTask {
         // take a global lock to avoid races
         List<Match> matches = dao.txResult(tx -> {
             locks.lock(tx, LOCK_KEY);
-            try {
-                return match(tx, l);
-            } finally {
-                filters.forEach(Filter::cleanup);
-            }
+            return match(tx, l);
         });
 
         dispatchedCountHistogram.update(matches.size());
@@ -154,23 +176,69 @@ public class Dispatcher extends PeriodicTask {
             return false;
         }
 
+        // a request can receive multiple processes, but only one response
+        Map<Request, List<ProcessQueueEntry>> responses = new LinkedHashMap<>();
+        for (Match m : matches) {
+            responses.computeIfAbsent(m.request, k -> new ArrayList<>()).add(m.response);
+        }
+
         // send all responses in parallel
-        withTimer(responseTimer, () -> matches.stream()
+        withTimer(responseTimer, () -> responses.entrySet().stream()
                 .parallel()
-                .forEach(this::sendResponse));
+                .forEach(e -> sendResponse(e.getKey(), e.getValue())));
 
         return true;
     }
 
     private List<Match> match(DSLContext tx, List<Request> requests) {
-        // we need it modifiable
-        List<Request> inbox = new ArrayList<>(requests);
+        DispatchContext ctx = new DispatchContext(tx);
+
+        List<Match> matches;
+
+        Timer.Context timerCtx;
+        if (index.isEnabled()) {
+            timerCtx = matchIndexTimer.time();
+            try {
+                matches = matchIndexed(ctx, requests);
+            } finally {
+                timerCtx.stop();
+            }
+        } else {
+            timerCtx = matchScanTimer.time();
+            try {
+                matches = matchScan(ctx, requests);
+            } finally {
+                timerCtx.stop();
+            }
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        for (Match m : matches) {
+            ProcessQueueEntry candidate = m.response;
+
+            // mark the process as STARTING
+            queueManager.updateStatus(tx, candidate.key(), ProcessStatus.STARTING);
+
+            if (candidate.lastUpdatedAt() != null) {
+                enqueuedToStartingTimer.update(Duration.between(candidate.lastUpdatedAt(), now).toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Pages through the ENQUEUED processes in the DB until all requests are
+     * matched or there are no more candidates.
+     */
+    private List<Match> matchScan(DispatchContext ctx, List<Request> requests) {
+        Inbox inbox = new Inbox(requests);
 
         int offset = 0;
         List<Match> matches = new ArrayList<>();
         while (true) {
             // fetch the next few ENQUEUED processes from the DB
-            List<ProcessQueueEntry> candidates = dao.next(tx, offset, batchSize);
+            List<ProcessQueueEntry> candidates = dao.next(ctx.tx(), offset, batchSize);
             if (candidates.isEmpty()) {
                 break;
             }
@@ -178,18 +246,17 @@ public class Dispatcher extends PeriodicTask {
             // filter out the candidates that shouldn't be dispatched at the moment (e.g. due to concurrency limits)
             for (ProcessQueueEntry e : candidates) {
                 // find request/agent who can handle process
-                Request req = findRequest(e, inbox);
+                Request req = inbox.find(getAgentRequirements(e.requirements()));
                 if (req == null) {
                     continue;
                 }
 
-                // "startingProcesses" are the currently collected "matches"
-                // we keep them in a separate collection to simplify the filtering
-                List<ProcessQueueEntry> startingProcesses = matches.stream().map(m -> m.response).collect(Collectors.toList());
-
-                if (pass(tx, e, startingProcesses)) {
+                if (pass(ctx, e)) {
+                    // the "starting" processes are the currently collected "matches"
+                    // they are taken into account by the filters
+                    ctx.addStarting(e);
                     matches.add(new Match(req, e));
-                    inbox.remove(req);
+                    inbox.take(req);
 
                     if (inbox.isEmpty()) {
                         break;
@@ -204,31 +271,57 @@ public class Dispatcher extends PeriodicTask {
             offset += batchSize;
         }
 
-        for (Match m : matches) {
-            ProcessQueueEntry candidate = m.response;
-
-            // mark the process as STARTING
-            queueManager.updateStatus(tx, candidate.key(), ProcessStatus.STARTING);
-        }
-
         return matches;
     }
 
-    private static Request findRequest(ProcessQueueEntry candidate, List<Request> requests) {
-        for (Request req : requests) {
-            Map<String, Object> capabilities = req.request.getCapabilities();
-            Map<String, Object> m = getAgentRequirements(candidate);
-            if (MapMatcher.matches(capabilities, m)) {
-                return req;
+    /**
+     * Takes the candidates from the {@link DispatchQueueIndex}. Only the
+     * processes that can be handled by at least one of the waiting agents
+     * are fetched from the DB.
+     */
+    private List<Match> matchIndexed(DispatchContext ctx, List<Request> requests) {
+        index.refresh(ctx.tx());
+
+        Inbox inbox = new Inbox(requests);
+
+        Set<UUID> seen = new HashSet<>();
+        List<Match> matches = new ArrayList<>();
+        while (!inbox.isEmpty()) {
+            List<ProcessKey> keys = index.next(inbox::canHandle, seen, batchSize);
+            if (keys.isEmpty()) {
+                break;
+            }
+
+            keys.forEach(k -> seen.add(k.getInstanceId()));
+
+            // lock the candidates and make sure they are still ENQUEUED
+            List<ProcessQueueEntry> candidates = dao.get(ctx.tx(), keys);
+            for (ProcessQueueEntry e : candidates) {
+                Request req = inbox.find(getAgentRequirements(e.requirements()));
+                if (req == null) {
+                    continue;
+                }
+
+                if (pass(ctx, e)) {
+                    ctx.addStarting(e);
+                    matches.add(new Match(req, e));
+                    inbox.take(req);
+
+                    if (inbox.isEmpty()) {
+                        break;
+                    }
+                }
             }
         }
 
-        return null;
+        return matches;
     }
 
+    /**
+     * Returns the {@code agent} section of the process' requirements.
+     */
     @SuppressWarnings("unchecked")
-    private static Map<String, Object> getAgentRequirements(ProcessQueueEntry entry) {
-        Map<String, Object> requirements = entry.requirements();
+    static Map<String, Object> getAgentRequirements(Map<String, Object> requirements) {
         if (requirements == null) {
             return Collections.emptyMap();
         }
@@ -241,9 +334,9 @@ public class Dispatcher extends PeriodicTask {
         return Collections.emptyMap();
     }
 
-    private boolean pass(DSLContext tx, ProcessQueueEntry e, List<ProcessQueueEntry> startingProcesses) {
+    private boolean pass(DispatchContext ctx, ProcessQueueEntry e) {
         for (Filter f : filters) {
-            if (!f.apply(tx, e, startingProcesses)) {
+            if (!f.apply(ctx, e)) {
                 return false;
             }
         }
@@ -251,41 +344,58 @@ public class Dispatcher extends PeriodicTask {
         return true;
     }
 
-    private void sendResponse(Match match) {
-        WebSocketChannel channel = match.request.channel;
-        long correlationId = match.request.request.getCorrelationId();
-        ProcessQueueEntry item = match.response;
+    private void sendResponse(Request request, List<ProcessQueueEntry> items) {
+        WebSocketChannel channel = request.channel;
+        long correlationId = request.request.getCorrelationId();
 
-        try {
-            SecretReference secret = null;
-            if (item.repoId() != null) {
-                secret = dao.getSecretReference(item.repoId());
+        List<ProcessQueueEntry> sent = new ArrayList<>(items.size());
+        List<ProcessResponse> jobs = new ArrayList<>(items.size());
+        for (ProcessQueueEntry item : items) {
+            try {
+                jobs.add(toResponse(correlationId, item));
+                sent.add(item);
+            } catch (Exception e) {
+                log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId());
             }
+        }
 
-            // backward compatibility with old process queue entries that are not normalized
-            Imports imports = importsNormalizerFactory.forProject(item.projectId())
-                    .normalize(item.imports());
-
-            ProcessResponse resp = new ProcessResponse(correlationId,
-                    sessionTokenCreator.create(item.key()),
-                    item.key().getInstanceId(),
-                    secret != null ? secret.orgName : null,
-                    item.repoUrl(),
-                    item.repoPath(),
-                    item.commitId(),
-                    secret != null ? secret.secretName : null,
-                    imports);
-
-            if (!channelManager.sendResponse(channel.getChannelId(), resp)) {
-                log.warn("sendResponse ['{}'] -> failed", correlationId);
-            }
+        if (jobs.isEmpty()) {
+            return;
+        }
 
+        // agents that requested a single process expect the "old" response
+        ProcessResponse resp = request.request.getMaxJobs() > 1 ? ProcessResponse.batch(correlationId, jobs) : jobs.get(0);
+
+        if (!channelManager.sendResponse(channel.getChannelId(), resp)) {
+            log.warn("sendResponse ['{}'] -> failed", correlationId);
+        }
+
+        for (ProcessQueueEntry item : sent) {
             logManager.info(item.key(), "Acquired by: " + channel.getUserAgent());
-        } catch (Exception e) {
-            log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId());
         }
     }
 
+    private ProcessResponse toResponse(long correlationId, ProcessQueueEntry item) {
+        SecretReference secret = null;
+        if (item.repoId() != null) {
+            secret = dao.getSecretReference(item.repoId());
+        }
+
+        // backward compatibility with old process queue entries that are not normalized
+        Imports imports = importsNormalizerFactory.forProject(item.projectId())
+                .normalize(item.imports());
+
+        return new ProcessResponse(correlationId,
+                sessionTokenCreator.create(item.key()),
+                item.key().getInstanceId(),
+                secret != null ? secret.orgName : null,
+                item.repoUrl(),
+                item.repoPath(),
+                item.commitId(),
+                secret != null ? secret.secretName : null,
+                imports);
+    }
+
     @Named
     public static class DispatcherDao extends AbstractDao {
 
@@ -313,9 +423,38 @@ public class Dispatcher extends PeriodicTask {
 
             ProcessQueue q = PROCESS_QUEUE.as("q");
 
+            return selectEntries(tx, q, noCondition())
+                    .orderBy(q.LAST_UPDATED_AT)
+                    .offset(offset)
+                    .limit(limit)
+                    .forUpdate()
+                    .of(q)
+                    .skipLocked()
+                    .fetch(this::toEntry);
+        }
+
+        /**
+         * Fetches and locks the specified processes, skipping the ones that are
+         * locked or can't be dispatched anymore.
+         */
+        @WithTimer
+        public List<ProcessQueueEntry> get(DSLContext tx, Collection<ProcessKey> keys) {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
+
+            Set<UUID> ids = keys.stream().map(ProcessKey::getInstanceId).collect(Collectors.toSet());
+
+            return selectEntries(tx, q, q.INSTANCE_ID.in(ids))
+                    .orderBy(q.LAST_UPDATED_AT)
+                    .forUpdate()
+                    .of(q)
+                    .skipLocked()
+                    .fetch(this::toEntry);
+        }
+
+        private SelectConditionStep<Record14<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB, OffsetDateTime>> selectEntries(DSLContext tx, ProcessQueue q, Condition filter) {
             Field<UUID> orgIdField = select(PROJECTS.ORG_ID).from(PROJECTS).where(PROJECTS.PROJECT_ID.eq(q.PROJECT_ID)).asField();
 
-            SelectJoinStep<Record13<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB>> s =
+            SelectJoinStep<Record14<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB, OffsetDateTime>> s =
                     tx.select(
                             q.INSTANCE_ID,
                             q.CREATED_AT,
@@ -329,34 +468,33 @@ public class Dispatcher extends PeriodicTask {
                             q.REPO_ID,
                             q.IMPORTS,
                             q.REQUIREMENTS,
-                            q.EXCLUSIVE)
+                            q.EXCLUSIVE,
+                            q.LAST_UPDATED_AT)
                             .from(q);
 
-            s.where(q.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
+            return s.where(q.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
                     .and(or(q.START_AT.isNull(),
                             q.START_AT.le(currentOffsetDateTime())))
-                    .and(q.WAIT_CONDITIONS.isNull()));
+                    .and(q.WAIT_CONDITIONS.isNull())
+                    .and(filter));
+        }
 
-            return s.orderBy(q.LAST_UPDATED_AT)
-                    .offset(offset)
-                    .limit(limit)
-                    .forUpdate()
-                    .of(q)
-                    .skipLocked()
-                    .fetch(r -> ProcessQueueEntry.builder()
-                            .key(new ProcessKey(r.value1(), r.value2()))
-                            .projectId(r.value3())
-                            .orgId(r.value4())
-                            .initiatorId(r.value5())
-                            .parentInstanceId(r.value6())
-                            .repoPath(r.value7())
-                            .repoUrl(r.value8())
-                            .commitId(r.value9())
-                            .repoId(r.value10())
-                            .imports(objectMapper.fromJSONB(r.value11(), Imports.class))
-                            .requirements(objectMapper.fromJSONB(r.value12()))
-                            .exclusive(objectMapper.fromJSONB(r.value13()))
-                            .build());
+        private ProcessQueueEntry toEntry(Record14<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB, OffsetDateTime> r) {
+            return ProcessQueueEntry.builder()
+                    .key(new ProcessKey(r.value1(), r.value2()))
+                    .projectId(r.value3())
+                    .orgId(r.value4())
+                    .initiatorId(r.value5())
+                    .parentInstanceId(r.value6())
+                    .repoPath(r.value7())
+                    .repoUrl(r.value8())
+                    .commitId(r.value9())
+                    .repoId(r.value10())
+                    .imports(objectMapper.fromJSONB(r.value11(), Imports.class))
+                    .requirements(objectMapper.fromJSONB(r.value12()))
+                    .exclusive(objectMapper.fromJSONB(r.value13()))
+                    .lastUpdatedAt(r.value14())
+                    .build();
         }
 
         public SecretReference getSecretReference(UUID repoId) {
@@ -374,9 +512,115 @@ public class Dispatcher extends PeriodicTask {
         private final WebSocketChannel channel;
         private final ProcessRequest request;
 
+        /**
+         * Number of processes the request can still receive.
+         */
+        private int slots;
+
         private Request(WebSocketChannel channel, ProcessRequest request) {
             this.channel = channel;
             this.request = request;
+            this.slots = request.getMaxJobs();
+        }
+    }
+
+    /**
+     * Waiting requests grouped by the agent's capabilities. Agents with
+     * the same capabilities form a single "capability class", so each
+     * distinct set of process requirements is matched only once per class.
+     */
+    private static final class Inbox {
+
+        private final Collection<CapabilityClass> classes;
+        private final Map<Map<String, Object>, List<CapabilityClass>> matchCache = new HashMap<>();
+
+        private int size;
+
+        private Inbox(List<Request> requests) {
+            Map<Map<String, Object>, CapabilityClass> m = new LinkedHashMap<>();
+            for (Request req : requests) {
+                Map<String, Object> capabilities = req.request.getCapabilities();
+                if (capabilities == null) {
+                    capabilities = Collections.emptyMap();
+                }
+
+                m.computeIfAbsent(capabilities, CapabilityClass::new).requests.add(req);
+            }
+
+            this.classes = m.values();
+            this.size = requests.stream().mapToInt(r -> r.slots).sum();
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return {@code true} if there's at least one waiting request that
+         * can handle a process with the specified requirements.
+         */
+        public boolean canHandle(Map<String, Object> requirements) {
+            for (CapabilityClass c : matching(requirements)) {
+                if (!c.requests.isEmpty()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * @return the first waiting request that can handle a process with
+         * the specified requirements or {@code null}.
+         */
+        public Request find(Map<String, Object> requirements) {
+            for (CapabilityClass c : matching(requirements)) {
+                Request req = c.requests.peek();
+                if (req != null) {
+                    return req;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Takes one slot of the specified request. The request is removed
+         * when all its slots are taken, otherwise it's moved to the end of
+         * the queue, so the processes are spread between the agents.
+         */
+        public void take(Request req) {
+            if (req.slots <= 0) {
+                return;
+            }
+
+            req.slots--;
+            size--;
+
+            for (CapabilityClass c : classes) {
+                if (c.requests.remove(req)) {
+                    if (req.slots > 0) {
+                        c.requests.addLast(req);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private List<CapabilityClass> matching(Map<String, Object> requirements) {
+            return matchCache.computeIfAbsent(requirements, r -> classes.stream()
+                    .filter(c -> MapMatcher.matches(c.capabilities, r))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private static final class CapabilityClass {
+
+        private final Map<String, Object> capabilities;
+        private final Deque<Request> requests = new ArrayDeque<>();
+
+        private CapabilityClass(Map<String, Object> capabilities) {
+            this.capabilities = capabilities;
         }
     }
 
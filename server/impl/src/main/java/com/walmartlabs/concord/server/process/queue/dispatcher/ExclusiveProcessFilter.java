@@ -23,7 +23,6 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
 import com.walmartlabs.concord.sdk.MapUtils;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
-import org.jooq.DSLContext;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -51,12 +50,7 @@ public class ExclusiveProcessFilter extends WaitProcessFinishFilter {
     }
 
     @Override
-    public void cleanup() {
-        dao.cleanup();
-    }
-
-    @Override
-    protected List<UUID> findProcess(DSLContext tx, ProcessQueueEntry item, List<ProcessQueueEntry> startingProcesses) {
+    protected List<UUID> findProcess(DispatchContext ctx, ProcessQueueEntry item) {
         if (item.projectId() == null) {
             return Collections.emptyList();
         }
@@ -67,9 +61,9 @@ public class ExclusiveProcessFilter extends WaitProcessFinishFilter {
             return Collections.emptyList();
         }
 
-        List<UUID> result = new ArrayList<>(dao.findProcess(tx, item, group));
-        for (ProcessQueueEntry p : startingProcesses) {
-            if (item.projectId().equals(p.projectId()) && group.equals(getGroup(p))) {
+        List<UUID> result = new ArrayList<>(dao.findProcess(ctx, item, group));
+        for (ProcessQueueEntry p : ctx.startingProcessesPerProject(item.projectId())) {
+            if (group.equals(getGroup(p))) {
                 result.add(p.key().getInstanceId());
             }
         }
@@ -46,15 +46,13 @@ public class ExclusiveProcessFilterDao {
             ProcessStatus.RUNNING,
             ProcessStatus.RESUMING);
 
-    private final Map<CacheKey, List<UUID>> cache = new HashMap<>();
-
-    public void cleanup() {
-        cache.clear();
-    }
-
-    public List<UUID> findProcess(DSLContext tx, ProcessQueueEntry item, String group) {
-        return cache.computeIfAbsent(CacheKey.of(group, item.projectId(), item.parentInstanceId()),
-                key -> findProcess(tx, key.group(), key.projectId(), key.parentInstanceId()));
+    /**
+     * Returns the running processes of the same exclusive group. The result
+     * is cached for the duration of the dispatcher's "tick".
+     */
+    public List<UUID> findProcess(DispatchContext ctx, ProcessQueueEntry item, String group) {
+        return ctx.get(CacheKey.of(group, item.projectId(), item.parentInstanceId()),
+                key -> findProcess(ctx.tx(), key.group(), key.projectId(), key.parentInstanceId()));
     }
 
     private List<UUID> findProcess(DSLContext tx, String group, UUID projectId, UUID parentInstanceId) {
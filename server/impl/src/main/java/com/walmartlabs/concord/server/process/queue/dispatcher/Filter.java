@@ -21,13 +21,13 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
  */
 
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
-import org.jooq.DSLContext;
-
-import java.util.List;
 
 public interface Filter {
 
-    boolean apply(DSLContext tx, ProcessQueueEntry e, List<ProcessQueueEntry> startingProcesses);
-
-    void cleanup();
+    /**
+     * @param ctx the current dispatcher "tick", contains the processes
+     *            selected for dispatching so far and the per-tick cache
+     * @return {@code true} if the process can be dispatched
+     */
+    boolean apply(DispatchContext ctx, ProcessQueueEntry e);
 }
@@ -25,7 +25,6 @@ import com.walmartlabs.concord.server.process.queue.ProcessCompletionCondition;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
-import org.jooq.DSLContext;
 
 import java.util.List;
 import java.util.Set;
@@ -49,13 +48,13 @@ public abstract class WaitProcessFinishFilter implements Filter {
     }
 
     @Override
-    public boolean apply(DSLContext tx, ProcessQueueEntry e, List<ProcessQueueEntry> startingProcesses) {
-        List<UUID> processes = findProcess(tx, e, startingProcesses);
+    public boolean apply(DispatchContext ctx, ProcessQueueEntry e) {
+        List<UUID> processes = findProcess(ctx, e);
         if (processes.isEmpty()) {
             return true;
         }
 
-        processQueueManager.updateWait(tx, e.key(), ProcessCompletionCondition.builder()
+        processQueueManager.updateWait(ctx.tx(), e.key(), ProcessCompletionCondition.builder()
                 .processes(processes)
                 .reason(getReason())
                 .finalStatuses(getFinalStatuses())
@@ -65,7 +64,7 @@ public abstract class WaitProcessFinishFilter implements Filter {
         return false;
     }
 
-    protected abstract List<UUID> findProcess(DSLContext tx, ProcessQueueEntry item, List<ProcessQueueEntry> startingProcesses);
+    protected abstract List<UUID> findProcess(DispatchContext ctx, ProcessQueueEntry item);
 
     protected Set<ProcessStatus> getFinalStatuses() {
         return FINAL_STATUSES;
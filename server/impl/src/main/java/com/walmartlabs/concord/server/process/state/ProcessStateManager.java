@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.google.common.hash.Hashing;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.db.AbstractDao;
@@ -36,11 +37,14 @@ import com.walmartlabs.concord.server.policy.PolicyException;
 import com.walmartlabs.concord.server.policy.PolicyManager;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessKeyCache;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
+import org.apache.commons.compress.archivers.zip.AsiExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Field;
@@ -51,6 +55,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -60,25 +65,40 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static com.walmartlabs.concord.server.jooq.tables.Projects.PROJECTS;
 import static org.jooq.impl.DSL.*;
 
 @Named
 @Singleton
-public class ProcessStateManager extends AbstractDao {
+public class ProcessStateManager extends AbstractDao implements BackgroundTask {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessStateManager.class);
 
     private static final String PATH_SEPARATOR = "/";
-    private static final int INSERT_BATCH_SIZE = 10;
+    private static final int INSERT_BATCH_SIZE = 100;
+    private static final int DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_UNIX_MODE = 0644;
+
+    /**
+     * The item's data, either stored inline or in PROCESS_STATE_BLOBS.
+     */
+    private static final Field<byte[]> RESOLVED_ITEM_DATA = coalesce(PROCESS_STATE.ITEM_DATA,
+            select(PROCESS_STATE_BLOBS.BLOB_DATA)
+                    .from(PROCESS_STATE_BLOBS)
+                    .where(PROCESS_STATE_BLOBS.BLOB_HASH.eq(PROCESS_STATE.BLOB_HASH))
+                    .asField());
 
     private final SecretStoreConfiguration secretCfg;
     private final PolicyManager policyManager;
@@ -87,6 +107,12 @@ public class ProcessStateManager extends AbstractDao {
 
     private final Set<String> secureFiles;
 
+    private final int parallelism;
+    private final int fetchSize;
+    private final int maxBatchBytes;
+    private final boolean deduplicate;
+    private final ExecutorService executor;
+
     @Inject
     protected ProcessStateManager(@MainDB Configuration cfg,
                                   SecretStoreConfiguration secretCfg,
@@ -101,6 +127,40 @@ public class ProcessStateManager extends AbstractDao {
         this.processKeyCache = processKeyCache;
 
         this.secureFiles = Collections.unmodifiableSet(new HashSet<>(stateCfg.getSecureFiles()));
+
+        this.parallelism = Math.max(1, stateCfg.getStateTransferParallelism());
+        this.fetchSize = Math.max(0, stateCfg.getStateTransferFetchSize());
+        this.maxBatchBytes = stateCfg.getStateTransferMaxBatchBytes() > 0 ? stateCfg.getStateTransferMaxBatchBytes() : DEFAULT_MAX_BATCH_BYTES;
+
+        this.deduplicate = stateCfg.isStateTransferDeduplicate();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "process-state-transfer-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start() {
+        // the transfer executor is created eagerly, nothing to start
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdown();
+
+        try {
+            if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("stop -> done");
+            } else {
+                log.info("stop -> timeout");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -121,7 +181,7 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private <T> Optional<T> get(DSLContext tx, ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
-        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
+        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, RESOLVED_ITEM_DATA)
                 .from(PROCESS_STATE)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
@@ -155,7 +215,7 @@ public class ProcessStateManager extends AbstractDao {
     public <T> List<T> forEach(ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
         DSLContext tx = dsl();
 
-        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
+        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, RESOLVED_ITEM_DATA)
                 .from(PROCESS_STATE)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
@@ -276,14 +336,11 @@ public class ProcessStateManager extends AbstractDao {
      */
     public void insert(DSLContext tx, ProcessKey processKey, String path, byte[] in) {
         boolean needEncrypt = secureFiles.contains(path);
-        byte[] data = in;
-        if (needEncrypt) {
-            data = encrypt(in);
-        }
-        tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values(processKey.getInstanceId(), processKey.getCreatedAt(), path, data, needEncrypt)
-                .execute();
+
+        BatchItem item = new BatchItem(path, null, DEFAULT_UNIX_MODE, needEncrypt, in.length);
+        prepare(item, in);
+
+        insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), Collections.singletonList(item));
     }
 
     /**
@@ -314,8 +371,11 @@ public class ProcessStateManager extends AbstractDao {
 
         String prefix = fixPath(path);
 
-        List<BatchItem> batch = new ArrayList<>();
+        List<List<BatchItem>> batches = new ArrayList<>();
         try {
+            List<BatchItem> batch = new ArrayList<>();
+            long[] batchBytes = {0};
+
             Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -341,28 +401,55 @@ public class ProcessStateManager extends AbstractDao {
                     int unixMode = Posix.unixMode(permissions);
                     boolean needsEncryption = secureFiles.contains(n);
 
-                    tx.deleteFrom(PROCESS_STATE).where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
-                            .and(PROCESS_STATE.ITEM_PATH.eq(n)))
-                            .execute();
-
-                    batch.add(new BatchItem(n, file, unixMode, needsEncryption));
-                    if (batch.size() >= INSERT_BATCH_SIZE) {
-                        insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), batch);
+                    if (!batch.isEmpty() && (batch.size() >= INSERT_BATCH_SIZE || batchBytes[0] + attrs.size() > maxBatchBytes)) {
+                        batches.add(new ArrayList<>(batch));
                         batch.clear();
+                        batchBytes[0] = 0;
                     }
 
+                    batch.add(new BatchItem(n, file, unixMode, needsEncryption, attrs.size()));
+                    batchBytes[0] += attrs.size();
+
                     return FileVisitResult.CONTINUE;
                 }
             });
 
             if (!batch.isEmpty()) {
-                insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), batch);
+                batches.add(batch);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        // read (and encrypt) the next batches while the current one is being inserted
+        // no more than "parallelism" batches are kept in memory
+        Deque<Future<List<BatchItem>>> inflight = new ArrayDeque<>();
+        Iterator<List<BatchItem>> it = batches.iterator();
+        try {
+            while (it.hasNext() || !inflight.isEmpty()) {
+                while (it.hasNext() && inflight.size() < parallelism) {
+                    List<BatchItem> b = it.next();
+                    inflight.add(executor.submit(() -> load(b)));
+                }
+
+                List<BatchItem> b = await(inflight.poll());
+
+                List<String> paths = new ArrayList<>(b.size());
+                for (BatchItem item : b) {
+                    paths.add(item.itemPath);
+                }
+
+                tx.deleteFrom(PROCESS_STATE).where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_STATE.ITEM_PATH.in(paths)))
+                        .execute();
+
+                insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), b);
+            }
+        } finally {
+            inflight.forEach(f -> f.cancel(true));
+        }
+
         assertPolicy(tx, processKey, policyEngine);
     }
 
@@ -370,79 +457,78 @@ public class ProcessStateManager extends AbstractDao {
      * Exports all data of a process instance.
      */
     public boolean export(ProcessKey processKey, ItemConsumer consumer) {
-        DSLContext tx = dsl();
-
-        String sql = tx
-                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
-                .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null).and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null)))
-                .getSQL();
-
-        return tx.connectionResult(conn -> {
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setObject(1, processKey.getInstanceId());
-                ps.setObject(2, processKey.getCreatedAt());
-
-                boolean found = false;
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        found = true;
-
-                        String n = rs.getString(1);
-                        int unixMode = rs.getInt(2);
-                        boolean encrypted = rs.getBoolean(3);
-                        try (InputStream in = rs.getBinaryStream(4);
-                             InputStream processed = encrypted ? decrypt(in) : in) {
-                            consumer.accept(n, unixMode, processed);
-                        }
-                    }
-                }
-
-                return found;
-            }
-        });
+        return export(processKey, null, consumer);
     }
 
     /**
      * Exports elements whose path begins with the specified value.
      */
     public boolean exportDirectory(ProcessKey processKey, String path, ItemConsumer consumer) {
-        String dir = fixPath(path);
+        return export(processKey, fixPath(path), consumer);
+    }
 
-        DSLContext tx = dsl();
+    /**
+     * Streams the items using a cursor ({@code fetchSize} rows at a time).
+     * Encrypted items are decrypted by the transfer executor, concurrently
+     * with fetching of the next rows. The {@code consumer} is called on the
+     * caller's thread, sequentially, in the order of the rows. Slow consumers
+     * (e.g. HTTP clients) don't occupy the shared executor.
+     */
+    private boolean export(ProcessKey processKey, String dir, ItemConsumer consumer) {
+        Condition c = PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
+                .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null));
+
+        if (dir != null) {
+            c = c.and(PROCESS_STATE.ITEM_PATH.startsWith((String) null));
+        }
 
-        String sql = tx
-                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
+        String sql = dsl()
+                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, RESOLVED_ITEM_DATA)
                 .from(PROCESS_STATE)
-                .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
-                        .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
-                        .and(PROCESS_STATE.ITEM_PATH.startsWith((String) null)))
+                .where(c)
                 .getSQL();
 
-        return tx.connectionResult(conn -> {
+        // cursors require a transaction
+        return txResult(tx -> tx.connectionResult(conn -> {
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
                 ps.setObject(1, processKey.getInstanceId());
                 ps.setObject(2, processKey.getCreatedAt());
-                ps.setString(3, dir);
+                if (dir != null) {
+                    ps.setString(3, dir);
+                }
+
+                // limits the number of items kept in memory
+                int maxPending = parallelism * 2;
+                Deque<ExportItem> pending = new ArrayDeque<>();
 
                 boolean found = false;
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         found = true;
 
-                        String n = relativize(dir, rs.getString(1));
+                        String n = dir != null ? relativize(dir, rs.getString(1)) : rs.getString(1);
                         int unixMode = rs.getInt(2);
                         boolean encrypted = rs.getBoolean(3);
-                        try (InputStream in = rs.getBinaryStream(4);
-                             InputStream processed = encrypted ? decrypt(in) : in) {
-                            consumer.accept(n, unixMode, processed);
+                        byte[] data = rs.getBytes(4);
+
+                        CompletableFuture<byte[]> item = encrypted ? CompletableFuture.supplyAsync(() -> decrypt(data), executor) : CompletableFuture.completedFuture(data);
+                        pending.addLast(new ExportItem(n, unixMode, item));
+
+                        // consume the items that are ready, wait only if there are too many
+                        while (!pending.isEmpty() && (pending.size() >= maxPending || pending.peekFirst().data.isDone())) {
+                            pending.removeFirst().accept(consumer);
                         }
                     }
                 }
 
+                while (!pending.isEmpty()) {
+                    pending.removeFirst().accept(consumer);
+                }
+
                 return found;
             }
-        });
+        }));
     }
 
     /**
@@ -494,9 +580,11 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private void insert(DSLContext tx, UUID instanceId, OffsetDateTime instanceCreatedAt, Collection<BatchItem> batch) {
+        storeBlobs(tx, batch);
+
         String sql = tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values((UUID) null, null, null, null, null, null)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.BLOB_HASH)
+                .values((UUID) null, null, null, null, null, null, null)
                 .getSQL();
 
         List<InputStream> streams = new LinkedList<>();
@@ -516,19 +604,98 @@ public class ProcessStateManager extends AbstractDao {
                         // UNIX_MODE
                         ps.setInt(4, item.unixMode);
 
-                        InputStream in = Files.newInputStream(item.path);
-                        streams.add(in); // keep the streams open until the batch is committed
-
-                        if (item.needsEncryption) {
-                            in = encrypt(in);
+                        if (item.hash != null) {
+                            // ITEM_DATA, stored in PROCESS_STATE_BLOBS
+                            ps.setNull(5, Types.BINARY);
+                        } else if (item.data != null) {
+                            // ITEM_DATA, already encrypted if needed
+                            ps.setBytes(5, item.data);
+                        } else {
+                            // ITEM_DATA
+                            ps.setBinaryStream(5, openStream(item, streams));
                         }
 
-                        // ITEM_DATA
-                        ps.setBinaryStream(5, in);
-
                         // IS_ENCRYPTED
                         ps.setBoolean(6, item.needsEncryption);
 
+                        // BLOB_HASH
+                        ps.setString(7, item.hash);
+
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            streams.forEach(ProcessStateManager::closeSilently);
+        }
+    }
+
+    /**
+     * Makes sure that all deduplicated items of the batch are present in PROCESS_STATE_BLOBS.
+     * Only the missing blobs are uploaded.
+     */
+    private void storeBlobs(DSLContext tx, Collection<BatchItem> batch) {
+        // sorted, the rows are locked in the same order by concurrent imports
+        Map<String, BatchItem> items = new TreeMap<>();
+        for (BatchItem item : batch) {
+            if (item.hash != null) {
+                items.putIfAbsent(item.hash, item);
+            }
+        }
+
+        if (items.isEmpty()) {
+            return;
+        }
+
+        // touch the existing blobs. Unreferenced blobs are removed by
+        // ProcessCleaner only after "maxStateAge" since the last use.
+        // The update locks the rows and changes LAST_USED_AT, so a concurrent
+        // cleanup either waits for this transaction and skips the blobs
+        // or deletes them first, in which case they are inserted again below
+        List<String> existing = tx.update(PROCESS_STATE_BLOBS)
+                .set(PROCESS_STATE_BLOBS.LAST_USED_AT, currentOffsetDateTime())
+                .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(select(PROCESS_STATE_BLOBS.BLOB_HASH)
+                        .from(PROCESS_STATE_BLOBS)
+                        .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(items.keySet()))
+                        .orderBy(PROCESS_STATE_BLOBS.BLOB_HASH)
+                        .forUpdate()))
+                .returning(PROCESS_STATE_BLOBS.BLOB_HASH)
+                .fetch()
+                .getValues(PROCESS_STATE_BLOBS.BLOB_HASH);
+
+        items.keySet().removeAll(existing);
+
+        if (items.isEmpty()) {
+            return;
+        }
+
+        // blobs can be added concurrently by other imports
+        String sql = tx.insertInto(PROCESS_STATE_BLOBS)
+                .columns(PROCESS_STATE_BLOBS.BLOB_HASH, PROCESS_STATE_BLOBS.BLOB_DATA)
+                .values((String) null, null)
+                .onConflict(PROCESS_STATE_BLOBS.BLOB_HASH)
+                .doUpdate()
+                .set(PROCESS_STATE_BLOBS.LAST_USED_AT, currentOffsetDateTime())
+                .getSQL();
+
+        List<InputStream> streams = new LinkedList<>();
+        try {
+            tx.connection(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (Map.Entry<String, BatchItem> e : items.entrySet()) {
+                        BatchItem item = e.getValue();
+
+                        ps.setString(1, e.getKey());
+                        if (item.data != null) {
+                            ps.setBytes(2, item.data);
+                        } else {
+                            ps.setBinaryStream(2, openStream(item, streams));
+                        }
+
                         ps.addBatch();
                     }
 
@@ -542,6 +709,70 @@ public class ProcessStateManager extends AbstractDao {
         }
     }
 
+    private InputStream openStream(BatchItem item, List<InputStream> streams) throws IOException {
+        InputStream in = Files.newInputStream(item.path);
+        streams.add(in); // keep the streams open until the batch is committed
+
+        if (item.needsEncryption) {
+            in = encrypt(in);
+        }
+
+        return in;
+    }
+
+    private List<BatchItem> load(List<BatchItem> batch) throws IOException {
+        for (BatchItem item : batch) {
+            // large files are streamed directly into the insert statement
+            if (item.size > maxBatchBytes) {
+                if (deduplicate && !item.needsEncryption) {
+                    item.hash = com.google.common.io.Files.asByteSource(item.path.toFile())
+                            .hash(Hashing.sha256())
+                            .toString();
+                }
+                continue;
+            }
+
+            prepare(item, Files.readAllBytes(item.path));
+        }
+        return batch;
+    }
+
+    private void prepare(BatchItem item, byte[] ab) {
+        if (item.needsEncryption) {
+            // encrypted items are never deduplicated
+            item.data = encrypt(ab);
+            return;
+        }
+
+        item.data = ab;
+        if (deduplicate) {
+            item.hash = Hashing.sha256().hashBytes(ab).toString();
+        }
+    }
+
+    private byte[] decrypt(byte[] in) {
+        try (InputStream src = decrypt(new ByteArrayInputStream(in))) {
+            return IOUtils.toByteArray(src);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T await(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
     private InputStream decrypt(InputStream in) {
         return SecretUtils.decrypt(in, secretCfg.getServerPwd(), secretCfg.getSecretStoreSalt());
     }
@@ -613,7 +844,7 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private static StatePolicy.StateStats getStateStats(DSLContext tx, ProcessKey processKey) {
-        return tx.select(DSL.sum(PgUtils.length(PROCESS_STATE.ITEM_DATA)), count(PROCESS_STATE.ITEM_DATA))
+        return tx.select(DSL.sum(PgUtils.length(RESOLVED_ITEM_DATA)), count(RESOLVED_ITEM_DATA))
                 .from(PROCESS_STATE)
                 .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
@@ -714,6 +945,11 @@ public class ProcessStateManager extends AbstractDao {
             ZipArchiveEntry entry = new ZipArchiveEntry(name);
             entry.setUnixMode(unixMode);
 
+            // duplicate the mode in the local header for streaming readers
+            AsiExtraField asi = new AsiExtraField();
+            asi.setMode(unixMode);
+            entry.addExtraField(asi);
+
             try {
                 dst.putArchiveEntry(entry);
                 IOUtils.copy(src, dst);
@@ -748,12 +984,35 @@ public class ProcessStateManager extends AbstractDao {
         private final Path path;
         private final int unixMode;
         private final boolean needsEncryption;
+        private final long size;
+
+        private volatile byte[] data;
+        private volatile String hash;
 
-        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption) {
+        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption, long size) {
             this.itemPath = itemPath;
             this.path = path;
             this.unixMode = unixMode;
             this.needsEncryption = needsEncryption;
+            this.size = size;
+        }
+    }
+
+    private static final class ExportItem {
+
+        private final String name;
+        private final int unixMode;
+        private final CompletableFuture<byte[]> data;
+
+        private ExportItem(String name, int unixMode, CompletableFuture<byte[]> data) {
+            this.name = name;
+            this.unixMode = unixMode;
+            this.data = data;
+        }
+
+        private void accept(ItemConsumer consumer) {
+            byte[] ab = await(data);
+            consumer.accept(name, unixMode, new ByteArrayInputStream(ab));
         }
     }
 }
@@ -87,7 +87,7 @@ public class RepositoryManager {
                 repoCfg.getCacheInfoDir(),
                 repoCfg.getLockTimeout(),
                 repoCfg.getMaxAge(),
-                repoCfg.getLockCount(),
+                repoCfg.getFetchFreshness(),
                 objectMapper);
     }
 
@@ -124,12 +124,22 @@ public class RepositoryManager {
     }
 
     public Repository fetch(String url, String branch, String commitId, String path, Secret secret, boolean checkRemoteCommitId) {
+        return fetch(url, branch, commitId, path, secret, checkRemoteCommitId, !checkRemoteCommitId);
+    }
+
+    /**
+     * @param allowCached if {@code true} the result of a recent fetch of the same ref
+     *                    can be used instead of fetching the repository again.
+     *                    See {@link RepositoryCache#fetch(String, String, String, String, Secret, boolean, java.util.function.Supplier)}
+     */
+    public Repository fetch(String url, String branch, String commitId, String path, Secret secret, boolean checkRemoteCommitId, boolean allowCached) {
         String fetchedCommitId = commitId;
         long start = System.currentTimeMillis();
 
         Path dest = repositoryCache.getPath(url);
         try {
-            Repository result = providers.fetch(url, branch, commitId, path, secret, checkRemoteCommitId, dest);
+            Repository result = repositoryCache.fetch(url, branch, commitId, path, secret, allowCached,
+                    () -> providers.fetch(url, branch, commitId, path, secret, checkRemoteCommitId, dest));
             fetchedCommitId = result.fetchedCommitId();
             return result;
         } finally {
@@ -139,11 +149,22 @@ public class RepositoryManager {
     }
 
     public Repository fetch(UUID projectId, RepositoryEntry repository) {
+        return fetch(projectId, repository, true);
+    }
+
+    public Repository fetch(UUID projectId, RepositoryEntry repository, boolean allowCached) {
         UUID orgId = getOrgId(projectId);
         Secret secret = getSecret(orgId, projectId, repository.getSecretName());
         boolean checkRemoteCommitId = MapUtils.getBoolean(repository.getMeta(), "checkRemoteCommitId", false);
 
-        return fetch(repository.getUrl(), repository.getBranch(), repository.getCommitId(), repository.getPath(), secret, checkRemoteCommitId);
+        return fetch(repository.getUrl(), repository.getBranch(), repository.getCommitId(), repository.getPath(), secret, checkRemoteCommitId, allowCached && !checkRemoteCommitId);
+    }
+
+    /**
+     * Returns the repository cache. Used to collect the cache's metrics.
+     */
+    public RepositoryCache cache() {
+        return repositoryCache;
     }
 
     public <T> T withLock(String repoUrl, Callable<T> f) {
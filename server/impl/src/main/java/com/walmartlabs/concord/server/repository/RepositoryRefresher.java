@@ -121,7 +121,8 @@ public class RepositoryRefresher extends AbstractDao {
 
         try (TemporaryPath tmpRepoPath = IOUtils.tempDir("refreshRepo_")) {
             repositoryManager.withLock(repositoryEntry.getUrl(), () -> {
-                Repository repo = repositoryManager.fetch(projectId, repositoryEntry);
+                // the repository was updated, don't use the results of previous fetches
+                Repository repo = repositoryManager.fetch(projectId, repositoryEntry, false);
                 repo.export(tmpRepoPath.path());
                 return null;
             });
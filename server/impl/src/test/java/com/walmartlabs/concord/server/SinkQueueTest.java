@@ -0,0 +1,216 @@
+package com.walmartlabs.concord.server;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.SinkQueue.OverflowPolicy;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SinkQueueTest {
+
+    @Test
+    public void testSpill() throws Exception {
+        Path spillDir = Files.createTempDirectory("test");
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = new ArrayList<>();
+
+        SinkQueue<Integer> q = new SinkQueue<>("test", batch -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            synchronized (received) {
+                received.addAll(batch);
+            }
+        }, 2, 3, OverflowPolicy.SPILL, 0, spillDir, 1024 * 1024, new MetricRegistry());
+
+        q.start();
+
+        // block the worker on the first entry
+        q.offer(0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // two entries fill the queue, the rest goes into the spill file
+        for (int i = 1; i < 10; i++) {
+            q.offer(i);
+        }
+        assertEquals(9, q.size());
+
+        release.countDown();
+        waitFor(() -> q.size() == 0);
+
+        // the order must be preserved
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(i);
+        }
+        waitFor(() -> {
+            synchronized (received) {
+                return received.size() == expected.size();
+            }
+        });
+        synchronized (received) {
+            assertEquals(expected, received);
+        }
+
+        q.stop();
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = new ArrayList<>();
+
+        SinkQueue<Integer> q = new SinkQueue<>("test", batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            synchronized (received) {
+                received.addAll(batch);
+            }
+        }, 2, 10, OverflowPolicy.DROP, 0, null, 0, new MetricRegistry());
+
+        // not started yet, everything above the queue size is dropped
+        for (int i = 0; i < 5; i++) {
+            q.offer(i);
+        }
+        assertEquals(2, q.size());
+
+        q.start();
+        release.countDown();
+        waitFor(() -> {
+            synchronized (received) {
+                return received.size() == 2;
+            }
+        });
+
+        q.stop();
+    }
+
+    @Test
+    public void testStopDrainsQueue() throws Exception {
+        List<Integer> received = new ArrayList<>();
+
+        SinkQueue<Integer> q = new SinkQueue<>("test", batch -> {
+            synchronized (received) {
+                received.addAll(batch);
+            }
+        }, 100, 3, OverflowPolicy.DROP, 0, null, 0, new MetricRegistry());
+
+        for (int i = 0; i < 10; i++) {
+            q.offer(i);
+        }
+
+        q.start();
+        q.stop();
+
+        synchronized (received) {
+            assertEquals(10, received.size());
+        }
+    }
+
+    @Test
+    public void testSaveOnStop() throws Exception {
+        Path spillDir = Files.createTempDirectory("test");
+
+        CountDownLatch started = new CountDownLatch(1);
+
+        SinkQueue<Integer> q1 = new SinkQueue<>("test", batch -> {
+            started.countDown();
+            try {
+                // a sink that never finishes
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, 2, 3, OverflowPolicy.SPILL, 0, spillDir, 1024 * 1024, new MetricRegistry());
+
+        q1.start();
+
+        // block the worker on the first entry
+        q1.offer(0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i < 10; i++) {
+            q1.offer(i);
+        }
+
+        // the first entry is lost, the rest must be saved
+        q1.stop(100);
+        assertTrue(Files.exists(spillDir.resolve("test.spill")));
+
+        // the saved entries are delivered after the restart, before the new ones
+        List<Integer> received = new ArrayList<>();
+        SinkQueue<Integer> q2 = new SinkQueue<>("test", batch -> {
+            synchronized (received) {
+                received.addAll(batch);
+            }
+        }, 2, 3, OverflowPolicy.SPILL, 0, spillDir, 1024 * 1024, new MetricRegistry());
+
+        q2.start();
+        q2.offer(10);
+        q2.stop();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            expected.add(i);
+        }
+        synchronized (received) {
+            assertEquals(expected, received);
+        }
+
+        assertFalse(Files.exists(spillDir.resolve("test.spill")));
+    }
+
+    private static void waitFor(Condition c) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!c.test()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timeout");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+
+        boolean test();
+    }
+}
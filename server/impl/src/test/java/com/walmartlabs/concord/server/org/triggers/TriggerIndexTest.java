@@ -0,0 +1,108 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class TriggerIndexTest {
+
+    private static final UUID PROJECT_ID = UUID.randomUUID();
+
+    @Test
+    public void testReload() {
+        TriggersDao dao = mock(TriggersDao.class);
+        when(dao.getVersion()).thenReturn(1L);
+        when(dao.listAll()).thenReturn(Collections.singletonList(trigger("a")));
+
+        TriggerIndex index = new TriggerIndex(dao, cfg(), new MetricRegistry());
+        assertEquals(Collections.singletonList("a"), list(index));
+
+        // lookups never check the version, only the background refresh does
+        when(dao.getVersion()).thenReturn(2L);
+        when(dao.listAll()).thenReturn(Arrays.asList(trigger("a"), trigger("b")));
+        assertEquals(Collections.singletonList("a"), list(index));
+        verify(dao, times(1)).getVersion();
+
+        index.refresh();
+        assertEquals(Arrays.asList("a", "b"), list(index));
+        verify(dao, times(2)).listAll();
+
+        // same version, no reload
+        index.refresh();
+        assertEquals(Arrays.asList("a", "b"), list(index));
+        verify(dao, times(3)).getVersion();
+        verify(dao, times(2)).listAll();
+    }
+
+    @Test
+    public void testUncommittedChanges() {
+        TriggersDao dao = mock(TriggersDao.class);
+        when(dao.getVersion()).thenReturn(1L);
+        when(dao.listAll()).thenReturn(Collections.singletonList(trigger("a")));
+
+        TriggerIndex index = new TriggerIndex(dao, cfg(), new MetricRegistry());
+        assertEquals(Collections.singletonList("a"), list(index));
+
+        // a concurrent transaction is modifying the triggers, the current index is kept
+        when(dao.getVersion()).thenReturn(null);
+        index.refresh();
+        assertEquals(Collections.singletonList("a"), list(index));
+        verify(dao, times(1)).listAll();
+
+        // committed
+        when(dao.getVersion()).thenReturn(2L);
+        when(dao.listAll()).thenReturn(Collections.singletonList(trigger("b")));
+        index.refresh();
+        assertEquals(Collections.singletonList("b"), list(index));
+        verify(dao, times(2)).listAll();
+    }
+
+    private static List<String> list(TriggerIndex index) {
+        return index.list(PROJECT_ID, "github", null, null).stream()
+                .map(t -> (String) t.getEntry().getConditions().get("name"))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static TriggersConfiguration cfg() {
+        TriggersConfiguration cfg = mock(TriggersConfiguration.class);
+        when(cfg.isIndexEnabled()).thenReturn(true);
+        when(cfg.getIndexVersionCheckInterval()).thenReturn(Duration.ofHours(1));
+        return cfg;
+    }
+
+    private static TriggerEntry trigger(String name) {
+        Map<String, Object> conditions = new HashMap<>();
+        conditions.put("name", name);
+
+        return new TriggerEntry(UUID.randomUUID(), UUID.randomUUID(), "org", PROJECT_ID, "project",
+                UUID.randomUUID(), "repo", "github", null, null, conditions, null);
+    }
+}
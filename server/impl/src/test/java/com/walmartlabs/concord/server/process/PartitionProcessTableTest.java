@@ -0,0 +1,168 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the CONCORD_PREPARE_PROCESS_PARTITION and CONCORD_PARTITION_PROCESS_TABLE
+ * functions (see v1.70.0.xml).
+ */
+@Ignore("requires a local DB instance")
+public class PartitionProcessTableTest extends AbstractDaoTest {
+
+    @Test
+    public void testPartition() {
+        String t = "test_partition_" + System.currentTimeMillis();
+
+        tx(tx -> {
+            tx.execute("create table " + t + " (" +
+                    "INSTANCE_ID uuid not null, " +
+                    "INSTANCE_CREATED_AT timestamptz not null, " +
+                    "ITEM_SEQ bigserial not null, " +
+                    "ITEM_NAME text not null, " +
+                    "primary key (INSTANCE_ID, INSTANCE_CREATED_AT, ITEM_NAME))");
+            tx.execute("create index " + t + "_idx_seq on " + t + " (ITEM_SEQ)");
+
+            for (int i = 0; i < 10; i++) {
+                tx.execute("insert into " + t + " (INSTANCE_ID, INSTANCE_CREATED_AT, ITEM_NAME) values (uuid_generate_v1(), now() - interval '" + i + " days', 'item" + i + "')");
+            }
+        });
+
+        prepare(t);
+        partition(t, "'{}'");
+
+        DSLContext dsl = DSL.using(getConfiguration());
+
+        // the table is partitioned, the existing data is in the legacy partition
+        assertEquals("p", dsl.fetchValue("select relkind::text from pg_class where oid = to_regclass({0})", t));
+        List<String> partitions = dsl.fetch("select c.relname::text from pg_inherits i join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass({0}) order by 1", t)
+                .getValues(0, String.class);
+        assertEquals(2, partitions.size());
+        assertEquals(t + "_p_default", partitions.get(0));
+        assertEquals(t + "_p_legacy", partitions.get(1));
+        assertEquals(10, (int) dsl.fetchValue("select count(*)::int from " + t + "_p_legacy"));
+
+        // the check constraint is removed from both tables
+        assertEquals(0, (int) dsl.fetchValue("select count(*)::int from pg_constraint where conname = {0}", t + "_p_legacy_bound"));
+
+        // the indexes and the sequence are moved to the partitioned table
+        assertNotNull(dsl.fetchValue("select to_regclass({0})::text", t + "_idx_seq"));
+        tx(tx -> tx.execute("insert into " + t + " (INSTANCE_ID, INSTANCE_CREATED_AT, ITEM_NAME) values (uuid_generate_v1(), now() + interval '1 year', 'new')"));
+        assertEquals(11L, (long) dsl.fetchValue("select max(ITEM_SEQ) from " + t));
+        assertEquals(1, (int) dsl.fetchValue("select count(*)::int from " + t + "_p_default"));
+
+        // the primary key is enforced
+        try {
+            tx(tx -> tx.execute("insert into " + t + " (INSTANCE_ID, INSTANCE_CREATED_AT, ITEM_NAME) select INSTANCE_ID, INSTANCE_CREATED_AT, ITEM_NAME from " + t + " limit 1"));
+            fail("exception expected");
+        } catch (DataAccessException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("duplicate key"));
+        }
+
+        // repeated calls are ignored
+        prepare(t);
+        partition(t, "'{}'");
+
+        tx(tx -> tx.execute("drop table " + t));
+    }
+
+    @Test
+    public void testNotValidated() {
+        String t = "test_partition_" + System.currentTimeMillis();
+
+        tx(tx -> {
+            tx.execute("create table " + t + " (INSTANCE_ID uuid not null, INSTANCE_CREATED_AT timestamptz not null)");
+            tx.execute("select CONCORD_PREPARE_PROCESS_PARTITION({0}, now() + interval '1 day')", t);
+        });
+
+        try {
+            partition(t, "'{}'");
+            fail("exception expected");
+        } catch (DataAccessException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no validated"));
+        }
+
+        tx(tx -> tx.execute("drop table " + t));
+    }
+
+    @Test
+    public void testUniqueIndexes() {
+        String t = "test_partition_" + System.currentTimeMillis();
+
+        tx(tx -> tx.execute("create table " + t + " (" +
+                "INSTANCE_ID uuid not null, " +
+                "INSTANCE_CREATED_AT timestamptz not null, " +
+                "ITEM_SEQ bigserial primary key, " +
+                "ITEM_ID uuid not null unique)"));
+
+        prepare(t);
+
+        // ITEM_ID is not filled by a sequence
+        try {
+            partition(t, "array['item_seq', 'item_id']");
+            fail("exception expected");
+        } catch (DataAccessException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not filled by a sequence"));
+        }
+
+        // unique indexes without INSTANCE_CREATED_AT are not allowed by default
+        try {
+            partition(t, "'{}'");
+            fail("exception expected");
+        } catch (DataAccessException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cannot be enforced"));
+        }
+
+        tx(tx -> tx.execute("alter table " + t + " drop constraint " + t + "_item_id_key"));
+
+        // sequence keys are allowed explicitly
+        partition(t, "array['item_seq']");
+
+        DSLContext dsl = DSL.using(getConfiguration());
+        assertEquals("p", dsl.fetchValue("select relkind::text from pg_class where oid = to_regclass({0})", t));
+        assertEquals(0, (int) dsl.fetchValue("select count(*)::int from pg_index where indrelid = to_regclass({0})", t));
+
+        tx(tx -> tx.execute("drop table " + t));
+    }
+
+    private void prepare(String t) {
+        tx(tx -> tx.execute("select CONCORD_PREPARE_PROCESS_PARTITION({0}, date_trunc('day', now()) + interval '1 day')", t));
+        // VALIDATE CONSTRAINT is a no-op for already partitioned tables without the constraint
+        tx(tx -> tx.execute("do $$ begin " +
+                "if exists(select 1 from pg_constraint where conname = '" + t + "_p_legacy_bound') then " +
+                "alter table " + t + " validate constraint " + t + "_p_legacy_bound; " +
+                "end if; end $$"));
+    }
+
+    private void partition(String t, String sequenceKeys) {
+        tx(tx -> tx.execute("select CONCORD_PARTITION_PROCESS_TABLE({0}, " + sequenceKeys + ")", t));
+    }
+}
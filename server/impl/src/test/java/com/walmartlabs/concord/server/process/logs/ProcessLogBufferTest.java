@@ -0,0 +1,125 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.LockingConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.Range;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Ignore("requires a local DB instance")
+public class ProcessLogBufferTest extends AbstractDaoTest {
+
+    @Test(timeout = 60000)
+    public void testConcurrentFlushes() throws Exception {
+        ProcessLogsDao logsDao = new ProcessLogsDao(getConfiguration());
+
+        // only two advisory locks, most of the processes share the same lock
+        Locks locks = new Locks(new LockingConfiguration(2));
+
+        // two buffers simulate two server instances, the third one is not started (unbuffered appends)
+        ProcessLogBuffer a = new ProcessLogBuffer(logsDao, locks, bufferCfg(), new MetricRegistry());
+        ProcessLogBuffer b = new ProcessLogBuffer(logsDao, locks, bufferCfg(), new MetricRegistry());
+        ProcessLogBuffer c = new ProcessLogBuffer(logsDao, locks, bufferCfg(), new MetricRegistry());
+        List<ProcessLogBuffer> buffers = Arrays.asList(a, b, c);
+
+        a.start();
+        b.start();
+
+        List<ProcessKey> processKeys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            processKeys.add(new ProcessKey(UUID.randomUUID(), OffsetDateTime.now()));
+        }
+
+        int threads = 8;
+        int iterations = 100;
+
+        Map<ProcessKey, List<Range>> ranges = new ConcurrentHashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    Random rnd = new Random();
+                    for (int i = 0; i < iterations; i++) {
+                        ProcessKey k = processKeys.get(rnd.nextInt(processKeys.size()));
+                        ProcessLogBuffer buffer = buffers.get(rnd.nextInt(buffers.size()));
+
+                        byte[] data = new byte[1 + rnd.nextInt(100)];
+                        Range r = buffer.append(k, 0, data);
+
+                        assertEquals(data.length, r.upper() - r.lower());
+                        ranges.computeIfAbsent(k, key -> Collections.synchronizedList(new ArrayList<>())).add(r);
+                    }
+                    return null;
+                }));
+            }
+
+            // no deadlocks or other errors
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            a.stop();
+            b.stop();
+        }
+
+        // the ranges of each process must not overlap and must not have gaps
+        int total = 0;
+        for (List<Range> l : ranges.values()) {
+            l.sort(Comparator.comparingInt(Range::lower));
+
+            int expectedLower = 0;
+            for (Range r : l) {
+                assertEquals(expectedLower, r.lower());
+                expectedLower = r.upper();
+            }
+
+            total += l.size();
+        }
+        assertEquals(threads * iterations, total);
+    }
+
+    private static ProcessConfiguration bufferCfg() {
+        ProcessConfiguration cfg = mock(ProcessConfiguration.class);
+        when(cfg.isLogBufferEnabled()).thenReturn(true);
+        when(cfg.getLogBufferFlushInterval()).thenReturn(Duration.ofMillis(10));
+        when(cfg.getLogBufferMaxBatchSize()).thenReturn(50);
+        when(cfg.getLogBufferCapacity()).thenReturn(1000);
+        return cfg;
+    }
+}
@@ -0,0 +1,100 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
+import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Ignore("requires a local DB instance")
+public class ProcessLogsDaoTest extends AbstractDaoTest {
+
+    @Test
+    public void testCompaction() {
+        ProcessLogsDao logsDao = new ProcessLogsDao(getConfiguration());
+
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+
+        Random rnd = new Random(123);
+        for (int i = 0; i < 200; i++) {
+            byte[] data = new byte[1 + rnd.nextInt(200)];
+            rnd.nextBytes(data);
+            logsDao.append(processKey, i % 2, data);
+        }
+
+        List<Supplier<ProcessLog>> reads = new ArrayList<>();
+        reads.add(() -> logsDao.data(processKey, null, null));
+        reads.add(() -> logsDao.data(processKey, 0, 1));
+        reads.add(() -> logsDao.data(processKey, 100, 5000));
+        reads.add(() -> logsDao.data(processKey, 7000, null));
+        reads.add(() -> logsDao.data(processKey, null, 3000));
+        reads.add(() -> logsDao.segmentData(processKey, 0, null, null));
+        reads.add(() -> logsDao.segmentData(processKey, 1, 50, 2500));
+        reads.add(() -> logsDao.segmentData(processKey, 1, null, 1000));
+
+        List<byte[]> before = new ArrayList<>();
+        List<Integer> sizesBefore = new ArrayList<>();
+        for (Supplier<ProcessLog> r : reads) {
+            ProcessLog l = r.get();
+            before.add(toBytes(l));
+            sizesBefore.add(l.getSize());
+        }
+
+        // a small block size to get multiple blocks per segment
+        int compacted = logsDao.txResult(tx -> logsDao.compact(tx, processKey, 1024));
+        assertTrue(compacted > 0);
+
+        for (int i = 0; i < reads.size(); i++) {
+            ProcessLog l = reads.get(i).get();
+            assertEquals("read #" + i, (int) sizesBefore.get(i), l.getSize());
+            assertArrayEquals("read #" + i, before.get(i), toBytes(l));
+        }
+    }
+
+    private static byte[] toBytes(ProcessLog l) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int expectedStart = -1;
+        for (ProcessLogChunk c : l.getChunks()) {
+            if (expectedStart >= 0) {
+                // chunks must be contiguous
+                assertEquals(expectedStart, c.getStart());
+            }
+            baos.write(c.getData(), 0, c.getData().length);
+            expectedStart = c.getStart() + c.getData().length;
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ProcessStatusWatcherTest {
+
+    @Test
+    public void testSignal() throws Exception {
+        ProcessStatusWatcher watcher = new ProcessStatusWatcher(new MetricRegistry());
+
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+        ProcessKey b = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+        ProcessKey other = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+
+        try (ProcessStatusWatcher.Waiter w = watcher.watch(Arrays.asList(a.getInstanceId(), b.getInstanceId()))) {
+            assertEquals(2, watcher.size());
+
+            watcher.onStatusChange(other, ProcessStatus.FINISHED);
+            assertFalse(w.await(10));
+
+            Thread t = new Thread(() -> {
+                sleep(100);
+                watcher.onStatusChange(b, ProcessStatus.FAILED);
+            });
+            t.start();
+
+            assertTrue(w.await(10000));
+            t.join();
+
+            // the signal is consumed
+            assertFalse(w.await(10));
+        }
+
+        assertEquals(0, watcher.size());
+    }
+
+    @Test
+    public void testMultipleWaiters() throws Exception {
+        ProcessStatusWatcher watcher = new ProcessStatusWatcher(new MetricRegistry());
+
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+
+        try (ProcessStatusWatcher.Waiter w1 = watcher.watch(Collections.singleton(a.getInstanceId()));
+             ProcessStatusWatcher.Waiter w2 = watcher.watch(Collections.singleton(a.getInstanceId()))) {
+
+            watcher.onStatusChange(a, ProcessStatus.FINISHED);
+
+            assertTrue(w1.await(0));
+            assertTrue(w2.await(0));
+        }
+
+        assertEquals(0, watcher.size());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.org.OrganizationDao;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ProcessKind;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+@Ignore("requires a local DB instance")
+public class ConcurrentProcessFilterDaoTest extends AbstractDaoTest {
+
+    private OrganizationDao orgDao;
+    private ProjectDao projectDao;
+    private ProcessQueueDao queueDao;
+    private ConcurrentProcessFilterDao dao;
+
+    @Before
+    public void setUp() {
+        ConcordObjectMapper objectMapper = new ConcordObjectMapper(TestObjectMapper.INSTANCE);
+        orgDao = new OrganizationDao(getConfiguration(), objectMapper);
+        projectDao = new ProjectDao(getConfiguration(), objectMapper);
+        queueDao = new ProcessQueueDao(getConfiguration(), objectMapper);
+        dao = new ConcurrentProcessFilterDao();
+    }
+
+    @Test
+    public void testRunningProcesses() {
+        UUID orgA = orgDao.insert("orgA_" + System.currentTimeMillis(), null, null, null, null);
+        UUID orgB = orgDao.insert("orgB_" + System.currentTimeMillis(), null, null, null, null);
+
+        UUID projectA1 = insertProject(orgA, "projectA1");
+        UUID projectA2 = insertProject(orgA, "projectA2");
+        UUID projectB1 = insertProject(orgB, "projectB1");
+
+        Set<UUID> expectedA1 = new HashSet<>();
+        expectedA1.add(insertProcess(projectA1, ProcessStatus.RUNNING));
+        expectedA1.add(insertProcess(projectA1, ProcessStatus.STARTING));
+        expectedA1.add(insertProcess(projectA1, ProcessStatus.RESUMING));
+        insertProcess(projectA1, ProcessStatus.ENQUEUED);
+        insertProcess(projectA1, ProcessStatus.FINISHED);
+
+        insertProcess(projectA2, ProcessStatus.RUNNING);
+        insertProcess(projectA2, ProcessStatus.SUSPENDED);
+
+        insertProcess(projectB1, ProcessStatus.FAILED);
+
+        tx(tx -> {
+            ConcurrentProcessFilterDao.RunningProcesses running = dao.runningProcesses(tx);
+            assertEquals(4, running.countPerOrg(orgA));
+            assertEquals(0, running.countPerOrg(orgB));
+            assertEquals(3, running.countPerProject(projectA1));
+            assertEquals(1, running.countPerProject(projectA2));
+            assertEquals(0, running.countPerProject(projectB1));
+
+            DispatchContext ctx = new DispatchContext(tx);
+            assertEquals(expectedA1, new HashSet<>(dao.processesPerProject(ctx, projectA1)));
+            assertEquals(4, dao.processesPerOrg(ctx, orgA).size());
+            assertEquals(0, dao.processesPerOrg(ctx, orgB).size());
+        });
+    }
+
+    private UUID insertProject(UUID orgId, String name) {
+        return projectDao.insert(orgId, name + "_" + System.currentTimeMillis(), "test", null, null, null, null, new byte[0], null, null);
+    }
+
+    private UUID insertProcess(UUID projectId, ProcessStatus status) {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+        queueDao.tx(tx -> queueDao.insert(tx, processKey, status, ProcessKind.DEFAULT, null, projectId, null, null, null, null));
+        return processKey.getInstanceId();
+    }
+}
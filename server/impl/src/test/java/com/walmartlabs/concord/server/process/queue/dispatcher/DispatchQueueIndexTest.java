@@ -0,0 +1,184 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DispatchQueueIndexTest {
+
+    private static final Map<String, Object> NO_REQUIREMENTS = Collections.emptyMap();
+
+    private TestDao dao;
+    private DispatchQueueIndex index;
+
+    @Before
+    public void setUp() {
+        ProcessQueueConfiguration cfg = mock(ProcessQueueConfiguration.class);
+        when(cfg.isDispatcherIndexEnabled()).thenReturn(true);
+        when(cfg.getDispatcherIndexReconcilePeriod()).thenReturn(Duration.ofMinutes(1));
+
+        dao = new TestDao();
+        index = new DispatchQueueIndex(dao, cfg, new MetricRegistry());
+    }
+
+    @Test
+    public void testNext() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        ProcessKey a = key();
+        ProcessKey b = key();
+        ProcessKey c = key();
+        ProcessKey d = key();
+
+        dao.add(a, now.minusMinutes(1), null, NO_REQUIREMENTS);
+        dao.add(b, now.minusMinutes(3), null, Collections.singletonMap("flavor", "test"));
+        dao.add(c, now.minusMinutes(2), null, NO_REQUIREMENTS);
+        // not ready yet
+        dao.add(d, now.minusMinutes(4), now.plusMinutes(10), NO_REQUIREMENTS);
+
+        index.performTask();
+        assertEquals(4, index.size());
+        assertEquals(2, index.bucketCount());
+
+        assertEquals(Arrays.asList(b, c, a), index.next(r -> true, Collections.emptySet(), 10));
+        assertEquals(Arrays.asList(b, c), index.next(r -> true, Collections.emptySet(), 2));
+        assertEquals(Arrays.asList(c, a), index.next(r -> true, Collections.singleton(b.getInstanceId()), 10));
+
+        // only the agents without any requirements are waiting
+        assertEquals(Arrays.asList(c, a), index.next(Map::isEmpty, Collections.emptySet(), 10));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        ProcessKey a = key();
+        ProcessKey b = key();
+
+        dao.add(a, OffsetDateTime.now(), null, NO_REQUIREMENTS);
+        index.performTask();
+        assertEquals(1, index.size());
+
+        // new entries are loaded on the next refresh
+        dao.add(b, OffsetDateTime.now(), null, NO_REQUIREMENTS);
+        index.onStatusChange(b, ProcessStatus.ENQUEUED);
+        assertEquals(1, index.size());
+
+        index.refresh(DSL.using(SQLDialect.POSTGRES));
+        assertEquals(2, index.size());
+        assertEquals(Collections.singleton(b.getInstanceId()), dao.requested);
+
+        // nothing is pending, no queries
+        dao.requested = null;
+        index.refresh(DSL.using(SQLDialect.POSTGRES));
+        assertNull(dao.requested);
+
+        index.onStatusChange(a, ProcessStatus.STARTING);
+        assertEquals(Collections.singletonList(b), index.next(r -> true, Collections.emptySet(), 10));
+
+        index.onWaitChange(b, true);
+        assertEquals(0, index.size());
+        assertEquals(0, index.bucketCount());
+    }
+
+    @Test
+    public void testAfterCommit() {
+        ProcessKey a = key();
+
+        dao.add(a, OffsetDateTime.now(), null, NO_REQUIREMENTS);
+        index.performTask();
+        assertEquals(1, index.size());
+
+        // rolled back, the index must not change
+        try {
+            dao.txResult(tx -> {
+                index.onStatusChange(tx, a, ProcessStatus.STARTING);
+                throw new IllegalStateException("rollback");
+            });
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, index.size());
+
+        // the index is updated only after the transaction is committed
+        dao.txResult(tx -> {
+            index.onStatusChange(tx, a, ProcessStatus.STARTING);
+            assertEquals(1, index.size());
+            return null;
+        });
+        assertEquals(0, index.size());
+    }
+
+    private static ProcessKey key() {
+        return new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+    }
+
+    private static class TestDao extends DispatchQueueIndex.IndexDao {
+
+        private final Map<UUID, DispatchQueueIndex.IndexEntry> entries = new LinkedHashMap<>();
+
+        private Set<UUID> requested;
+
+        private TestDao() {
+            super(DSL.using(new MockConnection(ctx -> new MockResult[0]), SQLDialect.POSTGRES).configuration(), null);
+        }
+
+        private void add(ProcessKey key, OffsetDateTime lastUpdatedAt, OffsetDateTime startAt, Map<String, Object> requirements) {
+            entries.put(key.getInstanceId(), new DispatchQueueIndex.IndexEntry(key, lastUpdatedAt, startAt, requirements));
+        }
+
+        @Override
+        public List<DispatchQueueIndex.IndexEntry> list(DSLContext tx) {
+            return new ArrayList<>(entries.values());
+        }
+
+        @Override
+        public List<DispatchQueueIndex.IndexEntry> list(DSLContext tx, Set<UUID> instanceIds) {
+            requested = new HashSet<>(instanceIds);
+
+            List<DispatchQueueIndex.IndexEntry> result = new ArrayList<>();
+            for (UUID id : instanceIds) {
+                DispatchQueueIndex.IndexEntry e = entries.get(id);
+                if (e != null) {
+                    result.add(e);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -40,12 +40,21 @@ public class AnsibleEventsConfiguration implements Serializable {
     @Config("ansibleEvents.fetchLimit")
     private int fetchLimit;
 
+    @Inject
+    @Config("ansibleEvents.workers")
+    private int workers;
+
     public AnsibleEventsConfiguration() {
     }
 
     public AnsibleEventsConfiguration(Duration period, int fetchLimit) {
+        this(period, fetchLimit, 1);
+    }
+
+    public AnsibleEventsConfiguration(Duration period, int fetchLimit, int workers) {
         this.period = period;
         this.fetchLimit = fetchLimit;
+        this.workers = workers;
     }
 
     public Duration getPeriod() {
@@ -55,4 +64,8 @@ public class AnsibleEventsConfiguration implements Serializable {
     public int getFetchLimit() {
         return fetchLimit;
     }
+
+    public int getWorkers() {
+        return workers;
+    }
 }
@@ -20,11 +20,20 @@ package com.walmartlabs.concord.server.plugins.ansible;
  * =====
  */
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.jooq.tables.ProcessEvents;
-import org.jooq.*;
+import com.walmartlabs.concord.server.sdk.BackgroundTask;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.JSONB;
+import org.jooq.Record6;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -32,29 +41,68 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_EVENTS;
-import static org.jooq.impl.DSL.*;
 
+/**
+ * Processes Ansible events in parallel. The events are partitioned by
+ * their process instance ID, each partition is processed by its own
+ * worker in a separate transaction and has its own marker. Events of
+ * the same process are always processed by the same worker in order.
+ * <p>
+ * If a partition fails, it is skipped until the next run and the other
+ * partitions continue to advance.
+ * <p>
+ * The "base" marker ({@link #PROCESSOR_NAME}) holds the lowest partition
+ * marker and is used to initialize the partition markers when the number
+ * of workers changes. The markers of the previous layout are kept until
+ * the new partitions catch up with them, the events already processed
+ * in the previous layout are skipped.
+ */
 @Named("ansible-event-processor")
 @Singleton
-public class EventFetcher extends AbstractEventProcessor<EventProcessor.Event> {
+public class EventFetcher implements ScheduledTask, BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(EventFetcher.class);
 
     private static final String PROCESSOR_NAME = "ansible-event-processor";
 
+    private static final Pattern PARTITION_MARKER = Pattern.compile(Pattern.quote(PROCESSOR_NAME) + "-(\\d+)-of-(\\d+)");
+
     private final AnsibleEventsConfiguration cfg;
+    private final EventMarkerDao eventMarkerDao;
     private final EventFetcher.AnsibleEventDao dao;
     private final List<EventProcessor> processors;
 
+    private final int partitions;
+    private final ExecutorService executor;
+
     @Inject
     public EventFetcher(AnsibleEventsConfiguration cfg,
                         EventMarkerDao eventMarkerDao,
                         AnsibleEventDao dao,
                         List<EventProcessor> processors) {
-        super(PROCESSOR_NAME, eventMarkerDao, cfg.getFetchLimit());
+
         this.cfg = cfg;
+        this.eventMarkerDao = eventMarkerDao;
         this.dao = dao;
         this.processors = processors;
+
+        this.partitions = Math.max(1, cfg.getWorkers());
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "ansible-event-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     @Override
@@ -63,22 +111,293 @@ public class EventFetcher extends AbstractEventProcessor<EventProcessor.Event> {
     }
 
     @Override
-    protected List<EventProcessor.Event> processEvents(DSLContext tx, EventMarkerDao.EventMarker marker, int fetchLimit) {
-        List<EventProcessor.Event> events = dao.list(tx, marker, fetchLimit);
-        if (events.isEmpty()) {
-            return Collections.emptyList();
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void performTask() throws Exception {
+        int fetchLimit = cfg.getFetchLimit();
+
+        long[] markers = loadMarkers();
+        List<Layout> oldLayouts = loadOldLayouts();
+
+        // partitions that failed during this run, retried on the next run
+        Set<Integer> failed = new HashSet<>();
+        Exception error = null;
+
+        try {
+            while (failed.size() < partitions) {
+                long fromSeq = min(markers, failed);
+
+                List<RawEvent> events = dao.list(fromSeq, fetchLimit);
+                if (events.isEmpty()) {
+                    long maxEventSeq = eventMarkerDao.getMaxEventSeq();
+                    advanceIdle(markers, Collections.emptySet(), failed, maxEventSeq);
+                    break;
+                }
+
+                long lastSeq = events.get(events.size() - 1).eventSeq;
+
+                Map<Integer, List<RawEvent>> byPartition = partition(events, markers, failed, oldLayouts);
+                Exception e = processPartitions(byPartition, markers, failed, lastSeq);
+                if (error == null) {
+                    error = e;
+                }
+                advanceIdle(markers, byPartition.keySet(), failed, lastSeq);
+
+                if (events.size() < fetchLimit) {
+                    break;
+                }
+            }
+        } finally {
+            updateBaseMarker(markers);
+        }
+
+        removeOldLayouts(oldLayouts, markers);
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return the first error, if any. The failed partitions are added to {@code failed}
+     */
+    private Exception processPartitions(Map<Integer, List<RawEvent>> byPartition, long[] markers, Set<Integer> failed, long lastSeq) throws InterruptedException {
+        Map<Integer, Future<?>> futures = new HashMap<>();
+        for (Map.Entry<Integer, List<RawEvent>> e : byPartition.entrySet()) {
+            int partition = e.getKey();
+            List<RawEvent> events = e.getValue();
+            futures.put(partition, executor.submit(() -> processPartition(partition, events, lastSeq)));
+        }
+
+        Exception error = null;
+        for (Map.Entry<Integer, Future<?>> e : futures.entrySet()) {
+            int partition = e.getKey();
+            try {
+                e.getValue().get();
+                markers[partition] = lastSeq;
+            } catch (ExecutionException ex) {
+                // the failed partition keeps its marker and is skipped until the next run
+                log.error("processPartitions -> error while processing partition #{}: {}", partition, ex.getCause().getMessage());
+                failed.add(partition);
+                if (error == null) {
+                    error = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+
+        return error;
+    }
+
+    private void processPartition(int partition, List<RawEvent> rawEvents, long lastSeq) {
+        List<EventProcessor.Event> events = new ArrayList<>(rawEvents.size());
+        for (RawEvent e : rawEvents) {
+            events.add(dao.toEvent(e));
+        }
+
+        eventMarkerDao.tx(tx -> {
+            for (EventProcessor p : processors) {
+                p.process(tx, events);
+            }
+
+            eventMarkerDao.update(tx, markerName(partition), lastSeq);
+        });
+    }
+
+    /**
+     * Moves the markers of the partitions without new events.
+     */
+    private void advanceIdle(long[] markers, Set<Integer> processed, Set<Integer> failed, long eventSeq) {
+        List<Integer> idle = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            if (!processed.contains(i) && !failed.contains(i) && markers[i] < eventSeq) {
+                idle.add(i);
+            }
+        }
+
+        if (idle.isEmpty()) {
+            return;
+        }
+
+        eventMarkerDao.tx(tx -> {
+            for (int i : idle) {
+                eventMarkerDao.update(tx, markerName(i), eventSeq);
+            }
+        });
+
+        for (int i : idle) {
+            markers[i] = eventSeq;
+        }
+    }
+
+    private Map<Integer, List<RawEvent>> partition(List<RawEvent> events, long[] markers, Set<Integer> failed, List<Layout> oldLayouts) {
+        Map<Integer, List<RawEvent>> result = new HashMap<>();
+        for (RawEvent e : events) {
+            int partition = partitionOf(e.instanceId, partitions);
+
+            // already processed (the partition is ahead of the others)
+            if (e.eventSeq <= markers[partition]) {
+                continue;
+            }
+
+            if (failed.contains(partition)) {
+                continue;
+            }
+
+            // processed before the number of workers changed
+            if (isProcessed(e, oldLayouts)) {
+                continue;
+            }
+
+            result.computeIfAbsent(partition, k -> new ArrayList<>()).add(e);
+        }
+        return result;
+    }
+
+    static int partitionOf(UUID instanceId, int partitions) {
+        return Math.floorMod(instanceId.hashCode(), partitions);
+    }
+
+    private static boolean isProcessed(RawEvent e, List<Layout> layouts) {
+        for (Layout l : layouts) {
+            if (e.eventSeq <= l.markers[partitionOf(e.instanceId, l.markers.length)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long[] loadMarkers() {
+        Long base = eventMarkerDao.getEventSeq(PROCESSOR_NAME);
+
+        long[] result = new long[partitions];
+        for (int i = 0; i < partitions; i++) {
+            Long v = eventMarkerDao.getEventSeq(markerName(i));
+            if (v == null) {
+                // new partition (or the number of workers changed), start from the lowest known marker
+                v = base;
+            }
+            result[i] = v != null ? v : -1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the markers of the previous numbers of workers.
+     */
+    private List<Layout> loadOldLayouts() {
+        Map<String, Long> m = eventMarkerDao.list(PROCESSOR_NAME + "-");
+
+        Map<Integer, Layout> result = new HashMap<>();
+        for (Map.Entry<String, Long> e : m.entrySet()) {
+            Matcher matcher = PARTITION_MARKER.matcher(e.getKey());
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            int partition = Integer.parseInt(matcher.group(1));
+            int count = Integer.parseInt(matcher.group(2));
+            if (count == partitions || partition >= count) {
+                continue;
+            }
+
+            // the events of the partitions without markers are not skipped
+            Layout l = result.computeIfAbsent(count, Layout::new);
+            l.markers[partition] = e.getValue();
         }
 
-        for (EventProcessor p : processors) {
-            p.process(tx, events);
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Removes the markers of the previous numbers of workers once all
+     * current partitions are past them.
+     */
+    private void removeOldLayouts(List<Layout> layouts, long[] markers) {
+        long current = min(markers);
+
+        for (Layout l : layouts) {
+            if (current < max(l.markers)) {
+                continue;
+            }
+
+            eventMarkerDao.tx(tx -> {
+                for (int i = 0; i < l.markers.length; i++) {
+                    eventMarkerDao.delete(tx, markerName(i, l.markers.length));
+                }
+            });
+
+            log.info("removeOldLayouts -> removed the markers of {} partition(s)", l.markers.length);
         }
+    }
 
-        return events;
+    private void updateBaseMarker(long[] markers) {
+        long v = min(markers);
+        eventMarkerDao.tx(tx -> eventMarkerDao.update(tx, PROCESSOR_NAME, v));
+    }
+
+    private String markerName(int partition) {
+        return markerName(partition, partitions);
+    }
+
+    private static String markerName(int partition, int partitions) {
+        return PROCESSOR_NAME + "-" + partition + "-of-" + partitions;
+    }
+
+    private static long min(long[] markers) {
+        return min(markers, Collections.emptySet());
+    }
+
+    private static long min(long[] markers, Set<Integer> excluded) {
+        long result = Long.MAX_VALUE;
+        for (int i = 0; i < markers.length; i++) {
+            if (!excluded.contains(i)) {
+                result = Math.min(result, markers[i]);
+            }
+        }
+        return result;
+    }
+
+    private static long max(long[] markers) {
+        long result = Long.MIN_VALUE;
+        for (long m : markers) {
+            result = Math.max(result, m);
+        }
+        return result;
+    }
+
+    /**
+     * Partition markers of a specific number of workers.
+     */
+    private static final class Layout {
+
+        private final long[] markers;
+
+        private Layout(int partitions) {
+            this.markers = new long[partitions];
+            Arrays.fill(this.markers, -1);
+        }
     }
 
     @Named
     public static class AnsibleEventDao extends AbstractDao {
 
+        /**
+         * Payload keys used by the {@link EventProcessor}s, the rest of
+         * the event data is skipped.
+         */
+        private static final Map<String, Set<String>> PAYLOAD_KEYS;
+
+        static {
+            Map<String, Set<String>> m = new HashMap<>();
+            m.put(Constants.ANSIBLE_EVENT_TYPE, keys("host", "hostGroup", "status", "duration", "ignore_errors", "currentRetryCount", "hostStatus", "playId", "playbookId", "parentCorrelationId", "action", "isHandler", "taskId", "task"));
+            m.put(Constants.ANSIBLE_PLAYBOOK_INFO, keys("plays", "playbookId", "playbook", "uniqueHosts", "totalWork", "parentCorrelationId", "currentRetryCount"));
+            m.put(Constants.ANSIBLE_PLAYBOOK_RESULT, keys("playbookId", "status", "parentCorrelationId"));
+            PAYLOAD_KEYS = Collections.unmodifiableMap(m);
+        }
+
         private final ObjectMapper objectMapper;
 
         @Inject
@@ -92,51 +411,97 @@ public class EventFetcher extends AbstractEventProcessor<EventProcessor.Event> {
             return super.txResult(t);
         }
 
-        private static SelectConditionStep<Record1<JSONB>> payloadField(DSLContext tx, String... keys) {
-            return tx.select(function("jsonb_object_agg", JSONB.class, field("key"), field("value")))
-                    .from(table("jsonb_each(pe.EVENT_DATA)"))
-                    .where(field("key").in(Arrays.asList(keys)));
+        public List<RawEvent> list(long fromSeq, int count) {
+            return txResult(tx -> list(tx, fromSeq, count));
         }
 
-        public List<EventProcessor.Event> list(DSLContext tx, EventMarkerDao.EventMarker marker, int count) {
+        private List<RawEvent> list(DSLContext tx, long fromSeq, int count) {
             ProcessEvents pe = PROCESS_EVENTS.as("pe");
 
-            SelectConditionStep<Record6<UUID, OffsetDateTime, Long, OffsetDateTime, String, JSONB>> q = tx.select(
-                    pe.INSTANCE_ID,
+            return tx.select(pe.INSTANCE_ID,
                     pe.INSTANCE_CREATED_AT,
                     pe.EVENT_SEQ,
                     pe.EVENT_DATE,
                     pe.EVENT_TYPE,
-                    when(pe.EVENT_TYPE.eq(Constants.ANSIBLE_EVENT_TYPE), payloadField(tx, "host", "hostGroup", "status", "duration", "ignore_errors", "currentRetryCount", "hostStatus", "playId", "playbookId", "parentCorrelationId", "action", "isHandler", "taskId", "task"))
-                            .when(pe.EVENT_TYPE.eq(Constants.ANSIBLE_PLAYBOOK_INFO), payloadField(tx, "plays", "playbookId", "playbook", "uniqueHosts", "totalWork", "parentCorrelationId", "currentRetryCount"))
-                            .when(pe.EVENT_TYPE.eq(Constants.ANSIBLE_PLAYBOOK_RESULT), payloadField(tx, "playbookId", "status", "parentCorrelationId")))
+                    pe.EVENT_DATA)
                     .from(pe)
-                    .where(pe.EVENT_TYPE.in(Constants.ANSIBLE_EVENT_TYPE, Constants.ANSIBLE_PLAYBOOK_INFO, Constants.ANSIBLE_PLAYBOOK_RESULT)
-                            .and(pe.EVENT_SEQ.greaterThan(marker.eventSeq())));
-
-            return q.orderBy(pe.EVENT_SEQ)
+                    .where(pe.EVENT_TYPE.in(PAYLOAD_KEYS.keySet())
+                            .and(pe.EVENT_SEQ.greaterThan(fromSeq)))
+                    .orderBy(pe.EVENT_SEQ)
                     .limit(count)
-                    .fetch(r -> ImmutableEvent.builder()
-                            .instanceId(r.value1())
-                            .instanceCreatedAt(r.value2())
-                            .eventSeq(r.value3())
-                            .eventDate(r.value4())
-                            .eventType(r.value5())
-                            .payload(deserialize(r.value6()))
-                            .build());
+                    .fetch(AnsibleEventDao::toRawEvent);
         }
 
-        @SuppressWarnings("unchecked")
-        private Map<String, Object> deserialize(JSONB o) {
-            if (o == null) {
-                return null;
+        /**
+         * Parses the event's data, only the keys used by the processors are kept.
+         */
+        public EventProcessor.Event toEvent(RawEvent e) {
+            return ImmutableEvent.builder()
+                    .instanceId(e.instanceId)
+                    .instanceCreatedAt(e.instanceCreatedAt)
+                    .eventSeq(e.eventSeq)
+                    .eventDate(e.eventDate)
+                    .eventType(e.eventType)
+                    .payload(parsePayload(e.data, PAYLOAD_KEYS.getOrDefault(e.eventType, Collections.emptySet())))
+                    .build();
+        }
+
+        private Map<String, Object> parsePayload(JSONB data, Set<String> keys) {
+            if (data == null) {
+                return Collections.emptyMap();
             }
 
-            try {
-                return objectMapper.readValue(o.toString(), Map.class);
+            Map<String, Object> result = new HashMap<>();
+            try (JsonParser p = objectMapper.getFactory().createParser(data.data())) {
+                if (p.nextToken() != JsonToken.START_OBJECT) {
+                    return result;
+                }
+
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String k = p.getCurrentName();
+                    p.nextToken();
+
+                    if (keys.contains(k)) {
+                        result.put(k, objectMapper.readValue(p, Object.class));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+
+            return result;
+        }
+
+        private static RawEvent toRawEvent(Record6<UUID, OffsetDateTime, Long, OffsetDateTime, String, JSONB> r) {
+            return new RawEvent(r.value1(), r.value2(), r.value3(), r.value4(), r.value5(), r.value6());
+        }
+
+        private static Set<String> keys(String... keys) {
+            return new HashSet<>(Arrays.asList(keys));
+        }
+    }
+
+    /**
+     * An event as it is stored in the DB. The data is parsed by the partition's worker.
+     */
+    public static final class RawEvent {
+
+        private final UUID instanceId;
+        private final OffsetDateTime instanceCreatedAt;
+        private final long eventSeq;
+        private final OffsetDateTime eventDate;
+        private final String eventType;
+        private final JSONB data;
+
+        RawEvent(UUID instanceId, OffsetDateTime instanceCreatedAt, long eventSeq, OffsetDateTime eventDate, String eventType, JSONB data) {
+            this.instanceId = instanceId;
+            this.instanceCreatedAt = instanceCreatedAt;
+            this.eventSeq = eventSeq;
+            this.eventDate = eventDate;
+            this.eventType = eventType;
+            this.data = data;
         }
     }
 }
@@ -30,6 +30,7 @@ import org.jooq.Record1;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.Map;
 
 import static com.walmartlabs.concord.server.jooq.Tables.EVENT_PROCESSOR_MARKER;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_EVENTS;
@@ -56,21 +57,45 @@ public class EventMarkerDao extends AbstractDao {
     }
 
     public EventMarker get(String processorName) {
+        Long currentEventSeq = getEventSeq(processorName);
+        long maxEventSeq = getMaxEventSeq();
+
+        return EventMarker.builder()
+                .eventSeq(currentEventSeq != null ? currentEventSeq : -1)
+                .maxEventSeq(maxEventSeq)
+                .build();
+    }
+
+    /**
+     * Returns the marker's last processed event or {@code null} if the marker doesn't exist.
+     */
+    public Long getEventSeq(String processorName) {
         EventProcessorMarker m = EVENT_PROCESSOR_MARKER.as("m");
 
-        Long currentEventSeq = txResult(tx -> tx.select(m.EVENT_SEQ)
+        return txResult(tx -> tx.select(m.EVENT_SEQ)
                 .from(m)
                 .where(m.PROCESSOR_NAME.eq(processorName))
                 .fetchOne(m.EVENT_SEQ));
+    }
+
+    /**
+     * Returns all markers whose names start with the specified prefix.
+     */
+    public Map<String, Long> list(String namePrefix) {
+        EventProcessorMarker m = EVENT_PROCESSOR_MARKER.as("m");
+
+        return txResult(tx -> tx.select(m.PROCESSOR_NAME, m.EVENT_SEQ)
+                .from(m)
+                .where(m.PROCESSOR_NAME.startsWith(namePrefix))
+                .fetchMap(m.PROCESSOR_NAME, m.EVENT_SEQ));
+    }
 
+    public long getMaxEventSeq() {
         Long maxEventSeq = txResult(tx -> tx.select(max(PROCESS_EVENTS.EVENT_SEQ))
                 .from(PROCESS_EVENTS)
                 .fetchOne(Record1::value1));
 
-        return EventMarker.builder()
-                .eventSeq(currentEventSeq != null ? currentEventSeq : -1)
-                .maxEventSeq(maxEventSeq != null ? maxEventSeq : -1)
-                .build();
+        return maxEventSeq != null ? maxEventSeq : -1;
     }
 
     public void update(DSLContext tx, String processorName, long eventSeq) {
@@ -84,6 +109,13 @@ public class EventMarkerDao extends AbstractDao {
                 .execute();
     }
 
+    public void delete(DSLContext tx, String processorName) {
+        EventProcessorMarker m = EVENT_PROCESSOR_MARKER.as("m");
+        tx.deleteFrom(m)
+                .where(m.PROCESSOR_NAME.eq(processorName))
+                .execute();
+    }
+
     @Value.Immutable
     public interface EventMarker {
 
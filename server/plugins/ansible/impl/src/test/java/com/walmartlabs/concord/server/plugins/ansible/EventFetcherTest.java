@@ -0,0 +1,226 @@
+package com.walmartlabs.concord.server.plugins.ansible;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.server.plugins.ansible.EventFetcher.RawEvent;
+import org.jooq.DSLContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class EventFetcherTest {
+
+    private final TestMarkerDao markerDao = new TestMarkerDao();
+    private final TestEventDao eventDao = new TestEventDao();
+    private final TestProcessor processor = new TestProcessor();
+
+    private final List<EventFetcher> fetchers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        fetchers.forEach(EventFetcher::stop);
+    }
+
+    @Test
+    public void testFailingPartition() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID b = otherPartition(a, 2);
+
+        for (int i = 0; i < 10; i++) {
+            eventDao.add(i % 2 == 0 ? a : b);
+        }
+
+        processor.failing.add(a);
+
+        EventFetcher fetcher = fetcher(2);
+        try {
+            fetcher.performTask();
+            fail("exception expected");
+        } catch (RuntimeException e) {
+            assertEquals("boom", e.getMessage());
+        }
+
+        // the other partition is not blocked by the failing one
+        assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 9L), processor.processed(b));
+        assertEquals(Collections.emptyList(), processor.processed(a));
+
+        processor.failing.clear();
+        fetcher.performTask();
+
+        assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L), processor.processed(a));
+        assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 9L), processor.processed(b));
+    }
+
+    @Test
+    public void testWorkersChange() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID b = otherPartition(a, 2);
+
+        for (int i = 0; i < 10; i++) {
+            eventDao.add(i % 2 == 0 ? a : b);
+        }
+
+        // the partition of "a" lags behind
+        processor.failing.add(a);
+        try {
+            fetcher(2).performTask();
+            fail("exception expected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        processor.failing.clear();
+
+        eventDao.add(a);
+        eventDao.add(b);
+
+        // a single partition starts from the lowest marker, but the events
+        // already processed with two partitions must not be processed again
+        fetcher(1).performTask();
+
+        assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L, 10L), processor.processed(a));
+        assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 9L, 11L), processor.processed(b));
+
+        // the old markers are removed once the new partition caught up
+        assertEquals(new HashSet<>(Arrays.asList("ansible-event-processor", "ansible-event-processor-0-of-1")), markerDao.markers.keySet());
+    }
+
+    private EventFetcher fetcher(int workers) {
+        AnsibleEventsConfiguration cfg = new AnsibleEventsConfiguration(Duration.ofSeconds(1), 3, workers);
+        EventFetcher f = new EventFetcher(cfg, markerDao, eventDao, Collections.singletonList(processor));
+        fetchers.add(f);
+        return f;
+    }
+
+    private static UUID otherPartition(UUID id, int partitions) {
+        while (true) {
+            UUID result = UUID.randomUUID();
+            if (EventFetcher.partitionOf(result, partitions) != EventFetcher.partitionOf(id, partitions)) {
+                return result;
+            }
+        }
+    }
+
+    private static class TestMarkerDao extends EventMarkerDao {
+
+        private final Map<String, Long> markers = new HashMap<>();
+
+        private TestMarkerDao() {
+            super(null);
+        }
+
+        @Override
+        public synchronized void tx(Tx t) {
+            try {
+                t.run(null);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public synchronized Long getEventSeq(String processorName) {
+            return markers.get(processorName);
+        }
+
+        @Override
+        public synchronized Map<String, Long> list(String namePrefix) {
+            return markers.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(namePrefix))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        }
+
+        @Override
+        public long getMaxEventSeq() {
+            return -1;
+        }
+
+        @Override
+        public synchronized void update(DSLContext tx, String processorName, long eventSeq) {
+            markers.put(processorName, eventSeq);
+        }
+
+        @Override
+        public synchronized void delete(DSLContext tx, String processorName) {
+            markers.remove(processorName);
+        }
+    }
+
+    private static class TestEventDao extends EventFetcher.AnsibleEventDao {
+
+        // event seq == index
+        private final List<UUID> events = new ArrayList<>();
+
+        private TestEventDao() {
+            super(null, new ObjectMapper());
+        }
+
+        public void add(UUID instanceId) {
+            events.add(instanceId);
+        }
+
+        @Override
+        public List<RawEvent> list(long fromSeq, int count) {
+            OffsetDateTime now = OffsetDateTime.now();
+
+            List<RawEvent> result = new ArrayList<>();
+            for (int seq = (int) fromSeq + 1; seq < events.size() && result.size() < count; seq++) {
+                result.add(new RawEvent(events.get(seq), now, seq, now, Constants.ANSIBLE_EVENT_TYPE, null));
+            }
+            return result;
+        }
+    }
+
+    private static class TestProcessor implements EventProcessor {
+
+        private final Set<UUID> failing = Collections.synchronizedSet(new HashSet<>());
+        private final Map<UUID, List<Long>> processed = new HashMap<>();
+
+        @Override
+        public void process(DSLContext tx, List<Event> events) {
+            for (Event e : events) {
+                if (failing.contains(e.instanceId())) {
+                    throw new RuntimeException("boom");
+                }
+            }
+
+            synchronized (processed) {
+                for (Event e : events) {
+                    processed.computeIfAbsent(e.instanceId(), k -> new ArrayList<>()).add(e.eventSeq());
+                }
+            }
+        }
+
+        public List<Long> processed(UUID instanceId) {
+            synchronized (processed) {
+                return new ArrayList<>(processed.getOrDefault(instanceId, Collections.emptyList()));
+            }
+        }
+    }
+}
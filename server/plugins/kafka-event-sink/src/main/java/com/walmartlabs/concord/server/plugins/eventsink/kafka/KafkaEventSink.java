@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.plugins.eventsink.kafka;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.walmartlabs.concord.server.sdk.audit.AuditEvent;
 import com.walmartlabs.concord.server.sdk.audit.AuditLogListener;
 import com.walmartlabs.concord.server.sdk.events.ProcessEvent;
@@ -43,7 +44,7 @@ public class KafkaEventSink implements ProcessEventListener, ProcessLogListener,
     private final KafkaEventSinkConfiguration cfg;
     private final KafkaConnector connector;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter objectWriter = new ObjectMapper().writer();
 
     @Inject
     public KafkaEventSink(KafkaEventSinkConfiguration cfg, KafkaConnector connector) {
@@ -53,22 +54,29 @@ public class KafkaEventSink implements ProcessEventListener, ProcessLogListener,
 
     @Override
     public void onEvent(AuditEvent event) {
-        String k = Long.toString(event.entrySeq());
-        try {
-            String v = objectMapper.writeValueAsString(event);
-            connector.send(cfg.getAuditLogTopic(), k, v);
-        } catch (Exception e) {
-            log.warn("onEvent [{}] -> error while sending an audit log event: {}", k, e.getMessage());
+        onEventBatch(Collections.singletonList(event));
+    }
+
+    @Override
+    public void onEventBatch(List<AuditEvent> events) {
+        String topic = cfg.getAuditLogTopic();
+        for (AuditEvent ev : events) {
+            String k = Long.toString(ev.entrySeq());
+            try {
+                connector.send(topic, k, objectWriter.writeValueAsString(ev));
+            } catch (Exception e) {
+                log.warn("onEventBatch [{}] -> error while sending an audit log event: {}", k, e.getMessage());
+            }
         }
     }
 
     @Override
     public void onEvents(List<ProcessEvent> events) {
+        String topic = cfg.getProcessEventsTopic();
         for (ProcessEvent ev : events) {
             String k = Long.toString(ev.eventSeq());
             try {
-                String v = objectMapper.writeValueAsString(ev);
-                connector.send(cfg.getProcessEventsTopic(), k, v);
+                connector.send(topic, k, objectWriter.writeValueAsString(ev));
             } catch (Exception e) {
                 log.warn("onEvents [{}] -> error while sending an event: {}", k, e.getMessage());
             }
@@ -77,12 +85,20 @@ public class KafkaEventSink implements ProcessEventListener, ProcessLogListener,
 
     @Override
     public void onAppend(ProcessLogEntry entry) {
-        String k = entry.processKey().getInstanceId().toString();
-        try {
-            String v = objectMapper.writeValueAsString(Collections.singletonMap("msg", new String(entry.msg())));
-            connector.send(cfg.getProcessLogsTopic(), k, v);
-        } catch (Exception e) {
-            log.warn("onAppend [{}] -> error while sending a log entry: {}", k, e.getMessage());
+        onAppendBatch(Collections.singletonList(entry));
+    }
+
+    @Override
+    public void onAppendBatch(List<ProcessLogEntry> entries) {
+        String topic = cfg.getProcessLogsTopic();
+        for (ProcessLogEntry entry : entries) {
+            String k = entry.processKey().getInstanceId().toString();
+            try {
+                String v = objectWriter.writeValueAsString(Collections.singletonMap("msg", new String(entry.msg())));
+                connector.send(topic, k, v);
+            } catch (Exception e) {
+                log.warn("onAppendBatch [{}] -> error while sending a log entry: {}", k, e.getMessage());
+            }
         }
     }
 
@@ -21,26 +21,25 @@ package com.walmartlabs.concord.server.queueclient;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.walmartlabs.concord.server.queueclient.message.Message;
-import com.walmartlabs.concord.server.queueclient.message.MessageType;
-
-import java.util.Map;
 
 public final class MessageSerializer {
 
     private static final ObjectMapper objectMapper = createObjectMapper();
 
+    /**
+     * Resolves the message class using the {@code messageType} property,
+     * the message is parsed only once.
+     */
+    private static final ObjectReader messageReader = objectMapper.readerFor(Message.class);
+
     @SuppressWarnings("unchecked")
     public static <E extends Message> E deserialize(String msg) {
         try {
-            Map<String, Object> m = objectMapper.readValue(msg, Map.class);
-            String messageType = (String) m.get("messageType");
-            if (messageType == null) {
-                throw new IllegalStateException("messageType not found: " + m);
-            }
-            return (E) objectMapper.convertValue(m, MessageType.valueOf(messageType).getClazz());
+            return (E) messageReader.readValue(msg);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
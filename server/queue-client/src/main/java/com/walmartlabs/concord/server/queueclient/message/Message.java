@@ -24,11 +24,20 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include;
 
 @JsonInclude(Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown=true)
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "messageType", visible = true)
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = CommandRequest.class, name = "COMMAND_REQUEST"),
+        @JsonSubTypes.Type(value = CommandResponse.class, name = "COMMAND_RESPONSE"),
+        @JsonSubTypes.Type(value = ProcessRequest.class, name = "PROCESS_REQUEST"),
+        @JsonSubTypes.Type(value = ProcessResponse.class, name = "PROCESS_RESPONSE")
+})
 public abstract class Message {
 
     private final MessageType messageType;
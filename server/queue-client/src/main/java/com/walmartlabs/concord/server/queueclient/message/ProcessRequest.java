@@ -28,23 +28,39 @@ import java.util.Map;
 public class ProcessRequest extends Message {
 
     private final Map<String, Object> capabilities;
+    private final int maxJobs;
 
+    public ProcessRequest(Map<String, Object> capabilities) {
+        this(capabilities, 1);
+    }
+
+    /**
+     * @param maxJobs max number of processes the agent can take at once. If greater
+     *                than 1, the server replies with {@link ProcessResponse#batch(long, java.util.List)}
+     */
     @JsonCreator
     public ProcessRequest(
-            @JsonProperty("capabilities") Map<String, Object> capabilities) {
+            @JsonProperty("capabilities") Map<String, Object> capabilities,
+            @JsonProperty("maxJobs") Integer maxJobs) {
         super(MessageType.PROCESS_REQUEST);
         this.capabilities = capabilities;
+        this.maxJobs = maxJobs != null && maxJobs > 0 ? maxJobs : 1;
     }
 
     public Map<String, Object> getCapabilities() {
         return capabilities;
     }
 
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
     @Override
     public String toString() {
         return "ProcessRequest{" +
                 "correlationId='" + getCorrelationId() + "', " +
-                "capabilities='" + capabilities + "'" +
+                "capabilities='" + capabilities + "', " +
+                "maxJobs=" + maxJobs +
                 '}';
     }
 }
@@ -24,6 +24,8 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.walmartlabs.concord.imports.Imports;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 public class ProcessResponse extends Message {
@@ -36,6 +38,27 @@ public class ProcessResponse extends Message {
     private final String commitId;
     private final String secretName;
     private final Imports imports;
+    private final List<ProcessResponse> jobs;
+
+    /**
+     * Creates a response for multiple processes, see {@link ProcessRequest#getMaxJobs()}.
+     */
+    public static ProcessResponse batch(long correlationId, List<ProcessResponse> jobs) {
+        return new ProcessResponse(correlationId, null, null, null, null, null, null, null, null, jobs);
+    }
+
+    public ProcessResponse(long correlationId,
+                           String sessionToken,
+                           UUID processId,
+                           String orgName,
+                           String repoUrl,
+                           String repoPath,
+                           String commitId,
+                           String secretName,
+                           Imports imports) {
+
+        this(correlationId, sessionToken, processId, orgName, repoUrl, repoPath, commitId, secretName, imports, null);
+    }
 
     @JsonCreator
     public ProcessResponse(
@@ -47,7 +70,8 @@ public class ProcessResponse extends Message {
             @JsonProperty("repoPath") String repoPath,
             @JsonProperty("commitId") String commitId,
             @JsonProperty("secretName") String secretName,
-            @JsonProperty("imports") Imports imports) {
+            @JsonProperty("imports") Imports imports,
+            @JsonProperty("jobs") List<ProcessResponse> jobs) {
 
         super(MessageType.PROCESS_RESPONSE);
 
@@ -60,6 +84,7 @@ public class ProcessResponse extends Message {
         this.commitId = commitId;
         this.secretName = secretName;
         this.imports = imports;
+        this.jobs = jobs;
     }
 
     public String getSessionToken() {
@@ -94,6 +119,28 @@ public class ProcessResponse extends Message {
         return imports;
     }
 
+    /**
+     * Processes of a {@link #batch(long, List)} response.
+     */
+    public List<ProcessResponse> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return all processes in this response, regardless of its type.
+     */
+    public List<ProcessResponse> allJobs() {
+        if (jobs != null) {
+            return jobs;
+        }
+
+        if (processId != null) {
+            return Collections.singletonList(this);
+        }
+
+        return Collections.emptyList();
+    }
+
     @Override
     public String toString() {
         return "ProcessResponse{" +
@@ -105,6 +152,7 @@ public class ProcessResponse extends Message {
                 ", commitId='" + commitId + '\'' +
                 ", secretName='" + secretName + '\'' +
                 ", imports=" + imports +
+                ", jobs=" + jobs +
                 '}';
     }
 }
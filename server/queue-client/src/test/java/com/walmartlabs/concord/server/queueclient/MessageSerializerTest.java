@@ -26,6 +26,7 @@ import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.server.queueclient.message.*;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 
@@ -79,6 +80,22 @@ public class MessageSerializerTest {
         assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
     }
 
+    @Test
+    public void testMultiSlotProcessRequest() {
+        ProcessRequest r = new ProcessRequest(Collections.singletonMap("k", "v"), 10);
+        r.setCorrelationId(123);
+
+        // ---
+        ProcessRequest rDeserialized = MessageSerializer.deserialize(MessageSerializer.serialize(r));
+        assertEquals(10, rDeserialized.getMaxJobs());
+        assertEquals(r.getCapabilities(), rDeserialized.getCapabilities());
+
+        // ---
+        String old = "{\"capabilities\":{\"k\":\"v\"}, \"correlationId\":123, \"messageType\":\"PROCESS_REQUEST\"}";
+        ProcessRequest oldDeserialized = MessageSerializer.deserialize(old);
+        assertEquals(1, oldDeserialized.getMaxJobs());
+    }
+
     @Test
     public void testUnknownProperties() {
         String str = "{\"sessionToken\":\"123123\", \"correlationId\":123, \"processId\":\"b26a60c6-b54e-4f4d-bf0a-abafb908bf76\", \"messageType\":\"PROCESS_RESPONSE\"}";
@@ -116,4 +133,27 @@ public class MessageSerializerTest {
         assertEquals(r.getProcessId(), rDeserialized.getProcessId());
         assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
     }
+
+    @Test
+    public void testBatchProcessResponse() {
+        ProcessResponse a = new ProcessResponse(123, "token-a", UUID.randomUUID(), null, "repo-url", null, "commit-id", null, null);
+        ProcessResponse b = new ProcessResponse(123, "token-b", UUID.randomUUID(), null, null, null, null, null, null);
+        ProcessResponse r = ProcessResponse.batch(123, Arrays.asList(a, b));
+
+        // ---
+        String rSerialized = MessageSerializer.serialize(r);
+        assertNotNull(rSerialized);
+
+        ProcessResponse rDeserialized = MessageSerializer.deserialize(rSerialized);
+        assertEquals(MessageType.PROCESS_RESPONSE, rDeserialized.getMessageType());
+        assertEquals(123, rDeserialized.getCorrelationId());
+        assertEquals(2, rDeserialized.allJobs().size());
+        assertEquals(a.getProcessId(), rDeserialized.allJobs().get(0).getProcessId());
+        assertEquals(a.getRepoUrl(), rDeserialized.allJobs().get(0).getRepoUrl());
+        assertEquals(b.getProcessId(), rDeserialized.allJobs().get(1).getProcessId());
+        assertEquals(b.getSessionToken(), rDeserialized.allJobs().get(1).getSessionToken());
+
+        // a single process response
+        assertEquals(1, a.allJobs().size());
+    }
 }
@@ -20,7 +20,19 @@ package com.walmartlabs.concord.server.sdk.audit;
  * =====
  */
 
+import java.util.List;
+
 public interface AuditLogListener {
 
     void onEvent(AuditEvent event);
+
+    /**
+     * Called with the events accumulated in the listener's queue.
+     * Override to handle the whole batch at once.
+     */
+    default void onEventBatch(List<AuditEvent> events) {
+        for (AuditEvent e : events) {
+            onEvent(e);
+        }
+    }
 }
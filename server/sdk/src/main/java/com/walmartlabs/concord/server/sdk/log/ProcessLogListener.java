@@ -20,7 +20,19 @@ package com.walmartlabs.concord.server.sdk.log;
  * =====
  */
 
+import java.util.List;
+
 public interface ProcessLogListener {
 
     void onAppend(ProcessLogEntry entry);
+
+    /**
+     * Called with the entries accumulated in the listener's queue.
+     * Override to handle the whole batch at once.
+     */
+    default void onAppendBatch(List<ProcessLogEntry> entries) {
+        for (ProcessLogEntry e : entries) {
+            onAppend(e);
+        }
+    }
 }